@@ -1,37 +1,37 @@
-/**
- * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
- * 
- * This file is part of the Dihedron embeddable web container ("e-httpd").
- *
- * "e-httpd" is free software: you can redistribute it and/or modify it under 
- * the terms of the GNU Lesser General Public License as published by the Free 
- * Software Foundation, either version 3 of the License, or (at your option) 
- * any later version.
- *
- * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
- * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
- * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
- * details.
- *
- * You should have received a copy of the GNU Lesser General Public License 
- * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
- */
-package org.dihedron.ehttpd.actions;
-
-
-/**
- * Base interface for all actions that must know about the
- * Model object.
- *  
- * @author Andrea Funto'
- */
-public interface ModelAware {
-	
-	/**
-	 * Sets the model object into the action.
-	 * 
-	 * @param model
-	 *   the model object.
-	 */
-	public void setModel(Object model);
-}
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.actions;
+
+
+/**
+ * Base interface for all actions that must know about the
+ * Model object.
+ *  
+ * @author Andrea Funto'
+ */
+public interface ModelAware {
+	
+	/**
+	 * Sets the model object into the action.
+	 * 
+	 * @param model
+	 *   the model object.
+	 */
+	public void setModel(Object model);
+}
@@ -1,48 +1,48 @@
-/**
- * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
- * 
- * This file is part of the Dihedron embeddable web container ("e-httpd").
- *
- * "e-httpd" is free software: you can redistribute it and/or modify it under 
- * the terms of the GNU Lesser General Public License as published by the Free 
- * Software Foundation, either version 3 of the License, or (at your option) 
- * any later version.
- *
- * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
- * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
- * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
- * details.
- *
- * You should have received a copy of the GNU Lesser General Public License 
- * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
- */
-package org.dihedron.ehttpd.annotations;
-
-import java.lang.annotation.ElementType;
-import java.lang.annotation.Retention;
-import java.lang.annotation.RetentionPolicy;
-import java.lang.annotation.Target;
-
-/**
- * Annotation indicating that the field will contain 
- * data coming from the given parameter name.
- * 
- * @author Andrea Funto'
- */
-@Retention(RetentionPolicy.RUNTIME) 
-@Target(ElementType.FIELD)
-public @interface In {
-	/**
-	 * The name of the input parameter; if not specified,
-	 * the name of the parameter must match that of the field.
-	 * @return
-	 *   the name of the parameter, or <code>&lt;same&gt;</code>
-	 *   if the name matches that of the field.
-	 */
-	String value() default "";
-	
-	/**
-	 * If the attribute is required.
-	 */
-	boolean required() default false;
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation indicating that the field will contain 
+ * data coming from the given parameter name.
+ * 
+ * @author Andrea Funto'
+ */
+@Retention(RetentionPolicy.RUNTIME) 
+@Target(ElementType.FIELD)
+public @interface In {
+	/**
+	 * The name of the input parameter; if not specified,
+	 * the name of the parameter must match that of the field.
+	 * @return
+	 *   the name of the parameter, or <code>&lt;same&gt;</code>
+	 *   if the name matches that of the field.
+	 */
+	String value() default "";
+	
+	/**
+	 * If the attribute is required.
+	 */
+	boolean required() default false;
 }
\ No newline at end of file
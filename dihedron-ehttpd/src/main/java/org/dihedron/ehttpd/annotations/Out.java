@@ -1,45 +1,45 @@
-/**
- * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
- * 
- * This file is part of the Dihedron embeddable web container ("e-httpd").
- *
- * "e-httpd" is free software: you can redistribute it and/or modify it under 
- * the terms of the GNU Lesser General Public License as published by the Free 
- * Software Foundation, either version 3 of the License, or (at your option) 
- * any later version.
- *
- * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
- * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
- * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
- * details.
- *
- * You should have received a copy of the GNU Lesser General Public License 
- * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
- */
-
-package org.dihedron.ehttpd.annotations;
-
-import java.lang.annotation.ElementType;
-import java.lang.annotation.Retention;
-import java.lang.annotation.RetentionPolicy;
-import java.lang.annotation.Target;
-
-/**
- * Annotation indicating that the field will contain 
- * output data, mapped to the given parameter name.
- * 
- * @author Andrea Funto'
- */
-@Retention(RetentionPolicy.RUNTIME) 
-@Target(ElementType.FIELD)
-public @interface Out {
-	
-	/**
-	 * The name of the output field which will be used to re-map
-	 * the name of the annotated field.
-	 * 
-	 * @return
-	 *   the name of the output.
-	 */
-	String value() default "";
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.dihedron.ehttpd.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation indicating that the field will contain 
+ * output data, mapped to the given parameter name.
+ * 
+ * @author Andrea Funto'
+ */
+@Retention(RetentionPolicy.RUNTIME) 
+@Target(ElementType.FIELD)
+public @interface Out {
+	
+	/**
+	 * The name of the output field which will be used to re-map
+	 * the name of the annotated field.
+	 * 
+	 * @return
+	 *   the name of the output.
+	 */
+	String value() default "";
 }
\ No newline at end of file
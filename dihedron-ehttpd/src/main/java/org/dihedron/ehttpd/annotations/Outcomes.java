@@ -1,47 +1,47 @@
-/**
- * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
- * 
- * This file is part of the Dihedron embeddable web container ("e-httpd").
- *
- * "e-httpd" is free software: you can redistribute it and/or modify it under 
- * the terms of the GNU Lesser General Public License as published by the Free 
- * Software Foundation, either version 3 of the License, or (at your option) 
- * any later version.
- *
- * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
- * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
- * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
- * details.
- *
- * You should have received a copy of the GNU Lesser General Public License 
- * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
- */
-package org.dihedron.ehttpd.annotations;
-
-import java.lang.annotation.ElementType;
-import java.lang.annotation.Retention;
-import java.lang.annotation.RetentionPolicy;
-import java.lang.annotation.Target;
-
-/**
- * Annotation representing the list of outcomes for the given
- * action; each outcome will describe the renderer to be used 
- * for the given result.
- * 
- * @author Andrea Funto'
- */
-@Retention(RetentionPolicy.RUNTIME) 
-@Target(ElementType.TYPE)
-public @interface Outcomes {
-
-	/**
-	 * The array of expected outcomes; each of them
-	 * will map to the appropriate renderer, and will
-	 * be parameterised according to what is specified
-	 * in the <code>@Outcome</code> annotation.
-	 * 
-	 * @return
-	 *   the array of expected outcomes.
-	 */
-	Outcome[] value();
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation representing the list of outcomes for the given
+ * action; each outcome will describe the renderer to be used 
+ * for the given result.
+ * 
+ * @author Andrea Funto'
+ */
+@Retention(RetentionPolicy.RUNTIME) 
+@Target(ElementType.TYPE)
+public @interface Outcomes {
+
+	/**
+	 * The array of expected outcomes; each of them
+	 * will map to the appropriate renderer, and will
+	 * be parameterised according to what is specified
+	 * in the <code>@Outcome</code> annotation.
+	 * 
+	 * @return
+	 *   the array of expected outcomes.
+	 */
+	Outcome[] value();
 }
\ No newline at end of file
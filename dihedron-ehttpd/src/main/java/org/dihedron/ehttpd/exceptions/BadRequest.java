@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.exceptions;
+
+/**
+ * The exception thrown when a request is malformed in a way that leaves its
+ * end uncertain, e.g. an invalid or ambiguous <code>Content-Length</code>; 
+ * the server answers with a <code>400 Bad Request</code> and closes the 
+ * connection, since whatever follows cannot be trusted to be a new request.
+ * 
+ * @author Andrea Funto'
+ */
+public class BadRequest extends ServerException {
+
+	/**
+	 * Serial version UID.
+	 */
+	private static final long serialVersionUID = -2304750712847761345L;
+
+	/**
+	 * Constructor.
+	 */
+	public BadRequest() {
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param message
+	 *   the message associated with the exception.
+	 */
+	public BadRequest(String message) {
+		super(message);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param cause
+	 *   the original exception cause.
+	 */
+	public BadRequest(Throwable cause) {
+		super(cause);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param message
+	 *   the message associated with the exception.
+	 * @param cause
+	 *   the original exception cause.
+	 */
+	public BadRequest(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
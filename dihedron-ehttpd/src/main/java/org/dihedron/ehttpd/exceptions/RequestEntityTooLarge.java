@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.exceptions;
+
+/**
+ * The exception thrown when the body of a request is larger than the server
+ * accepts, as declared by its <code>Content-Length</code> or as found while
+ * decoding its chunks; the server answers with a <code>413 Request Entity Too
+ * Large</code> and closes the connection, without reading the rest of it.
+ * 
+ * @author Andrea Funto'
+ */
+public class RequestEntityTooLarge extends ServerException {
+
+	/**
+	 * Serial version UID.
+	 */
+	private static final long serialVersionUID = 4118395106623208317L;
+
+	/**
+	 * Constructor.
+	 */
+	public RequestEntityTooLarge() {
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param message
+	 *   the message associated with the exception.
+	 */
+	public RequestEntityTooLarge(String message) {
+		super(message);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param cause
+	 *   the original exception cause.
+	 */
+	public RequestEntityTooLarge(Throwable cause) {
+		super(cause);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param message
+	 *   the message associated with the exception.
+	 * @param cause
+	 *   the original exception cause.
+	 */
+	public RequestEntityTooLarge(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
@@ -0,0 +1,361 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An access log, recording one line per request serviced in a format close to
+ * the Common Log Format, followed by the time it took to service the request
+ * in microseconds, e.g.
+ * <pre>
+ * 127.0.0.1 - - [10/Oct/2013:13:55:36 +0200] "GET /index.html HTTP/1.1" 200 2326 415
+ * </pre>
+ * Workers record requests into a ring of preallocated entries, without 
+ * locking and without ever waiting: if the ring is full, the entry is dropped
+ * and counted. A single background thread formats the entries and writes them
+ * to the file in batches.
+ * 
+ * @author Andrea Funto'
+ */
+public class AccessLog implements Runnable {
+	
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(AccessLog.class);
+	
+	/**
+	 * The default number of entries in the ring.
+	 */
+	public static final int DEFAULT_CAPACITY = 8192;
+	
+	/**
+	 * How long the writer waits for new entries when the ring is empty, in
+	 * milliseconds.
+	 */
+	private static final long IDLE_WAIT = 50;
+	
+	/**
+	 * An entry of the ring, reused over and over.
+	 */
+	private static class Entry {
+		InetAddress remote;
+		long timestamp;
+		Method method;
+		String target;
+		String protocol;
+		int status;
+		long bytes;
+		long nanos;
+	}
+	
+	/**
+	 * The file the log is written to.
+	 */
+	private final File file;
+	
+	/**
+	 * The entries of the ring.
+	 */
+	private final Entry [] entries;
+	
+	/**
+	 * The sequence number of the entry last published in each slot of the 
+	 * ring, or -1; an entry can be written out once its slot shows its 
+	 * sequence number.
+	 */
+	private final AtomicLongArray published;
+	
+	/**
+	 * The mask giving the slot of a sequence number.
+	 */
+	private final int mask;
+	
+	/**
+	 * The sequence number of the next entry to be claimed by a worker.
+	 */
+	private final AtomicLong head = new AtomicLong(0);
+	
+	/**
+	 * The sequence number of the next entry to be written out; only advanced
+	 * by the writer.
+	 */
+	private volatile long tail = 0;
+	
+	/**
+	 * The number of entries dropped because the ring was full.
+	 */
+	private final AtomicLong dropped = new AtomicLong(0);
+	
+	/**
+	 * The number of entries written out.
+	 */
+	private volatile long written = 0;
+	
+	/**
+	 * Whether the log is accepting entries.
+	 */
+	private volatile boolean running = false;
+	
+	/**
+	 * The writer thread.
+	 */
+	private Thread thread = null;
+	
+	/**
+	 * Constructor, with a ring of the default capacity.
+	 * 
+	 * @param file
+	 *   the file the log is appended to.
+	 */
+	public AccessLog(File file) {
+		this(file, DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param file
+	 *   the file the log is appended to.
+	 * @param capacity
+	 *   the number of entries in the ring, rounded up to a power of two.
+	 */
+	public AccessLog(File file, int capacity) {
+		int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+		this.file = file;
+		this.entries = new Entry[size];
+		this.published = new AtomicLongArray(size);
+		for(int i = 0; i < size; ++i) {
+			entries[i] = new Entry();
+			published.set(i, -1);
+		}
+		this.mask = size - 1;
+	}
+	
+	/**
+	 * Starts the writer thread.
+	 */
+	public synchronized void start() {
+		if(thread == null) {
+			running = true;
+			thread = new Thread(this, "ehttpd-access-log");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+	
+	/**
+	 * Stops accepting entries and waits for the writer thread to write out the
+	 * ones recorded so far.
+	 */
+	public void stop() {
+		Thread thread = null;
+		synchronized(this) {
+			thread = this.thread;
+			this.thread = null;
+			running = false;
+		}
+		if(thread != null) {
+			LockSupport.unpark(thread);
+			try {
+				thread.join(TimeUnit.SECONDS.toMillis(5));
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * Records a request; the call never blocks.
+	 * 
+	 * @param remote
+	 *   the address of the client.
+	 * @param query
+	 *   the request line and headers.
+	 * @param status
+	 *   the status of the response.
+	 * @param bytes
+	 *   the number of bytes written in the response, headers included.
+	 * @param nanos
+	 *   the time it took to service the request, in nanoseconds.
+	 * @return
+	 *   whether the request was recorded, or dropped because the log is full
+	 *   or stopped.
+	 */
+	public boolean log(InetAddress remote, HttpQuery query, Status status, long bytes, long nanos) {
+		if(!running) {
+			return false;
+		}
+		long sequence;
+		do {
+			sequence = head.get();
+			if(sequence - tail >= entries.length) {
+				dropped.incrementAndGet();
+				return false;
+			}
+		} while(!head.compareAndSet(sequence, sequence + 1));
+		
+		Entry entry = entries[(int)sequence & mask];
+		entry.remote = remote;
+		entry.timestamp = System.currentTimeMillis();
+		entry.method = query.getMethod();
+		entry.target = query.getTarget();
+		entry.protocol = query.getProtocol();
+		entry.status = status.getCode();
+		entry.bytes = bytes;
+		entry.nanos = nanos;
+		published.set((int)sequence & mask, sequence);
+		return true;
+	}
+	
+	/**
+	 * Returns the number of entries dropped because the ring was full.
+	 * 
+	 * @return
+	 *   the number of entries dropped.
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+	
+	/**
+	 * Returns the number of entries written out.
+	 * 
+	 * @return
+	 *   the number of entries written.
+	 */
+	public long getWritten() {
+		return written;
+	}
+	
+	/**
+	 * Writes out the entries as they are published, until the log is stopped
+	 * and all the entries claimed have been written.
+	 */
+	public void run() {
+		// only used by this thread
+		SimpleDateFormat format = new SimpleDateFormat("dd/MMM/yyyy:HH:mm:ss Z", Locale.US);
+		Writer writer = null;
+		try {
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8"));
+			StringBuilder line = new StringBuilder(256);
+			while(true) {
+				boolean stopping = !running;
+				int count = 0;
+				long sequence = tail;
+				while(published.get((int)sequence & mask) == sequence) {
+					Entry entry = entries[(int)sequence & mask];
+					line.setLength(0);
+					format(entry, format, line);
+					entry.remote = null;
+					entry.target = null;
+					tail = ++sequence;
+					writer.write(line.toString());
+					++count;
+				}
+				if(count > 0) {
+					writer.flush();
+					written += count;
+				} else if(stopping && sequence == head.get()) {
+					break;
+				} else if(!stopping) {
+					LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(IDLE_WAIT));
+				} else {
+					// an entry has been claimed but not published yet
+					Thread.yield();
+				}
+			}
+		} catch(IOException e) {
+			logger.error("error writing access log to " + file, e);
+			running = false;
+		} finally {
+			if(writer != null) {
+				try {
+					writer.close();
+				} catch(IOException e) {
+					logger.error("error closing access log", e);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Formats an entry as a line of the log.
+	 * 
+	 * @param entry
+	 *   the entry.
+	 * @param format
+	 *   the format of the timestamp.
+	 * @param line
+	 *   the buffer the line is appended to.
+	 */
+	private static void format(Entry entry, SimpleDateFormat format, StringBuilder line) {
+		line.append(entry.remote != null ? entry.remote.getHostAddress() : "-");
+		line.append(" - - [").append(format.format(new Date(entry.timestamp))).append("] \"");
+		line.append(entry.method).append(' ');
+		escape(entry.target, line);
+		line.append(' ');
+		escape(entry.protocol, line);
+		line.append("\" ").append(entry.status).append(' ').append(entry.bytes);
+		line.append(' ').append(TimeUnit.NANOSECONDS.toMicros(entry.nanos)).append('\n');
+	}
+	
+	/**
+	 * Appends a value sent by the client, escaping quotes, backslashes and 
+	 * control characters so that it cannot break the line apart.
+	 * 
+	 * @param value
+	 *   the value, possibly <code>null</code>.
+	 * @param line
+	 *   the buffer the value is appended to.
+	 */
+	private static void escape(String value, StringBuilder line) {
+		if(value == null) {
+			line.append('-');
+			return;
+		}
+		for(int i = 0; i < value.length(); ++i) {
+			char c = value.charAt(i);
+			if(c == '"' || c == '\\') {
+				line.append('\\').append(c);
+			} else if(c < 0x20 || c == 0x7f) {
+				line.append("\\x").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xf, 16));
+			} else {
+				line.append(c);
+			}
+		}
+	}
+}
@@ -0,0 +1,239 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A limit on the number of requests in flight that adapts to the latency of
+ * request dispatching, along the lines of gradient-based congestion control.
+ * Latencies are averaged over windows of samples, and each window is compared
+ * with the latency observed with fewer requests in flight: as long as the 
+ * latency holds, the limit grows by a fraction of its square root per window;
+ * when the latency rises above the baseline by more than a tolerance, a sign
+ * that requests are queueing for some resource (e.g. the CPU), the limit
+ * shrinks in proportion. Handlers that mostly wait on I/O thus get a high 
+ * limit, and handlers that compete for the CPU a low one; the limit only 
+ * grows if it is actually being used. Since the baseline may change along 
+ * with the handlers' workload, it is measured again every now and then by 
+ * halving the number of requests in flight for a couple of windows: the 
+ * first one lets the requests admitted under the previous limit drain, the
+ * second one gives the new baseline.
+ * 
+ * @author Andrea Funto'
+ */
+public class AdaptiveConcurrencyLimit {
+	
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(AdaptiveConcurrencyLimit.class);
+	
+	/**
+	 * The default initial limit.
+	 */
+	public static final int DEFAULT_INITIAL_LIMIT = 20;
+	
+	/**
+	 * The default minimum limit.
+	 */
+	public static final int DEFAULT_MIN_LIMIT = 1;
+	
+	/**
+	 * The default maximum limit.
+	 */
+	public static final int DEFAULT_MAX_LIMIT = 1000;
+	
+	/**
+	 * The number of samples in a window.
+	 */
+	private static final int WINDOW_SIZE = 50;
+	
+	/**
+	 * The number of windows between two measurements of the baseline latency.
+	 */
+	private static final int PROBE_INTERVAL = 100;
+	
+	/**
+	 * The number of windows the limit is halved for when measuring the baseline
+	 * latency: one to drain the requests in flight, one to measure.
+	 */
+	private static final int PROBE_WINDOWS = 2;
+	
+	/**
+	 * The ratio between the window and the baseline latency that is tolerated
+	 * before the limit starts shrinking.
+	 */
+	private static final double TOLERANCE = 1.2;
+	
+	/**
+	 * The weight of each new limit when smoothing.
+	 */
+	private static final double SMOOTHING = 0.2;
+	
+	/**
+	 * The minimum limit.
+	 */
+	private final int minLimit;
+	
+	/**
+	 * The maximum limit.
+	 */
+	private final int maxLimit;
+	
+	/**
+	 * The current limit.
+	 */
+	private volatile int limit;
+	
+	/**
+	 * The current limit, before rounding.
+	 */
+	private double estimate;
+	
+	/**
+	 * The baseline latency, in nanoseconds; 0 until the first window is 
+	 * complete.
+	 */
+	private double baseline = 0;
+	
+	/**
+	 * The number of windows since the baseline latency was last measured.
+	 */
+	private int windows = 0;
+	
+	/**
+	 * The number of windows left before the baseline latency is measured again
+	 * with a halved limit, or 0 if not probing.
+	 */
+	private int probing = 0;
+	
+	/**
+	 * The sum of the latencies in the current window.
+	 */
+	private long windowLatency = 0;
+	
+	/**
+	 * The number of samples in the current window.
+	 */
+	private int windowSamples = 0;
+	
+	/**
+	 * The maximum number of requests in flight in the current window.
+	 */
+	private int windowInFlight = 0;
+	
+	/**
+	 * Constructor, with the default limits.
+	 */
+	public AdaptiveConcurrencyLimit() {
+		this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT);
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param initialLimit
+	 *   the initial limit.
+	 * @param minLimit
+	 *   the minimum limit.
+	 * @param maxLimit
+	 *   the maximum limit.
+	 */
+	public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+		this.minLimit = Math.max(minLimit, 1);
+		this.maxLimit = Math.max(maxLimit, this.minLimit);
+		this.estimate = Math.min(Math.max(initialLimit, this.minLimit), this.maxLimit);
+		this.limit = (int)estimate;
+	}
+	
+	/**
+	 * Returns the current limit.
+	 * 
+	 * @return
+	 *   the maximum number of requests in flight.
+	 */
+	public int getLimit() {
+		return limit;
+	}
+	
+	/**
+	 * Records the latency of a request.
+	 * 
+	 * @param latency
+	 *   the time it took to service the request, in nanoseconds.
+	 * @param inFlight
+	 *   the number of requests in flight when the request started.
+	 */
+	public synchronized void addSample(long latency, int inFlight) {
+		windowLatency += latency;
+		windowInFlight = Math.max(windowInFlight, inFlight);
+		if(++windowSamples < WINDOW_SIZE) {
+			return;
+		}
+		double shortLatency = (double)windowLatency / windowSamples;
+		int used = windowInFlight;
+		windowLatency = 0;
+		windowSamples = 0;
+		windowInFlight = 0;
+		update(shortLatency, used);
+	}
+	
+	/**
+	 * Computes the new limit at the end of a window.
+	 * 
+	 * @param shortLatency
+	 *   the average latency in the window, in nanoseconds.
+	 * @param used
+	 *   the maximum number of requests in flight in the window.
+	 */
+	private void update(double shortLatency, int used) {
+		if(probing > 0) {
+			if(--probing == 0) {
+				logger.trace("baseline latency {} us", (long)shortLatency / 1000);
+				baseline = shortLatency;
+				limit = (int)estimate;
+			}
+			return;
+		}
+		if(baseline == 0 || shortLatency < baseline) {
+			baseline = shortLatency;
+		}
+		
+		double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * baseline / shortLatency));
+		if(gradient < 1.0 || used >= estimate / 2) {
+			// unless the limit is not what is holding requests back
+			double target = estimate * gradient + Math.sqrt(estimate);
+			estimate = estimate * (1 - SMOOTHING) + target * SMOOTHING;
+			estimate = Math.min(Math.max(estimate, minLimit), maxLimit);
+		}
+		
+		int updated = (int)estimate;
+		if(++windows == PROBE_INTERVAL) {
+			windows = 0;
+			probing = PROBE_WINDOWS;
+			updated = Math.max(minLimit, Math.min(updated, used) / 2);
+		}
+		if(updated != limit) {
+			logger.trace("concurrency limit {} -> {} (latency {} us, baseline {} us)", new Object[] { limit, updated, (long)shortLatency / 1000, (long)baseline / 1000 });
+			limit = updated;
+		}
+	}
+}
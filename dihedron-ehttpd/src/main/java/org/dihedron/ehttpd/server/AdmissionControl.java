@@ -0,0 +1,313 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps track of the work the server has taken on, so that it can shed load
+ * instead of queueing it when it is saturated: it limits the number of 
+ * requests in flight and the number of connections open from each remote
+ * address, and counts the connections and requests that have been turned 
+ * away with a <code>503 Service Unavailable</code> response. The limit on 
+ * requests in flight can be fixed, or adapt to the latency of dispatching
+ * through an <code>AdaptiveConcurrencyLimit</code>.
+ * 
+ * @author Andrea Funto'
+ */
+class AdmissionControl {
+	
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(AdmissionControl.class);
+	
+	/**
+	 * The maximum number of requests in flight, or <code>HttpServer.UNLIMITED
+	 * </code>.
+	 */
+	private volatile int maxInFlight = HttpServer.UNLIMITED;
+	
+	/**
+	 * The limit on requests in flight that adapts to the dispatch latency, if 
+	 * any; when set along with a fixed limit, the lower of the two applies.
+	 */
+	private volatile AdaptiveConcurrencyLimit adaptiveLimit = null;
+	
+	/**
+	 * The maximum number of connections open from a single remote address, or
+	 * <code>HttpServer.UNLIMITED</code>.
+	 */
+	private volatile int maxConnectionsPerAddress = HttpServer.UNLIMITED;
+	
+	/**
+	 * The number of seconds clients that are turned away are asked to wait 
+	 * before retrying.
+	 */
+	private volatile int retryAfter = HttpServer.DEFAULT_RETRY_AFTER;
+	
+	/**
+	 * The number of requests in flight.
+	 */
+	private AtomicInteger inFlight = new AtomicInteger(0);
+	
+	/**
+	 * The number of connections and requests turned away.
+	 */
+	private AtomicLong rejected = new AtomicLong(0);
+	
+	/**
+	 * The number of connections open from each remote address, when limited; 
+	 * a negative count marks an entry that is being removed.
+	 */
+	private ConcurrentMap<InetAddress, AtomicInteger> connections = new ConcurrentHashMap<InetAddress, AtomicInteger>();
+	
+	/**
+	 * Sets the maximum number of requests in flight.
+	 */
+	void setMaxInFlight(int maxInFlight) {
+		this.maxInFlight = maxInFlight;
+	}
+	
+	/**
+	 * Returns the maximum number of requests in flight.
+	 */
+	int getMaxInFlight() {
+		return maxInFlight;
+	}
+	
+	/**
+	 * Sets the limit on requests in flight that adapts to the dispatch latency.
+	 */
+	void setAdaptiveLimit(AdaptiveConcurrencyLimit adaptiveLimit) {
+		this.adaptiveLimit = adaptiveLimit;
+	}
+	
+	/**
+	 * Returns the limit on requests in flight that adapts to the dispatch 
+	 * latency.
+	 */
+	AdaptiveConcurrencyLimit getAdaptiveLimit() {
+		return adaptiveLimit;
+	}
+	
+	/**
+	 * Returns the limit on requests in flight currently in force, taking both
+	 * the fixed and the adaptive limit into account.
+	 */
+	private int getLimit() {
+		int max = maxInFlight;
+		AdaptiveConcurrencyLimit adaptive = adaptiveLimit;
+		if(adaptive != null) {
+			int limit = adaptive.getLimit();
+			if(max <= HttpServer.UNLIMITED || limit < max) {
+				max = limit;
+			}
+		}
+		return max;
+	}
+	
+	/**
+	 * Sets the maximum number of connections open from a single address.
+	 */
+	void setMaxConnectionsPerAddress(int maxConnectionsPerAddress) {
+		this.maxConnectionsPerAddress = maxConnectionsPerAddress;
+	}
+	
+	/**
+	 * Returns the maximum number of connections open from a single address.
+	 */
+	int getMaxConnectionsPerAddress() {
+		return maxConnectionsPerAddress;
+	}
+	
+	/**
+	 * Sets the number of seconds rejected clients should wait before retrying.
+	 */
+	void setRetryAfter(int retryAfter) {
+		this.retryAfter = retryAfter;
+	}
+	
+	/**
+	 * Returns the number of seconds rejected clients should wait before 
+	 * retrying.
+	 */
+	int getRetryAfter() {
+		return retryAfter;
+	}
+	
+	/**
+	 * Checks whether the server can take on a new connection from the given
+	 * address, and if so counts it against the address; the connection must 
+	 * be released when closed.
+	 * 
+	 * @param address
+	 *   the remote address.
+	 * @return
+	 *   whether the connection can be accepted.
+	 */
+	boolean admit(InetAddress address) {
+		int max = getLimit();
+		if(max > HttpServer.UNLIMITED && inFlight.get() >= max) {
+			logger.debug("{} requests in flight, rejecting connection from {}", max, address);
+			rejected.incrementAndGet();
+			return false;
+		}
+		max = maxConnectionsPerAddress;
+		if(max <= HttpServer.UNLIMITED) {
+			return true;
+		}
+		while(true) {
+			AtomicInteger count = connections.get(address);
+			if(count == null) {
+				count = new AtomicInteger(0);
+				AtomicInteger existing = connections.putIfAbsent(address, count);
+				if(existing != null) {
+					count = existing;
+				}
+			}
+			int current = count.get();
+			if(current < 0) {
+				// being removed, retry with a new entry
+				continue;
+			}
+			if(current >= max) {
+				logger.debug("{} connections open from {}, rejecting connection", current, address);
+				rejected.incrementAndGet();
+				return false;
+			}
+			if(count.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+	
+	/**
+	 * Releases a connection previously admitted.
+	 * 
+	 * @param address
+	 *   the remote address.
+	 */
+	void release(InetAddress address) {
+		AtomicInteger count = connections.get(address);
+		if(count != null && count.decrementAndGet() == 0 && count.compareAndSet(0, -1)) {
+			connections.remove(address, count);
+		}
+	}
+	
+	/**
+	 * Reserves a slot for a request in flight, unless the limit has been 
+	 * reached; the slot must be released when the request has been serviced.
+	 * 
+	 * @return
+	 *   whether the request can be serviced.
+	 */
+	boolean begin() {
+		while(true) {
+			int current = inFlight.get();
+			int max = getLimit();
+			if(max > HttpServer.UNLIMITED && current >= max) {
+				rejected.incrementAndGet();
+				return false;
+			}
+			if(inFlight.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+	
+	/**
+	 * Releases the slot of a request in flight.
+	 */
+	void end() {
+		inFlight.decrementAndGet();
+	}
+	
+	/**
+	 * Records how long it took to dispatch a request, so that the adaptive 
+	 * limit (if any) can follow the latency.
+	 * 
+	 * @param latency
+	 *   the dispatch time, in nanoseconds.
+	 * @param inFlight
+	 *   the number of requests in flight when dispatching started.
+	 */
+	void sample(long latency, int inFlight) {
+		AdaptiveConcurrencyLimit adaptive = adaptiveLimit;
+		if(adaptive != null) {
+			adaptive.addSample(latency, inFlight);
+		}
+	}
+	
+	/**
+	 * Counts a connection or request turned away for other reasons, e.g. 
+	 * because the work queue is full.
+	 */
+	void reject() {
+		rejected.incrementAndGet();
+	}
+	
+	/**
+	 * Returns the number of requests in flight.
+	 */
+	int getInFlight() {
+		return inFlight.get();
+	}
+	
+	/**
+	 * Returns the number of connections and requests turned away.
+	 */
+	long getRejected() {
+		return rejected.get();
+	}
+	
+	/**
+	 * Returns the number of connections open from the given address, if the
+	 * number of connections per address is limited.
+	 */
+	int getConnections(InetAddress address) {
+		AtomicInteger count = connections.get(address);
+		return count != null ? Math.max(count.get(), 0) : 0;
+	}
+	
+	/**
+	 * Writes out the response telling a client the server is too busy.
+	 * 
+	 * @param output
+	 *   the stream to the client.
+	 * @throws IOException
+	 */
+	void writeServiceUnavailable(OutputStream output) throws IOException {
+		String response = "HTTP/1.1 " + Status.STATUS_503.getCode() + " " + Status.STATUS_503.getDescription() + "\r\n"
+				+ "Retry-After: " + retryAfter + "\r\n"
+				+ "Content-Length: 0\r\n"
+				+ "Connection: close\r\n\r\n";
+		output.write(response.getBytes("ISO-8859-1"));
+		output.flush();
+	}
+}
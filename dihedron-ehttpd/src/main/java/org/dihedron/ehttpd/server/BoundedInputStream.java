@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ *
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A stream that lets through at most a given number of bytes from the
+ * underlying stream, and then reports the end of data; it is used to expose
+ * the request body to handlers without letting them read into the next
+ * request on a persistent connection. Closing it does not close the
+ * underlying stream.
+ *
+ * @author Andrea Funto'
+ */
+class BoundedInputStream extends FilterInputStream {
+
+	/**
+	 * The number of bytes still available.
+	 */
+	private long remaining;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param input
+	 *   the underlying stream.
+	 * @param length
+	 *   the number of bytes that can be read from the underlying stream.
+	 */
+	BoundedInputStream(InputStream input, long length) {
+		super(input);
+		this.remaining = length;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if(remaining <= 0) {
+			return -1;
+		}
+		int c = in.read();
+		if(c != -1) {
+			--remaining;
+		}
+		return c;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		if(remaining <= 0) {
+			return -1;
+		}
+		int read = in.read(buffer, offset, (int)Math.min(length, remaining));
+		if(read > 0) {
+			remaining -= read;
+		}
+		return read;
+	}
+
+	@Override
+	public long skip(long count) throws IOException {
+		long skipped = in.skip(Math.min(count, remaining));
+		remaining -= skipped;
+		return skipped;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return (int)Math.min(in.available(), remaining);
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public void close() throws IOException {
+		// the underlying stream belongs to the connection
+	}
+
+	/**
+	 * Reads and discards whatever is left of the data.
+	 *
+	 * @throws IOException
+	 */
+	void drain() throws IOException {
+		byte [] buffer = new byte[4096];
+		while(read(buffer, 0, buffer.length) != -1) {
+			// discard
+		}
+	}
+}
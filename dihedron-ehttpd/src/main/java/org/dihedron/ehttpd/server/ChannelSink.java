@@ -0,0 +1,46 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Implemented by connection output streams that can send data straight from
+ * a channel, without it being copied into the stream first; e.g. file data 
+ * can be handed over to the operating system (<code>sendfile</code>) when the 
+ * client socket is writable.
+ * 
+ * @author Andrea Funto'
+ */
+interface ChannelSink {
+
+	/**
+	 * Sends the given number of bytes from the channel, after whatever has 
+	 * been written to the stream so far; the sink takes ownership of the 
+	 * channel, and closes it once done.
+	 * 
+	 * @param source
+	 *   the channel providing the data.
+	 * @param length
+	 *   the number of bytes to be sent.
+	 * @throws IOException
+	 */
+	void transferFrom(ReadableByteChannel source, long length) throws IOException;
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import java.io.IOException;
+
+/**
+ * An incremental decoder for request bodies sent with chunked transfer 
+ * encoding, used in non-blocking mode: it is fed with whatever bytes have been
+ * received, possibly across several partial reads, and appends the decoded 
+ * data to the request body, stopping right after the trailer.
+ *
+ * @author Andrea Funto'
+ */
+class ChunkedDecoder {
+	
+	/**
+	 * The decoding state.
+	 */
+	private enum State {
+		/**
+		 * Reading a chunk size line.
+		 */
+		SIZE,
+		
+		/**
+		 * Reading the data of a chunk.
+		 */
+		DATA,
+		
+		/**
+		 * Reading the line terminating the data of a chunk.
+		 */
+		DATA_END,
+		
+		/**
+		 * Reading the trailer, up to the empty line.
+		 */
+		TRAILER,
+		
+		/**
+		 * The last chunk and the trailer have been read.
+		 */
+		COMPLETE
+	}
+	
+	/**
+	 * The current decoding state.
+	 */
+	private State state = State.SIZE;
+	
+	/**
+	 * The number of bytes still to be read in the current chunk.
+	 */
+	private long remaining = 0;
+	
+	/**
+	 * The size of the body so far, as per the sizes of its chunks.
+	 */
+	private long declared = 0;
+	
+	/**
+	 * The line being read, across partial reads.
+	 */
+	private StringBuilder line = new StringBuilder();
+	
+	/**
+	 * Returns the size of the body so far, as per the sizes of the chunks 
+	 * started, so that an oversized chunk is told before its data arrives.
+	 * 
+	 * @return
+	 *   the size of the body, or <code>Long.MAX_VALUE</code> if the chunk 
+	 *   sizes add up to more.
+	 */
+	long getLength() {
+		return declared;
+	}
+	
+	/**
+	 * Returns whether the whole body has been decoded.
+	 * 
+	 * @return
+	 *   whether the last chunk and the trailer have been read.
+	 */
+	boolean isComplete() {
+		return state == State.COMPLETE;
+	}
+	
+	/**
+	 * Decodes the given bytes, appending the chunk data to the body; bytes past
+	 * the end of the body are not consumed.
+	 * 
+	 * @param data
+	 *   the array containing the bytes received.
+	 * @param offset
+	 *   the offset of the first byte to decode.
+	 * @param end
+	 *   the offset past the last byte to decode.
+	 * @param body
+	 *   the body to which the decoded data is appended.
+	 * @return
+	 *   the number of bytes consumed.
+	 * @throws IOException
+	 *   if the framing is invalid or the body cannot be stored.
+	 */
+	int decode(byte [] data, int offset, int end, RequestBody body) throws IOException {
+		int i = offset;
+		while(state != State.COMPLETE && i < end) {
+			if(state == State.DATA) {
+				int count = (int)Math.min(remaining, end - i);
+				body.write(data, i, count);
+				i += count;
+				remaining -= count;
+				if(remaining == 0) {
+					state = State.DATA_END;
+				}
+				continue;
+			}
+			byte b = data[i++];
+			if(b != '\n') {
+				if(line.length() == ChunkedInputStream.MAX_LINE_LENGTH) {
+					throw new IOException("chunk framing line too long");
+				}
+				line.append((char)(b & 0xFF));
+				continue;
+			}
+			int length = line.length();
+			if(length > 0 && line.charAt(length - 1) == '\r') {
+				line.setLength(length - 1);
+			}
+			switch(state) {
+			case SIZE:
+				remaining = ChunkedInputStream.parseChunkSize(line.toString());
+				declared = remaining > Long.MAX_VALUE - declared ? Long.MAX_VALUE : declared + remaining;
+				state = remaining == 0 ? State.TRAILER : State.DATA;
+				break;
+			case DATA_END:
+				if(line.length() > 0) {
+					throw new IOException("invalid chunk terminator");
+				}
+				state = State.SIZE;
+				break;
+			case TRAILER:
+				if(line.length() == 0) {
+					body.close();
+					state = State.COMPLETE;
+				}
+				break;
+			default:
+				break;
+			}
+			line.setLength(0);
+		}
+		return i - offset;
+	}
+}
@@ -0,0 +1,253 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A stream decoding a request body sent with chunked transfer encoding; the
+ * chunk framing is read exactly, so that nothing past the last chunk and the 
+ * trailer is consumed from the underlying stream, and a subsequent request on
+ * a persistent connection can be read. Closing it does not close the 
+ * underlying stream.
+ *
+ * @author Andrea Funto'
+ */
+class ChunkedInputStream extends FilterInputStream {
+
+	/**
+	 * The maximum length of a chunk size or trailer line.
+	 */
+	static final int MAX_LINE_LENGTH = 4096;
+	
+	/**
+	 * The number of bytes still available in the current chunk.
+	 */
+	private long remaining = 0;
+	
+	/**
+	 * Whether the first chunk has been started.
+	 */
+	private boolean started = false;
+	
+	/**
+	 * Whether the last chunk and the trailer have been read.
+	 */
+	private boolean finished = false;
+	
+	/**
+	 * The maximum size of the body, or a negative value if there is none.
+	 */
+	private long limit = -1;
+	
+	/**
+	 * The size of the body so far, as per the sizes of its chunks.
+	 */
+	private long total = 0;
+	
+	/**
+	 * Whether the chunks have exceeded the maximum size of the body.
+	 */
+	private boolean tooLarge = false;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param input
+	 *   the underlying stream, positioned at the beginning of the body.
+	 */
+	ChunkedInputStream(InputStream input) {
+		super(input);
+	}
+	
+	/**
+	 * Constructor.
+	 *
+	 * @param input
+	 *   the underlying stream, positioned at the beginning of the body.
+	 * @param limit
+	 *   the maximum size of the body, or a negative value if there is none;
+	 *   a chunk taking the body past it is refused before its data is read.
+	 */
+	ChunkedInputStream(InputStream input, long limit) {
+		super(input);
+		this.limit = limit;
+	}
+	
+	/**
+	 * Returns whether reading stopped because the body exceeded its maximum
+	 * size.
+	 * 
+	 * @return
+	 *   whether the body is too large.
+	 */
+	boolean isTooLarge() {
+		return tooLarge;
+	}
+
+	@Override
+	public int read() throws IOException {
+		byte [] single = new byte[1];
+		return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		if(remaining == 0 && !nextChunk()) {
+			return -1;
+		}
+		int read = in.read(buffer, offset, (int)Math.min(length, remaining));
+		if(read == -1) {
+			throw new EOFException("connection closed in the middle of a chunk");
+		}
+		remaining -= read;
+		return read;
+	}
+
+	@Override
+	public long skip(long count) throws IOException {
+		if(remaining == 0 && !nextChunk()) {
+			return 0;
+		}
+		long skipped = in.skip(Math.min(count, remaining));
+		remaining -= skipped;
+		return skipped;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return (int)Math.min(in.available(), remaining);
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public void close() throws IOException {
+		// the underlying stream belongs to the connection
+	}
+
+	/**
+	 * Reads and discards whatever is left of the body.
+	 *
+	 * @throws IOException
+	 */
+	void drain() throws IOException {
+		byte [] buffer = new byte[4096];
+		while(read(buffer, 0, buffer.length) != -1) {
+			// discard
+		}
+	}
+	
+	/**
+	 * Moves on to the next chunk, reading its size line.
+	 * 
+	 * @return
+	 *   <code>false</code> if the last chunk has been reached.
+	 * @throws IOException
+	 */
+	private boolean nextChunk() throws IOException {
+		if(finished) {
+			return false;
+		}
+		if(tooLarge) {
+			throw new IOException("request body exceeds " + limit + " bytes");
+		}
+		if(started) {
+			// the data of the previous chunk is followed by CRLF
+			if(readLine().length() > 0) {
+				throw new IOException("invalid chunk terminator");
+			}
+		}
+		started = true;
+		remaining = parseChunkSize(readLine());
+		if(limit >= 0 && remaining > limit - total) {
+			tooLarge = true;
+			remaining = 0;
+			throw new IOException("request body exceeds " + limit + " bytes");
+		}
+		total += remaining;
+		if(remaining == 0) {
+			// skip the trailer, up to the empty line
+			while(readLine().length() > 0) {
+				// discard
+			}
+			finished = true;
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Parses a chunk size line, ignoring chunk extensions.
+	 * 
+	 * @param line
+	 *   the chunk size line.
+	 * @return
+	 *   the chunk size.
+	 * @throws IOException
+	 *   if the line does not contain a valid size.
+	 */
+	static long parseChunkSize(String line) throws IOException {
+		int index = line.indexOf(';');
+		String size = (index == -1 ? line : line.substring(0, index)).trim();
+		try {
+			long value = Long.parseLong(size, 16);
+			if(value < 0) {
+				throw new IOException("invalid chunk size: '" + size + "'");
+			}
+			return value;
+		} catch(NumberFormatException e) {
+			throw new IOException("invalid chunk size: '" + size + "'");
+		}
+	}
+	
+	/**
+	 * Reads a line terminated by a line feed (optionally preceded by a 
+	 * carriage return), one byte at a time.
+	 * 
+	 * @return
+	 *   the line, without terminator.
+	 * @throws IOException
+	 *   if the stream ends or the line is too long.
+	 */
+	private String readLine() throws IOException {
+		StringBuilder line = new StringBuilder();
+		int c = -1;
+		while((c = in.read()) != '\n') {
+			if(c == -1) {
+				throw new EOFException("connection closed in the middle of the chunk framing");
+			}
+			if(line.length() == MAX_LINE_LENGTH) {
+				throw new IOException("chunk framing line too long");
+			}
+			line.append((char)c);
+		}
+		int length = line.length();
+		if(length > 0 && line.charAt(length - 1) == '\r') {
+			line.setLength(length - 1);
+		}
+		return line.toString();
+	}
+}
@@ -0,0 +1,270 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+
+import org.dihedron.ehttpd.exceptions.ServerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An output that behaves like <code>ManagedOutput</code> as long as the 
+ * content stays within a given threshold, and then sends status and headers
+ * and starts streaming the content with <code>Transfer-Encoding: chunked
+ * </code>, one chunk each time the threshold is reached; memory use per 
+ * response is thus bounded, and the client receives the first bytes while 
+ * the handler is still producing the rest. HTTP/1.0 clients do not support
+ * chunked encoding, so for them the content is streamed as is, and the end 
+ * of the response is signalled by closing the connection.
+ * 
+ * @author Andrea Funto'
+ */
+public class ChunkedOutput extends ManagedOutput {
+	
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(ChunkedOutput.class);
+	
+	/**
+	 * The protocol version supporting chunked transfer encoding.
+	 */
+	private static final String HTTP_1_1 = "HTTP/1.1";
+	
+	/**
+	 * The terminator of a chunked body: the last (empty) chunk and an empty
+	 * trailer.
+	 */
+	private static final byte [] LAST_CHUNK = ("0" + NEWLINE + NEWLINE).getBytes();
+	
+	/**
+	 * The amount of buffered content that triggers streaming.
+	 */
+	private int threshold;
+	
+	/**
+	 * Whether status and headers have already been sent.
+	 */
+	private boolean committed = false;
+	
+	/**
+	 * Whether the content is sent in chunks (as opposed to as is, up to the 
+	 * connection being closed).
+	 */
+	private boolean chunked = false;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param stream
+	 *   the response stream (built on the client socket).
+	 * @param threshold
+	 *   the amount of buffered content, in bytes, that triggers streaming.
+	 */
+	public ChunkedOutput(OutputStream stream, int threshold) {
+		super(stream);
+		this.threshold = threshold;
+	}
+	
+	/**
+	 * @see org.dihedron.ehttpd.server.ManagedOutput#writeContent(java.lang.String)
+	 */
+	@Override
+	public void writeContent(String text) throws ServerException {
+		super.writeContent(text);
+		drainIfFull();
+	}
+	
+	/**
+	 * @see org.dihedron.ehttpd.server.ManagedOutput#writeContent(byte[])
+	 */
+	@Override
+	public void writeContent(byte[] data) throws ServerException {
+		super.writeContent(data);
+		drainIfFull();
+	}
+	
+	/**
+	 * Queues the channel data if the response has not been committed yet, 
+	 * since its length is known; otherwise it is sent as a chunk of its own.
+	 * 
+	 * @see org.dihedron.ehttpd.server.ManagedOutput#writeContent(java.nio.channels.ReadableByteChannel, long)
+	 */
+	@Override
+	public void writeContent(ReadableByteChannel channel, long length) throws ServerException {
+		if(!committed) {
+			super.writeContent(channel, length);
+			return;
+		}
+		if(channel != null) {
+			try {
+				writeChunk(buffer.toByteArray());
+				buffer.reset();
+				writeChunk(channel, length);
+			} catch(IOException e) {
+				throw new ServerException("I/O error writing data to client", e);
+			}
+		}
+	}
+	
+	/**
+	 * Flushes data to the client stream; if the content never reached the 
+	 * threshold, the response is sent with a <code>Content-Length</code> as
+	 * by <code>ManagedOutput</code>.
+	 * 
+	 * @see org.dihedron.ehttpd.server.ManagedOutput#flush()
+	 */
+	@Override
+	public void flush() throws ServerException {
+		if(!committed) {
+			super.flush();
+			return;
+		}
+		if(flushed) {
+			logger.debug("output already flushed");
+			return;
+		}
+		try {
+			writeChunk(buffer.toByteArray());
+			buffer.reset();
+			if(chunked) {
+				stream.write(LAST_CHUNK);
+			}
+			stream.flush();
+			flushed = true;
+		} catch(IOException e) {
+			throw new ServerException("I/O error flushing stream", e);
+		}
+	}
+	
+	/**
+	 * Returns whether the connection can be reused: this is not the case for 
+	 * HTTP/1.0 responses that had to be streamed.
+	 * 
+	 * @see org.dihedron.ehttpd.server.Output#isPersistent()
+	 */
+	@Override
+	public boolean isPersistent() {
+		return !committed || chunked;
+	}
+	
+	/**
+	 * Returns whether the status and headers have already been sent.
+	 * 
+	 * @see org.dihedron.ehttpd.server.Output#isCommitted()
+	 */
+	@Override
+	public boolean isCommitted() {
+		return committed;
+	}
+	
+	/**
+	 * Sends the buffered content if it has reached the threshold, committing
+	 * the response first if needed.
+	 * 
+	 * @throws ServerException
+	 */
+	private void drainIfFull() throws ServerException {
+		if(buffer.size() < threshold) {
+			return;
+		}
+		try {
+			if(!committed) {
+				commit();
+			}
+			writeChunk(buffer.toByteArray());
+			buffer.reset();
+			// let the client have it straight away
+			stream.flush();
+		} catch(IOException e) {
+			throw new ServerException("I/O error writing data to client", e);
+		}
+	}
+	
+	/**
+	 * Sends status and headers, followed by any queued channel content.
+	 * 
+	 * @throws IOException
+	 */
+	private void commit() throws IOException {
+		chunked = HTTP_1_1.equals(protocol);
+		logger.debug("content exceeds {} bytes, streaming it {}", threshold, chunked ? "in chunks" : "up to connection close");
+		if(chunked) {
+			headers.put("Transfer-Encoding", new String[] { "chunked" });
+		} else {
+			headers.put("Connection", new String[] { "close" });
+		}
+		writeStatusAndHeaders(new StringBuffer());
+		stream.write(NEWLINE.getBytes());
+		committed = true;
+		
+		for(ChannelContent content : channels) {
+			writeChunk(content.preceding);
+			writeChunk(content.channel, content.length);
+		}
+		channels.clear();
+	}
+	
+	/**
+	 * Writes a chunk of data; empty chunks are skipped, since they would be 
+	 * taken for the end of the content.
+	 * 
+	 * @param data
+	 *   the chunk data.
+	 * @throws IOException
+	 */
+	private void writeChunk(byte[] data) throws IOException {
+		if(data.length == 0) {
+			return;
+		}
+		if(chunked) {
+			stream.write((Integer.toHexString(data.length) + NEWLINE).getBytes());
+		}
+		stream.write(data);
+		if(chunked) {
+			stream.write(NEWLINE.getBytes());
+		}
+	}
+	
+	/**
+	 * Writes a chunk of data from a channel.
+	 * 
+	 * @param channel
+	 *   the channel providing the data.
+	 * @param length
+	 *   the number of bytes to be read from the channel.
+	 * @throws IOException
+	 */
+	private void writeChunk(ReadableByteChannel channel, long length) throws IOException {
+		if(length == 0) {
+			channel.close();
+			return;
+		}
+		if(chunked) {
+			stream.write((Long.toHexString(length) + NEWLINE).getBytes());
+		}
+		transfer(channel, length);
+		if(chunked) {
+			stream.write(NEWLINE.getBytes());
+		}
+	}
+}
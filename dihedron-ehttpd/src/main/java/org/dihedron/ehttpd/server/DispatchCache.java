@@ -0,0 +1,258 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded cache of the routes a <code>RequestDispatcher</code> resolved 
+ * request targets to, so that the targets that are requested over and over
+ * need not be matched against the route index each time; targets that match
+ * no route are cached too. Lookups take no locks: when the cache is full, an
+ * entry is evicted to make room for the new one according to a clock policy,
+ * that is a hand sweeps the entries round and round, sparing those that were
+ * hit since it last passed over them and evicting the first that was not, so
+ * that hot targets stay cached whatever their position. Entries remember
+ * the route index they were resolved against, so that registering a handler
+ * makes all of them stale at once. Hit and miss counters are provided to help
+ * sizing the cache against the number of distinct targets.
+ * 
+ * @author Andrea Funto'
+ */
+public class DispatchCache {
+	
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(DispatchCache.class);
+	
+	/**
+	 * The cached entries, by request target.
+	 */
+	private ConcurrentMap<String, CacheEntry> entries = new ConcurrentHashMap<String, CacheEntry>();
+	
+	/**
+	 * The maximum number of cached targets.
+	 */
+	private int capacity;
+	
+	/**
+	 * The number of lookups that found a valid entry.
+	 */
+	private AtomicLong hits = new AtomicLong(0);
+	
+	/**
+	 * The number of lookups that found no entry, or a stale one.
+	 */
+	private AtomicLong misses = new AtomicLong(0);
+	
+	/**
+	 * The number of entries evicted to make room for new ones.
+	 */
+	private AtomicLong evictions = new AtomicLong(0);
+	
+	/**
+	 * The clock hand, i.e. the position of the eviction sweep over the entries;
+	 * guarded by the cache itself.
+	 */
+	private Iterator<Map.Entry<String, CacheEntry>> hand = null;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param capacity
+	 *   the maximum number of cached targets.
+	 */
+	public DispatchCache(int capacity) {
+		this.capacity = Math.max(capacity, 1);
+		logger.debug("creating dispatch cache for {} targets", this.capacity);
+	}
+	
+	/**
+	 * Looks up the route for the given target, resolving it against the given
+	 * index and caching the result if it is not cached yet.
+	 * 
+	 * @param index
+	 *   the current route index.
+	 * @param target
+	 *   the request target.
+	 * @return
+	 *   the route, or <code>null</code> if no route matches.
+	 */
+	RouteIndex.Route find(RouteIndex index, String target) {
+		if(target == null) {
+			return null;
+		}
+		CacheEntry entry = entries.get(target);
+		if(entry != null && entry.index == index) {
+			if(!entry.referenced) {
+				entry.referenced = true;
+			}
+			hits.incrementAndGet();
+			return entry.route;
+		}
+		misses.incrementAndGet();
+		RouteIndex.Route route = index.find(target);
+		if(entry == null && entries.size() >= capacity) {
+			evict();
+		}
+		entries.put(target, new CacheEntry(index, route));
+		return route;
+	}
+	
+	/**
+	 * Discards all entries, e.g. because they have gone stale; counters are 
+	 * not reset.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+	
+	/**
+	 * Returns the maximum number of cached targets.
+	 * 
+	 * @return
+	 *   the capacity of the cache.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Returns the number of cached targets.
+	 * 
+	 * @return
+	 *   the number of cached targets.
+	 */
+	public int getCount() {
+		return entries.size();
+	}
+	
+	/**
+	 * Returns the number of lookups that found a valid entry.
+	 * 
+	 * @return
+	 *   the number of cache hits.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+	
+	/**
+	 * Returns the number of lookups that found no entry, or a stale one.
+	 * 
+	 * @return
+	 *   the number of cache misses.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+	
+	/**
+	 * Returns the fraction of lookups that found a valid entry.
+	 * 
+	 * @return
+	 *   the hit ratio, between 0 and 1; 0 if no lookup was performed yet.
+	 */
+	public double getHitRatio() {
+		long hits = this.hits.get();
+		long total = hits + misses.get();
+		return total > 0 ? (double)hits / total : 0.0;
+	}
+	
+	/**
+	 * Returns the number of entries evicted to make room for new ones.
+	 * 
+	 * @return
+	 *   the number of evictions.
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+	
+	/**
+	 * Evicts entries until there is room for a new one, moving the clock hand
+	 * forward and starting over from the first entry when the hand gets past
+	 * the last one: entries that were hit since the hand last passed over them
+	 * lose their mark and are spared, the first unmarked one is evicted. Since
+	 * concurrent hits may keep marking entries, after two full rounds entries
+	 * are evicted regardless of their mark.
+	 */
+	private synchronized void evict() {
+		int spared = 0;
+		while(entries.size() >= capacity) {
+			if(hand == null || !hand.hasNext()) {
+				hand = entries.entrySet().iterator();
+				if(!hand.hasNext()) {
+					break;
+				}
+			}
+			Map.Entry<String, CacheEntry> next = hand.next();
+			CacheEntry entry = next.getValue();
+			if(entry.referenced && spared < 2 * capacity) {
+				entry.referenced = false;
+				++spared;
+			} else if(entries.remove(next.getKey(), entry)) {
+				evictions.incrementAndGet();
+			}
+		}
+	}
+	
+	/**
+	 * A cached route, possibly <code>null</code>, along with the index it was
+	 * resolved against.
+	 */
+	private static class CacheEntry {
+		
+		/**
+		 * The route index the entry was resolved against.
+		 */
+		final RouteIndex index;
+		
+		/**
+		 * The route, or <code>null</code> if no route matched.
+		 */
+		final RouteIndex.Route route;
+		
+		/**
+		 * Whether the entry was hit since the clock hand last passed over it.
+		 */
+		volatile boolean referenced = false;
+		
+		/**
+		 * Constructor.
+		 * 
+		 * @param index
+		 *   the route index the entry was resolved against.
+		 * @param route
+		 *   the route, or <code>null</code> if no route matched.
+		 */
+		CacheEntry(RouteIndex index, RouteIndex.Route route) {
+			this.index = index;
+			this.route = route;
+		}
+	}
+}
@@ -44,26 +44,10 @@ public class  Error {
 	}
 	
 	public boolean isSuperClassOf(Throwable throwable) {
-		if(throwable == null) {
-			return false;
-		}
-		try {
-			throwable.getClass().asSubclass(clazz);
-			return true;
-		} catch(ClassCastException e) {
-			return false;
-		}
+		return throwable != null && clazz.isAssignableFrom(throwable.getClass());
 	}
 	
 	public boolean isSuperClassOf(Class<?> other) {
-		if(other == null) {
-			return false;
-		}
-		try {
-			other.asSubclass(clazz);
-			return true;
-		} catch(ClassCastException e) {
-			return false;
-		}
+		return other != null && clazz.isAssignableFrom(other);
 	}	
 }
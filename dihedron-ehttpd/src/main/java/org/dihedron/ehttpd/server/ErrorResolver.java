@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An immutable set of mappings between exception classes and the targets 
+ * requests are forwarded to when those exceptions are raised. An exception 
+ * is resolved to the target mapped to its own class or, failing that, to 
+ * its nearest superclass; since the outcome only depends on the class of the
+ * exception, it is worked out once per class and remembered, so that a storm
+ * of identical errors does not make the error path any slower than the first
+ * one.
+ * 
+ * @author Andrea Funto'
+ */
+class ErrorResolver {
+	
+	/**
+	 * The marker remembered for classes that resolve to no target.
+	 */
+	private static final String NONE = new String();
+	
+	/**
+	 * The targets, by exception class, in registration order.
+	 */
+	private final Map<Class<? extends Throwable>, String> mappings;
+	
+	/**
+	 * The targets already resolved, by concrete exception class.
+	 */
+	private final ConcurrentMap<Class<?>, String> resolved = new ConcurrentHashMap<Class<?>, String>();
+	
+	/**
+	 * Constructor, for an empty set of mappings.
+	 */
+	ErrorResolver() {
+		this(Collections.<Class<? extends Throwable>, String>emptyMap());
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param mappings
+	 *   the targets, by exception class.
+	 */
+	private ErrorResolver(Map<Class<? extends Throwable>, String> mappings) {
+		this.mappings = mappings;
+	}
+	
+	/**
+	 * Returns a new resolver, with the given mapping added to the existing 
+	 * ones; a mapping for the same class replaces the existing one.
+	 * 
+	 * @param clazz
+	 *   the exception class.
+	 * @param target
+	 *   the target requests are forwarded to.
+	 * @return
+	 *   a new resolver.
+	 */
+	ErrorResolver with(Class<? extends Throwable> clazz, String target) {
+		Map<Class<? extends Throwable>, String> extended = new LinkedHashMap<Class<? extends Throwable>, String>(mappings);
+		extended.put(clazz, target);
+		return new ErrorResolver(Collections.unmodifiableMap(extended));
+	}
+	
+	/**
+	 * Returns the mappings, by exception class.
+	 * 
+	 * @return
+	 *   an unmodifiable map of the mappings.
+	 */
+	Map<Class<? extends Throwable>, String> getMappings() {
+		return mappings;
+	}
+	
+	/**
+	 * Looks up the target requests should be forwarded to when the given 
+	 * exception is raised.
+	 * 
+	 * @param throwable
+	 *   the exception.
+	 * @return
+	 *   the target mapped to the class of the exception or to its nearest
+	 *   superclass, or <code>null</code> if none.
+	 */
+	String resolve(Throwable throwable) {
+		if(throwable == null) {
+			return null;
+		}
+		Class<?> clazz = throwable.getClass();
+		String target = resolved.get(clazz);
+		if(target == null) {
+			target = NONE;
+			for(Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+				String mapped = mappings.get(c);
+				if(mapped != null) {
+					target = mapped;
+					break;
+				}
+			}
+			resolved.put(clazz, target);
+		}
+		return target != NONE ? target : null;
+	}
+}
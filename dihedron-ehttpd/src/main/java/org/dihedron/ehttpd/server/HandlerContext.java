@@ -74,4 +74,13 @@ public class HandlerContext {
 	public static void setRequestDiaspatcher(RequestDispatcher dispatcher) {
 		CONTEXT.get().dispatcher = dispatcher;
 	}
+	
+	/**
+	 * Discards the context of the current thread; workers call this once done
+	 * with a connection, so that pooled threads do not retain references to 
+	 * the dispatcher, and short-lived threads do not leave contexts behind.
+	 */
+	static void release() {
+		CONTEXT.remove();
+	}
 }
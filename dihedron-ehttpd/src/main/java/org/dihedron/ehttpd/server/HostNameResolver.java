@@ -0,0 +1,271 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import java.net.InetAddress;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolves network addresses into host names through reverse DNS lookups, 
+ * remembering the results for a while so that clients connecting over and 
+ * over do not cost a lookup each time; concurrent requests for the same 
+ * address share a single lookup. Lookups can be run on an executor, in which 
+ * case callers wait for them only up to a timeout, and get the textual form 
+ * of the address if the name is not available by then; the name is cached 
+ * anyway as soon as the lookup completes.
+ * 
+ * @author Andrea Funto'
+ */
+public class HostNameResolver {
+	
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(HostNameResolver.class);
+	
+	/**
+	 * The default maximum number of cached host names.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+	
+	/**
+	 * The default time (in milliseconds) a host name is cached for.
+	 */
+	public static final long DEFAULT_TIME_TO_LIVE = 5 * 60 * 1000;
+	
+	/**
+	 * The default time (in milliseconds) callers wait for a lookup run on an
+	 * executor.
+	 */
+	public static final long DEFAULT_TIMEOUT = 100;
+	
+	/**
+	 * The cached lookups, by address.
+	 */
+	private ConcurrentMap<InetAddress, Lookup> lookups = new ConcurrentHashMap<InetAddress, Lookup>();
+	
+	/**
+	 * The maximum number of cached host names.
+	 */
+	private int capacity;
+	
+	/**
+	 * The time (in milliseconds) a host name is cached for.
+	 */
+	private long timeToLive;
+	
+	/**
+	 * The executor lookups are run on, or <code>null</code> to run them on the
+	 * calling thread.
+	 */
+	private Executor executor;
+	
+	/**
+	 * The time (in milliseconds) callers wait for a lookup run on the executor.
+	 */
+	private long timeout;
+	
+	/**
+	 * Constructor; lookups are run on the calling thread, and cached with the
+	 * default capacity and time to live.
+	 */
+	public HostNameResolver() {
+		this(DEFAULT_CAPACITY, DEFAULT_TIME_TO_LIVE);
+	}
+	
+	/**
+	 * Constructor; lookups are run on the calling thread.
+	 * 
+	 * @param capacity
+	 *   the maximum number of cached host names.
+	 * @param timeToLive
+	 *   the time (in milliseconds) a host name is cached for.
+	 */
+	public HostNameResolver(int capacity, long timeToLive) {
+		this(capacity, timeToLive, null, 0);
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param capacity
+	 *   the maximum number of cached host names.
+	 * @param timeToLive
+	 *   the time (in milliseconds) a host name is cached for.
+	 * @param executor
+	 *   the executor lookups are run on, or <code>null</code> to run them on 
+	 *   the calling thread.
+	 * @param timeout
+	 *   the time (in milliseconds) callers wait for a lookup run on the 
+	 *   executor.
+	 */
+	public HostNameResolver(int capacity, long timeToLive, Executor executor, long timeout) {
+		this.capacity = Math.max(capacity, 1);
+		this.timeToLive = timeToLive;
+		this.executor = executor;
+		this.timeout = timeout;
+	}
+	
+	/**
+	 * Returns the host name of the given address.
+	 * 
+	 * @param address
+	 *   the network address.
+	 * @return
+	 *   the fully qualified host name if available, the textual form of the 
+	 *   address otherwise.
+	 */
+	public String getHostName(InetAddress address) {
+		if(address == null) {
+			return null;
+		}
+		Lookup lookup = null;
+		boolean owner = false;
+		while(lookup == null) {
+			long now = System.currentTimeMillis();
+			Lookup cached = lookups.get(address);
+			if(cached != null && cached.expires > now) {
+				lookup = cached;
+			} else {
+				Lookup fresh = new Lookup(address, now + timeToLive);
+				if(cached == null) {
+					if(lookups.size() >= capacity) {
+						evict(now);
+					}
+					owner = lookups.putIfAbsent(address, fresh) == null;
+				} else {
+					owner = lookups.replace(address, cached, fresh);
+				}
+				if(owner) {
+					lookup = fresh;
+				}
+			}
+		}
+		
+		if(owner) {
+			if(executor == null) {
+				lookup.run();
+			} else {
+				try {
+					executor.execute(lookup);
+				} catch(RejectedExecutionException e) {
+					logger.warn("host name lookup rejected, falling back to address {}", address.getHostAddress());
+					lookups.remove(address, lookup);
+					return address.getHostAddress();
+				}
+			}
+		}
+		
+		try {
+			if(executor == null) {
+				return lookup.get();
+			}
+			return lookup.get(timeout, TimeUnit.MILLISECONDS);
+		} catch(TimeoutException e) {
+			logger.debug("host name of {} not available yet", address.getHostAddress());
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch(ExecutionException e) {
+			logger.error("error looking up host name of " + address.getHostAddress(), e);
+		}
+		return address.getHostAddress();
+	}
+	
+	/**
+	 * Returns the number of cached host names, including lookups in progress.
+	 * 
+	 * @return
+	 *   the number of cached host names.
+	 */
+	public int getCount() {
+		return lookups.size();
+	}
+	
+	/**
+	 * Discards all cached host names.
+	 */
+	public void clear() {
+		lookups.clear();
+	}
+	
+	/**
+	 * Makes room for a new entry, by discarding the expired ones or, failing
+	 * that, arbitrary ones.
+	 * 
+	 * @param now
+	 *   the current time, in milliseconds.
+	 */
+	private void evict(long now) {
+		Iterator<Entry<InetAddress, Lookup>> iterator = lookups.entrySet().iterator();
+		while(iterator.hasNext()) {
+			if(iterator.next().getValue().expires <= now) {
+				iterator.remove();
+			}
+		}
+		iterator = lookups.entrySet().iterator();
+		while(lookups.size() >= capacity && iterator.hasNext()) {
+			iterator.next();
+			iterator.remove();
+		}
+	}
+	
+	/**
+	 * A reverse DNS lookup, along with the time its result expires at.
+	 */
+	private static class Lookup extends FutureTask<String> {
+		
+		/**
+		 * The time (in milliseconds) the result expires at.
+		 */
+		final long expires;
+		
+		/**
+		 * Constructor.
+		 * 
+		 * @param address
+		 *   the address to look up.
+		 * @param expires
+		 *   the time (in milliseconds) the result expires at.
+		 */
+		Lookup(final InetAddress address, long expires) {
+			super(new Callable<String>() {
+				public String call() {
+					long start = System.currentTimeMillis();
+					String name = address.getCanonicalHostName();
+					logger.trace("{} resolved to {} in {} ms", new Object[] { address.getHostAddress(), name, System.currentTimeMillis() - start });
+					return name;
+				}
+			});
+			this.expires = expires;
+		}
+	}
+}
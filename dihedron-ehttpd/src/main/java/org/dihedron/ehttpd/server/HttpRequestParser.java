@@ -0,0 +1,418 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.dihedron.ehttpd.exceptions.ServerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An incremental parser for the request line and headers of an HTTP request.
+ * The parser is fed with whatever bytes are available, possibly across several
+ * partial reads, and keeps them in a reusable buffer; instead of tokenising 
+ * lines into strings, it only records the offsets of the method, the request
+ * target, the protocol and the name and value of each header, so that the
+ * resulting <code>HttpQuery</code> can create strings lazily, only for the 
+ * parts that are actually looked at. A parser can be reused for successive 
+ * requests on the same connection by calling <code>reset()</code>.
+ *
+ * @author Andrea Funto'
+ */
+class HttpRequestParser {
+
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(HttpRequestParser.class);
+	
+	/**
+	 * The maximum size of the request line and headers.
+	 */
+	static final int MAX_HEAD_SIZE = 64 * 1024;
+	
+	/**
+	 * The character set used to decode the request head.
+	 */
+	static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+	
+	/**
+	 * The index of the method offsets.
+	 */
+	static final int METHOD = 0;
+	
+	/**
+	 * The index of the request target (query string and parameters) offsets.
+	 */
+	static final int TARGET = 2;
+
+	/**
+	 * The index of the protocol offsets.
+	 */
+	static final int PROTOCOL = 4;
+	
+	/**
+	 * The index of the first header's offsets; each header takes four slots, 
+	 * for the start and end of its name and value.
+	 */
+	static final int HEADERS = 6;
+	
+	/**
+	 * The initial size of the buffer holding the request head.
+	 */
+	private static final int INITIAL_SIZE = 1024;
+	
+	/**
+	 * The size of the chunks copied from direct buffers or read from streams
+	 * supporting mark and reset.
+	 */
+	private static final int READ_SIZE = 4096;
+	
+	/**
+	 * The parsing state.
+	 */
+	private enum State {
+		/**
+		 * Waiting for the end of the request line.
+		 */
+		REQUEST_LINE,
+		
+		/**
+		 * Waiting for the end of the next header, or of the empty line 
+		 * terminating the headers.
+		 */
+		HEADERS,
+		
+		/**
+		 * The request head has been completely parsed.
+		 */
+		COMPLETE
+	}
+	
+	/**
+	 * The current parsing state.
+	 */
+	private State state = State.REQUEST_LINE;
+	
+	/**
+	 * The bytes of the request head received so far.
+	 */
+	private byte [] head = new byte[INITIAL_SIZE];
+	
+	/**
+	 * The number of valid bytes in the <code>head</code> array.
+	 */
+	private int length = 0;
+	
+	/**
+	 * The offset at which the current line starts.
+	 */
+	private int lineStart = 0;
+	
+	/**
+	 * The start and end offsets of the request line tokens and of the headers.
+	 */
+	private int [] offsets = new int[HEADERS + 4 * 16];
+	
+	/**
+	 * The number of valid entries in the <code>offsets</code> array.
+	 */
+	private int count = 0;
+	
+	/**
+	 * The buffer used to copy from direct buffers and to read from streams
+	 * supporting mark and reset.
+	 */
+	private byte [] chunk = null;
+	
+	/**
+	 * Prepares the parser for a new request.
+	 */
+	void reset() {
+		state = State.REQUEST_LINE;
+		length = 0;
+		lineStart = 0;
+		count = 0;
+	}
+	
+	/**
+	 * Returns whether the request head has been completely parsed.
+	 * 
+	 * @return
+	 *   whether the request head is complete.
+	 */
+	boolean isComplete() {
+		return state == State.COMPLETE;
+	}
+	
+	/**
+	 * Returns whether no byte of the request head has been kept yet.
+	 * 
+	 * @return
+	 *   whether the parser holds no data.
+	 */
+	boolean isEmpty() {
+		return length == 0;
+	}
+	
+	/**
+	 * Consumes bytes from the given buffer up to the end of the request head;
+	 * on return, the buffer is positioned right after the last consumed byte,
+	 * that is, at the beginning of the request body if the head is complete.
+	 * 
+	 * @param buffer
+	 *   the buffer containing the bytes received so far.
+	 * @return
+	 *   whether the request head is complete.
+	 * @throws ServerException
+	 *   if the request is malformed or its head is too large.
+	 */
+	boolean parse(ByteBuffer buffer) throws ServerException {
+		if(buffer.hasArray()) {
+			int offset = buffer.arrayOffset() + buffer.position();
+			int consumed = feed(buffer.array(), offset, offset + buffer.remaining());
+			buffer.position(buffer.position() + consumed);
+		} else {
+			if(chunk == null) {
+				chunk = new byte[READ_SIZE];
+			}
+			while(state != State.COMPLETE && buffer.hasRemaining()) {
+				int position = buffer.position();
+				int n = Math.min(buffer.remaining(), chunk.length);
+				buffer.get(chunk, 0, n);
+				buffer.position(position + feed(chunk, 0, n));
+			}
+		}
+		return state == State.COMPLETE;
+	}
+	
+	/**
+	 * Reads the request head from the given stream, consuming it exactly up 
+	 * to the empty line terminating the headers, so that the request body and
+	 * any subsequent (pipelined) request are left in the stream; streams 
+	 * supporting mark and reset are read in chunks, others one byte at a time.
+	 * 
+	 * @param input
+	 *   the stream from which the request is read.
+	 * @return
+	 *   whether the request head is complete; if the end of the stream is 
+	 *   reached before, <code>false</code> is returned.
+	 * @throws IOException
+	 * @throws ServerException
+	 *   if the request is malformed or its head is too large.
+	 */
+	boolean parse(InputStream input) throws IOException, ServerException {
+		if(input.markSupported()) {
+			if(chunk == null) {
+				chunk = new byte[READ_SIZE];
+			}
+			input.mark(MAX_HEAD_SIZE + READ_SIZE);
+			int consumed = 0;
+			int read = 0;
+			while(state != State.COMPLETE && (read = input.read(chunk)) != -1) {
+				consumed += feed(chunk, 0, read);
+			}
+			if(state == State.COMPLETE) {
+				// give back the bytes past the end of the head
+				input.reset();
+				while(consumed > 0) {
+					consumed -= input.skip(consumed);
+				}
+			}
+		} else {
+			// nothing past the end of the head must be consumed
+			byte [] single = new byte[1];
+			int c = -1;
+			while(state != State.COMPLETE && (c = input.read()) != -1) {
+				single[0] = (byte)c;
+				feed(single, 0, 1);
+			}
+		}
+		if(state != State.COMPLETE && length > 0) {
+			logger.debug("end of stream reached with an incomplete request head ({} bytes)", length);
+		}
+		return state == State.COMPLETE;
+	}
+	
+	/**
+	 * Returns a new query backed by a copy of the parsed request head.
+	 * 
+	 * @return
+	 *   the query.
+	 */
+	HttpQuery getQuery() {
+		HttpQuery query = new HttpQuery();
+		query.setHead(Arrays.copyOf(head, length), Arrays.copyOf(offsets, count));
+		return query;
+	}
+	
+	/**
+	 * Appends the given bytes to the request head, one line at a time, and 
+	 * parses each line as soon as its end is reached; bytes past the end of
+	 * the head are not consumed.
+	 * 
+	 * @param data
+	 *   the array containing the bytes received.
+	 * @param offset
+	 *   the offset of the first byte received.
+	 * @param end
+	 *   the offset past the last byte received.
+	 * @return
+	 *   the number of bytes consumed.
+	 * @throws ServerException
+	 *   if the request is malformed or its head is too large.
+	 */
+	private int feed(byte [] data, int offset, int end) throws ServerException {
+		int i = offset;
+		while(state != State.COMPLETE && i < end) {
+			int eol = i;
+			while(eol < end && data[eol] != '\n') {
+				++eol;
+			}
+			int n = (eol < end ? eol + 1 : end) - i;
+			if(length + n > head.length) {
+				if(length + n > MAX_HEAD_SIZE) {
+					throw new ServerException("request head exceeds " + MAX_HEAD_SIZE + " bytes");
+				}
+				head = Arrays.copyOf(head, Math.min(Math.max(head.length * 2, length + n), MAX_HEAD_SIZE));
+			}
+			System.arraycopy(data, i, head, length, n);
+			length += n;
+			i += n;
+			if(eol < end) {
+				endOfLine();
+			}
+		}
+		return i - offset;
+	}
+	
+	/**
+	 * Parses the line just completed, according to the current state.
+	 * 
+	 * @throws ServerException
+	 */
+	private void endOfLine() throws ServerException {
+		int end = length - 1;
+		if(end > lineStart && head[end - 1] == '\r') {
+			--end;
+		}
+		if(state == State.REQUEST_LINE) {
+			if(end == lineStart) {
+				// empty lines preceding the request line must be ignored
+				length = 0;
+			} else {
+				parseRequestLine(lineStart, end);
+				state = State.HEADERS;
+			}
+		} else if(end == lineStart) {
+			state = State.COMPLETE;
+		} else {
+			parseHeader(lineStart, end);
+		}
+		lineStart = length;
+	}
+	
+	/**
+	 * Records the offsets of the method, the request target and the protocol.
+	 * 
+	 * @param start
+	 *   the offset of the beginning of the line.
+	 * @param end
+	 *   the offset of the end of the line, excluding the terminator.
+	 * @throws ServerException
+	 *   if the line does not contain at least a method and a target.
+	 */
+	private void parseRequestLine(int start, int end) throws ServerException {
+		int i = skipWhitespace(start, end);
+		for(int token = METHOD; token <= PROTOCOL; token += 2) {
+			if(i == end) {
+				if(token == PROTOCOL) {
+					// no protocol
+					offsets[token] = offsets[token + 1] = -1;
+					break;
+				}
+				throw new ServerException("malformed request line: '" + new String(head, start, end - start, ISO_8859_1) + "'");
+			}
+			offsets[token] = i;
+			while(i < end && head[i] != ' ' && head[i] != '\t') {
+				++i;
+			}
+			offsets[token + 1] = i;
+			i = skipWhitespace(i, end);
+		}
+		count = HEADERS;
+	}
+	
+	/**
+	 * Records the offsets of the (trimmed) name and value of a header; lines 
+	 * with no colon are ignored.
+	 * 
+	 * @param start
+	 *   the offset of the beginning of the line.
+	 * @param end
+	 *   the offset of the end of the line, excluding the terminator.
+	 */
+	private void parseHeader(int start, int end) {
+		int colon = start;
+		while(colon < end && head[colon] != ':') {
+			++colon;
+		}
+		if(colon == end) {
+			logger.warn("invalid header encountered");
+			return;
+		}
+		if(count + 4 > offsets.length) {
+			offsets = Arrays.copyOf(offsets, offsets.length * 2);
+		}
+		int nameEnd = colon;
+		while(nameEnd > start && isWhitespace(head[nameEnd - 1])) {
+			--nameEnd;
+		}
+		int valueEnd = end;
+		while(valueEnd > colon + 1 && isWhitespace(head[valueEnd - 1])) {
+			--valueEnd;
+		}
+		offsets[count++] = skipWhitespace(start, nameEnd);
+		offsets[count++] = nameEnd;
+		offsets[count++] = skipWhitespace(colon + 1, valueEnd);
+		offsets[count++] = valueEnd;
+	}
+	
+	/**
+	 * Returns the offset of the first non-whitespace byte in the given range.
+	 */
+	private int skipWhitespace(int start, int end) {
+		while(start < end && isWhitespace(head[start])) {
+			++start;
+		}
+		return start;
+	}
+	
+	/**
+	 * Returns whether the given byte is a space or a horizontal tab.
+	 */
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t';
+	}
+}
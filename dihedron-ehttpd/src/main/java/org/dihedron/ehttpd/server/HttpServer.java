@@ -1,408 +1,1587 @@
-/**
- * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
- * 
- * This file is part of the Dihedron embeddable web container ("e-httpd").
- *
- * "e-httpd" is free software: you can redistribute it and/or modify it under 
- * the terms of the GNU Lesser General Public License as published by the Free 
- * Software Foundation, either version 3 of the License, or (at your option) 
- * any later version.
- *
- * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
- * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
- * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
- * details.
- *
- * You should have received a copy of the GNU Lesser General Public License 
- * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
- */
-package org.dihedron.ehttpd.server;
-
-import java.io.IOException;
-import java.net.InetAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.nio.channels.ClosedByInterruptException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
-import javax.net.ServerSocketFactory;
-import javax.net.ssl.SSLServerSocketFactory;
-
-import org.dihedron.ehttpd.exceptions.ServerException;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-/**
- * This class implements the basic server functionality,
- * listening on a user defined or random port, accepting
- * connections and passing them over to the higher layers 
- * in the protocol and application stack.
- * 
- *  @author Andrea Funto'
- */
-public class HttpServer implements Runnable {
-	
-	/**
-	 * The logger.
-	 */
-	private static Logger logger = LoggerFactory.getLogger(HttpServer.class);
-	
-	/**
-	 * The maximum number of attempts to be made when
-	 * binding the server to a network port.
-	 */
-	private static final int MAX_BIND_ATTEMPTS = 10;
-	
-	/**
-	 * Specifies the default behaviour for incoming connections
-	 * acceptance: by default all connections are accepted, even
-	 * when coming from a different host.
-	 */
-	public static final boolean DEFAULT_ALLOW_LOOPBACK_ONLY = false;
-	
-	/**
-	 * Specifies the default behaviour with respect to SSL connections: 
-	 * by default SSL connections are not enabled.
-	 */
-	public static final boolean DEFAULT_USE_SECURE_CONNECTIONS = false;
-	
-	/**
-	 * Specifies the default behaviour with respect to delayed 
-	 * server socket binding: by default the binding is delayed
-	 * to the moment when the server thread starts (run() method).
-	 */
-	public static final boolean DEFAULT_USE_DELAYED_BINDING = true;
-	
-	/**
-	 * Indicates that the server should pick the first available 
-	 * port to listen on.
-	 */
-	public static final int AUTOMATIC_PORT_BINDING = 0;
-	
-	/**
-	 * Indicates that there should be no limit to the number of
-	 * independent requests being served: a new thread is spawned for
-	 * each new request.
-	 */
-	public static final int UNLIMITED_POOL_SIZE = 0;
-	
-	/**
-	 * The server socket, listening for incoming connections.
-	 */
-	private ServerSocket server = null;
-	
-	/**
-	 * The controller, which dispatches requests to the proper
-	 * registered handlers.
-	 */
-	private RequestDispatcher dispatcher;
-	
-	/**
-	 * A boolean used to cancel the server execution.
-	 */
-	private boolean stopped = false;
-
-	/**
-	 * The server port; this can be assigned by the user and then
-	 */
-	private Integer port = new Integer(AUTOMATIC_PORT_BINDING);
-	
-	/**
-	 * The thread pool.
-	 */
-	private ExecutorService executor = null;
-		
-	/**
-	 * Whether the server should only accept requests coming
-	 * from the local host.
-	 */
-	private boolean loopbackOnly = DEFAULT_ALLOW_LOOPBACK_ONLY;
-	
-	/**
-	 * Whether the server should use an SSL socket for its
-	 * HTTP traffic (HTTPS).
-	 */
-	private boolean secureConnections = DEFAULT_USE_SECURE_CONNECTIONS;
-	
-	/**
-	 * Indicates that the server socket is already bound. 
-	 */
-	private boolean bound = !DEFAULT_USE_DELAYED_BINDING;
-	
-	/**
-	 * The size of the thread pool; if <code>UNLIMITED_POOL_SIZE</code>
-	 * is specified (default), a new thread is spawned upon each new request.
-	 */
-	private int poolSize = UNLIMITED_POOL_SIZE;
-		
-	/**
-	 * Constructor; by default it accepts connections coming from
-	 * all clients (not only the local host) and uses plain HTTP,
-	 * unsecured connections; the server socket is not bound.
-	 *
-	 * @param port
-	 *   the port to bind the server to, on which the server will
-	 *   listen for incoming connections; if 0 is specified here,
-	 *   the server will connect to the first available TCP port.
-	 * @param dispatcher
-	 *   the application controller, which is responsible of routing
-	 *   requests to the appropriate, registered handlers.
-	 */
-	public HttpServer(int port, RequestDispatcher dispatcher) throws ServerException {
-		this(port, dispatcher, DEFAULT_USE_DELAYED_BINDING);
-	}
-
-	/**
-	 * Constructor; by default it accepts connections coming from
-	 * all clients (not only the local host) and uses plain HTTP,
-	 * unsecured connections.
-	 *
-	 * @param port
-	 *   the port to bind the server to, on which the server will
-	 *   listen for incoming connections; if 0 is specified here,
-	 *   the server will connect to the first available TCP port.
-	 * @param dispatcher
-	 *   the application controller, which is responsible of routing
-	 *   requests to the appropriate, registered handlers.
-	 * @param delayBinding
-	 *   when <code>true</code> the server socket binding process is 
-	 *   delayed to the moment when the worker thread is started, otherwise
-	 *   it's performed straight away.
-	 */
-	public HttpServer(int port, RequestDispatcher dispatcher, boolean delayBinding) throws ServerException {
-		this.port = new Integer(port);
-		this.dispatcher = dispatcher;
-		this.loopbackOnly = DEFAULT_ALLOW_LOOPBACK_ONLY;
-		this.secureConnections = DEFAULT_USE_SECURE_CONNECTIONS;
-		this.poolSize = UNLIMITED_POOL_SIZE;
-		
-		if(!delayBinding) {
-			logger.info("server starting...");
-			server = createServerSocket();
-			logger.info("server open for business...");
-			bound = true;
-		}
-	}
-	
-	/**
-	 * Retrieves the current dispatcher.
-	 * 
-	 * @return
-	 *   the current dispatcher.
-	 */
-	public RequestDispatcher getRequestDispatcher() {
-		return dispatcher;
-	}
-
-	/**
-	 * Sets whether the server should accept incoming connections 
-	 * only from the local host (loop-back network interface).
-	 * 
-	 * @param loopbackOnly
-	 *   whether the server should accept incoming connections only
-	 *   from the local host (loop-back network interface).
-	 */   
-	public void setAllowLoopbackOnly(boolean loopbackOnly) {
-		this.loopbackOnly = loopbackOnly;
-	}
-	
-	/**
-	 * Retrieves whether the server should accept incoming connections 
-	 * only from the local host (loop-back network interface).
-	 * 
-	 * @return
-	 *   whether the server should accept incoming connections only
-	 *   from the local host (loop-back network interface).
-	 */   
-	public boolean isAllowLoopbackOnly() {
-		return loopbackOnly;
-	}
-	
-	/**
-	 * Sets whether the server should use a secured, SSL socket 
-	 * for incoming connections; a keystore must have been defined
-	 * as follows:<pre>
-	 * /path/to/java 
-	 * 		-Djavax.net.ssl.keyStore=mySrvKeystore 
-	 * 		-Djavax.net.ssl.keyStorePassword=123456 
-	 * 		MyServer
-	 * </pre>
-	 * 
-	 * @param secureConnections
-	 *   whether the server should use a secured, SSL socket 
-	 *   for incoming connections.
-	 */   
-	public void setUseSecureConnections(boolean secureConnections) {
-		this.secureConnections = secureConnections;
-	}
-	
-	/**
-	 * Retrieves whether the server should use a secured, SSL socket 
-	 * for incoming connections.
-	 * 
-	 * @return
-	 *   whether the server should use a secured, SSL socket 
-	 *   for incoming connections.
-	 */   
-	public boolean isUseSecureConnections() {
-		return secureConnections;
-	}	
-	
-	/**
-	 * Sets the port on which the server is listening.
-	 * 
-	 * @param port
-	 *   the port on which the server is listening.  
-	 */
-	private void setPort(int port) {
-		synchronized(this.port) {
-			this.port = port;
-		}
-	}
-	
-	/**
-	 * Retrieves the port on which the server is listening.
-	 * 
-	 * @return
-	 *   the port on which the server is listening.
-	 */
-	public int getPort() {
-		synchronized(port) {
-			return port;
-		}
-	}
-	
-	/**
-	 * Sets the pool size; if <code>UNLIMITED_POOL_SIZE</code>
-	 * is specified, a new thread is spawned upon each new
-	 * request, otherwise a thread pool is instantiated and used.
-	 * 
-	 * @param poolSize
-	 *   the new size of the thread pool.
-	 */
-	public void setThreadPoolSize(int poolSize) {
-		this.poolSize = poolSize;
-	}
-	
-	/**
-	 * Stops the server execution at the next incoming request.
-	 */
-	public void stop() {
-		stopped = true;
-	}
-
-	/**
-	 * Actual implementation of the server: accepts incoming connections,
-	 * checks if they are legitimate, and if so hands control over to the
-	 * dispatcher, in a separate thread.
-	 */
-	public void run() {
-		if(!bound) {
-			logger.info("server starting...");
-			try {
-				long startup = System.currentTimeMillis();
-				server = createServerSocket();
-				logger.info("server open to incoming requests (started in {} ms}", System.currentTimeMillis() - startup);
-			} catch(ServerException e) {
-				logger.error("error starting server", e);
-				return;
-			}
-		}
-		
-		if(poolSize > UNLIMITED_POOL_SIZE) {
-			logger.info("running the server with a thread pool with {} threads", poolSize);
-			executor = Executors.newFixedThreadPool(poolSize);
-		}
-
-	    while(!stopped) {
-		    try {
-		        Socket client = server.accept();
-		        InetAddress remote = client.getInetAddress();
-		        logger.info("incoming connection from {}:{}", remote, client.getPort());
-		        if(loopbackOnly && !remote.isLoopbackAddress()) {
-		        	logger.warn("SECURITY: remote connection attempted from {}:{}", remote, client.getPort());
-		        	client.close();
-		        	continue;
-		        }
-		        
-		        HttpServerWorker worker = new HttpServerWorker(client, dispatcher);
-		        if(executor == null) {	
-		        	logger.info("spawning a new thread to service the request");
-		        	new Thread(worker).start();
-		        } else {
-		        	logger.info("passing the incoming request to the thread pool");
-		        	executor.execute(worker);
-		        }
-		    } catch (ClosedByInterruptException e) {
-		    	// this handles more gracefully a server shutdown
-		    	if(Thread.currentThread().isInterrupted()) {
-		    		logger.info("server is shutting down...");
-		    		try {
-						server.close();
-					} catch (IOException ex) {
-						logger.error("error closing server socket", ex);
-					}
-		    	}
-		    } catch (IOException e) {
-		        logger.error("accept failed on port " + getPort(), e);
-		    }
-	    }
-	}
-	
-	/**
-	 * Creates a server socket, in plain or secure mode (HTTPS),
-	 * and binds it to the port provided in the <code>port</code> 
-	 * field; populates the same field with the actual port to which 
-	 * the server was bound.
-	 * If the <code>port</code> field contains 0, this methods binds 
-	 * the server to the first available TCP port (chosen at random); 
-	 * if it contains a non-null value, it attempts to bind it to the 
-	 * specific port, and if it fails proceeds with the next 
-	 * <code>MAX_BIND_ATTEMPTS</code> following values. 
-	 *  
-	 * @throws ServerException
-	 *   if it cannot bid the server to any port.
-	 */
-	private ServerSocket createServerSocket() throws ServerException {
-		
-		ServerSocketFactory factory;
-		if(secureConnections) {
-			factory = SSLServerSocketFactory.getDefault();
-		} else {
-			factory = ServerSocketFactory.getDefault();
-		}
-		
-		ServerSocket server = null;
-		if(getPort() == 0) {
-			logger.debug("binding server to randomly chosen port...");
-			try {
-				server = factory.createServerSocket(0);			    
-			    int port = server.getLocalPort();
-			    setPort(port);
-			    logger.info("server bound to port {}", getPort());
-			} catch (IOException e) {
-			    logger.error("error binding server to random port", e);
-			    throw new ServerException("error binding server to random port", e);
-			}
-		} else {
-			for(int i = 0; i < MAX_BIND_ATTEMPTS; ++i) {
-				try {	
-					logger.trace("trying to bind server to port {} [attempt no. {}]...", (getPort() + i), (i + 1));
-					server = factory.createServerSocket(getPort() + i);			    
-				    int port = server.getLocalPort();
-				    setPort(port);
-				    logger.info("server bound to port " + getPort());
-				    break;
-				} catch (IOException e) {
-				    logger.error("error binding server to port " + (getPort() + i), e);
-				    if(i == MAX_BIND_ATTEMPTS) {
-				    	logger.error("maximum number of bind attempts reached, stopping server");
-				    	throw new ServerException("maximum number of bind attempts reached", e);
-				    }
-				}
-			}
-		}
-		return server;
-	}
-}
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ServerSocketFactory;
+import javax.net.ssl.SSLServerSocketFactory;
+
+import org.dihedron.ehttpd.exceptions.ServerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class implements the basic server functionality,
+ * listening on a user defined or random port, accepting
+ * connections and passing them over to the higher layers 
+ * in the protocol and application stack.
+ * 
+ *  @author Andrea Funto'
+ */
+public class HttpServer implements Runnable {
+	
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(HttpServer.class);
+	
+	/**
+	 * The maximum number of attempts to be made when
+	 * binding the server to a network port.
+	 */
+	private static final int MAX_BIND_ATTEMPTS = 10;
+	
+	/**
+	 * Specifies the default behaviour for incoming connections
+	 * acceptance: by default all connections are accepted, even
+	 * when coming from a different host.
+	 */
+	public static final boolean DEFAULT_ALLOW_LOOPBACK_ONLY = false;
+	
+	/**
+	 * Specifies the default behaviour with respect to SSL connections: 
+	 * by default SSL connections are not enabled.
+	 */
+	public static final boolean DEFAULT_USE_SECURE_CONNECTIONS = false;
+	
+	/**
+	 * Specifies the default behaviour with respect to delayed 
+	 * server socket binding: by default the binding is delayed
+	 * to the moment when the server thread starts (run() method).
+	 */
+	public static final boolean DEFAULT_USE_DELAYED_BINDING = true;
+	
+	/**
+	 * Specifies the default behaviour with respect to network I/O: by default
+	 * the server uses blocking sockets, and each connection is serviced by its
+	 * own thread from the moment it is accepted.
+	 */
+	public static final boolean DEFAULT_USE_NON_BLOCKING_IO = false;
+	
+	/**
+	 * Indicates that the number of I/O loop threads in non-blocking mode should 
+	 * match the number of available processors.
+	 */
+	public static final int AUTOMATIC_IO_THREADS = 0;
+	
+	/**
+	 * Specifies the default behaviour with respect to persistent connections:
+	 * by default connections are kept open across requests, as per HTTP/1.1,
+	 * unless the client asks otherwise. 
+	 */
+	public static final boolean DEFAULT_USE_KEEP_ALIVE = true;
+	
+	/**
+	 * Specifies whether entity tags are computed on dynamic responses by 
+	 * default: they are not, as it takes hashing each response.
+	 */
+	public static final boolean DEFAULT_USE_AUTO_ETAG = false;
+	
+	/**
+	 * The default time (in milliseconds) a persistent connection is kept open
+	 * while waiting for the next request.
+	 */
+	public static final int DEFAULT_KEEP_ALIVE_TIMEOUT = 15000;
+	
+	/**
+	 * Indicates that there is no deadline for an operation on a connection.
+	 */
+	public static final int NO_TIMEOUT = 0;
+	
+	/**
+	 * The default time (in milliseconds) within which the request line and 
+	 * headers must have been received.
+	 */
+	public static final int DEFAULT_HEADER_TIMEOUT = 10000;
+	
+	/**
+	 * The default time (in milliseconds) the server waits for more data of the
+	 * request body.
+	 */
+	public static final int DEFAULT_BODY_TIMEOUT = 30000;
+	
+	/**
+	 * The default time (in milliseconds) the server waits for the client to
+	 * accept more data of the response.
+	 */
+	public static final int DEFAULT_WRITE_TIMEOUT = 30000;
+	
+	/**
+	 * The default maximum number of requests serviced on a single persistent
+	 * connection.
+	 */
+	public static final int DEFAULT_MAX_KEEP_ALIVE_REQUESTS = 100;
+	
+	/**
+	 * The default maximum number of pending connections waiting to be accepted;
+	 * clients connecting when the queue is full are refused or delayed.
+	 */
+	public static final int DEFAULT_ACCEPT_BACKLOG = 50;
+	
+	/**
+	 * Indicates that responses should be buffered in full, so that their 
+	 * <code>Content-Length</code> can always be computed.
+	 */
+	public static final int NO_CHUNKED_OUTPUT = 0;
+	
+	/**
+	 * The interval (in milliseconds) between two checks for requests still in
+	 * flight, while shutting down.
+	 */
+	private static final long DRAIN_POLL_INTERVAL = 20;
+	
+	/**
+	 * The maximum time (in milliseconds) to wait for an I/O loop to count its
+	 * connections receiving a request, while shutting down.
+	 */
+	private static final long LOOP_COUNT_TIMEOUT = 1000;
+	
+	/**
+	 * The default amount of request body data kept in memory; larger bodies 
+	 * are spilled to a temporary file.
+	 */
+	public static final int DEFAULT_REQUEST_BODY_THRESHOLD = 64 * 1024;
+	
+	/**
+	 * The default maximum size of a request body; requests with larger bodies
+	 * are refused with a <code>413 Request Entity Too Large</code>.
+	 */
+	public static final long DEFAULT_MAX_REQUEST_BODY_SIZE = 16 * 1024 * 1024;
+	
+	/**
+	 * Indicates that request bodies of any size are accepted.
+	 */
+	public static final long NO_MAX_REQUEST_BODY_SIZE = -1;
+	
+	/**
+	 * The default resolver of host names, shared by all servers: lookups are
+	 * run on the thread asking for the name, and cached for 5 minutes.
+	 */
+	public static final HostNameResolver DEFAULT_HOST_NAME_RESOLVER = new HostNameResolver();
+	
+	/**
+	 * Indicates that the server should pick the first available 
+	 * port to listen on.
+	 */
+	public static final int AUTOMATIC_PORT_BINDING = 0;
+	
+	/**
+	 * Indicates that there should be no limit to the number of
+	 * independent requests being served: a new thread is spawned for
+	 * each new request.
+	 */
+	public static final int UNLIMITED_POOL_SIZE = 0;
+	
+	/**
+	 * Indicates that a limit on queued requests, requests in flight or 
+	 * connections per client should not be enforced.
+	 */
+	public static final int UNLIMITED = 0;
+	
+	/**
+	 * The default number of seconds clients turned away because the server is
+	 * saturated are asked to wait before retrying.
+	 */
+	public static final int DEFAULT_RETRY_AFTER = 1;
+	
+	/**
+	 * Specifies the default behaviour with respect to worker threads: by 
+	 * default workers run on regular threads, either spawned for each request
+	 * or taken from a fixed-size pool.
+	 */
+	public static final boolean DEFAULT_USE_LIGHTWEIGHT_THREADS = false;
+	
+	/**
+	 * The default stack size (in bytes) of lightweight worker threads.
+	 */
+	public static final long DEFAULT_LIGHTWEIGHT_STACK_SIZE = 128 * 1024;
+	
+	/**
+	 * The server socket, listening for incoming connections.
+	 */
+	private ServerSocket server = null;
+	
+	/**
+	 * The controller, which dispatches requests to the proper
+	 * registered handlers.
+	 */
+	private RequestDispatcher dispatcher;
+	
+	/**
+	 * A boolean used to cancel the server execution.
+	 */
+	private volatile boolean stopped = false;
+	
+	/**
+	 * Whether the server is shutting down gracefully, in which case the work
+	 * in progress is wound up by <code>shutdown()</code> rather than by the 
+	 * acceptor on its way out.
+	 */
+	private volatile boolean draining = false;
+
+	/**
+	 * The server port; this can be assigned by the user and then
+	 */
+	private Integer port = new Integer(AUTOMATIC_PORT_BINDING);
+	
+	/**
+	 * The thread pool.
+	 */
+	private volatile ExecutorService executor = null;
+	
+	/**
+	 * The workers servicing connections in blocking mode.
+	 */
+	private Set<HttpServerWorker> workers = Collections.newSetFromMap(new ConcurrentHashMap<HttpServerWorker, Boolean>());
+		
+	/**
+	 * Whether the server should only accept requests coming
+	 * from the local host.
+	 */
+	private boolean loopbackOnly = DEFAULT_ALLOW_LOOPBACK_ONLY;
+	
+	/**
+	 * Whether the server should use an SSL socket for its
+	 * HTTP traffic (HTTPS).
+	 */
+	private boolean secureConnections = DEFAULT_USE_SECURE_CONNECTIONS;
+	
+	/**
+	 * Indicates that the server socket is already bound. 
+	 */
+	private boolean bound = !DEFAULT_USE_DELAYED_BINDING;
+	
+	/**
+	 * The size of the thread pool; if <code>UNLIMITED_POOL_SIZE</code>
+	 * is specified (default), a new thread is spawned upon each new request.
+	 */
+	private int poolSize = UNLIMITED_POOL_SIZE;
+	
+	/**
+	 * Whether workers should run on lightweight threads: an unbounded pool of
+	 * reusable daemon threads with a small stack, so that a large number of
+	 * handlers can block at the same time without capping concurrency.
+	 */
+	private boolean lightweightThreads = DEFAULT_USE_LIGHTWEIGHT_THREADS;
+	
+	/**
+	 * The stack size (in bytes) of lightweight worker threads.
+	 */
+	private long lightweightStackSize = DEFAULT_LIGHTWEIGHT_STACK_SIZE;
+	
+	/**
+	 * The maximum number of requests waiting for a thread of the pool, if the
+	 * pool has a fixed size.
+	 */
+	private int maxQueuedRequests = UNLIMITED;
+	
+	/**
+	 * The limits on the work the server takes on, and the related counters.
+	 */
+	private AdmissionControl admission = new AdmissionControl();
+	
+	/**
+	 * The deadlines on reading requests and writing responses, and the related
+	 * counters.
+	 */
+	private TimeoutControl timeouts = new TimeoutControl();
+	
+	/**
+	 * The latency histograms and counters of the server, if enabled.
+	 */
+	private volatile ServerMetrics metrics = null;
+	
+	/**
+	 * The access log, if enabled.
+	 */
+	private volatile AccessLog accessLog = null;
+	
+	/**
+	 * The maximum number of pending connections waiting to be accepted.
+	 */
+	private int acceptBacklog = DEFAULT_ACCEPT_BACKLOG;
+	
+	/**
+	 * Whether the server should use non-blocking I/O, with a small number of 
+	 * I/O loop threads reading requests and writing responses for all clients.
+	 */
+	private boolean nonBlockingIO = DEFAULT_USE_NON_BLOCKING_IO;
+	
+	/**
+	 * The number of I/O loop threads in non-blocking mode; if <code>
+	 * AUTOMATIC_IO_THREADS</code> is specified (default), one loop per 
+	 * available processor is started.
+	 */
+	private int ioThreads = AUTOMATIC_IO_THREADS;
+	
+	/**
+	 * Whether connections should be kept open across requests.
+	 */
+	private boolean keepAlive = DEFAULT_USE_KEEP_ALIVE;
+	
+	/**
+	 * The maximum number of requests serviced on a single connection.
+	 */
+	private int maxKeepAliveRequests = DEFAULT_MAX_KEEP_ALIVE_REQUESTS;
+	
+	/**
+	 * The amount of response content buffered before switching to chunked 
+	 * transfer encoding, or <code>NO_CHUNKED_OUTPUT</code>.
+	 */
+	private int chunkedOutputThreshold = NO_CHUNKED_OUTPUT;
+	
+	/**
+	 * Whether entity tags are computed on buffered responses.
+	 */
+	private boolean autoETag = DEFAULT_USE_AUTO_ETAG;
+	
+	/**
+	 * The amount of request body data kept in memory before spilling to disk.
+	 */
+	private int requestBodyThreshold = DEFAULT_REQUEST_BODY_THRESHOLD;
+	
+	/**
+	 * The maximum size of a request body.
+	 */
+	private long maxRequestBodySize = DEFAULT_MAX_REQUEST_BODY_SIZE;
+	
+	/**
+	 * The resolver of the host names of connections, or <code>null</code> if
+	 * addresses are not to be resolved.
+	 */
+	private HostNameResolver hostNameResolver = DEFAULT_HOST_NAME_RESOLVER;
+	
+	/**
+	 * The I/O loops, in non-blocking mode.
+	 */
+	private volatile SelectorLoop[] loops = null;
+		
+	/**
+	 * Constructor; by default it accepts connections coming from
+	 * all clients (not only the local host) and uses plain HTTP,
+	 * unsecured connections; the server socket is not bound.
+	 *
+	 * @param port
+	 *   the port to bind the server to, on which the server will
+	 *   listen for incoming connections; if 0 is specified here,
+	 *   the server will connect to the first available TCP port.
+	 * @param dispatcher
+	 *   the application controller, which is responsible of routing
+	 *   requests to the appropriate, registered handlers.
+	 */
+	public HttpServer(int port, RequestDispatcher dispatcher) throws ServerException {
+		this(port, dispatcher, DEFAULT_USE_DELAYED_BINDING);
+	}
+
+	/**
+	 * Constructor; by default it accepts connections coming from
+	 * all clients (not only the local host) and uses plain HTTP,
+	 * unsecured connections.
+	 *
+	 * @param port
+	 *   the port to bind the server to, on which the server will
+	 *   listen for incoming connections; if 0 is specified here,
+	 *   the server will connect to the first available TCP port.
+	 * @param dispatcher
+	 *   the application controller, which is responsible of routing
+	 *   requests to the appropriate, registered handlers.
+	 * @param delayBinding
+	 *   when <code>true</code> the server socket binding process is 
+	 *   delayed to the moment when the worker thread is started, otherwise
+	 *   it's performed straight away.
+	 */
+	public HttpServer(int port, RequestDispatcher dispatcher, boolean delayBinding) throws ServerException {
+		this.port = new Integer(port);
+		this.dispatcher = dispatcher;
+		this.loopbackOnly = DEFAULT_ALLOW_LOOPBACK_ONLY;
+		this.secureConnections = DEFAULT_USE_SECURE_CONNECTIONS;
+		this.poolSize = UNLIMITED_POOL_SIZE;
+		
+		if(!delayBinding) {
+			logger.info("server starting...");
+			server = createServerSocket();
+			logger.info("server open for business...");
+			bound = true;
+		}
+	}
+	
+	/**
+	 * Retrieves the current dispatcher.
+	 * 
+	 * @return
+	 *   the current dispatcher.
+	 */
+	public RequestDispatcher getRequestDispatcher() {
+		return dispatcher;
+	}
+
+	/**
+	 * Sets whether the server should accept incoming connections 
+	 * only from the local host (loop-back network interface).
+	 * 
+	 * @param loopbackOnly
+	 *   whether the server should accept incoming connections only
+	 *   from the local host (loop-back network interface).
+	 */   
+	public void setAllowLoopbackOnly(boolean loopbackOnly) {
+		this.loopbackOnly = loopbackOnly;
+	}
+	
+	/**
+	 * Retrieves whether the server should accept incoming connections 
+	 * only from the local host (loop-back network interface).
+	 * 
+	 * @return
+	 *   whether the server should accept incoming connections only
+	 *   from the local host (loop-back network interface).
+	 */   
+	public boolean isAllowLoopbackOnly() {
+		return loopbackOnly;
+	}
+	
+	/**
+	 * Sets whether the server should use a secured, SSL socket 
+	 * for incoming connections; a keystore must have been defined
+	 * as follows:<pre>
+	 * /path/to/java 
+	 * 		-Djavax.net.ssl.keyStore=mySrvKeystore 
+	 * 		-Djavax.net.ssl.keyStorePassword=123456 
+	 * 		MyServer
+	 * </pre>
+	 * 
+	 * @param secureConnections
+	 *   whether the server should use a secured, SSL socket 
+	 *   for incoming connections.
+	 */   
+	public void setUseSecureConnections(boolean secureConnections) {
+		this.secureConnections = secureConnections;
+	}
+	
+	/**
+	 * Retrieves whether the server should use a secured, SSL socket 
+	 * for incoming connections.
+	 * 
+	 * @return
+	 *   whether the server should use a secured, SSL socket 
+	 *   for incoming connections.
+	 */   
+	public boolean isUseSecureConnections() {
+		return secureConnections;
+	}	
+	
+	/**
+	 * Sets whether the server should use non-blocking I/O: in this mode a 
+	 * small number of I/O loop threads read incoming requests and write out
+	 * responses for all connected clients, and complete requests only are 
+	 * handed over to the thread pool for dispatching; secure connections are
+	 * not supported in this mode, and the server socket binding must be 
+	 * delayed to the moment when the server thread starts.
+	 * 
+	 * @param nonBlockingIO
+	 *   whether the server should use non-blocking I/O.
+	 */
+	public void setUseNonBlockingIO(boolean nonBlockingIO) {
+		this.nonBlockingIO = nonBlockingIO;
+	}
+	
+	/**
+	 * Retrieves whether the server uses non-blocking I/O.
+	 * 
+	 * @return
+	 *   whether the server uses non-blocking I/O.
+	 */
+	public boolean isUseNonBlockingIO() {
+		return nonBlockingIO;
+	}
+	
+	/**
+	 * Sets the number of I/O loop threads to be used in non-blocking mode; if 
+	 * <code>AUTOMATIC_IO_THREADS</code> is specified, one loop per available 
+	 * processor is started.
+	 * 
+	 * @param ioThreads
+	 *   the number of I/O loop threads.
+	 */
+	public void setIOThreads(int ioThreads) {
+		this.ioThreads = ioThreads;
+	}
+	
+	/**
+	 * Sets whether connections should be kept open across requests (HTTP/1.1
+	 * persistent connections, or HTTP/1.0 with <code>Connection: keep-alive
+	 * </code>); pipelined requests are serviced in order.
+	 * 
+	 * @param keepAlive
+	 *   whether connections should be kept open across requests.
+	 */
+	public void setUseKeepAlive(boolean keepAlive) {
+		this.keepAlive = keepAlive;
+	}
+	
+	/**
+	 * Retrieves whether connections are kept open across requests.
+	 * 
+	 * @return
+	 *   whether connections are kept open across requests.
+	 */
+	public boolean isUseKeepAlive() {
+		return keepAlive;
+	}
+	
+	/**
+	 * Sets the time a persistent connection is kept open while waiting for 
+	 * the next request.
+	 * 
+	 * @param keepAliveTimeout
+	 *   the idle timeout, in milliseconds.
+	 */
+	public void setKeepAliveTimeout(int keepAliveTimeout) {
+		timeouts.setIdleTimeout(keepAliveTimeout);
+	}
+	
+	/**
+	 * Retrieves the time a persistent connection is kept open while waiting 
+	 * for the next request.
+	 * 
+	 * @return
+	 *   the idle timeout, in milliseconds.
+	 */
+	public int getKeepAliveTimeout() {
+		return timeouts.getIdleTimeout();
+	}
+	
+	/**
+	 * Sets the time within which the request line and headers must have been
+	 * received, counting from when the connection is accepted or, for the 
+	 * following requests on a persistent connection, from the first byte; a
+	 * client that trickles its headers in is answered with a <code>408 
+	 * Request Timeout</code> response.
+	 * 
+	 * @param headerTimeout
+	 *   the timeout in milliseconds, or <code>NO_TIMEOUT</code>.
+	 */
+	public void setHeaderTimeout(int headerTimeout) {
+		timeouts.setHeaderTimeout(headerTimeout);
+	}
+	
+	/**
+	 * Retrieves the time within which the request line and headers must have
+	 * been received.
+	 * 
+	 * @return
+	 *   the timeout in milliseconds, or <code>NO_TIMEOUT</code>.
+	 */
+	public int getHeaderTimeout() {
+		return timeouts.getHeaderTimeout();
+	}
+	
+	/**
+	 * Sets the time the server waits for more data while receiving a request
+	 * body; the connection is closed when it expires, with a <code>408 Request
+	 * Timeout</code> response in non-blocking mode, where bodies are received
+	 * before the request is dispatched.
+	 * 
+	 * @param bodyTimeout
+	 *   the timeout in milliseconds, or <code>NO_TIMEOUT</code>.
+	 */
+	public void setBodyTimeout(int bodyTimeout) {
+		timeouts.setBodyTimeout(bodyTimeout);
+	}
+	
+	/**
+	 * Retrieves the time the server waits for more data of a request body.
+	 * 
+	 * @return
+	 *   the timeout in milliseconds, or <code>NO_TIMEOUT</code>.
+	 */
+	public int getBodyTimeout() {
+		return timeouts.getBodyTimeout();
+	}
+	
+	/**
+	 * Sets the time the server waits for a client to accept more data of the
+	 * response before closing the connection.
+	 * 
+	 * @param writeTimeout
+	 *   the timeout in milliseconds, or <code>NO_TIMEOUT</code>.
+	 */
+	public void setWriteTimeout(int writeTimeout) {
+		timeouts.setWriteTimeout(writeTimeout);
+	}
+	
+	/**
+	 * Retrieves the time the server waits for a client to accept more data of
+	 * the response.
+	 * 
+	 * @return
+	 *   the timeout in milliseconds, or <code>NO_TIMEOUT</code>.
+	 */
+	public int getWriteTimeout() {
+		return timeouts.getWriteTimeout();
+	}
+	
+	/**
+	 * Sets the maximum number of requests serviced on a single connection; 
+	 * the response to the last one closes the connection.
+	 * 
+	 * @param maxKeepAliveRequests
+	 *   the maximum number of requests per connection.
+	 */
+	public void setMaxKeepAliveRequests(int maxKeepAliveRequests) {
+		this.maxKeepAliveRequests = maxKeepAliveRequests;
+	}
+	
+	/**
+	 * Retrieves the maximum number of requests serviced on a single connection.
+	 * 
+	 * @return
+	 *   the maximum number of requests per connection.
+	 */
+	public int getMaxKeepAliveRequests() {
+		return maxKeepAliveRequests;
+	}
+	
+	/**
+	 * Sets the amount of response content that is buffered before switching
+	 * to chunked transfer encoding; this bounds the memory used by large 
+	 * responses and lets clients receive data while it is being produced. By
+	 * default (<code>NO_CHUNKED_OUTPUT</code>) responses are buffered in full.
+	 * 
+	 * @param threshold
+	 *   the threshold, in bytes.
+	 */
+	public void setChunkedOutputThreshold(int threshold) {
+		this.chunkedOutputThreshold = threshold;
+	}
+	
+	/**
+	 * Returns the amount of response content that is buffered before switching
+	 * to chunked transfer encoding.
+	 * 
+	 * @return
+	 *   the threshold in bytes, or <code>NO_CHUNKED_OUTPUT</code>.
+	 */
+	public int getChunkedOutputThreshold() {
+		return chunkedOutputThreshold;
+	}
+	
+	/**
+	 * Sets whether successful responses to GET and HEAD requests are given an
+	 * entity tag computed by hashing their content, when it is buffered in 
+	 * full; clients revalidating with a matching <code>If-None-Match</code> 
+	 * get a <code>304 Not Modified</code> response with no body. Responses 
+	 * setting their own <code>ETag</code>, streamed ones and those transferring
+	 * file data are left alone.
+	 * 
+	 * @param autoETag
+	 *   whether entity tags are computed on responses.
+	 */
+	public void setUseAutoETag(boolean autoETag) {
+		this.autoETag = autoETag;
+	}
+	
+	/**
+	 * Retrieves whether entity tags are computed on responses.
+	 * 
+	 * @return
+	 *   whether entity tags are computed on responses.
+	 */
+	public boolean isUseAutoETag() {
+		return autoETag;
+	}
+	
+	/**
+	 * Sets the amount of request body data that is kept in memory when a body
+	 * is received in full (always, in non-blocking mode, or when a handler 
+	 * asks for it, otherwise); larger bodies are spilled to a temporary file.
+	 * 
+	 * @param threshold
+	 *   the threshold, in bytes.
+	 */
+	public void setRequestBodyThreshold(int threshold) {
+		this.requestBodyThreshold = threshold;
+	}
+	
+	/**
+	 * Returns the amount of request body data that is kept in memory before 
+	 * spilling to disk.
+	 * 
+	 * @return
+	 *   the threshold, in bytes.
+	 */
+	public int getRequestBodyThreshold() {
+		return requestBodyThreshold;
+	}
+	
+	/**
+	 * Sets the maximum size of a request body, whatever the route: requests 
+	 * declaring a larger <code>Content-Length</code>, or whose chunks add up 
+	 * to more, are refused with a <code>413 Request Entity Too Large</code> 
+	 * and their connection closed, so that no client can fill the memory or
+	 * the disk with a request body.
+	 * 
+	 * @param size
+	 *   the maximum size, in bytes, or <code>NO_MAX_REQUEST_BODY_SIZE</code>
+	 *   to accept bodies of any size.
+	 */
+	public void setMaxRequestBodySize(long size) {
+		this.maxRequestBodySize = size;
+	}
+	
+	/**
+	 * Returns the maximum size of a request body.
+	 * 
+	 * @return
+	 *   the maximum size, in bytes, or <code>NO_MAX_REQUEST_BODY_SIZE</code>
+	 *   if bodies of any size are accepted.
+	 */
+	public long getMaxRequestBodySize() {
+		return maxRequestBodySize;
+	}
+	
+	/**
+	 * Sets the resolver of the remote and local host names of requests; names
+	 * are only looked up when the application asks for them, e.g. through
+	 * <code>Request.getRemoteHost()</code>.
+	 * 
+	 * @param resolver
+	 *   the resolver, or <code>null</code> to disable reverse DNS lookups 
+	 *   altogether, in which case host names are the textual form of the 
+	 *   addresses.
+	 */
+	public void setHostNameResolver(HostNameResolver resolver) {
+		this.hostNameResolver = resolver;
+	}
+	
+	/**
+	 * Returns the resolver of the remote and local host names of requests.
+	 * 
+	 * @return
+	 *   the resolver, or <code>null</code> if reverse DNS lookups are disabled.
+	 */
+	public HostNameResolver getHostNameResolver() {
+		return hostNameResolver;
+	}
+	
+	/**
+	 * Returns the number of connections currently open.
+	 * 
+	 * @return
+	 *   the number of connections owned by the I/O loops in non-blocking mode,
+	 *   or being serviced by a worker in blocking mode.
+	 */
+	public int getConnectionCount() {
+		int count = workers.size();
+		SelectorLoop[] loops = this.loops;
+		if(loops != null) {
+			for(SelectorLoop loop : loops) {
+				// loops may still be starting
+				if(loop != null) {
+					count += loop.getConnectionCount();
+				}
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Sets the port on which the server is listening.
+	 * 
+	 * @param port
+	 *   the port on which the server is listening.  
+	 */
+	private void setPort(int port) {
+		synchronized(this.port) {
+			this.port = port;
+		}
+	}
+	
+	/**
+	 * Retrieves the port on which the server is listening.
+	 * 
+	 * @return
+	 *   the port on which the server is listening.
+	 */
+	public int getPort() {
+		synchronized(port) {
+			return port;
+		}
+	}
+	
+	/**
+	 * Sets the pool size; if <code>UNLIMITED_POOL_SIZE</code>
+	 * is specified, a new thread is spawned upon each new
+	 * request, otherwise a thread pool is instantiated and used.
+	 * 
+	 * @param poolSize
+	 *   the new size of the thread pool.
+	 */
+	public void setThreadPoolSize(int poolSize) {
+		this.poolSize = poolSize;
+	}
+	
+	/**
+	 * Sets whether workers should run on lightweight threads; when enabled, 
+	 * this setting takes precedence over the thread pool size.
+	 * 
+	 * @param lightweightThreads
+	 *   whether workers should run on lightweight threads.
+	 */
+	public void setUseLightweightThreads(boolean lightweightThreads) {
+		this.lightweightThreads = lightweightThreads;
+	}
+	
+	/**
+	 * Returns whether workers run on lightweight threads.
+	 * 
+	 * @return
+	 *   whether workers run on lightweight threads.
+	 */
+	public boolean isUseLightweightThreads() {
+		return lightweightThreads;
+	}
+	
+	/**
+	 * Sets the stack size of lightweight worker threads; handlers performing
+	 * deep recursion may need more than the default.
+	 * 
+	 * @param stackSize
+	 *   the stack size, in bytes.
+	 */
+	public void setLightweightStackSize(long stackSize) {
+		this.lightweightStackSize = stackSize;
+	}
+	
+	/**
+	 * Sets the maximum number of requests (connections, in blocking mode) 
+	 * waiting for a thread when the server runs on a fixed-size thread pool;
+	 * when the queue is full, clients are turned away with a <code>503 Service
+	 * Unavailable</code> response.
+	 * 
+	 * @param maxQueuedRequests
+	 *   the maximum number of queued requests, or <code>UNLIMITED</code>.
+	 */
+	public void setMaxQueuedRequests(int maxQueuedRequests) {
+		this.maxQueuedRequests = maxQueuedRequests;
+	}
+	
+	/**
+	 * Sets the maximum number of requests in flight, that is being serviced or
+	 * waiting for a thread; in blocking mode, where a thread services all the
+	 * requests on a connection, it limits the connections being serviced. New
+	 * connections beyond the limit are answered with a <code>503 Service 
+	 * Unavailable</code> response straight away by the acceptor.
+	 * 
+	 * @param maxInFlightRequests
+	 *   the maximum number of requests in flight, or <code>UNLIMITED</code>.
+	 */
+	public void setMaxInFlightRequests(int maxInFlightRequests) {
+		admission.setMaxInFlight(maxInFlightRequests);
+	}
+	
+	/**
+	 * Returns the maximum number of requests in flight.
+	 * 
+	 * @return
+	 *   the maximum number of requests in flight, or <code>UNLIMITED</code>.
+	 */
+	public int getMaxInFlightRequests() {
+		return admission.getMaxInFlight();
+	}
+	
+	/**
+	 * Sets a limit on the requests in flight that adapts to the time it takes
+	 * to dispatch them: it grows as long as the latency holds, and shrinks 
+	 * when requests start queueing for some resource, e.g. the CPU. Requests 
+	 * beyond the limit are answered with a <code>503 Service Unavailable
+	 * </code> response, as with a fixed limit; if both are set, the lower of 
+	 * the two applies.
+	 * 
+	 * @param limit
+	 *   the adaptive limit, or <code>null</code> to disable it.
+	 */
+	public void setAdaptiveConcurrencyLimit(AdaptiveConcurrencyLimit limit) {
+		admission.setAdaptiveLimit(limit);
+	}
+	
+	/**
+	 * Returns the limit on the requests in flight that adapts to the time it
+	 * takes to dispatch them.
+	 * 
+	 * @return
+	 *   the adaptive limit, or <code>null</code> if not set.
+	 */
+	public AdaptiveConcurrencyLimit getAdaptiveConcurrencyLimit() {
+		return admission.getAdaptiveLimit();
+	}
+	
+	/**
+	 * Sets the maximum number of connections a single client address can have
+	 * open at the same time; further connections are answered with a <code>
+	 * 503 Service Unavailable</code> response.
+	 * 
+	 * @param maxConnectionsPerAddress
+	 *   the maximum number of connections per address, or <code>UNLIMITED
+	 *   </code>.
+	 */
+	public void setMaxConnectionsPerAddress(int maxConnectionsPerAddress) {
+		admission.setMaxConnectionsPerAddress(maxConnectionsPerAddress);
+	}
+	
+	/**
+	 * Sets the number of seconds clients turned away are asked to wait before
+	 * retrying, through the <code>Retry-After</code> header.
+	 * 
+	 * @param seconds
+	 *   the number of seconds.
+	 */
+	public void setRetryAfter(int seconds) {
+		admission.setRetryAfter(seconds);
+	}
+	
+	/**
+	 * Returns the number of requests waiting for a thread of the pool.
+	 * 
+	 * @return
+	 *   the number of queued requests, or 0 if the server does not run on a
+	 *   fixed-size thread pool.
+	 */
+	public int getQueueDepth() {
+		ExecutorService executor = this.executor;
+		if(executor instanceof ThreadPoolExecutor) {
+			return ((ThreadPoolExecutor)executor).getQueue().size();
+		}
+		return 0;
+	}
+	
+	/**
+	 * Returns the number of requests in flight.
+	 * 
+	 * @return
+	 *   the number of requests (connections, in blocking mode) being serviced
+	 *   or waiting for a thread.
+	 */
+	public int getInFlightRequests() {
+		return admission.getInFlight();
+	}
+	
+	/**
+	 * Returns the number of connections and requests that have been turned 
+	 * away with a <code>503 Service Unavailable</code> response.
+	 * 
+	 * @return
+	 *   the number of rejections.
+	 */
+	public long getRejectedRequests() {
+		return admission.getRejected();
+	}
+	
+	/**
+	 * Returns the number of requests that have timed out while being received,
+	 * because of the header or body timeout.
+	 * 
+	 * @return
+	 *   the number of requests timed out.
+	 */
+	public long getRequestTimeouts() {
+		return timeouts.getRequestTimeouts();
+	}
+	
+	/**
+	 * Returns the number of connections closed because the client did not 
+	 * accept the response within the write timeout.
+	 * 
+	 * @return
+	 *   the number of responses timed out.
+	 */
+	public long getWriteTimeouts() {
+		return timeouts.getWriteTimeouts();
+	}
+	
+	/**
+	 * Returns the number of persistent connections closed because no request
+	 * arrived within the keep-alive timeout.
+	 * 
+	 * @return
+	 *   the number of idle connections closed.
+	 */
+	public long getIdleTimeouts() {
+		return timeouts.getIdleTimeouts();
+	}
+	
+	/**
+	 * Enables the recording of the latency of the stages each request goes 
+	 * through, of the time spent in the handler of each route, and of the 
+	 * status codes and size of responses; see <code>MetricsHandler</code> to
+	 * expose them.
+	 * 
+	 * @param metrics
+	 *   the metrics to record into, or <code>null</code> to disable recording.
+	 */
+	public void setMetrics(ServerMetrics metrics) {
+		this.metrics = metrics;
+		dispatcher.setMetrics(metrics);
+	}
+	
+	/**
+	 * Returns the metrics the server records into.
+	 * 
+	 * @return
+	 *   the metrics, or <code>null</code> if not enabled.
+	 */
+	public ServerMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Sets the access log requests are recorded into; it is started along 
+	 * with the server, and stopped once the server has terminated.
+	 * 
+	 * @param accessLog
+	 *   the access log, or <code>null</code> to disable it.
+	 */
+	public void setAccessLog(AccessLog accessLog) {
+		this.accessLog = accessLog;
+	}
+	
+	/**
+	 * Returns the access log requests are recorded into.
+	 * 
+	 * @return
+	 *   the access log, or <code>null</code> if not enabled.
+	 */
+	public AccessLog getAccessLog() {
+		return accessLog;
+	}
+	
+	/**
+	 * Returns the deadlines on reading requests and writing responses.
+	 * 
+	 * @return
+	 *   the timeout control.
+	 */
+	TimeoutControl getTimeoutControl() {
+		return timeouts;
+	}
+	
+	/**
+	 * Returns the limits on the work the server takes on.
+	 * 
+	 * @return
+	 *   the admission control.
+	 */
+	AdmissionControl getAdmissionControl() {
+		return admission;
+	}
+	
+	/**
+	 * Sets the maximum number of pending connections waiting to be accepted;
+	 * servers facing bursts of thousands of connections should raise it. It
+	 * only takes effect if the server socket binding is delayed.
+	 * 
+	 * @param acceptBacklog
+	 *   the maximum number of pending connections.
+	 */
+	public void setAcceptBacklog(int acceptBacklog) {
+		this.acceptBacklog = acceptBacklog;
+	}
+	
+	/**
+	 * Stops the server: no more connections are accepted, and the I/O loops
+	 * are stopped along with their connections; the thread pool is shut down, 
+	 * but requests already being dispatched are left to complete. See 
+	 * <code>shutdown()</code> for a graceful alternative.
+	 */
+	public void stop() {
+		stopped = true;
+		if(server != null) {
+			// unblock the acceptor, which winds up on its way out
+			try {
+				server.close();
+			} catch (IOException e) {
+				logger.error("error closing server socket", e);
+			}
+		}
+	}
+	
+	/**
+	 * Returns whether the server has been stopped, or is shutting down.
+	 * 
+	 * @return
+	 *   whether the server is no longer accepting connections.
+	 */
+	public boolean isStopped() {
+		return stopped;
+	}
+	
+	/**
+	 * Shuts the server down gracefully: it stops accepting connections, closes
+	 * persistent connections waiting for their next request, and lets the 
+	 * requests in flight complete (on connections that are then closed) for at
+	 * most the given time; requests still in flight by then are cut short, as
+	 * their connections are closed and the threads of the pool interrupted.
+	 * 
+	 * @param timeout
+	 *   the maximum time to wait for requests in flight.
+	 * @param unit
+	 *   the unit of the timeout.
+	 * @return
+	 *   the number of requests cut short, including those still being 
+	 *   received, 0 if all of them completed.
+	 * @throws InterruptedException
+	 *   if interrupted while waiting for requests to complete.
+	 */
+	public int shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+		logger.info("server shutting down, draining connections for at most {} ms", unit.toMillis(timeout));
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		draining = true;
+		stop();
+		while(true) {
+			closeIdleConnections();
+			if(admission.getInFlight() == 0 && getConnectionCount() == 0) {
+				break;
+			}
+			if(System.nanoTime() - deadline >= 0) {
+				break;
+			}
+			Thread.sleep(DRAIN_POLL_INTERVAL);
+		}
+		
+		// requests not dispatched yet are not in flight, but are cut as well
+		int cut = getReceivingCount() + admission.getInFlight();
+		if(cut > 0) {
+			logger.warn("{} requests still in flight after {} ms, cutting them short", cut, unit.toMillis(timeout));
+			for(HttpServerWorker worker : workers) {
+				worker.close();
+			}
+		}
+		terminate(cut > 0);
+		logger.info("server shut down");
+		return cut;
+	}
+	
+	/**
+	 * Returns the number of connections on which a request is being received
+	 * by an I/O loop, in non-blocking mode; in blocking mode, such requests 
+	 * are already counted as in flight.
+	 * 
+	 * @return
+	 *   the number of requests partly received.
+	 * @throws InterruptedException
+	 *   if interrupted while waiting for the I/O loops.
+	 */
+	private int getReceivingCount() throws InterruptedException {
+		int count = 0;
+		SelectorLoop[] loops = this.loops;
+		if(loops != null) {
+			for(SelectorLoop loop : loops) {
+				if(loop != null) {
+					count += loop.getReceivingCount(LOOP_COUNT_TIMEOUT);
+				}
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Closes the connections waiting for their next request.
+	 */
+	private void closeIdleConnections() {
+		for(HttpServerWorker worker : workers) {
+			worker.closeIfIdle();
+		}
+		SelectorLoop[] loops = this.loops;
+		if(loops != null) {
+			for(SelectorLoop loop : loops) {
+				if(loop != null) {
+					loop.closeIdle();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Releases the resources of the server once it has stopped accepting 
+	 * connections: the I/O loops, the thread pool and the timer wheel.
+	 * 
+	 * @param now
+	 *   whether the threads of the pool should be interrupted, and requests 
+	 *   waiting for a thread discarded.
+	 */
+	private void terminate(boolean now) {
+		stopLoops();
+		ExecutorService executor = this.executor;
+		if(executor != null) {
+			if(now) {
+				for(Runnable pending : executor.shutdownNow()) {
+					if(pending instanceof HttpServerWorker) {
+						((HttpServerWorker)pending).close();
+					}
+				}
+			} else {
+				executor.shutdown();
+			}
+		}
+		timeouts.stop();
+		AccessLog accessLog = this.accessLog;
+		if(accessLog != null) {
+			accessLog.stop();
+		}
+	}
+	
+	/**
+	 * Registers a worker servicing a connection in blocking mode.
+	 * 
+	 * @param worker
+	 *   the worker.
+	 */
+	void register(HttpServerWorker worker) {
+		workers.add(worker);
+	}
+	
+	/**
+	 * Unregisters a worker once its connection has been closed.
+	 * 
+	 * @param worker
+	 *   the worker.
+	 */
+	void unregister(HttpServerWorker worker) {
+		workers.remove(worker);
+	}
+
+	/**
+	 * Actual implementation of the server: accepts incoming connections,
+	 * checks if they are legitimate, and if so hands control over to the
+	 * dispatcher, in a separate thread.
+	 */
+	public void run() {
+		if(!bound) {
+			logger.info("server starting...");
+			try {
+				long startup = System.currentTimeMillis();
+				server = createServerSocket();
+				logger.info("server open to incoming requests (started in {} ms}", System.currentTimeMillis() - startup);
+			} catch(ServerException e) {
+				logger.error("error starting server", e);
+				return;
+			}
+		}
+		
+		if(lightweightThreads) {
+			logger.info("running the server on lightweight threads with a {} bytes stack", lightweightStackSize);
+			executor = Executors.newCachedThreadPool(new WorkerThreadFactory(lightweightStackSize));
+		} else if(poolSize > UNLIMITED_POOL_SIZE) {
+			logger.info("running the server with a thread pool with {} threads", poolSize);
+			if(maxQueuedRequests > UNLIMITED) {
+				executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(maxQueuedRequests));
+			} else {
+				executor = Executors.newFixedThreadPool(poolSize);
+			}
+		}
+		
+		timeouts.start();
+		AccessLog accessLog = this.accessLog;
+		if(accessLog != null) {
+			accessLog.start();
+		}
+		if(nonBlockingIO) {
+			runNonBlocking();
+			if(!draining) {
+				terminate(false);
+			}
+			return;
+		}
+
+	    while(!stopped) {
+		    try {
+		        Socket client = server.accept();
+		        long accepted = System.nanoTime();
+		        InetAddress remote = client.getInetAddress();
+		        logger.debug("incoming connection from {}:{}", remote, client.getPort());
+		        if(loopbackOnly && !remote.isLoopbackAddress()) {
+		        	logger.warn("SECURITY: remote connection attempted from {}:{}", remote, client.getPort());
+		        	client.close();
+		        	continue;
+		        }
+		        
+		        if(!admission.admit(remote)) {
+		        	shed(client);
+		        	continue;
+		        }
+		        if(!admission.begin()) {
+		        	admission.release(remote);
+		        	shed(client);
+		        	continue;
+		        }
+		        
+		        HttpServerWorker worker = new HttpServerWorker(client, this);
+		        if(executor == null) {	
+		        	logger.debug("spawning a new thread to service the request");
+		        	new Thread(worker).start();
+		        } else {
+		        	logger.debug("passing the incoming request to the thread pool");
+		        	try {
+		        		executor.execute(worker);
+		        	} catch(RejectedExecutionException e) {
+		        		logger.debug("work queue full, rejecting connection");
+		        		admission.end();
+		        		admission.release(remote);
+		        		admission.reject();
+		        		shed(client);
+		        	}
+		        }
+		        recordAccept(accepted);
+		    } catch (ClosedByInterruptException e) {
+		    	// this handles more gracefully a server shutdown
+		    	if(Thread.currentThread().isInterrupted()) {
+		    		logger.info("server is shutting down...");
+		    		try {
+						server.close();
+					} catch (IOException ex) {
+						logger.error("error closing server socket", ex);
+					}
+		    	}
+		    } catch (IOException e) {
+		    	if(!stopped) {
+		    		logger.error("accept failed on port " + getPort(), e);
+		    	}
+		    }
+	    }
+	    if(!draining) {
+	    	terminate(false);
+	    }
+	}
+	
+	/**
+	 * Implementation of the server in non-blocking mode: accepts incoming 
+	 * connections, checks if they are legitimate, and if so hands them over 
+	 * to one of the I/O loops, in a round-robin fashion.
+	 */
+	private void runNonBlocking() {
+		ServerSocketChannel channel = server.getChannel();
+		if(channel == null) {
+			logger.error("non-blocking I/O requires delayed binding and plain (non-SSL) connections");
+			return;
+		}
+		
+		if(executor == null) {
+			// requests are still dispatched on their own threads, but these can be reused
+			executor = Executors.newCachedThreadPool();
+		}
+		
+		int count = ioThreads > AUTOMATIC_IO_THREADS ? ioThreads : Runtime.getRuntime().availableProcessors();
+		logger.info("running the server in non-blocking mode with {} I/O loops", count);
+		loops = new SelectorLoop[count];
+		try {
+			for(int i = 0; i < count; ++i) {
+				loops[i] = new SelectorLoop(this, executor);
+				new Thread(loops[i], "ehttpd-io-" + i).start();
+			}
+		} catch(IOException e) {
+			logger.error("error starting I/O loops", e);
+			stopLoops();
+			return;
+		}
+		
+		int next = 0;
+		while(!stopped) {
+			try {
+				SocketChannel client = channel.accept();
+				long accepted = System.nanoTime();
+				Socket socket = client.socket();
+				InetAddress remote = socket.getInetAddress();
+				logger.debug("incoming connection from {}:{}", remote, socket.getPort());
+				if(loopbackOnly && !remote.isLoopbackAddress()) {
+					logger.warn("SECURITY: remote connection attempted from {}:{}", remote, socket.getPort());
+					client.close();
+					continue;
+				}
+				if(!admission.admit(remote)) {
+					shed(socket);
+					continue;
+				}
+				client.configureBlocking(false);
+				loops[next].register(client);
+				next = (next + 1) % loops.length;
+				recordAccept(accepted);
+			} catch (AsynchronousCloseException e) {
+				logger.info("server is shutting down...");
+			} catch (IOException e) {
+				if(!stopped) {
+					logger.error("accept failed on port " + getPort(), e);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Records the time the acceptor spent on a connection, if metrics are 
+	 * enabled.
+	 * 
+	 * @param accepted
+	 *   the time the connection was accepted, in nanoseconds.
+	 */
+	private void recordAccept(long accepted) {
+		ServerMetrics metrics = this.metrics;
+		if(metrics != null) {
+			metrics.getAccept().record(System.nanoTime() - accepted);
+		}
+	}
+	
+	/**
+	 * Turns a client away, telling it the server is too busy.
+	 * 
+	 * @param client
+	 *   the client socket, still in blocking mode.
+	 */
+	private void shed(Socket client) {
+		try {
+			admission.writeServiceUnavailable(client.getOutputStream());
+			client.shutdownOutput();
+			// closing with unread data would reset the connection and could
+			// discard the response, so skip whatever request data is there
+			InputStream input = client.getInputStream();
+			int available = input.available();
+			while(available > 0) {
+				available -= input.skip(available);
+			}
+		} catch(IOException e) {
+			logger.debug("error writing service unavailable response", e);
+		} finally {
+			try {
+				client.close();
+			} catch(IOException e) {
+				logger.error("error closing client connection", e);
+			}
+		}
+	}
+	
+	/**
+	 * Stops the I/O loops, if any.
+	 */
+	private void stopLoops() {
+		SelectorLoop[] loops = this.loops;
+		if(loops == null) {
+			return;
+		}
+		for(SelectorLoop loop : loops) {
+			if(loop != null) {
+				loop.shutdown();
+			}
+		}
+	}
+	
+	/**
+	 * Creates a server socket, in plain or secure mode (HTTPS),
+	 * and binds it to the port provided in the <code>port</code> 
+	 * field; populates the same field with the actual port to which 
+	 * the server was bound.
+	 * If the <code>port</code> field contains 0, this methods binds 
+	 * the server to the first available TCP port (chosen at random); 
+	 * if it contains a non-null value, it attempts to bind it to the 
+	 * specific port, and if it fails proceeds with the next 
+	 * <code>MAX_BIND_ATTEMPTS</code> following values. 
+	 *  
+	 * @throws ServerException
+	 *   if it cannot bid the server to any port.
+	 */
+	private ServerSocket createServerSocket() throws ServerException {
+		
+		ServerSocketFactory factory;
+		if(secureConnections) {
+			factory = SSLServerSocketFactory.getDefault();
+		} else {
+			factory = ServerSocketFactory.getDefault();
+		}
+		
+		ServerSocket server = null;
+		if(getPort() == 0) {
+			logger.debug("binding server to randomly chosen port...");
+			try {
+				server = openServerSocket(factory, 0);			    
+			    int port = server.getLocalPort();
+			    setPort(port);
+			    logger.info("server bound to port {}", getPort());
+			} catch (IOException e) {
+			    logger.error("error binding server to random port", e);
+			    throw new ServerException("error binding server to random port", e);
+			}
+		} else {
+			for(int i = 0; i < MAX_BIND_ATTEMPTS; ++i) {
+				try {	
+					logger.trace("trying to bind server to port {} [attempt no. {}]...", (getPort() + i), (i + 1));
+					server = openServerSocket(factory, getPort() + i);			    
+				    int port = server.getLocalPort();
+				    setPort(port);
+				    logger.info("server bound to port " + getPort());
+				    break;
+				} catch (IOException e) {
+				    logger.error("error binding server to port " + (getPort() + i), e);
+				    if(i == MAX_BIND_ATTEMPTS) {
+				    	logger.error("maximum number of bind attempts reached, stopping server");
+				    	throw new ServerException("maximum number of bind attempts reached", e);
+				    }
+				}
+			}
+		}
+		return server;
+	}
+	
+	/**
+	 * Opens a server socket on the given port; in non-blocking mode the socket
+	 * is created through a <code>ServerSocketChannel</code>, otherwise through
+	 * the given factory.
+	 * 
+	 * @param factory
+	 *   the factory for blocking (plain or SSL) server sockets.
+	 * @param port
+	 *   the port to bind the server socket to.
+	 * @return
+	 *   the bound server socket.
+	 * @throws IOException
+	 *   if the socket cannot be bound.
+	 */
+	private ServerSocket openServerSocket(ServerSocketFactory factory, int port) throws IOException {
+		if(nonBlockingIO && !secureConnections) {
+			ServerSocketChannel channel = ServerSocketChannel.open();
+			channel.socket().bind(new InetSocketAddress(port), acceptBacklog);
+			return channel.socket();
+		}
+		return factory.createServerSocket(port, acceptBacklog);
+	}
+}
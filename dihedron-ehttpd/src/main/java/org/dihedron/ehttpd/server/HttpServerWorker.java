@@ -1,149 +1,783 @@
-/**
- * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
- * 
- * This file is part of the Dihedron embeddable web container ("e-httpd").
- *
- * "e-httpd" is free software: you can redistribute it and/or modify it under 
- * the terms of the GNU Lesser General Public License as published by the Free 
- * Software Foundation, either version 3 of the License, or (at your option) 
- * any later version.
- *
- * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
- * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
- * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
- * details.
- *
- * You should have received a copy of the GNU Lesser General Public License 
- * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
- */
-package org.dihedron.ehttpd.server;
-
-import java.io.IOException;
-import java.net.Socket;
-
-import org.dihedron.ehttpd.exceptions.ServerException;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-/**
- * The HTTP server workhorse, accepting requests and dispatching it to service classes.
- * 
- * @author Andrea Funto'
- */
-public class HttpServerWorker implements Runnable {
-
-	/**
-	 * The logger.
-	 */
-	private static Logger logger = LoggerFactory.getLogger(HttpServerWorker.class);
-	
-	/**
-	 * The socket connected to the client.
-	 */
-	private Socket client = null;
-	
-	/**
-	 * The internal dispatcher; this object decides where to route requests.
-	 */
-	private RequestDispatcher dispatcher = null;
-	
-	/**
-	 * Constructor.
-	 * 
-	 * @param client
-	 *   the client socket.
-	 * @param dispatcher
-	 *   the object that decides where to route requests.
-	 */
-	public HttpServerWorker(Socket client, RequestDispatcher dispatcher) {
-		this.client = client;
-		this.dispatcher = dispatcher;
-	}
-	
-	public void run() {
-		try {
-	        logger.debug("servicing client {}:{}", client.getInetAddress(), client.getPort());
-	        
-	        // fill the handler context
-	        HandlerContext.setRequestDiaspatcher(dispatcher);
-	        
-	        // prepare request by reading from the input 
-	        // channel on the socket, then shut it down
-	        Request request = prepareRequest(client);
-	        
-	        // prepare the response object, which will 
-	        // write to the output channel of the socket
-	        Response response = prepareResponse(client);
-	        
-	        
-	        // dispatcher will lookup and call the appropriate handler
-        	dispatcher.dispatch(request, response);
-	        
-        	// flush the response data to stream
-	        response.flush();	        
-	        
-	        logger.debug("client serviced");
-		} catch(ServerException e) {
-			logger.error("error servicing client", e);
-		} finally {
-			try {
-		        // close streams
-				client.shutdownInput();
-				client.shutdownOutput();
-
-		        // close socket
-				client.close();
-			} catch(IOException e) {
-				logger.error("I/O exception closing streams", e);
-			}
-		}
-	}
-	
-	/**
-	 * Prepares a new request by reading in HTTP request line, headers
-	 * and getting a reference to the input stream.
-	 * 
-	 * @param client
-	 *   the client socket.
-	 * @return
-	 *   a new <code>REquest</code> object.
-	 * @throws ServerException
-	 */
-	private Request prepareRequest(Socket client) throws ServerException {
-		try {
-			Request request = new Request(client.getInputStream());
-	        request.setRemoteAddr(client.getInetAddress().getHostAddress());
-	        request.setRemoteHost(client.getInetAddress().getCanonicalHostName());
-	        request.setRemotePort(client.getPort());
-	        request.setLocalAddr(client.getLocalAddress().getHostAddress());
-	        request.setLocalHost(client.getLocalAddress().getCanonicalHostName());
-	        request.setLocalPort(client.getLocalPort());
-	        return request;
-		} catch(IOException e) {
-			logger.error("error preparing request object", e);
-			throw new ServerException("error preparing request object", e);
-		}
-	}
-	
-	/**
-	 * Prepares a response object; the output stream will be managed by the
-	 * server.
-	 * 
-	 * @param client
-	 *   the client socket.
-	 * @return
-	 *   a <code>Response</code> object.
-	 * @throws ServerException
-	 */
-	private Response prepareResponse(Socket client) throws ServerException {	
-		try {
-			Output output = new ManagedOutput(client.getOutputStream());		
-			Response response = new Response(output);		
-			return response;
-		} catch(IOException e) {
-			logger.error("error preparing response object", e);
-			throw new ServerException("error preparing response object", e);
-		}
-	}
-	
-}
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.dihedron.ehttpd.exceptions.BadRequest;
+import org.dihedron.ehttpd.exceptions.RequestEntityTooLarge;
+import org.dihedron.ehttpd.exceptions.ServerException;
+import org.dihedron.ehttpd.notifications.Notifications;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The HTTP server workhorse, accepting requests and dispatching it to service classes;
+ * persistent connections are serviced in a loop, one request after the other, until
+ * either the client or the server decides to close them, or a deadline expires while
+ * waiting for the client.
+ * 
+ * @author Andrea Funto'
+ */
+public class HttpServerWorker implements Runnable {
+
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(HttpServerWorker.class);
+	
+	/**
+	 * The protocol version supporting persistent connections by default.
+	 */
+	static final String HTTP_1_1 = "HTTP/1.1";
+	
+	/**
+	 * The interim response sent to clients waiting for confirmation before 
+	 * sending the request body.
+	 */
+	static final byte [] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes();
+	
+	/**
+	 * The socket connected to the client.
+	 */
+	private Socket client = null;
+	
+	/**
+	 * The internal dispatcher; this object decides where to route requests.
+	 */
+	private RequestDispatcher dispatcher = null;
+	
+	/**
+	 * Whether the connection can be kept open across requests.
+	 */
+	private boolean keepAlive = HttpServer.DEFAULT_USE_KEEP_ALIVE;
+	
+	/**
+	 * The time (in milliseconds) to wait for the next request on a persistent
+	 * connection.
+	 */
+	private int keepAliveTimeout = HttpServer.DEFAULT_KEEP_ALIVE_TIMEOUT;
+	
+	/**
+	 * The maximum number of requests serviced on the connection.
+	 */
+	private int maxKeepAliveRequests = HttpServer.DEFAULT_MAX_KEEP_ALIVE_REQUESTS;
+	
+	/**
+	 * The amount of response content buffered before switching to chunked
+	 * transfer encoding.
+	 */
+	private int chunkedOutputThreshold = HttpServer.NO_CHUNKED_OUTPUT;
+	
+	/**
+	 * Whether entity tags are computed on buffered responses.
+	 */
+	private boolean autoETag = HttpServer.DEFAULT_USE_AUTO_ETAG;
+	
+	/**
+	 * The amount of request body data kept in memory before spilling to disk.
+	 */
+	private int requestBodyThreshold = HttpServer.DEFAULT_REQUEST_BODY_THRESHOLD;
+	
+	/**
+	 * The maximum size of a request body.
+	 */
+	private long maxRequestBodySize = HttpServer.DEFAULT_MAX_REQUEST_BODY_SIZE;
+	
+	/**
+	 * The resolver of host names, or <code>null</code> if addresses are not to
+	 * be resolved.
+	 */
+	private HostNameResolver hostNameResolver = HttpServer.DEFAULT_HOST_NAME_RESOLVER;
+	
+	/**
+	 * The limits on the work the server takes on, if the connection has been
+	 * admitted by the server.
+	 */
+	private AdmissionControl admission = null;
+	
+	/**
+	 * The server, if the connection has been accepted by one.
+	 */
+	private HttpServer server = null;
+	
+	/**
+	 * Whether the worker is waiting for the next request to start, in which
+	 * case the connection can be closed without cutting a request short.
+	 */
+	private AtomicBoolean idle = new AtomicBoolean(false);
+	
+	/**
+	 * The deadlines on reading requests and writing responses, if enforced.
+	 */
+	private TimeoutControl timeouts = null;
+	
+	/**
+	 * The kind of the deadline that has expired, if any; the connection is
+	 * closed as soon as this happens.
+	 */
+	private volatile TimeoutControl.Kind expired = null;
+	
+	/**
+	 * The parser of request heads, reused across requests on the connection.
+	 */
+	private HttpRequestParser parser = new HttpRequestParser();
+	
+	/**
+	 * Constructor; persistent connections are handled with default settings.
+	 * 
+	 * @param client
+	 *   the client socket.
+	 * @param dispatcher
+	 *   the object that decides where to route requests.
+	 */
+	public HttpServerWorker(Socket client, RequestDispatcher dispatcher) {
+		this.client = client;
+		this.dispatcher = dispatcher;
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param client
+	 *   the client socket.
+	 * @param server
+	 *   the server, providing the dispatcher and the settings for persistent
+	 *   connections.
+	 */
+	public HttpServerWorker(Socket client, HttpServer server) {
+		this(client, server.getRequestDispatcher());
+		this.server = server;
+		this.keepAlive = server.isUseKeepAlive();
+		this.keepAliveTimeout = server.getKeepAliveTimeout();
+		this.maxKeepAliveRequests = server.getMaxKeepAliveRequests();
+		this.chunkedOutputThreshold = server.getChunkedOutputThreshold();
+		this.autoETag = server.isUseAutoETag();
+		this.requestBodyThreshold = server.getRequestBodyThreshold();
+		this.maxRequestBodySize = server.getMaxRequestBodySize();
+		this.hostNameResolver = server.getHostNameResolver();
+		this.admission = server.getAdmissionControl();
+		this.timeouts = server.getTimeoutControl();
+	}
+	
+	public void run() {
+		if(server != null) {
+			server.register(this);
+		}
+		try {
+	        logger.debug("servicing client {}:{}", client.getInetAddress(), client.getPort());
+	        
+	        // fill the handler context
+	        HandlerContext.setRequestDiaspatcher(dispatcher);
+	        
+	        // the streams are buffered once per connection, so that bytes
+	        // belonging to pipelined requests are not lost between requests
+	        TimedInputStream timed = new TimedInputStream(client.getInputStream());
+	        InputStream input = new BufferedInputStream(timed);
+	        TimedOutputStream counted = new TimedOutputStream(client.getOutputStream());
+	        OutputStream output = new BufferedOutputStream(counted);
+	        
+	        int served = 0;
+	        boolean persistent = true;
+	        while(persistent) {
+		        // prepare request by reading from the input channel on the
+		        // socket; the request line and headers must arrive within the
+		        // header timeout, counting from the connection being accepted 
+		        // or, for the following requests, from their first byte
+		        Request request = null;
+		        ServerMetrics metrics = server != null ? server.getMetrics() : null;
+		        AccessLog accessLog = server != null ? server.getAccessLog() : null;
+		        long received = 0;
+		        TimerWheel.Timeout deadline = served == 0 ? schedule(TimeoutControl.Kind.HEADER) : null;
+		        try {
+		        	if(!awaitRequest(input, served > 0)) {
+		        		logger.debug("connection closed after {} requests", served);
+		        		if(served == 0) {
+		        			// the header deadline covers waiting for the first request
+		        			writeRequestTimeout(output);
+		        		}
+		        		break;
+		        	}
+		        	if(served > 0) {
+		        		deadline = schedule(TimeoutControl.Kind.HEADER);
+		        	}
+		        	received = System.nanoTime();
+		        	request = prepareRequest(client, new Request(readQuery(input), input, maxRequestBodySize), hostNameResolver);
+		        	if(metrics != null) {
+		        		metrics.getParse().record(System.nanoTime() - received);
+		        	}
+		        } catch(BadRequest e) {
+		        	// the rest of the stream cannot be told apart from the body
+		        	logger.warn("invalid request framing, closing connection: {}", e.getMessage());
+		        	writeError(output, Status.STATUS_400);
+		        	break;
+		        } catch(RequestEntityTooLarge e) {
+		        	// the body is not read, nor is anything that follows it
+		        	logger.warn("request body too large, closing connection: {}", e.getMessage());
+		        	writeError(output, Status.STATUS_413);
+		        	break;
+		        } finally {
+		        	TimeoutControl.cancel(deadline);
+		        }
+		        if(request.getHttpQuery().getProtocol() == null) {
+		        	logger.debug("client closed the connection");
+		        	writeRequestTimeout(output);
+		        	break;
+		        }
+		        request.setBodyThreshold(requestBodyThreshold);
+		        if(isExpectingContinue(request.getHttpQuery())) {
+		        	output.write(CONTINUE);
+		        	output.flush();
+		        }
+		        ++served;
+		        persistent = keepAlive && (server == null || !server.isStopped()) && served < maxKeepAliveRequests && isKeepAlive(request);
+		        
+		        // prepare the response object, which will 
+		        // write to the output channel of the socket
+		        Response response = prepareResponse(request, output, persistent, chunkedOutputThreshold, autoETag);
+		        
+		        // from now on, the body is read as the handler asks for it
+		        timed.setKind(TimeoutControl.Kind.BODY);
+		        try {
+			        // dispatcher will lookup and call the appropriate handler
+		        	int inFlight = admission != null ? admission.getInFlight() : 0;
+		        	long written = counted.getWritten();
+		        	long started = System.nanoTime();
+		        	try {
+		        		dispatcher.dispatch(request, response);
+		        	} catch(ServerException e) {
+		        		if(!request.isBodyTooLarge()) {
+		        			throw e;
+		        		}
+		        	}
+		        	if(request.isBodyTooLarge()) {
+		        		// the chunks exceeded the maximum size as the handler read 
+		        		// them: the rest of the body is not read, and unless the 
+		        		// handler has already sent its response, it is refused
+		        		logger.warn("request body exceeds {} bytes, closing connection", maxRequestBodySize);
+		        		if(!response.getOutput().isCommitted()) {
+		        			writeError(output, Status.STATUS_413);
+		        		}
+		        		break;
+		        	}
+		        	long dispatched = System.nanoTime();
+		        	if(admission != null) {
+		        		admission.sample(dispatched - started, inFlight);
+		        	}
+		        	persistent = persistent && !isClosing(server, response);
+			        
+		        	// flush the response data to stream
+			        response.flush();
+			        long flushed = System.nanoTime();
+			        if(metrics != null) {
+			        	metrics.getDispatch().record(dispatched - started);
+			        	metrics.getFlush().record(flushed - dispatched);
+			        	metrics.recordResponse(response.getStatus(), counted.getWritten() - written);
+			        }
+			        if(accessLog != null) {
+			        	accessLog.log(client.getInetAddress(), request.getHttpQuery(), response.getStatus(), counted.getWritten() - written, flushed - received);
+			        }
+			        
+			        // skip whatever the handler did not read of the request body
+			        persistent = persistent && response.getOutput().isPersistent() && request.discardBody();
+		        } finally {
+		        	timed.setKind(null);
+		        	request.release();
+		        }
+		        
+		        logger.debug("client serviced");
+	        }
+		} catch(ServerException e) {
+			if(expired != null) {
+				logger.debug("connection closed on {} timeout", expired);
+			} else {
+				logger.error("error servicing client", e);
+			}
+		} catch(IOException e) {
+			if(expired != null) {
+				logger.debug("connection closed on {} timeout", expired);
+			} else {
+				logger.error("I/O exception servicing client", e);
+			}
+		} finally {
+			// do not let the thread retain per-request state
+			HandlerContext.release();
+			Notifications.release();
+			try {
+		        // close streams
+				if(!client.isInputShutdown()) {
+					client.shutdownInput();
+				}
+				if(!client.isOutputShutdown()) {
+					client.shutdownOutput();
+				}
+
+		        // close socket
+				client.close();
+			} catch(IOException e) {
+				logger.debug("I/O exception closing streams", e);
+			}
+			if(admission != null) {
+				admission.end();
+				admission.release(client.getInetAddress());
+			}
+			if(server != null) {
+				server.unregister(this);
+			}
+		}
+	}
+	
+	/**
+	 * Closes the connection if the worker is waiting for the next request on
+	 * it, e.g. because the server is shutting down.
+	 */
+	void closeIfIdle() {
+		if(idle.compareAndSet(true, false)) {
+			logger.debug("closing idle connection from {}:{}", client.getInetAddress(), client.getPort());
+			close();
+		}
+	}
+	
+	/**
+	 * Closes the connection, cutting short the request being serviced if any.
+	 */
+	void close() {
+		try {
+			client.close();
+		} catch(IOException e) {
+			logger.debug("I/O exception closing connection", e);
+		}
+	}
+	
+	/**
+	 * Checks whether, according to its protocol version and headers, the 
+	 * client wants the connection to be kept open after the given request.
+	 * 
+	 * @param request
+	 *   the client request.
+	 * @return
+	 *   whether the client wants a persistent connection.
+	 */
+	static boolean isKeepAlive(Request request) {
+		HttpQuery query = request.getHttpQuery();
+		String connection = query.getHeader("Connection");
+		if(HTTP_1_1.equals(query.getProtocol())) {
+			return connection == null || connection.toLowerCase().indexOf("close") == -1;
+		}
+		return connection != null && connection.toLowerCase().indexOf("keep-alive") != -1;
+	}
+	
+	/**
+	 * Schedules a deadline for the connection, if deadlines are enforced.
+	 * 
+	 * @param kind
+	 *   the kind of deadline.
+	 * @return
+	 *   the timeout, or <code>null</code> if there is no deadline.
+	 */
+	private TimerWheel.Timeout schedule(TimeoutControl.Kind kind) {
+		return timeouts != null ? timeouts.schedule(new Expiry(kind), kind) : null;
+	}
+	
+	/**
+	 * Waits for the first byte of the next request; on a persistent connection,
+	 * it waits for at most the keep-alive timeout. While waiting, the connection
+	 * is idle and can be closed by the server.
+	 * 
+	 * @param input
+	 *   the buffered input stream of the connection.
+	 * @param persistent
+	 *   whether requests have already been serviced on the connection.
+	 * @return
+	 *   <code>true</code> if the next request is available, <code>false</code>
+	 *   if the connection was closed by either side or the timeout expired.
+	 * @throws IOException
+	 */
+	private boolean awaitRequest(InputStream input, boolean persistent) throws IOException {
+		TimerWheel.Timeout deadline = persistent ? schedule(TimeoutControl.Kind.IDLE) : null;
+		if(persistent && timeouts == null) {
+			// no timer wheel, let the socket enforce the timeout
+			client.setSoTimeout(keepAliveTimeout);
+		}
+		idle.set(true);
+		try {
+			input.mark(1);
+			if(input.read() == -1) {
+				return false;
+			}
+			input.reset();
+		} catch(SocketTimeoutException e) {
+			logger.debug("persistent connection idle for more than {} ms", keepAliveTimeout);
+			return false;
+		} catch(IOException e) {
+			if(expired == TimeoutControl.Kind.IDLE || !idle.get()) {
+				// closed while idle
+				return false;
+			}
+			throw e;
+		} finally {
+			TimeoutControl.cancel(deadline);
+		}
+		if(!idle.compareAndSet(true, false)) {
+			// closed by the server just as the request started
+			return false;
+		}
+		if(persistent && timeouts == null) {
+			client.setSoTimeout(0);
+		}
+		return true;
+	}
+	
+	/**
+	 * Answers with a <code>408 Request Timeout</code> if the header deadline 
+	 * has expired, that is if the client was still sending the request line 
+	 * and headers when the deadline shut down the input of the connection; the
+	 * connection is to be closed right after.
+	 * 
+	 * @param output
+	 *   the buffered output stream of the connection.
+	 * @throws IOException
+	 */
+	private void writeRequestTimeout(OutputStream output) throws IOException {
+		if(expired == TimeoutControl.Kind.HEADER) {
+			TimeoutControl.writeRequestTimeout(output);
+		}
+	}
+	
+	/**
+	 * Reads the request line and headers from the connection.
+	 * 
+	 * @param input
+	 *   the buffered input stream of the connection.
+	 * @return
+	 *   the parsed query; if the client closed the connection, its protocol 
+	 *   is not set.
+	 * @throws IOException
+	 * @throws ServerException
+	 *   if the request is malformed.
+	 */
+	private HttpQuery readQuery(InputStream input) throws IOException, ServerException {
+		parser.reset();
+		if(parser.parse(input)) {
+			return parser.getQuery();
+		}
+		return new HttpQuery();
+	}
+	
+	/**
+	 * Checks whether the server has started shutting down while the request was
+	 * being dispatched; if so, and the response has not been committed yet, it
+	 * is changed to close the connection.
+	 * 
+	 * @param server
+	 *   the server, or <code>null</code>.
+	 * @param response
+	 *   the response, not yet flushed.
+	 * @return
+	 *   whether the connection will be closed after the response.
+	 * @throws ServerException
+	 */
+	static boolean isClosing(HttpServer server, Response response) throws ServerException {
+		Output output = response.getOutput();
+		if(server != null && server.isStopped() && !output.isCommitted()) {
+			output.writeHeader("Connection", "close");
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Checks whether the client is waiting for an interim <code>100 Continue
+	 * </code> response before sending the request body.
+	 * 
+	 * @param query
+	 *   the request line and headers.
+	 * @return
+	 *   whether the interim response should be sent.
+	 */
+	static boolean isExpectingContinue(HttpQuery query) {
+		String expect = query.getHeader("Expect");
+		return expect != null && HTTP_1_1.equals(query.getProtocol()) && expect.trim().equalsIgnoreCase("100-continue");
+	}
+	
+	/**
+	 * Writes out an empty response refusing a request the server will not read
+	 * any further, e.g. because it is malformed or too large; the connection 
+	 * is to be closed right after.
+	 * 
+	 * @param output
+	 *   the stream to the client.
+	 * @param status
+	 *   the status of the response.
+	 * @throws IOException
+	 */
+	static void writeError(OutputStream output, Status status) throws IOException {
+		String response = "HTTP/1.1 " + status.getCode() + " " + status.getDescription() + "\r\n"
+				+ "Content-Length: 0\r\n"
+				+ "Connection: close\r\n\r\n";
+		output.write(response.getBytes("ISO-8859-1"));
+		output.flush();
+	}
+	
+	/**
+	 * Prepares a new request by filling in the addresses of the connection;
+	 * host names are only looked up if the application asks for them.
+	 * 
+	 * @param client
+	 *   the client socket.
+	 * @param request
+	 *   the request, with its request line, headers and body.
+	 * @param resolver
+	 *   the resolver of host names, or <code>null</code> if addresses are not
+	 *   to be resolved.
+	 * @return
+	 *   the request itself.
+	 */
+	static Request prepareRequest(Socket client, Request request, HostNameResolver resolver) {
+        request.setAddresses(client.getInetAddress(), client.getLocalAddress(), resolver);
+        request.setRemotePort(client.getPort());
+        request.setLocalPort(client.getLocalPort());
+        return request;
+	}
+	
+	/**
+	 * Prepares a response object; the output stream will be managed by the
+	 * server, and the status line and <code>Connection</code> header will
+	 * reflect the protocol version of the request and whether the connection
+	 * is going to be kept open. The response to a <code>HEAD</code> request 
+	 * carries the headers, <code>Content-Length</code> included, but none of
+	 * the content.
+	 * 
+	 * @param request
+	 *   the request being answered.
+	 * @param output
+	 *   the output stream of the connection.
+	 * @param persistent
+	 *   whether the connection will be kept open after the response.
+	 * @param chunkedOutputThreshold
+	 *   the amount of content buffered before switching to chunked transfer
+	 *   encoding, or <code>HttpServer.NO_CHUNKED_OUTPUT</code>.
+	 * @param autoETag
+	 *   whether an entity tag is computed on the content of GET and HEAD
+	 *   responses, to answer revalidations with a <code>304 Not Modified
+	 *   </code>.
+	 * @return
+	 *   a <code>Response</code> object.
+	 * @throws ServerException
+	 */
+	static Response prepareResponse(Request request, OutputStream output, boolean persistent, int chunkedOutputThreshold, boolean autoETag) throws ServerException {	
+		Method method = request.getHttpQuery().getMethod();
+		ManagedOutput managed = null;
+		if(method == Method.HEAD) {
+			// the whole content is buffered, to report its length without sending it
+			managed = new ManagedOutput(output);
+			managed.setHeadOnly();
+		} else if(chunkedOutputThreshold > HttpServer.NO_CHUNKED_OUTPUT) {
+			managed = new ChunkedOutput(output, chunkedOutputThreshold);
+		} else {
+			managed = new ManagedOutput(output);
+		}
+		if(autoETag && (method == Method.GET || method == Method.HEAD)) {
+			managed.setAutoETag(request.getHttpQuery().getHeader("If-None-Match"));
+		}
+		if(HTTP_1_1.equals(request.getHttpQuery().getProtocol())) {
+			managed.setProtocol(HTTP_1_1);
+		}
+		managed.writeHeader("Connection", persistent ? "keep-alive" : "close");
+		return new Response(managed);
+	}
+	
+	/**
+	 * Closes the connection when a deadline expires; if the client was still
+	 * sending the request line and headers, only the input of the connection
+	 * is shut down, so that the worker wakes up to the end of the stream and 
+	 * answers with a <code>408 Request Timeout</code> itself. No data is ever
+	 * written here, since a client that does not read could block the timer 
+	 * thread, and with it every other deadline in the server.
+	 */
+	private class Expiry implements Runnable {
+		
+		/**
+		 * The kind of deadline.
+		 */
+		private final TimeoutControl.Kind kind;
+		
+		/**
+		 * Constructor.
+		 * 
+		 * @param kind
+		 *   the kind of deadline.
+		 */
+		Expiry(TimeoutControl.Kind kind) {
+			this.kind = kind;
+		}
+		
+		public void run() {
+			logger.debug("{} timeout expired on connection from {}:{}", new Object[] { kind, client.getInetAddress(), client.getPort() });
+			expired = kind;
+			timeouts.timedOut(kind);
+			try {
+				// unblocks the worker, if waiting on the socket
+				if(kind == TimeoutControl.Kind.HEADER) {
+					client.shutdownInput();
+				} else {
+					client.close();
+				}
+			} catch(IOException e) {
+				logger.debug("error closing timed out connection", e);
+			}
+		}
+	}
+	
+	/**
+	 * The input stream of the socket; when a kind of deadline is set, each read
+	 * from the socket must complete within the corresponding timeout.
+	 */
+	private class TimedInputStream extends FilterInputStream {
+		
+		/**
+		 * The kind of deadline applied to reads, or <code>null</code>.
+		 */
+		private TimeoutControl.Kind kind = null;
+		
+		/**
+		 * Constructor.
+		 * 
+		 * @param input
+		 *   the input stream of the socket.
+		 */
+		TimedInputStream(InputStream input) {
+			super(input);
+		}
+		
+		/**
+		 * Sets the kind of deadline applied to reads.
+		 * 
+		 * @param kind
+		 *   the kind of deadline, or <code>null</code> for none.
+		 */
+		void setKind(TimeoutControl.Kind kind) {
+			this.kind = kind;
+		}
+		
+		@Override
+		public int read() throws IOException {
+			TimerWheel.Timeout deadline = kind != null ? schedule(kind) : null;
+			try {
+				return super.read();
+			} finally {
+				TimeoutControl.cancel(deadline);
+			}
+		}
+		
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			TimerWheel.Timeout deadline = kind != null ? schedule(kind) : null;
+			try {
+				return super.read(buffer, offset, length);
+			} finally {
+				TimeoutControl.cancel(deadline);
+			}
+		}
+		
+		@Override
+		public long skip(long count) throws IOException {
+			TimerWheel.Timeout deadline = kind != null ? schedule(kind) : null;
+			try {
+				return super.skip(count);
+			} finally {
+				TimeoutControl.cancel(deadline);
+			}
+		}
+	}
+	
+	/**
+	 * The output stream of the socket; large writes are split into slices, and
+	 * each write to the socket must complete within the write timeout, so that
+	 * slow but steady clients are not penalised.
+	 */
+	private class TimedOutputStream extends FilterOutputStream {
+		
+		/**
+		 * The largest amount of data written under a single deadline.
+		 */
+		private static final int SLICE_SIZE = 65536;
+		
+		/**
+		 * The number of bytes written to the socket.
+		 */
+		private long written = 0;
+		
+		/**
+		 * Constructor.
+		 * 
+		 * @param output
+		 *   the output stream of the socket.
+		 */
+		TimedOutputStream(OutputStream output) {
+			super(output);
+		}
+		
+		@Override
+		public void write(int b) throws IOException {
+			TimerWheel.Timeout deadline = schedule(TimeoutControl.Kind.WRITE);
+			try {
+				out.write(b);
+				++written;
+			} finally {
+				TimeoutControl.cancel(deadline);
+			}
+		}
+		
+		@Override
+		public void write(byte[] buffer, int offset, int length) throws IOException {
+			while(length > 0) {
+				int slice = Math.min(length, SLICE_SIZE);
+				TimerWheel.Timeout deadline = schedule(TimeoutControl.Kind.WRITE);
+				try {
+					out.write(buffer, offset, slice);
+					written += slice;
+				} finally {
+					TimeoutControl.cancel(deadline);
+				}
+				offset += slice;
+				length -= slice;
+			}
+		}
+		
+		/**
+		 * Returns the number of bytes written to the socket so far.
+		 * 
+		 * @return
+		 *   the number of bytes.
+		 */
+		long getWritten() {
+			return written;
+		}
+	}
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies that can be updated concurrently without locking:
+ * each sample is counted in one of a fixed set of buckets, whose upper bounds
+ * double from 1 microsecond to about 33 seconds, plus one for slower samples.
+ * Recording a sample costs two atomic increments and a few arithmetic 
+ * operations; reading the histogram while it is updated gives a view that 
+ * may lag behind by the samples being recorded.
+ * 
+ * @author Andrea Funto'
+ */
+public class LatencyHistogram {
+	
+	/**
+	 * The number of buckets with an upper bound; samples exceeding the last
+	 * bound go in an extra overflow bucket.
+	 */
+	public static final int BOUNDED_BUCKETS = 26;
+	
+	/**
+	 * The number of samples in each bucket.
+	 */
+	private final AtomicLongArray buckets = new AtomicLongArray(BOUNDED_BUCKETS + 1);
+	
+	/**
+	 * The sum of all samples, in nanoseconds.
+	 */
+	private final AtomicLong sum = new AtomicLong(0);
+	
+	/**
+	 * Records a sample.
+	 * 
+	 * @param nanos
+	 *   the latency, in nanoseconds.
+	 */
+	public void record(long nanos) {
+		if(nanos < 0) {
+			nanos = 0;
+		}
+		buckets.incrementAndGet(getBucket(nanos));
+		sum.addAndGet(nanos);
+	}
+	
+	/**
+	 * Returns the number of samples in each bucket.
+	 * 
+	 * @return
+	 *   a copy of the bucket counts, the last one being the overflow bucket.
+	 */
+	public long[] getBuckets() {
+		long [] counts = new long[buckets.length()];
+		for(int i = 0; i < counts.length; ++i) {
+			counts[i] = buckets.get(i);
+		}
+		return counts;
+	}
+	
+	/**
+	 * Returns the number of samples recorded.
+	 * 
+	 * @return
+	 *   the number of samples.
+	 */
+	public long getCount() {
+		long count = 0;
+		for(int i = 0; i < buckets.length(); ++i) {
+			count += buckets.get(i);
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns the sum of the samples recorded.
+	 * 
+	 * @return
+	 *   the sum of the latencies, in nanoseconds.
+	 */
+	public long getSum() {
+		return sum.get();
+	}
+	
+	/**
+	 * Returns an estimate of the given percentile, as the upper bound of the
+	 * bucket it falls in.
+	 * 
+	 * @param percentile
+	 *   the percentile, between 0 and 100.
+	 * @return
+	 *   the estimated latency in nanoseconds, <code>Long.MAX_VALUE</code> if
+	 *   it falls in the overflow bucket, or 0 if there are no samples.
+	 */
+	public long getPercentile(double percentile) {
+		long [] counts = getBuckets();
+		long total = 0;
+		for(long count : counts) {
+			total += count;
+		}
+		if(total == 0) {
+			return 0;
+		}
+		long rank = (long)Math.ceil(total * Math.min(Math.max(percentile, 0), 100) / 100);
+		long seen = 0;
+		for(int i = 0; i < counts.length; ++i) {
+			seen += counts[i];
+			if(seen >= rank && seen > 0) {
+				return getUpperBound(i);
+			}
+		}
+		return getUpperBound(counts.length - 1);
+	}
+	
+	/**
+	 * Returns the upper bound of a bucket.
+	 * 
+	 * @param bucket
+	 *   the index of the bucket.
+	 * @return
+	 *   the upper bound (inclusive) in nanoseconds, or <code>Long.MAX_VALUE
+	 *   </code> for the overflow bucket.
+	 */
+	public static long getUpperBound(int bucket) {
+		return bucket < BOUNDED_BUCKETS ? 1000L << bucket : Long.MAX_VALUE;
+	}
+	
+	/**
+	 * Returns the bucket a sample falls in.
+	 * 
+	 * @param nanos
+	 *   the latency, in nanoseconds.
+	 * @return
+	 *   the index of the bucket.
+	 */
+	static int getBucket(long nanos) {
+		long micros = nanos / 1000 + (nanos % 1000 != 0 ? 1 : 0);
+		if(micros <= 1) {
+			return 0;
+		}
+		return Math.min(64 - Long.numberOfLeadingZeros(micros - 1), BOUNDED_BUCKETS);
+	}
+}
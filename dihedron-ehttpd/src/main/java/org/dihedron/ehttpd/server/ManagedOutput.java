@@ -1,182 +1,457 @@
-/**
- * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
- * 
- * This file is part of the Dihedron embeddable web container ("e-httpd").
- *
- * "e-httpd" is free software: you can redistribute it and/or modify it under 
- * the terms of the GNU Lesser General Public License as published by the Free 
- * Software Foundation, either version 3 of the License, or (at your option) 
- * any later version.
- *
- * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
- * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
- * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
- * details.
- *
- * You should have received a copy of the GNU Lesser General Public License 
- * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
- */
-package org.dihedron.ehttpd.server;
-
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.OutputStream;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
-
-import org.dihedron.ehttpd.exceptions.ServerException;
-import org.dihedron.utils.Streams;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-/**
- * This class provides a managed way of reordering output data
- * in order to comply with the HTTP standard: it sends status 
- * information first, headers next, and data last.
- * 
- * @author Andrea Funto'
- */
-public class ManagedOutput extends Output {
-	
-	/**
-	 * The logger.
-	 */
-	private static Logger logger = LoggerFactory.getLogger(ManagedOutput.class);
-	
-	protected ByteArrayOutputStream buffer = null;
-	
-	protected Status status = Status.STATUS_200;
-	
-	protected Map<String, String[]> headers = null;
-	
-	/**
-	 * Indicates whether the output has already been flushed.
-	 */
-	protected boolean flushed = false;
-	
-	/**
-	 * Constructor.
-	 * 
-	 * @param stream
-	 *   the response stream (built on the
-	 *   client socket).
-	 */
-	public ManagedOutput(OutputStream stream) {
-		super(stream);
-		this.buffer = new ByteArrayOutputStream();
-		this.headers = new HashMap<String, String[]>();
-		logger.debug("request output will be automatically managed");
-	}
-
-	public void writeStatus(Status status) {
-		this.status = status;
-	}
-
-	/**
-	 * @see it.bankitalia.sisi.dsvaa.httpd.OutputStrategy#writeHeader(java.lang.String, java.lang.String[])
-	 */
-	@Override
-	public void writeHeader(String key, String... values) {
-		if(key != null && values != null) {
-			headers.put(key, values);
-		}
-	}
-
-	/**
-	 * @see it.bankitalia.sisi.dsvaa.httpd.OutputStrategy#writeContent(java.lang.String)
-	 */
-	@Override
-	public void writeContent(String text) throws ServerException {
-		if(text != null) {
-			logger.debug("appending '{}' to content", text);
-			try {
-				buffer.write(text.getBytes());
-			} catch(IOException e) {
-				throw new ServerException("I/O error writing text to client");
-			}
-		}
-	}
-
-	/* (non-Javadoc)
-	 * @see it.bankitalia.sisi.dsvaa.httpd.OutputStrategy#writeContent(byte[])
-	 */
-	@Override
-	public void writeContent(byte[] data) throws ServerException {
-		if(data != null) {
-			try {
-				buffer.write(data);
-			} catch(IOException e) {
-				throw new ServerException("I/O error writing data to client");
-			}
-		}
-	}
-	
-	/**
-	 * Flushes data to the client stream.
-	 * 
-	 * @see org.dihedron.ehttpd.server.Output#flush()
-	 */
-	@Override
-	public void flush() throws ServerException {
-		
-		if(flushed) {
-			logger.debug("output already flushed");
-		} else {
-			logger.debug("flushing managed output");		
-		
-			try {
-			
-				StringBuffer sb = new StringBuffer();
-		
-				// write out status first
-				stream.write(formatHttpStatus(sb, status));
-		
-				// write headers next
-				for(Entry<String, String[]> header : headers.entrySet()) {
-					byte [] data = null;
-					// content length is automatically calculated on the buffered data
-					if(header.getKey().equals("Content-Length")) {
-						sb.setLength(0);
-						sb.append("Content-Length: ").append(buffer.size()).append(NEWLINE);
-						data = sb.toString().getBytes();			
-					} else {
-						data = formatHttpHeader(sb, header.getKey(), header.getValue());
-					}
-					stream.write(data);
-				}
-				// append header terminator (NEWLINE on its own)
-				stream.write(NEWLINE.getBytes());
-				
-				// write content
-				logger.debug("outputting {} bytes of content", buffer.size());
-				Streams.copy(new ByteArrayInputStream(buffer.toByteArray()), stream);
-				logger.debug("content written to stream");
-				
-				stream.flush();
-				
-				// this response should not be resent, should a 
-				// second call to this method erroneously occur
-				flushed = true;
-				
-			} catch(IOException e) {
-				throw new ServerException("I/O error flushing stream", e);
-			}
-		}
-	}
-	
-	/**
-	 * Flushes the output data stream, and closes it.
-	 */
-	public void close() throws ServerException {
-		try {
-			stream.flush();
-			stream.close();
-		} catch(IOException e) {
-			throw new ServerException("I/O error closing stream");
-		}
-	}
-}
-
-	
\ No newline at end of file
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.dihedron.ehttpd.exceptions.ServerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class provides a managed way of reordering output data
+ * in order to comply with the HTTP standard: it sends status 
+ * information first, headers next, and data last.
+ * 
+ * @author Andrea Funto'
+ */
+public class ManagedOutput extends Output {
+	
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(ManagedOutput.class);
+	
+	protected ByteArrayOutputStream buffer = null;
+	
+	protected Status status = Status.STATUS_200;
+	
+	protected Map<String, String[]> headers = null;
+	
+	/**
+	 * The content provided through channels, each with the buffered data that
+	 * precedes it; the data in <code>buffer</code> follows the last of them.
+	 */
+	protected List<ChannelContent> channels = null;
+	
+	/**
+	 * Indicates whether the output has already been flushed.
+	 */
+	protected boolean flushed = false;
+	
+	/**
+	 * Whether an entity tag is computed on the buffered content when the 
+	 * output is flushed.
+	 */
+	protected boolean autoETag = false;
+	
+	/**
+	 * The value of the request <code>If-None-Match</code> header, if any.
+	 */
+	protected String ifNoneMatch = null;
+	
+	/**
+	 * Whether only the status and headers are sent, as for a <code>HEAD
+	 * </code> request.
+	 */
+	protected boolean headOnly = false;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param stream
+	 *   the response stream (built on the
+	 *   client socket).
+	 */
+	public ManagedOutput(OutputStream stream) {
+		super(stream);
+		this.buffer = new ByteArrayOutputStream();
+		this.headers = new HashMap<String, String[]>();
+		this.channels = new ArrayList<ChannelContent>();
+		logger.debug("request output will be automatically managed");
+	}
+
+	public void writeStatus(Status status) {
+		this.status = status;
+	}
+	
+	/**
+	 * Returns the HTTP status, which may have been turned into a <code>304 
+	 * Not Modified</code> when flushing, see <code>setAutoETag()</code>.
+	 * 
+	 * @return
+	 *   the HTTP status.
+	 */
+	public Status getStatus() {
+		return status;
+	}
+	
+	/**
+	 * Enables automatic entity tags: when the output is flushed, successful
+	 * responses whose content is entirely buffered (and that carry no entity
+	 * tag of their own) are given a weak <code>ETag</code> computed by hashing
+	 * the content; if the client already has a representation with the same
+	 * tag, the content is dropped and a <code>304 Not Modified</code> response
+	 * is sent instead. This spares the bandwidth, not the work of producing 
+	 * the content, and is meant for pages that poll for unchanging content.
+	 * 
+	 * @param ifNoneMatch
+	 *   the value of the request <code>If-None-Match</code> header, or <code>
+	 *   null</code>.
+	 */
+	public void setAutoETag(String ifNoneMatch) {
+		this.autoETag = true;
+		this.ifNoneMatch = ifNoneMatch;
+	}
+
+	/**
+	 * Sends only the status and the headers, as the answer to a <code>HEAD
+	 * </code> request: the content is still collected, so that its length 
+	 * can be reported, but it is never written to the client, where it would
+	 * be taken for the beginning of the next response.
+	 */
+	public void setHeadOnly() {
+		this.headOnly = true;
+	}
+
+	/**
+	 * @see it.bankitalia.sisi.dsvaa.httpd.OutputStrategy#writeHeader(java.lang.String, java.lang.String[])
+	 */
+	@Override
+	public void writeHeader(String key, String... values) {
+		if(key != null && values != null) {
+			headers.put(key, values);
+		}
+	}
+
+	/**
+	 * @see it.bankitalia.sisi.dsvaa.httpd.OutputStrategy#writeContent(java.lang.String)
+	 */
+	@Override
+	public void writeContent(String text) throws ServerException {
+		if(text != null) {
+			logger.debug("appending '{}' to content", text);
+			try {
+				buffer.write(text.getBytes());
+			} catch(IOException e) {
+				throw new ServerException("I/O error writing text to client");
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see it.bankitalia.sisi.dsvaa.httpd.OutputStrategy#writeContent(byte[])
+	 */
+	@Override
+	public void writeContent(byte[] data) throws ServerException {
+		if(data != null) {
+			try {
+				buffer.write(data);
+			} catch(IOException e) {
+				throw new ServerException("I/O error writing data to client");
+			}
+		}
+	}
+	
+	/**
+	 * Queues the channel data after the content written so far; it will be 
+	 * transferred to the client when the output is flushed, without being 
+	 * buffered in memory.
+	 * 
+	 * @see org.dihedron.ehttpd.server.Output#writeContent(java.nio.channels.ReadableByteChannel, long)
+	 */
+	@Override
+	public void writeContent(ReadableByteChannel channel, long length) throws ServerException {
+		if(channel != null) {
+			channels.add(new ChannelContent(buffer.toByteArray(), channel, length));
+			buffer.reset();
+		}
+	}
+	
+	/**
+	 * Returns the overall length of the content, buffered or not.
+	 * 
+	 * @return
+	 *   the length of the content, in bytes.
+	 */
+	protected long getContentLength() {
+		long length = buffer.size();
+		for(ChannelContent content : channels) {
+			length += content.preceding.length + content.length;
+		}
+		return length;
+	}
+	
+	/**
+	 * Writes the status line and the headers, except <code>Content-Length</code>
+	 * which is computed on the actual content; the header terminator is not
+	 * written.
+	 * 
+	 * @param sb
+	 *   a string buffer to be reused for formatting.
+	 * @throws IOException
+	 */
+	protected void writeStatusAndHeaders(StringBuffer sb) throws IOException {
+		// write out status first
+		stream.write(formatHttpStatus(sb, status));
+		
+		// write headers next
+		for(Entry<String, String[]> header : headers.entrySet()) {
+			// content length is automatically calculated on the buffered data
+			if(!header.getKey().equalsIgnoreCase("Content-Length")) {
+				stream.write(formatHttpHeader(sb, header.getKey(), header.getValue()));
+			}
+		}
+	}
+	
+	/**
+	 * Returns whether the output has been flushed, status and headers first.
+	 * 
+	 * @see org.dihedron.ehttpd.server.Output#isCommitted()
+	 */
+	@Override
+	public boolean isCommitted() {
+		return flushed;
+	}
+	
+	/**
+	 * Flushes data to the client stream.
+	 * 
+	 * @see org.dihedron.ehttpd.server.Output#flush()
+	 */
+	@Override
+	public void flush() throws ServerException {
+		
+		if(flushed) {
+			logger.debug("output already flushed");
+		} else {
+			logger.debug("flushing managed output");		
+		
+			try {
+				if(autoETag) {
+					applyAutoETag();
+				}
+			
+				StringBuffer sb = new StringBuffer();
+		
+				// write out status and headers first
+				writeStatusAndHeaders(sb);
+				
+				// always provide the content length, so the connection can be kept alive,
+				// unless the status rules out a body: a 304 response would otherwise
+				// claim the representation the client has cached is empty
+				if(status != Status.STATUS_204 && status != Status.STATUS_304) {
+					sb.setLength(0);
+					sb.append("Content-Length: ").append(getContentLength()).append(NEWLINE);
+					stream.write(sb.toString().getBytes());
+				}
+				
+				// append header terminator (NEWLINE on its own)
+				stream.write(NEWLINE.getBytes());
+				
+				// write content, transferring channel data straight to the client
+				if(headOnly) {
+					logger.debug("discarding {} bytes of content of HEAD response", getContentLength());
+					for(ChannelContent content : channels) {
+						content.channel.close();
+					}
+				} else {
+					logger.debug("outputting {} bytes of content", getContentLength());
+					for(ChannelContent content : channels) {
+						stream.write(content.preceding);
+						transfer(content.channel, content.length);
+					}
+					buffer.writeTo(stream);
+					logger.debug("content written to stream");
+				}
+				channels.clear();
+				
+				stream.flush();
+				
+				// this response should not be resent, should a 
+				// second call to this method erroneously occur
+				flushed = true;
+				
+			} catch(IOException e) {
+				throw new ServerException("I/O error flushing stream", e);
+			}
+		}
+	}
+	
+	/**
+	 * Computes the entity tag of the buffered content and, if the client has
+	 * a representation with the same tag, turns the response into a <code>
+	 * 304 Not Modified</code> one; content transferred from channels is never
+	 * read just to hash it, so such responses are left alone.
+	 * 
+	 * @throws IOException
+	 */
+	private void applyAutoETag() throws IOException {
+		if(status != Status.STATUS_200 || !channels.isEmpty()) {
+			return;
+		}
+		for(String key : headers.keySet()) {
+			if(key.equalsIgnoreCase("ETag")) {
+				return;
+			}
+		}
+		HashingOutputStream hash = new HashingOutputStream();
+		buffer.writeTo(hash);
+		String etag = "W/\"" + Long.toHexString(hash.getHash()) + "\"";
+		headers.put("ETag", new String[] { etag });
+		if(ifNoneMatch != null && matches(ifNoneMatch, etag)) {
+			logger.debug("content matches entity tag {}, answering with 304", etag);
+			status = Status.STATUS_304;
+			buffer.reset();
+		}
+	}
+	
+	/**
+	 * Checks whether an entity tag appears in the value of an <code>
+	 * If-None-Match</code> header, using the weak comparison the header calls
+	 * for.
+	 * 
+	 * @param header
+	 *   the value of the header.
+	 * @param etag
+	 *   the weak entity tag of the content.
+	 * @return
+	 *   whether the header matches the tag.
+	 */
+	static boolean matches(String header, String etag) {
+		String opaque = etag.substring(2);
+		for(String tag : header.split(",")) {
+			tag = tag.trim();
+			if(tag.startsWith("W/")) {
+				tag = tag.substring(2);
+			}
+			if(tag.equals("*") || tag.equals(opaque)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Flushes the output data stream, and closes it.
+	 */
+	public void close() throws ServerException {
+		try {
+			stream.flush();
+			stream.close();
+		} catch(IOException e) {
+			throw new ServerException("I/O error closing stream");
+		}
+	}
+	
+	/**
+	 * Content provided through a channel.
+	 * 
+	 * @author Andrea Funto'
+	 */
+	protected static class ChannelContent {
+		
+		/**
+		 * The buffered content preceding the channel data.
+		 */
+		byte [] preceding;
+		
+		/**
+		 * The channel providing the data.
+		 */
+		ReadableByteChannel channel;
+		
+		/**
+		 * The number of bytes to be read from the channel.
+		 */
+		long length;
+		
+		/**
+		 * Constructor.
+		 * 
+		 * @param preceding
+		 *   the buffered content preceding the channel data.
+		 * @param channel
+		 *   the channel providing the data.
+		 * @param length
+		 *   the number of bytes to be read from the channel.
+		 */
+		ChannelContent(byte [] preceding, ReadableByteChannel channel, long length) {
+			this.preceding = preceding;
+			this.channel = channel;
+			this.length = length;
+		}
+	}
+	
+	/**
+	 * A stream that discards the data written to it, and computes their 64-bit
+	 * FNV-1a hash: it is not cryptographic, but it is fast and spreads well 
+	 * enough to tell versions of a page apart.
+	 * 
+	 * @author Andrea Funto'
+	 */
+	private static class HashingOutputStream extends OutputStream {
+		
+		/**
+		 * The FNV-1a 64-bit offset basis.
+		 */
+		private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+		
+		/**
+		 * The FNV-1a 64-bit prime.
+		 */
+		private static final long PRIME = 0x100000001b3L;
+		
+		/**
+		 * The hash of the data written so far.
+		 */
+		private long hash = OFFSET_BASIS;
+		
+		@Override
+		public void write(int b) {
+			hash ^= b & 0xff;
+			hash *= PRIME;
+		}
+		
+		@Override
+		public void write(byte[] data, int offset, int length) {
+			long hash = this.hash;
+			for(int i = offset; i < offset + length; ++i) {
+				hash ^= data[i] & 0xff;
+				hash *= PRIME;
+			}
+			this.hash = hash;
+		}
+		
+		/**
+		 * Returns the hash of the data written so far.
+		 */
+		long getHash() {
+			return hash;
+		}
+	}
+}
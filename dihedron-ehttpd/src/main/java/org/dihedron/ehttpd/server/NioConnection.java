@@ -0,0 +1,939 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ *
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.dihedron.ehttpd.exceptions.BadRequest;
+import org.dihedron.ehttpd.exceptions.RequestEntityTooLarge;
+import org.dihedron.ehttpd.exceptions.ServerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The state of a client connection in non-blocking mode: it accumulates the
+ * incoming bytes until a complete request (request line, headers and body as
+ * per its <code>Content-Length</code> or chunked transfer encoding, spilled to
+ * disk if large) is available, then hands it over to a
+ * <code>NioHttpServerWorker</code>; the response produced by the worker is
+ * queued and written out by the owning <code>SelectorLoop</code>. At any time
+ * the connection has at most one deadline, depending on what it is waiting 
+ * for: the rest of the request head, more of the body, the client to accept
+ * more of the response, or the next request; no deadline applies while the 
+ * request is being dispatched.
+ *
+ * @author Andrea Funto'
+ */
+class NioConnection {
+
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(NioConnection.class);
+
+	/**
+	 * The size of the buffer used to read from the channel.
+	 */
+	private static final int READ_BUFFER_SIZE = 8192;
+
+	/**
+	 * The client channel.
+	 */
+	private SocketChannel channel;
+
+	/**
+	 * The selection key of the channel.
+	 */
+	private SelectionKey key;
+
+	/**
+	 * The I/O loop owning this connection.
+	 */
+	private SelectorLoop loop;
+
+	/**
+	 * The server, providing the dispatcher and the connection settings.
+	 */
+	private HttpServer server;
+
+	/**
+	 * The executor on which the request is dispatched.
+	 */
+	private Executor executor;
+
+	/**
+	 * The buffer used to read from the channel.
+	 */
+	private ByteBuffer input = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+	/**
+	 * The bytes received so far.
+	 */
+	private byte [] received = new byte[READ_BUFFER_SIZE];
+
+	/**
+	 * The number of valid bytes in the <code>received</code> array.
+	 */
+	private int size = 0;
+
+	/**
+	 * The incremental parser of the request line and headers, which resumes
+	 * where it left off at each read.
+	 */
+	private HttpRequestParser parser = new HttpRequestParser();
+
+	/**
+	 * The request line and headers, once completely received.
+	 */
+	private HttpQuery query = null;
+	
+	/**
+	 * The time the first byte of the current request head was seen, in
+	 * nanoseconds, or 0 if none has been yet.
+	 */
+	private long headStarted = 0;
+	
+	/**
+	 * The time the first byte of the request received was seen, in 
+	 * nanoseconds.
+	 */
+	private long requestStarted = 0;
+	
+	/**
+	 * The number of bytes of response data queued on the connection; it is
+	 * only touched by the worker servicing the current request.
+	 */
+	private long written = 0;
+
+	/**
+	 * The request body, which is filled as data is received once the headers
+	 * are complete.
+	 */
+	private RequestBody body = null;
+
+	/**
+	 * The decoder of the request body, if sent with chunked transfer encoding.
+	 */
+	private ChunkedDecoder decoder = null;
+
+	/**
+	 * The number of body bytes still to be received, as per the <code>
+	 * Content-Length</code> header.
+	 */
+	private long bodyRemaining = 0;
+
+	/**
+	 * Whether the request has been received in full.
+	 */
+	private boolean requestReceived = false;
+
+	/**
+	 * The response data waiting to be written out.
+	 */
+	private Queue<Outbound> outbound = new ConcurrentLinkedQueue<Outbound>();
+	
+	/**
+	 * The remote address, counted against the limit of connections per client
+	 * until the connection is closed.
+	 */
+	private InetAddress address;
+
+	/**
+	 * Whether the response has been completely produced.
+	 */
+	private volatile boolean completed = false;
+
+	/**
+	 * Whether the connection should be kept open after the current response.
+	 */
+	private volatile boolean persistent = false;
+
+	/**
+	 * The number of requests received on this connection.
+	 */
+	private int served = 0;
+
+	/**
+	 * The deadlines on reading requests and writing responses.
+	 */
+	private TimeoutControl timeouts;
+
+	/**
+	 * The current deadline, if any; deadlines are only set and cancelled on the
+	 * loop thread.
+	 */
+	private TimerWheel.Timeout deadline = null;
+
+	/**
+	 * The task run when the current deadline expires, if any.
+	 */
+	private Expiry expiry = null;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param channel
+	 *   the client channel.
+	 * @param loop
+	 *   the I/O loop owning the connection.
+	 * @param server
+	 *   the server, providing the dispatcher and the connection settings.
+	 * @param executor
+	 *   the executor on which requests are dispatched.
+	 */
+	NioConnection(SocketChannel channel, SelectorLoop loop, HttpServer server, Executor executor) {
+		this.channel = channel;
+		this.loop = loop;
+		this.server = server;
+		this.executor = executor;
+		this.address = channel.socket().getInetAddress();
+		this.timeouts = server.getTimeoutControl();
+	}
+
+	/**
+	 * Sets the selection key of the underlying channel.
+	 *
+	 * @param key
+	 *   the selection key.
+	 */
+	void setKey(SelectionKey key) {
+		this.key = key;
+	}
+
+	/**
+	 * Returns the underlying client channel.
+	 *
+	 * @return
+	 *   the underlying client channel.
+	 */
+	SocketChannel getChannel() {
+		return channel;
+	}
+
+	/**
+	 * Returns the number of requests received on this connection, including
+	 * the current one.
+	 *
+	 * @return
+	 *   the number of requests received on this connection.
+	 */
+	int getRequestCount() {
+		return served;
+	}
+
+	/**
+	 * Returns the request line and headers of the request received.
+	 *
+	 * @return
+	 *   the parsed request line and headers.
+	 */
+	HttpQuery getQuery() {
+		return query;
+	}
+
+	/**
+	 * Returns the body of the request received.
+	 *
+	 * @return
+	 *   the request body.
+	 */
+	RequestBody getBody() {
+		return body;
+	}
+
+	/**
+	 * Returns the time the first byte of the request received was seen.
+	 *
+	 * @return
+	 *   the time, in nanoseconds.
+	 */
+	long getRequestStarted() {
+		return requestStarted;
+	}
+
+	/**
+	 * Returns the number of bytes of response data queued on the connection 
+	 * so far.
+	 *
+	 * @return
+	 *   the number of bytes, headers included.
+	 */
+	long getWritten() {
+		return written;
+	}
+
+	/**
+	 * Returns a stream on which the response can be written; data is queued
+	 * for writing at each call to <code>flush()</code>. File data is not 
+	 * copied into the stream but queued as is, and transferred to the client 
+	 * by the operating system when the socket is writable.
+	 *
+	 * @return
+	 *   a stream on which the response can be written.
+	 */
+	OutputStream getOutputStream() {
+		return new ConnectionOutputStream();
+	}
+
+	/**
+	 * Called by the worker when the response has been completely produced:
+	 * the loop will write it out and then either close the connection or
+	 * wait for the next request on it.
+	 *
+	 * @param persistent
+	 *   whether the connection should be kept open.
+	 */
+	void complete(boolean persistent) {
+		this.persistent = persistent;
+		completed = true;
+		loop.writable(this);
+	}
+
+	/**
+	 * Starts waiting for the first request on the connection, whose head must
+	 * be received within the header timeout.
+	 */
+	void awaitRequest() {
+		schedule(TimeoutControl.Kind.HEADER);
+	}
+
+	/**
+	 * Checks whether the connection is waiting for a request to start, so that
+	 * it can be closed without cutting a request short.
+	 *
+	 * @return
+	 *   whether no byte of the next request has been received.
+	 */
+	boolean isIdle() {
+		return query == null && !isHeadStarted() && !completed;
+	}
+	
+	/**
+	 * Checks whether a request is being received on the connection, i.e. its
+	 * head or body has started arriving but it has not been dispatched yet.
+	 * 
+	 * @return
+	 *   whether a request is partly received.
+	 */
+	boolean isReceiving() {
+		return query == null ? isHeadStarted() : !requestReceived;
+	}
+	
+	/**
+	 * Checks whether the head of the next request has started arriving; its
+	 * bytes may be waiting to be parsed, or already be held by the parser,
+	 * which consumes partial heads.
+	 * 
+	 * @return
+	 *   whether some bytes of the next request head have been received.
+	 */
+	private boolean isHeadStarted() {
+		return size > 0 || !parser.isEmpty();
+	}
+
+	/**
+	 * Reads all available data from the channel; if a complete request is
+	 * available, it stops listening for input and dispatches it. Each read is
+	 * handed over to the parser and the request body straight away, so that
+	 * a fast upload is spilled to disk as it arrives, rather than piling up
+	 * in memory; once the request is complete, the rest is left in the socket
+	 * until the connection is ready for the next one.
+	 *
+	 * @throws IOException
+	 */
+	void onReadable() throws IOException {
+		int read = 0;
+		while((read = channel.read(input)) > 0) {
+			input.flip();
+			append(input);
+			input.clear();
+			dispatchIfComplete();
+			if(!isReading()) {
+				return;
+			}
+		}
+		if(read == -1) {
+			logger.trace("client closed the connection");
+			close();
+		}
+	}
+
+	/**
+	 * Checks whether the connection is still listening for input, i.e. it has
+	 * not been closed and no request has been dispatched on it.
+	 *
+	 * @return
+	 *   whether more data should be read.
+	 */
+	private boolean isReading() {
+		return channel.isOpen() && key.isValid() && (key.interestOps() & SelectionKey.OP_READ) != 0;
+	}
+
+	/**
+	 * Dispatches the request if it has been completely received.
+	 */
+	private void dispatchIfComplete() {
+		try {
+			if(!isRequestComplete()) {
+				if(query != null) {
+					// the body must keep flowing
+					schedule(TimeoutControl.Kind.BODY);
+				} else if(isHeadStarted() && expiry != null && expiry.kind == TimeoutControl.Kind.IDLE) {
+					// the next request has started
+					schedule(TimeoutControl.Kind.HEADER);
+				}
+			} else {
+				logger.trace("complete request received ({} bytes of body), dispatching", body.getLength());
+				cancelDeadline();
+				key.interestOps(0);
+				++served;
+				AdmissionControl admission = server.getAdmissionControl();
+				if(!admission.begin()) {
+					logger.debug("too many requests in flight, rejecting request");
+					reject();
+					return;
+				}
+				try {
+					executor.execute(new NioHttpServerWorker(this, server.getRequestDispatcher(), server));
+				} catch(RejectedExecutionException e) {
+					logger.debug("work queue full, rejecting request");
+					admission.end();
+					admission.reject();
+					reject();
+				}
+			}
+		} catch(BadRequest e) {
+			// the rest of the stream cannot be told apart from the body
+			logger.warn("invalid request framing, closing connection: {}", e.getMessage());
+			refuse(Status.STATUS_400);
+		} catch(RequestEntityTooLarge e) {
+			// the body is not read, nor is anything that follows it
+			logger.warn("request body too large, closing connection: {}", e.getMessage());
+			refuse(Status.STATUS_413);
+		} catch(ServerException e) {
+			logger.warn("invalid request received, closing connection: {}", e.getMessage());
+			close();
+		} catch(IOException e) {
+			logger.warn("error receiving request body, closing connection: {}", e.getMessage());
+			close();
+		}
+	}
+
+	/**
+	 * Writes as much of the pending response as the channel accepts; when
+	 * the whole response is out, the connection is either closed or made
+	 * ready for the next request, which may already have been received if
+	 * the client is pipelining requests.
+	 *
+	 * @throws IOException
+	 */
+	void onWritable() throws IOException {
+		// read before draining: once completed, no more data will be queued
+		boolean done = completed;
+		// the client is accepting data, give it more time
+		schedule(TimeoutControl.Kind.WRITE);
+		Outbound data = null;
+		while((data = outbound.peek()) != null) {
+			if(!data.writeTo(channel)) {
+				// socket buffer full, wait for the next write event
+				return;
+			}
+			outbound.poll().release();
+		}
+		if(!done) {
+			// waiting for the worker, not for the client
+			cancelDeadline();
+			key.interestOps(0);
+		} else if(!persistent) {
+			close();
+		} else {
+			next();
+		}
+	}
+
+	/**
+	 * Discards the request that has just been serviced, keeping any bytes of
+	 * the following one, and starts waiting for the rest of it.
+	 */
+	private void next() {
+		parser.reset();
+		query = null;
+		body.dispose();
+		body = null;
+		decoder = null;
+		bodyRemaining = 0;
+		requestReceived = false;
+		completed = false;
+		persistent = false;
+		if(size == 0 && server.isStopped()) {
+			logger.debug("server shutting down, closing connection");
+			close();
+			return;
+		}
+		schedule(size == 0 ? TimeoutControl.Kind.IDLE : TimeoutControl.Kind.HEADER);
+		key.interestOps(SelectionKey.OP_READ);
+		dispatchIfComplete();
+	}
+
+	/**
+	 * Switches the connection to write interest; this must be called on the
+	 * loop thread.
+	 */
+	void enableWrites() {
+		if(key.isValid()) {
+			key.interestOps(SelectionKey.OP_WRITE);
+			schedule(TimeoutControl.Kind.WRITE);
+		}
+	}
+
+	/**
+	 * Replaces the current deadline with a new one.
+	 *
+	 * @param kind
+	 *   the kind of deadline.
+	 */
+	private void schedule(TimeoutControl.Kind kind) {
+		TimeoutControl.cancel(deadline);
+		expiry = new Expiry(kind);
+		deadline = timeouts.schedule(expiry, kind);
+	}
+
+	/**
+	 * Cancels the current deadline, if any.
+	 */
+	private void cancelDeadline() {
+		TimeoutControl.cancel(deadline);
+		deadline = null;
+		expiry = null;
+	}
+
+	/**
+	 * Handles the expiry of a deadline on the loop thread: a request still 
+	 * being received is answered with a <code>408 Request Timeout</code>
+	 * response, otherwise the connection is simply closed.
+	 *
+	 * @param expired
+	 *   the task of the expired deadline.
+	 */
+	private void onTimeout(Expiry expired) {
+		if(expired != expiry || !channel.isOpen()) {
+			// superseded, or already closed
+			return;
+		}
+		logger.debug("{} timeout expired on connection from {}", expired.kind, address);
+		cancelDeadline();
+		timeouts.timedOut(expired.kind);
+		if(expired.kind == TimeoutControl.Kind.HEADER || expired.kind == TimeoutControl.Kind.BODY) {
+			try {
+				key.interestOps(0);
+				TimeoutControl.writeRequestTimeout(getOutputStream());
+				complete(false);
+				return;
+			} catch(IOException e) {
+				logger.debug("error writing request timeout response", e);
+			}
+		}
+		close();
+	}
+
+	/**
+	 * Refuses the request with an empty response and closes the connection 
+	 * once it has been written out, discarding whatever else the client has 
+	 * sent.
+	 * 
+	 * @param status
+	 *   the status of the response.
+	 */
+	private void refuse(Status status) {
+		cancelDeadline();
+		key.interestOps(0);
+		size = 0;
+		try {
+			HttpServerWorker.writeError(getOutputStream(), status);
+			complete(false);
+		} catch(IOException e) {
+			logger.debug("error writing error response", e);
+			close();
+		}
+	}
+
+	/**
+	 * Answers the request with a <code>503 Service Unavailable</code> response
+	 * and closes the connection once it has been written out.
+	 * 
+	 * @throws IOException
+	 */
+	private void reject() throws IOException {
+		server.getAdmissionControl().writeServiceUnavailable(getOutputStream());
+		complete(false);
+	}
+
+	/**
+	 * Closes the connection.
+	 */
+	void close() {
+		cancelDeadline();
+		if(address != null) {
+			server.getAdmissionControl().release(address);
+			address = null;
+		}
+		try {
+			if(key != null) {
+				key.cancel();
+			}
+			Outbound data = null;
+			while((data = outbound.poll()) != null) {
+				data.release();
+			}
+			if(body != null) {
+				body.dispose();
+			}
+			channel.close();
+		} catch(IOException e) {
+			logger.error("I/O exception closing client channel", e);
+		}
+	}
+
+	/**
+	 * Appends the contents of the given buffer to the received data.
+	 *
+	 * @param buffer
+	 *   a buffer ready to be read.
+	 */
+	private void append(ByteBuffer buffer) {
+		int length = buffer.remaining();
+		if(size + length > received.length) {
+			byte [] larger = new byte[Math.max(received.length * 2, size + length)];
+			System.arraycopy(received, 0, larger, 0, size);
+			received = larger;
+		}
+		buffer.get(received, size, length);
+		size += length;
+	}
+
+	/**
+	 * Checks whether the data received so far contains a complete request: 
+	 * the bytes received since the last call are fed to the parser until the
+	 * headers are complete, then to the request body, and discarded; any bytes
+	 * past the end of the request are kept for the next one.
+	 *
+	 * @return
+	 *   whether a complete request has been received.
+	 * @throws ServerException
+	 *   if the request is malformed or its headers are too large, or its 
+	 *   body exceeds the maximum size, as a <code>RequestEntityTooLarge</code>.
+	 * @throws IOException
+	 *   if the body framing is invalid or the body cannot be stored.
+	 */
+	private boolean isRequestComplete() throws ServerException, IOException {
+		int consumed = 0;
+		try {
+			if(query == null) {
+				if(headStarted == 0 && size > 0) {
+					headStarted = System.nanoTime();
+				}
+				ByteBuffer buffer = ByteBuffer.wrap(received, 0, size);
+				boolean complete = parser.parse(buffer);
+				consumed = buffer.position();
+				if(!complete) {
+					return false;
+				}
+				query = parser.getQuery();
+				ServerMetrics metrics = server.getMetrics();
+				if(metrics != null) {
+					metrics.getParse().record(System.nanoTime() - headStarted);
+				}
+				requestStarted = headStarted;
+				headStarted = 0;
+				startBody(consumed == size);
+			}
+			if(!requestReceived) {
+				if(decoder != null) {
+					consumed += decoder.decode(received, consumed, size, body);
+					Request.checkBodySize(decoder.getLength(), server.getMaxRequestBodySize());
+					requestReceived = decoder.isComplete();
+				} else {
+					int count = (int)Math.min(bodyRemaining, size - consumed);
+					body.write(received, consumed, count);
+					consumed += count;
+					bodyRemaining -= count;
+					if(bodyRemaining == 0) {
+						body.close();
+						requestReceived = true;
+					}
+				}
+			}
+			return requestReceived;
+		} finally {
+			System.arraycopy(received, consumed, received, 0, size - consumed);
+			size -= consumed;
+		}
+	}
+
+	/**
+	 * Prepares to receive the body of the request whose headers have just been
+	 * parsed, according to its framing.
+	 *
+	 * @param pending
+	 *   whether no byte of the body has been received yet.
+	 * @throws ServerException
+	 *   if the end of the body cannot be told reliably, as a <code>BadRequest
+	 *   </code>, if its declared length exceeds the maximum size, as a <code>
+	 *   RequestEntityTooLarge</code>, or the interim response cannot be sent.
+	 */
+	private void startBody(boolean pending) throws ServerException {
+		body = new RequestBody(server.getRequestBodyThreshold());
+		long length = Request.getBodyLength(query);
+		if(length == Request.CHUNKED) {
+			decoder = new ChunkedDecoder();
+		} else {
+			Request.checkBodySize(length, server.getMaxRequestBodySize());
+			bodyRemaining = length;
+		}
+		if(pending && (decoder != null || bodyRemaining > 0) && HttpServerWorker.isExpectingContinue(query)) {
+			sendContinue();
+		}
+	}
+
+	/**
+	 * Sends the interim <code>100 Continue</code> response; since nothing 
+	 * else has been written on the connection since the previous response was
+	 * completed, it fits in the socket buffer.
+	 *
+	 * @throws ServerException
+	 *   if the response cannot be written.
+	 */
+	private void sendContinue() throws ServerException {
+		ByteBuffer buffer = ByteBuffer.wrap(HttpServerWorker.CONTINUE);
+		try {
+			while(buffer.hasRemaining() && channel.write(buffer) > 0) {
+				// keep writing
+			}
+		} catch(IOException e) {
+			throw new ServerException("error writing interim response", e);
+		}
+		if(buffer.hasRemaining()) {
+			throw new ServerException("could not write interim response");
+		}
+	}
+	
+	/**
+	 * The stream on which workers write the response.
+	 */
+	private class ConnectionOutputStream extends ByteArrayOutputStream implements ChannelSink {
+		
+		@Override
+		public void flush() {
+			if(size() > 0) {
+				written += size();
+				outbound.add(new BufferOutbound(ByteBuffer.wrap(toByteArray())));
+				reset();
+				// partial responses (e.g. chunks) are written out straight away
+				loop.writable(NioConnection.this);
+			}
+		}
+
+		/**
+		 * @see org.dihedron.ehttpd.server.ChannelSink#transferFrom(java.nio.channels.ReadableByteChannel, long)
+		 */
+		public void transferFrom(ReadableByteChannel source, long length) throws IOException {
+			flush();
+			if(source instanceof FileChannel) {
+				FileChannel file = (FileChannel)source;
+				outbound.add(new FileOutbound(file, file.position(), length));
+				written += length;
+				return;
+			}
+			// no way to hand it over to the socket, copy it
+			try {
+				ByteBuffer buffer = ByteBuffer.allocate((int)Math.min(length, READ_BUFFER_SIZE));
+				long remaining = length;
+				while(remaining > 0) {
+					buffer.clear();
+					if(remaining < buffer.capacity()) {
+						buffer.limit((int)remaining);
+					}
+					if(source.read(buffer) == -1) {
+						throw new IOException("channel exhausted while being sent");
+					}
+					remaining -= buffer.position();
+					write(buffer.array(), 0, buffer.position());
+				}
+				flush();
+			} finally {
+				source.close();
+			}
+		}
+	}
+	
+	/**
+	 * The task run by the timer wheel when a deadline expires; it hands the
+	 * expiry over to the loop thread.
+	 */
+	private class Expiry implements Runnable {
+
+		/**
+		 * The kind of deadline.
+		 */
+		private final TimeoutControl.Kind kind;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param kind
+		 *   the kind of deadline.
+		 */
+		Expiry(TimeoutControl.Kind kind) {
+			this.kind = kind;
+		}
+
+		public void run() {
+			loop.execute(new Runnable() {
+				public void run() {
+					onTimeout(Expiry.this);
+				}
+			});
+		}
+	}
+
+	/**
+	 * A piece of response data waiting to be written out.
+	 */
+	private interface Outbound {
+		
+		/**
+		 * Writes as much data as the channel accepts.
+		 * 
+		 * @param channel
+		 *   the client channel.
+		 * @return
+		 *   whether all data has been written.
+		 * @throws IOException
+		 */
+		boolean writeTo(SocketChannel channel) throws IOException;
+		
+		/**
+		 * Releases any resources held, once the data has been written or the
+		 * connection has been closed.
+		 */
+		void release();
+	}
+	
+	/**
+	 * Response data in memory.
+	 */
+	private static class BufferOutbound implements Outbound {
+		
+		/**
+		 * The data.
+		 */
+		private ByteBuffer buffer;
+		
+		/**
+		 * Constructor.
+		 * 
+		 * @param buffer
+		 *   the data.
+		 */
+		BufferOutbound(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+		
+		public boolean writeTo(SocketChannel channel) throws IOException {
+			channel.write(buffer);
+			return !buffer.hasRemaining();
+		}
+		
+		public void release() {
+		}
+	}
+	
+	/**
+	 * A region of a file, transferred with <code>FileChannel.transferTo</code>
+	 * so that data does not go through the heap.
+	 */
+	private static class FileOutbound implements Outbound {
+		
+		/**
+		 * The file.
+		 */
+		private FileChannel file;
+		
+		/**
+		 * The position of the next byte to be written.
+		 */
+		private long position;
+		
+		/**
+		 * The number of bytes still to be written.
+		 */
+		private long remaining;
+		
+		/**
+		 * Constructor.
+		 * 
+		 * @param file
+		 *   the file.
+		 * @param position
+		 *   the position of the first byte of the region.
+		 * @param length
+		 *   the length of the region.
+		 */
+		FileOutbound(FileChannel file, long position, long length) {
+			this.file = file;
+			this.position = position;
+			this.remaining = length;
+		}
+		
+		public boolean writeTo(SocketChannel channel) throws IOException {
+			while(remaining > 0) {
+				long transferred = file.transferTo(position, remaining, channel);
+				if(transferred <= 0) {
+					if(position >= file.size()) {
+						throw new IOException("file truncated while being sent");
+					}
+					return false;
+				}
+				position += transferred;
+				remaining -= transferred;
+			}
+			return true;
+		}
+		
+		public void release() {
+			try {
+				file.close();
+			} catch(IOException e) {
+				logger.debug("I/O exception closing file channel", e);
+			}
+		}
+	}
+}
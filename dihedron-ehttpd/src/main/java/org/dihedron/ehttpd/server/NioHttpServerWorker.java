@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ *
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import java.io.IOException;
+import java.net.Socket;
+
+import org.dihedron.ehttpd.exceptions.ServerException;
+import org.dihedron.ehttpd.notifications.Notifications;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The counterpart of <code>HttpServerWorker</code> in non-blocking mode: it
+ * dispatches a request that has been completely read by the I/O loop, and
+ * queues the response on the connection, for the loop to write it out.
+ *
+ * @author Andrea Funto'
+ */
+class NioHttpServerWorker implements Runnable {
+
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(NioHttpServerWorker.class);
+
+	/**
+	 * The connection to the client.
+	 */
+	private NioConnection connection = null;
+
+	/**
+	 * The internal dispatcher; this object decides where to route requests.
+	 */
+	private RequestDispatcher dispatcher = null;
+
+	/**
+	 * The server, providing the settings for persistent connections.
+	 */
+	private HttpServer server = null;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param connection
+	 *   the connection on which a complete request has been received.
+	 * @param dispatcher
+	 *   the object that decides where to route requests.
+	 * @param server
+	 *   the server, providing the settings for persistent connections.
+	 */
+	NioHttpServerWorker(NioConnection connection, RequestDispatcher dispatcher, HttpServer server) {
+		this.connection = connection;
+		this.dispatcher = dispatcher;
+		this.server = server;
+	}
+
+	public void run() {
+		Socket client = connection.getChannel().socket();
+		boolean persistent = false;
+		Request request = null;
+		try {
+			logger.debug("servicing client {}:{}", client.getInetAddress(), client.getPort());
+
+			// fill the handler context
+			HandlerContext.setRequestDiaspatcher(dispatcher);
+
+			// the request has already been read in full by the I/O loop
+			request = HttpServerWorker.prepareRequest(client, new Request(connection.getQuery(), connection.getBody()), server.getHostNameResolver());
+
+			persistent = server.isUseKeepAlive()
+					&& !server.isStopped()
+					&& connection.getRequestCount() < server.getMaxKeepAliveRequests()
+					&& HttpServerWorker.isKeepAlive(request);
+
+			// the response is queued on the connection
+			Response response = HttpServerWorker.prepareResponse(request, connection.getOutputStream(), persistent, server.getChunkedOutputThreshold(), server.isUseAutoETag());
+
+			// dispatcher will lookup and call the appropriate handler
+			AdmissionControl admission = server.getAdmissionControl();
+			int inFlight = admission.getInFlight();
+			long written = connection.getWritten();
+			long started = System.nanoTime();
+			dispatcher.dispatch(request, response);
+			long dispatched = System.nanoTime();
+			admission.sample(dispatched - started, inFlight);
+			persistent = persistent && !HttpServerWorker.isClosing(server, response);
+
+			// flush the response data to the connection
+			response.flush();
+			long flushed = System.nanoTime();
+			ServerMetrics metrics = server.getMetrics();
+			if(metrics != null) {
+				metrics.getDispatch().record(dispatched - started);
+				metrics.getFlush().record(flushed - dispatched);
+				metrics.recordResponse(response.getStatus(), connection.getWritten() - written);
+			}
+			AccessLog accessLog = server.getAccessLog();
+			if(accessLog != null) {
+				accessLog.log(client.getInetAddress(), request.getHttpQuery(), response.getStatus(), connection.getWritten() - written, flushed - connection.getRequestStarted());
+			}
+			persistent = persistent && response.getOutput().isPersistent();
+
+			logger.debug("client serviced");
+		} catch(ServerException e) {
+			logger.error("error servicing client", e);
+			persistent = false;
+		} catch(IOException e) {
+			logger.error("I/O exception servicing client", e);
+			persistent = false;
+		} finally {
+			if(request != null) {
+				request.release();
+			}
+			// do not let the pooled thread retain per-request state
+			HandlerContext.release();
+			Notifications.release();
+			server.getAdmissionControl().end();
+			
+			// let the I/O loop write out the response and close or reuse the connection
+			connection.complete(persistent);
+		}
+	}
+}
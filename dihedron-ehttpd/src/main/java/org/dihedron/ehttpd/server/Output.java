@@ -1,86 +1,225 @@
-/**
- * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
- * 
- * This file is part of the Dihedron embeddable web container ("e-httpd").
- *
- * "e-httpd" is free software: you can redistribute it and/or modify it under 
- * the terms of the GNU Lesser General Public License as published by the Free 
- * Software Foundation, either version 3 of the License, or (at your option) 
- * any later version.
- *
- * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
- * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
- * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
- * details.
- *
- * You should have received a copy of the GNU Lesser General Public License 
- * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
- */
-package org.dihedron.ehttpd.server;
-
-import java.io.OutputStream;
-
-import org.dihedron.ehttpd.exceptions.ServerException;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-public abstract class Output {
-	
-	private static Logger logger = LoggerFactory.getLogger(Output.class);
-	
-	public static final String NEWLINE = "\r\n";
-	
-	protected OutputStream stream = null;
-		
-	public Output(OutputStream stream) {
-		this.stream = stream;
-	}
-	
-	public abstract void writeStatus(Status status) throws ServerException;
-	
-	public abstract void writeHeader(String key, String... values) throws ServerException;
-	
-	public abstract void writeContent(String text) throws ServerException;
-	
-	public abstract void writeContent(byte[] data) throws ServerException;
-	
-	public abstract void flush() throws ServerException;
-	
-	public abstract void close() throws ServerException;
-	
-	protected byte[] formatHttpStatus(StringBuffer sb, Status status) {
-		logger.trace("formatting HTTP status line: '{}'", status);		
-		if(sb == null) {
-			logger.trace("allocating new string buffer");
-			sb = new StringBuffer();
-		} else {
-			logger.trace("reusing existing string buffer");
-			sb.setLength(0);
-		}
-		// write out status first
-		sb.append("HTTP/1.0").append(" ").append(status.toString()).append(NEWLINE);
-		logger.debug("outputting:'{}' ", sb.toString().trim());
-		return sb.toString().getBytes();		
-	}
-	
-	protected byte[] formatHttpHeader(StringBuffer sb, String key, String [] values) {
-		if(sb == null) {
-			sb = new StringBuffer();
-		} else {
-			sb.setLength(0);
-		}
-		boolean first = true;
-		sb.append(key);
-		for(String value : values) {
-			if(first) {
-				sb.append(": ").append(value);
-				first = false;
-			} else { 
-				sb.append(", ").append(value);
-			}
-		}			
-		sb.append(NEWLINE);
-		logger.debug("outputting: '{}'", sb.toString());
-		return sb.toString().getBytes();		
-	}
-}
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import org.dihedron.ehttpd.exceptions.ServerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public abstract class Output {
+	
+	private static Logger logger = LoggerFactory.getLogger(Output.class);
+	
+	public static final String NEWLINE = "\r\n";
+	
+	/**
+	 * The protocol version used in the status line by default.
+	 */
+	public static final String DEFAULT_PROTOCOL = "HTTP/1.0";
+	
+	/**
+	 * The size of the buffer used to copy data from channels that do not 
+	 * support direct transfers.
+	 */
+	private static final int TRANSFER_BUFFER_SIZE = 8192;
+	
+	protected OutputStream stream = null;
+	
+	/**
+	 * The protocol version used in the status line.
+	 */
+	protected String protocol = DEFAULT_PROTOCOL;
+		
+	public Output(OutputStream stream) {
+		this.stream = stream;
+	}
+	
+	/**
+	 * Sets the protocol version to be used in the status line; the server 
+	 * answers with the same version as the request, so that HTTP/1.1 clients 
+	 * can keep the connection open.
+	 * 
+	 * @param protocol
+	 *   the protocol version, e.g. "HTTP/1.1".
+	 */
+	public void setProtocol(String protocol) {
+		if(protocol != null) {
+			this.protocol = protocol;
+		}
+	}
+	
+	/**
+	 * Returns the protocol version used in the status line.
+	 * 
+	 * @return
+	 *   the protocol version used in the status line.
+	 */
+	public String getProtocol() {
+		return protocol;
+	}
+	
+	public abstract void writeStatus(Status status) throws ServerException;
+	
+	public abstract void writeHeader(String key, String... values) throws ServerException;
+	
+	public abstract void writeContent(String text) throws ServerException;
+	
+	public abstract void writeContent(byte[] data) throws ServerException;
+	
+	/**
+	 * Writes the given number of bytes from a channel, without reading them 
+	 * into memory first whenever possible; the output takes ownership of the
+	 * channel, and closes it once done.
+	 * 
+	 * @param channel
+	 *   the channel providing the data, e.g. a <code>FileChannel</code>.
+	 * @param length
+	 *   the number of bytes to be written.
+	 * @throws ServerException
+	 */
+	public abstract void writeContent(ReadableByteChannel channel, long length) throws ServerException;
+	
+	public abstract void flush() throws ServerException;
+	
+	/**
+	 * Returns whether, once flushed, the response leaves the connection in a 
+	 * state where it can be reused for another request; this is not the case
+	 * if the end of the content can only be signalled by closing it.
+	 * 
+	 * @return
+	 *   whether the connection can be kept open after the response.
+	 */
+	public boolean isPersistent() {
+		return true;
+	}
+	
+	/**
+	 * Returns whether the status and headers have already been sent, so that
+	 * they can no longer be changed.
+	 * 
+	 * @return
+	 *   whether the response has been committed.
+	 */
+	public boolean isCommitted() {
+		return false;
+	}
+	
+	public abstract void close() throws ServerException;
+	
+	protected byte[] formatHttpStatus(StringBuffer sb, Status status) {
+		logger.trace("formatting HTTP status line: '{}'", status);		
+		if(sb == null) {
+			logger.trace("allocating new string buffer");
+			sb = new StringBuffer();
+		} else {
+			logger.trace("reusing existing string buffer");
+			sb.setLength(0);
+		}
+		// write out status first
+		sb.append(protocol).append(" ").append(status.toString()).append(NEWLINE);
+		logger.debug("outputting:'{}' ", sb.toString().trim());
+		return sb.toString().getBytes();		
+	}
+	
+	protected byte[] formatHttpHeader(StringBuffer sb, String key, String [] values) {
+		if(sb == null) {
+			sb = new StringBuffer();
+		} else {
+			sb.setLength(0);
+		}
+		boolean first = true;
+		sb.append(key);
+		for(String value : values) {
+			if(first) {
+				sb.append(": ").append(value);
+				first = false;
+			} else { 
+				sb.append(", ").append(value);
+			}
+		}			
+		sb.append(NEWLINE);
+		logger.debug("outputting: '{}'", sb.toString());
+		return sb.toString().getBytes();		
+	}
+	
+	/**
+	 * Sends the given number of bytes from a channel to the client, after 
+	 * whatever has been written to the stream so far: if the connection can 
+	 * take the channel as is, the transfer is left to it; otherwise file data
+	 * is transferred with <code>FileChannel.transferTo</code>, and data from 
+	 * other channels is copied through a small buffer. The channel is closed
+	 * in any case.
+	 * 
+	 * @param channel
+	 *   the channel providing the data.
+	 * @param length
+	 *   the number of bytes to be sent.
+	 * @throws IOException
+	 */
+	protected void transfer(ReadableByteChannel channel, long length) throws IOException {
+		if(stream instanceof ChannelSink) {
+			((ChannelSink)stream).transferFrom(channel, length);
+			return;
+		}
+		try {
+			stream.flush();
+			WritableByteChannel target = Channels.newChannel(stream);
+			if(channel instanceof FileChannel) {
+				FileChannel file = (FileChannel)channel;
+				long position = file.position();
+				long end = position + length;
+				while(position < end) {
+					long transferred = file.transferTo(position, end - position, target);
+					if(transferred <= 0 && position >= file.size()) {
+						throw new IOException("file truncated while being sent");
+					}
+					position += transferred;
+				}
+			} else {
+				ByteBuffer buffer = ByteBuffer.allocate((int)Math.min(length, TRANSFER_BUFFER_SIZE));
+				long remaining = length;
+				while(remaining > 0) {
+					buffer.clear();
+					if(remaining < buffer.capacity()) {
+						buffer.limit((int)remaining);
+					}
+					if(channel.read(buffer) == -1) {
+						throw new IOException("channel exhausted while being sent");
+					}
+					buffer.flip();
+					remaining -= buffer.remaining();
+					while(buffer.hasRemaining()) {
+						target.write(buffer);
+					}
+				}
+			}
+			logger.debug("{} bytes transferred from channel", length);
+		} finally {
+			channel.close();
+		}
+	}
+}
@@ -1,234 +1,631 @@
-/**
- * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
- * 
- * This file is part of the Dihedron embeddable web container ("e-httpd").
- *
- * "e-httpd" is free software: you can redistribute it and/or modify it under 
- * the terms of the GNU Lesser General Public License as published by the Free 
- * Software Foundation, either version 3 of the License, or (at your option) 
- * any later version.
- *
- * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
- * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
- * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
- * details.
- *
- * You should have received a copy of the GNU Lesser General Public License 
- * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
- */
-package org.dihedron.ehttpd.server;
-
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
-
-import org.dihedron.ehttpd.exceptions.ServerException;
-
-
-
-/**
- * Maps the HTTP request, converting the raw bytes
- * into headers, cookies and request parameters.
- */
-public class Request {
-	
-	/**
-	 * The query object.
-	 */
-	protected HttpQuery query = null;
-		
-	/**
-	 * The input stream associated with the request.
-	 */
-	protected InputStream stream = null;
-	
-	/**
-	 * The remote host, at the client side.
-	 */
-	protected String remoteHost = null;
-	
-	/**
-	 * The remote client's network address.
-	 */
-	protected String remoteAddr = null;
-	
-	/**
-	 * The remote client's port.
-	 */
-	protected int remotePort = 0;
-	
-	/**
-	 * The local host at the server.
-	 */
-	protected String localHost = null;
-	
-	/**
-	 * The network address at the server that accepted the connection.
-	 */
-	protected String localAddr = null;
-	
-	/**
-	 * The local connection port at the server.
-	 */
-	protected int localPort = 0;
-	
-	/**
-	 * A store for parameters that must be passed along as by-products of the
-	 * request handling.
-	 */
-	protected Map<String, Object> parameters = new HashMap<String, Object>();
-
-	/**
-	 * Constructor.
-	 * 
-	 * @param stream
-	 *   the input stream.
-	 * @throws IOException
-	 */
-	Request(InputStream stream) throws ServerException {
-		
-		this.stream = stream;
-		
-		// parse the request line
-		query = new HttpQuery().parse(stream);
-	}
-	
-	/**
-	 * Sets a parameter in the request, for further down-stream handling.
-	 * 
-	 * @param key
-	 *   the parameter name.
-	 * @param value
-	 *   an object representing the parameter value.
-	 */
-	public void setParameter(String key, Object value) {
-		assert(key != null);
-		if(value == null) {
-			removeParameter(key);
-		} else {
-			parameters.put(key, value);
-		}
-	}
-	
-	/**
-	 * Removes a parameter from the parameters map.
-	 * 
-	 * @param key
-	 *   the parameter name.
-	 */
-	public void removeParameter(String key) {
-		assert(key != null);
-		parameters.remove(key);
-	}
-	
-	/**
-	 * Returns the set of all parameter names.
-	 * 
-	 * @return
-	 *   the parameter names.
-	 */
-	public Set<String> getParameterKeys() {
-		return parameters.keySet();
-	}
-	
-	/**
-	 * Returns the value of a parameter if available, <code>null</code> otherwise.
-	 * 
-	 * @param key
-	 *   the name of the parameter.
-	 * @return
-	 *   the parameter value, or <code>null</code>.
-	 */
-	public Object getParameter(String key) {
-		assert(key != null);
-		return parameters.get(key);
-	}
-	
-	
-	void setRemoteAddr(String remoteAddr) {
-		this.remoteAddr = remoteAddr;
-	}
-	
-	void setRemoteHost(String remoteHost) {
-		this.remoteHost = remoteHost;
-	}
-
-	void setRemotePort(int remotePort) {
-		this.remotePort = remotePort;
-	}
-	
-	void setLocalAddr(String localAddr) {
-		this.localAddr = localAddr;
-	}
-	
-	void setLocalHost(String localHost) {
-		this.localHost = localHost;
-	}
-
-	void setLocalPort(int localPort) {
-		this.localPort = localPort;
-	}
-
-	public String getRemoteAddr() {
-		return remoteAddr;
-	}
-	
-	public String getRemoteHost() {
-		return remoteHost;
-	}	
-	
-	public int getRemotePort() {
-		return remotePort;
-	}
-	
-	public String getLocalAddr() {
-		return localAddr;
-	}
-	
-	public String getLocalHost() {
-		return localHost;
-	}	
-	
-	public int getLocalPort() {
-		return localPort;
-	}
-
-	// TODO: not implemented
-	public int getContentLength() {
-		return -1;
-	}
-	
-	// TODO: not implemented
-	public String getContentType() {
-		return null;
-	}
-	
-	public InputStream getInputStream() {
-		return stream;
-	}
-	
-	public BufferedReader getReader() {
-		return new BufferedReader(new InputStreamReader(stream));
-	}
-	
-	public HttpQuery getHttpQuery() {
-		return query;
-	}
-	
-	/**
-	 * This setter method is only visible within the package and is expected to
-	 * be used only by the <code>RequestDispatcher forward()</code> method.
-	 * It will replace the current request with one referencing the new target 
-	 * and the GET method.
-	 * 
-	 * @param query
-	 *   the new <code>HttpQuery</code> object.
-	 */
-	void setHttpQuery(HttpQuery query) {
-		this.query = query;
-	}
-}
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.dihedron.ehttpd.exceptions.BadRequest;
+import org.dihedron.ehttpd.exceptions.RequestEntityTooLarge;
+import org.dihedron.ehttpd.exceptions.ServerException;
+import org.dihedron.ehttpd.server.multipart.MultipartReader;
+
+
+
+/**
+ * Maps the HTTP request, converting the raw bytes
+ * into headers, cookies and request parameters.
+ */
+public class Request {
+	
+	/**
+	 * The body length returned by <code>getBodyLength()</code> for requests 
+	 * whose body is sent in chunks.
+	 */
+	static final long CHUNKED = -2;
+	
+	/**
+	 * The query object.
+	 */
+	protected HttpQuery query = null;
+		
+	/**
+	 * The input stream associated with the request.
+	 */
+	protected InputStream stream = null;
+	
+	/**
+	 * The request body, once received in full.
+	 */
+	protected RequestBody body = null;
+	
+	/**
+	 * The stream decoding the body framing (<code>Content-Length</code> or
+	 * chunked transfer encoding) on the connection, or <code>null</code> if the
+	 * body has been received in full.
+	 */
+	private InputStream framed = null;
+	
+	/**
+	 * The amount of body data kept in memory before spilling to disk when the
+	 * body is read in full.
+	 */
+	private int bodyThreshold = HttpServer.DEFAULT_REQUEST_BODY_THRESHOLD;
+	
+	/**
+	 * The temporary files to be deleted once the request has been serviced.
+	 */
+	private List<File> temporaryFiles = null;
+	
+	/**
+	 * The remote host, at the client side.
+	 */
+	protected String remoteHost = null;
+	
+	/**
+	 * The remote client's network address.
+	 */
+	protected String remoteAddr = null;
+	
+	/**
+	 * The remote client's port.
+	 */
+	protected int remotePort = 0;
+	
+	/**
+	 * The local host at the server.
+	 */
+	protected String localHost = null;
+	
+	/**
+	 * The network address at the server that accepted the connection.
+	 */
+	protected String localAddr = null;
+	
+	/**
+	 * The local connection port at the server.
+	 */
+	protected int localPort = 0;
+	
+	/**
+	 * The remote client's network address, to be resolved into the remote 
+	 * host name on first access.
+	 */
+	private InetAddress remoteAddress = null;
+	
+	/**
+	 * The network address at the server that accepted the connection, to be
+	 * resolved into the local host name on first access.
+	 */
+	private InetAddress localAddress = null;
+	
+	/**
+	 * The resolver of host names, or <code>null</code> if addresses are not to
+	 * be resolved.
+	 */
+	private HostNameResolver resolver = null;
+	
+	/**
+	 * A store for parameters that must be passed along as by-products of the
+	 * request handling.
+	 */
+	protected Map<String, Object> parameters = new HashMap<String, Object>();
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param stream
+	 *   the input stream.
+	 * @throws IOException
+	 */
+	Request(InputStream stream) throws ServerException {
+		this(new HttpQuery().parse(stream), stream, HttpServer.NO_MAX_REQUEST_BODY_SIZE);
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param query
+	 *   the request line and headers, already parsed.
+	 * @param stream
+	 *   the input stream, positioned at the beginning of the request body.
+	 * @param maxBodySize
+	 *   the maximum size of the request body, or <code>
+	 *   HttpServer.NO_MAX_REQUEST_BODY_SIZE</code>.
+	 * @throws BadRequest
+	 *   if the end of the request body cannot be told reliably.
+	 * @throws RequestEntityTooLarge
+	 *   if the declared length of the body exceeds the maximum size.
+	 */
+	Request(HttpQuery query, InputStream stream, long maxBodySize) throws BadRequest, RequestEntityTooLarge {
+		
+		this.query = query;
+		
+		// the body must not be read past its end, since the next request 
+		// on a persistent connection may follow it immediately 
+		long length = getBodyLength(query);
+		if(length == CHUNKED) {
+			this.framed = new ChunkedInputStream(stream, maxBodySize);
+		} else {
+			checkBodySize(length, maxBodySize);
+			this.framed = new BoundedInputStream(stream, length);
+		}
+		this.stream = framed;
+	}
+	
+	/**
+	 * Constructor, for requests whose body has already been received in full.
+	 * 
+	 * @param query
+	 *   the request line and headers, already parsed.
+	 * @param body
+	 *   the request body.
+	 * @throws IOException
+	 *   if the body cannot be read.
+	 */
+	Request(HttpQuery query, RequestBody body) throws IOException {
+		this.query = query;
+		this.body = body;
+		this.stream = body.getInputStream();
+	}
+	
+	/**
+	 * Returns the length of the body of a request, as per its framing headers,
+	 * rejecting requests whose framing is ambiguous: an invalid <code>
+	 * Content-Length</code>, several ones that disagree, a transfer encoding
+	 * other than chunked, or both a <code>Transfer-Encoding</code> and a 
+	 * <code>Content-Length</code>. Guessing in these cases would let a client
+	 * smuggle a request in the body of another.
+	 * 
+	 * @param query
+	 *   the request line and headers.
+	 * @return
+	 *   the length of the body in bytes, 0 if there is no body, or <code>
+	 *   CHUNKED</code> if the body is sent in chunks.
+	 * @throws BadRequest
+	 *   if the end of the body cannot be told reliably.
+	 */
+	static long getBodyLength(HttpQuery query) throws BadRequest {
+		List<String> encodings = query.getHeaderValues("Transfer-Encoding");
+		if(encodings.isEmpty()) {
+			return Math.max(parseContentLength(query), 0);
+		}
+		if(!query.getHeaderValues("Content-Length").isEmpty()) {
+			throw new BadRequest("request has both Transfer-Encoding and Content-Length");
+		}
+		String encoding = encodings.get(encodings.size() - 1);
+		if(encoding == null || !isChunked(encoding)) {
+			throw new BadRequest("unsupported transfer encoding: '" + encoding + "'");
+		}
+		return CHUNKED;
+	}
+	
+	/**
+	 * Checks the size of a request body against the maximum allowed.
+	 * 
+	 * @param length
+	 *   the size of the body, as declared or received so far.
+	 * @param maxBodySize
+	 *   the maximum size of the body, or <code>
+	 *   HttpServer.NO_MAX_REQUEST_BODY_SIZE</code>.
+	 * @throws RequestEntityTooLarge
+	 *   if the body exceeds the maximum size.
+	 */
+	static void checkBodySize(long length, long maxBodySize) throws RequestEntityTooLarge {
+		if(maxBodySize >= 0 && length > maxBodySize) {
+			throw new RequestEntityTooLarge("request body exceeds " + maxBodySize + " bytes");
+		}
+	}
+	
+	/**
+	 * Returns whether reading the body was stopped because its chunks exceeded
+	 * the maximum size; the rest of the body is left unread.
+	 * 
+	 * @return
+	 *   whether the body is too large.
+	 */
+	boolean isBodyTooLarge() {
+		return framed instanceof ChunkedInputStream && ((ChunkedInputStream)framed).isTooLarge();
+	}
+	
+	/**
+	 * Returns the value of the <code>Content-Length</code> header; the header 
+	 * may be repeated, or carry a list, as long as all values are the same.
+	 * 
+	 * @param query
+	 *   the request line and headers.
+	 * @return
+	 *   the length of the body in bytes, or -1 if the header is not available.
+	 * @throws BadRequest
+	 *   if a value is not a valid length, or the values disagree.
+	 */
+	static long parseContentLength(HttpQuery query) throws BadRequest {
+		long length = -1;
+		for(String header : query.getHeaderValues("Content-Length")) {
+			for(String value : (header != null ? header : "").split(",", -1)) {
+				value = value.trim();
+				long parsed = -1;
+				if(value.length() > 0 && value.length() <= 18) {
+					parsed = 0;
+					for(int i = 0; i < value.length() && parsed != -1; ++i) {
+						char c = value.charAt(i);
+						parsed = c >= '0' && c <= '9' ? parsed * 10 + (c - '0') : -1;
+					}
+				}
+				if(parsed == -1) {
+					throw new BadRequest("invalid Content-Length: '" + header + "'");
+				}
+				if(length != -1 && parsed != length) {
+					throw new BadRequest("conflicting Content-Length values");
+				}
+				length = parsed;
+			}
+		}
+		return length;
+	}
+	
+	/**
+	 * Returns whether the given <code>Transfer-Encoding</code> header value 
+	 * ends with the chunked coding.
+	 * 
+	 * @param encoding
+	 *   the value of the header.
+	 * @return
+	 *   whether the body is sent in chunks.
+	 */
+	static boolean isChunked(String encoding) {
+		return encoding.trim().toLowerCase().endsWith("chunked");
+	}
+	
+	/**
+	 * Sets a parameter in the request, for further down-stream handling.
+	 * 
+	 * @param key
+	 *   the parameter name.
+	 * @param value
+	 *   an object representing the parameter value.
+	 */
+	public void setParameter(String key, Object value) {
+		assert(key != null);
+		if(value == null) {
+			removeParameter(key);
+		} else {
+			parameters.put(key, value);
+		}
+	}
+	
+	/**
+	 * Removes a parameter from the parameters map.
+	 * 
+	 * @param key
+	 *   the parameter name.
+	 */
+	public void removeParameter(String key) {
+		assert(key != null);
+		parameters.remove(key);
+	}
+	
+	/**
+	 * Returns the set of all parameter names.
+	 * 
+	 * @return
+	 *   the parameter names.
+	 */
+	public Set<String> getParameterKeys() {
+		return parameters.keySet();
+	}
+	
+	/**
+	 * Returns the value of a parameter if available, <code>null</code> otherwise.
+	 * 
+	 * @param key
+	 *   the name of the parameter.
+	 * @return
+	 *   the parameter value, or <code>null</code>.
+	 */
+	public Object getParameter(String key) {
+		assert(key != null);
+		return parameters.get(key);
+	}
+	
+	
+	void setRemoteAddr(String remoteAddr) {
+		this.remoteAddr = remoteAddr;
+	}
+	
+	void setRemoteHost(String remoteHost) {
+		this.remoteHost = remoteHost;
+	}
+
+	void setRemotePort(int remotePort) {
+		this.remotePort = remotePort;
+	}
+	
+	void setLocalAddr(String localAddr) {
+		this.localAddr = localAddr;
+	}
+	
+	void setLocalHost(String localHost) {
+		this.localHost = localHost;
+	}
+
+	void setLocalPort(int localPort) {
+		this.localPort = localPort;
+	}
+	
+	/**
+	 * Sets the addresses of the connection; host names are only looked up if
+	 * and when they are asked for.
+	 * 
+	 * @param remote
+	 *   the remote client's network address.
+	 * @param local
+	 *   the network address at the server that accepted the connection.
+	 * @param resolver
+	 *   the resolver of host names, or <code>null</code> if the host names
+	 *   should be the textual form of the addresses.
+	 */
+	void setAddresses(InetAddress remote, InetAddress local, HostNameResolver resolver) {
+		this.remoteAddress = remote;
+		this.remoteAddr = remote != null ? remote.getHostAddress() : null;
+		this.remoteHost = null;
+		this.localAddress = local;
+		this.localAddr = local != null ? local.getHostAddress() : null;
+		this.localHost = null;
+		this.resolver = resolver;
+	}
+
+	public String getRemoteAddr() {
+		return remoteAddr;
+	}
+	
+	public String getRemoteHost() {
+		if(remoteHost == null && remoteAddress != null) {
+			remoteHost = resolver != null ? resolver.getHostName(remoteAddress) : remoteAddr;
+		}
+		return remoteHost;
+	}	
+	
+	public int getRemotePort() {
+		return remotePort;
+	}
+	
+	public String getLocalAddr() {
+		return localAddr;
+	}
+	
+	public String getLocalHost() {
+		if(localHost == null && localAddress != null) {
+			localHost = resolver != null ? resolver.getHostName(localAddress) : localAddr;
+		}
+		return localHost;
+	}	
+	
+	public int getLocalPort() {
+		return localPort;
+	}
+
+	/**
+	 * Returns the length of the request body, as per the <code>Content-Length
+	 * </code> header or, if the body was sent in chunks, as actually received
+	 * once it has been read in full.
+	 * 
+	 * @return
+	 *   the length of the request body, or -1 if not available.
+	 */
+	public int getContentLength() {
+		long length = -1;
+		try {
+			length = parseContentLength(query);
+		} catch(BadRequest e) {
+			// the request would have been rejected on arrival
+		}
+		if(length == -1 && body != null) {
+			length = body.getLength();
+		}
+		return length <= Integer.MAX_VALUE ? (int)length : -1;
+	}
+	
+	/**
+	 * Returns the media type of the request body, as per the <code>
+	 * Content-Type</code> header.
+	 * 
+	 * @return
+	 *   the content type, including its parameters (e.g. the charset), or 
+	 *   <code>null</code> if not available.
+	 */
+	public String getContentType() {
+		return query.getHeader("Content-Type");
+	}
+	
+	/**
+	 * Returns a stream on the request body; the stream reports the end of data
+	 * at the end of the body, and need not be closed.
+	 * 
+	 * @return
+	 *   a stream on the request body.
+	 */
+	public InputStream getInputStream() {
+		return stream;
+	}
+	
+	/**
+	 * Reads the whole request body, keeping it in memory or, if it is larger
+	 * than the server's threshold, spilling it to a temporary file; whatever 
+	 * has already been read through <code>getInputStream()</code> is not 
+	 * included. Afterwards, <code>getInputStream()</code> returns a stream on
+	 * the stored body.
+	 * 
+	 * @return
+	 *   the request body.
+	 * @throws IOException
+	 *   if the body cannot be read or stored.
+	 */
+	public RequestBody getBody() throws IOException {
+		if(body == null) {
+			RequestBody received = new RequestBody(bodyThreshold);
+			try {
+				received.write(stream);
+			} catch(IOException e) {
+				received.dispose();
+				throw e;
+			}
+			body = received;
+			stream = body.getInputStream();
+		}
+		return body;
+	}
+	
+	/**
+	 * Returns whether the request body is made of several parts, as for forms
+	 * with file uploads.
+	 * 
+	 * @return
+	 *   whether the content type is multipart, with a boundary.
+	 */
+	public boolean isMultipart() {
+		return MultipartReader.getBoundary(getContentType()) != null;
+	}
+	
+	/**
+	 * Returns a reader yielding the parts of a multipart request body one at a
+	 * time, straight from the request stream.
+	 * 
+	 * @return
+	 *   a reader on the request body.
+	 * @throws IOException
+	 *   if the request body is not multipart.
+	 */
+	public MultipartReader getMultipartReader() throws IOException {
+		String boundary = MultipartReader.getBoundary(getContentType());
+		if(boundary == null) {
+			throw new IOException("request body is not multipart: '" + getContentType() + "'");
+		}
+		return new MultipartReader(stream, boundary);
+	}
+	
+	/**
+	 * Creates a temporary file that is deleted once the request has been
+	 * serviced, e.g. to store an uploaded file.
+	 * 
+	 * @return
+	 *   a new, empty temporary file.
+	 * @throws IOException
+	 *   if the file cannot be created.
+	 */
+	public File createTemporaryFile() throws IOException {
+		File file = File.createTempFile("ehttpd", ".upload");
+		if(temporaryFiles == null) {
+			temporaryFiles = new ArrayList<File>();
+		}
+		temporaryFiles.add(file);
+		return file;
+	}
+	
+	/**
+	 * Sets the amount of body data kept in memory by <code>getBody()</code>
+	 * before spilling to disk.
+	 * 
+	 * @param threshold
+	 *   the threshold, in bytes.
+	 */
+	void setBodyThreshold(int threshold) {
+		this.bodyThreshold = threshold;
+	}
+	
+	/**
+	 * Reads and discards whatever the handler left unread of the request body,
+	 * so that the next request on a persistent connection can be read.
+	 * 
+	 * @return
+	 *   <code>true</code> if the body could be discarded, <code>false</code> 
+	 *   if its length is unknown, or it is too large to be read, and the 
+	 *   connection cannot be reused.
+	 * @throws IOException
+	 *   if the body cannot be read.
+	 */
+	boolean discardBody() throws IOException {
+		if(framed instanceof BoundedInputStream) {
+			((BoundedInputStream)framed).drain();
+		} else if(framed instanceof ChunkedInputStream) {
+			try {
+				((ChunkedInputStream)framed).drain();
+			} catch(IOException e) {
+				if(isBodyTooLarge()) {
+					return false;
+				}
+				throw e;
+			}
+		} else if(body == null) {
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Releases the resources held by the request, such as the temporary files
+	 * to which its body or uploaded files have been stored.
+	 */
+	void release() {
+		if(body != null) {
+			try {
+				stream.close();
+			} catch(IOException e) {
+				// nothing to do
+			}
+			body.dispose();
+		}
+		if(temporaryFiles != null) {
+			for(File file : temporaryFiles) {
+				file.delete();
+			}
+			temporaryFiles = null;
+		}
+	}
+	
+	public BufferedReader getReader() {
+		return new BufferedReader(new InputStreamReader(stream));
+	}
+	
+	public HttpQuery getHttpQuery() {
+		return query;
+	}
+	
+	/**
+	 * This setter method is only visible within the package and is expected to
+	 * be used only by the <code>RequestDispatcher forward()</code> method.
+	 * It will replace the current request with one referencing the new target 
+	 * and the GET method.
+	 * 
+	 * @param query
+	 *   the new <code>HttpQuery</code> object.
+	 */
+	void setHttpQuery(HttpQuery query) {
+		this.query = query;
+	}
+}
@@ -0,0 +1,230 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The body of a request, received in full: small bodies are kept in memory,
+ * while bodies larger than a given threshold are spilled to a temporary file
+ * as they are received, so that large uploads do not take up the server's
+ * memory. The temporary file is deleted when the request has been serviced.
+ *
+ * @author Andrea Funto'
+ */
+public class RequestBody {
+
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(RequestBody.class);
+	
+	/**
+	 * The size of the buffer used to copy data from streams.
+	 */
+	private static final int COPY_BUFFER_SIZE = 8192;
+	
+	/**
+	 * The amount of data kept in memory before spilling to disk.
+	 */
+	private int threshold;
+	
+	/**
+	 * The data received so far, as long as it is kept in memory.
+	 */
+	private ByteArrayOutputStream memory = null;
+	
+	/**
+	 * The temporary file, once the data has been spilled to disk.
+	 */
+	private File file = null;
+	
+	/**
+	 * The stream writing to the temporary file.
+	 */
+	private OutputStream output = null;
+	
+	/**
+	 * The number of bytes received.
+	 */
+	private long length = 0;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param threshold
+	 *   the amount of data kept in memory before spilling to disk.
+	 */
+	RequestBody(int threshold) {
+		this.threshold = threshold;
+	}
+	
+	/**
+	 * Appends data to the body, spilling it to a temporary file if the
+	 * threshold is exceeded.
+	 * 
+	 * @param data
+	 *   the array containing the data.
+	 * @param offset
+	 *   the offset of the data in the array.
+	 * @param count
+	 *   the number of bytes to append.
+	 * @throws IOException
+	 *   if the temporary file cannot be written.
+	 */
+	void write(byte [] data, int offset, int count) throws IOException {
+		if(count == 0) {
+			return;
+		}
+		if(output == null) {
+			if(length + count <= threshold) {
+				if(memory == null) {
+					memory = new ByteArrayOutputStream(Math.min(threshold, Math.max(count, 256)));
+				}
+				memory.write(data, offset, count);
+				length += count;
+				return;
+			}
+			spill();
+		}
+		output.write(data, offset, count);
+		length += count;
+	}
+	
+	/**
+	 * Appends all the data available from the given stream.
+	 * 
+	 * @param input
+	 *   the stream to copy.
+	 * @throws IOException
+	 */
+	void write(InputStream input) throws IOException {
+		byte [] buffer = new byte[COPY_BUFFER_SIZE];
+		int read = 0;
+		while((read = input.read(buffer)) != -1) {
+			write(buffer, 0, read);
+		}
+		close();
+	}
+	
+	/**
+	 * Completes the writing of the body to disk, if it was spilled.
+	 * 
+	 * @throws IOException
+	 */
+	void close() throws IOException {
+		if(output != null) {
+			output.close();
+			output = null;
+		}
+	}
+	
+	/**
+	 * Returns the length of the body.
+	 * 
+	 * @return
+	 *   the number of bytes in the body.
+	 */
+	public long getLength() {
+		return length;
+	}
+	
+	/**
+	 * Returns whether the body is kept in memory.
+	 * 
+	 * @return
+	 *   <code>false</code> if the body has been spilled to disk.
+	 */
+	public boolean isInMemory() {
+		return file == null;
+	}
+	
+	/**
+	 * Returns the temporary file to which the body has been spilled; the file
+	 * is deleted when the request has been serviced, so handlers wanting to 
+	 * keep it must move or copy it.
+	 * 
+	 * @return
+	 *   the temporary file, or <code>null</code> if the body is in memory.
+	 */
+	public File getFile() {
+		return file;
+	}
+	
+	/**
+	 * Returns a new stream on the body.
+	 * 
+	 * @return
+	 *   a stream on the body, from its beginning.
+	 * @throws IOException
+	 *   if the temporary file cannot be read.
+	 */
+	public InputStream getInputStream() throws IOException {
+		if(file != null) {
+			close();
+			return new FileInputStream(file);
+		} else if(memory != null) {
+			return new ByteArrayInputStream(memory.toByteArray());
+		}
+		return new ByteArrayInputStream(new byte[0]);
+	}
+	
+	/**
+	 * Releases the body, deleting the temporary file if any.
+	 */
+	void dispose() {
+		memory = null;
+		try {
+			close();
+		} catch(IOException e) {
+			logger.warn("error closing temporary file {}", file);
+		}
+		if(file != null) {
+			if(!file.delete()) {
+				logger.warn("could not delete temporary file {}", file);
+			}
+			file = null;
+		}
+	}
+	
+	/**
+	 * Moves the data received so far from memory to a new temporary file.
+	 * 
+	 * @throws IOException
+	 */
+	private void spill() throws IOException {
+		file = File.createTempFile("ehttpd", ".body");
+		logger.debug("request body exceeds {} bytes, spilling to {}", threshold, file);
+		output = new FileOutputStream(file);
+		if(memory != null) {
+			memory.writeTo(output);
+			memory = null;
+		}
+	}
+}
@@ -0,0 +1,491 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.dihedron.ehttpd.server.handlers.Handler;
+import org.dihedron.regex.Regex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An immutable index of the routes registered with a <code>RequestDispatcher
+ * </code>, compiled so that looking up the handler for a request target does
+ * not require matching every regular expression in turn: <ul>
+ * <li>routes whose pattern is a plain string are looked up in a hash map;</li>
+ * <li>routes whose pattern begins with a literal prefix are stored in a radix
+ * trie, so that only those whose prefix the target starts with are tried;</li>
+ * <li>the remaining routes are combined into a single alternation, in which
+ * each route is a capturing group, so that they are all tried in one pass.
+ * </li></ul>
+ * Whatever the kind of routes, the first registered route matching the target 
+ * wins. Adding a route produces a new index, so that lookups never need any 
+ * locking.
+ *
+ * @author Andrea Funto'
+ */
+class RouteIndex {
+	
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(RouteIndex.class);
+	
+	/**
+	 * The characters with a special meaning in regular expressions.
+	 */
+	private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+	
+	/**
+	 * The characters acting as quantifiers of the preceding item.
+	 */
+	private static final String QUANTIFIERS = "?*+{";
+	
+	/**
+	 * A route: a regular expression, the handler answering requests matching 
+	 * it and its position in registration order.
+	 */
+	static class Route {
+		
+		/**
+		 * The position of the route in registration order.
+		 */
+		private final int order;
+		
+		/**
+		 * The regular expression of the route.
+		 */
+		private final Regex regex;
+		
+		/**
+		 * The handler of the route.
+		 */
+		private final Handler handler;
+		
+		/**
+		 * Constructor.
+		 */
+		Route(int order, Regex regex, Handler handler) {
+			this.order = order;
+			this.regex = regex;
+			this.handler = handler;
+		}
+		
+		/**
+		 * Returns the regular expression of the route.
+		 */
+		Regex getRegex() {
+			return regex;
+		}
+		
+		/**
+		 * Returns the handler of the route.
+		 */
+		Handler getHandler() {
+			return handler;
+		}
+	}
+	
+	/**
+	 * A node of the radix trie, holding the routes whose literal prefix ends
+	 * at the node.
+	 */
+	private static class Node {
+		
+		/**
+		 * The label of the edge leading to this node.
+		 */
+		private String label;
+		
+		/**
+		 * The child nodes, by the first character of their label.
+		 */
+		private Map<Character, Node> children = new HashMap<Character, Node>();
+		
+		/**
+		 * The routes whose literal prefix ends at this node, in registration
+		 * order.
+		 */
+		private List<Route> routes = new ArrayList<Route>();
+		
+		/**
+		 * Constructor.
+		 */
+		Node(String label) {
+			this.label = label;
+		}
+	}
+	
+	/**
+	 * All the routes, in registration order.
+	 */
+	private final List<Route> routes;
+	
+	/**
+	 * The routes whose pattern is a plain string, by that string; only the 
+	 * first registered route for a given string is kept.
+	 */
+	private final Map<String, Route> exact = new HashMap<String, Route>();
+	
+	/**
+	 * The root of the radix trie of routes with a literal prefix.
+	 */
+	private final Node root = new Node("");
+	
+	/**
+	 * The routes with no literal prefix, combined into a single pattern.
+	 */
+	private Pattern combined = null;
+	
+	/**
+	 * The number of the capturing group of each route in the combined pattern.
+	 */
+	private int [] groups = null;
+	
+	/**
+	 * The routes in the combined pattern, in registration order.
+	 */
+	private List<Route> alternatives = new ArrayList<Route>();
+	
+	/**
+	 * Constructor, for an empty index.
+	 */
+	RouteIndex() {
+		this(new ArrayList<Route>());
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param routes
+	 *   the routes, in registration order.
+	 */
+	private RouteIndex(List<Route> routes) {
+		this.routes = routes;
+		for(Route route : routes) {
+			String pattern = route.getRegex().getRegex();
+			String prefix = route.getRegex().isCaseSensitive() ? getLiteralPrefix(pattern) : "";
+			if(prefix == null) {
+				// the whole pattern is a plain string
+				String literal = getLiteral(pattern);
+				if(!exact.containsKey(literal)) {
+					exact.put(literal, route);
+				}
+			} else if(prefix.length() > 0) {
+				insert(prefix, route);
+			} else {
+				alternatives.add(route);
+			}
+		}
+		combine();
+	}
+	
+	/**
+	 * Returns a new index, with the given route added after the existing ones.
+	 * 
+	 * @param regex
+	 *   the regular expression of the route.
+	 * @param handler
+	 *   the handler of the route.
+	 * @return
+	 *   a new index.
+	 */
+	RouteIndex with(Regex regex, Handler handler) {
+		List<Route> extended = new ArrayList<Route>(routes);
+		extended.add(new Route(routes.size(), regex, handler));
+		return new RouteIndex(extended);
+	}
+	
+	/**
+	 * Returns all the routes, in registration order.
+	 * 
+	 * @return
+	 *   an unmodifiable list of the routes.
+	 */
+	List<Route> getRoutes() {
+		return Collections.unmodifiableList(routes);
+	}
+	
+	/**
+	 * Looks up the first registered route matching the given target.
+	 * 
+	 * @param target
+	 *   the request target.
+	 * @return
+	 *   the route, or <code>null</code> if no route matches.
+	 */
+	Route find(String target) {
+		if(target == null) {
+			return null;
+		}
+		Route best = exact.get(target);
+		
+		// routes with no literal prefix, in a single pass
+		if(combined != null) {
+			Matcher matcher = combined.matcher(target);
+			if(matcher.matches()) {
+				for(int i = 0; i < groups.length; ++i) {
+					if(matcher.start(groups[i]) != -1) {
+						best = first(best, alternatives.get(i));
+						break;
+					}
+				}
+			}
+		} else {
+			for(Route route : alternatives) {
+				if(best != null && route.order > best.order) {
+					break;
+				}
+				if(route.getRegex().matches(target)) {
+					best = first(best, route);
+					break;
+				}
+			}
+		}
+		
+		// routes whose literal prefix the target starts with
+		Node node = root;
+		int offset = 0;
+		while(node != null) {
+			for(Route route : node.routes) {
+				if(best != null && route.order > best.order) {
+					break;
+				}
+				if(route.getRegex().matches(target)) {
+					best = route;
+					break;
+				}
+			}
+			if(offset == target.length()) {
+				break;
+			}
+			Node child = node.children.get(target.charAt(offset));
+			if(child == null || !target.startsWith(child.label, offset)) {
+				break;
+			}
+			offset += child.label.length();
+			node = child;
+		}
+		
+		logger.trace("route for '{}': '{}'", target, best != null ? best.getRegex() : null);
+		return best;
+	}
+	
+	/**
+	 * Returns whichever of the given routes was registered first.
+	 */
+	private static Route first(Route a, Route b) {
+		if(a == null || b.order < a.order) {
+			return b;
+		}
+		return a;
+	}
+	
+	/**
+	 * Inserts a route into the radix trie, splitting edges as needed.
+	 * 
+	 * @param prefix
+	 *   the literal prefix of the route.
+	 * @param route
+	 *   the route.
+	 */
+	private void insert(String prefix, Route route) {
+		Node node = root;
+		int offset = 0;
+		while(offset < prefix.length()) {
+			Node child = node.children.get(prefix.charAt(offset));
+			if(child == null) {
+				child = new Node(prefix.substring(offset));
+				node.children.put(prefix.charAt(offset), child);
+				node = child;
+				break;
+			}
+			int common = 0;
+			while(common < child.label.length() && offset + common < prefix.length() 
+					&& child.label.charAt(common) == prefix.charAt(offset + common)) {
+				++common;
+			}
+			if(common < child.label.length()) {
+				// split the edge
+				Node middle = new Node(child.label.substring(0, common));
+				child.label = child.label.substring(common);
+				middle.children.put(child.label.charAt(0), child);
+				node.children.put(middle.label.charAt(0), middle);
+				child = middle;
+			}
+			offset += common;
+			node = child;
+		}
+		node.routes.add(route);
+	}
+	
+	/**
+	 * Combines the routes with no literal prefix into a single alternation,
+	 * each alternative being a capturing group; if the patterns cannot be 
+	 * combined (e.g. because they use back-references, which would refer to 
+	 * the wrong groups), they are tried one by one instead.
+	 */
+	private void combine() {
+		if(alternatives.size() < 2) {
+			return;
+		}
+		StringBuilder alternation = new StringBuilder();
+		int [] numbers = new int[alternatives.size()];
+		int group = 1;
+		for(int i = 0; i < alternatives.size(); ++i) {
+			Regex regex = alternatives.get(i).getRegex();
+			if(hasBackReferences(regex.getRegex())) {
+				logger.debug("pattern '{}' has back-references, routes will be tried one by one", regex);
+				return;
+			}
+			if(i > 0) {
+				alternation.append('|');
+			}
+			alternation.append(regex.isCaseSensitive() ? "((?:" : "((?i:").append(regex.getRegex()).append("))");
+			numbers[i] = group;
+			try {
+				group += 1 + Pattern.compile(regex.getRegex()).matcher("").groupCount();
+			} catch(PatternSyntaxException e) {
+				return;
+			}
+		}
+		try {
+			combined = Pattern.compile(alternation.toString());
+			groups = numbers;
+		} catch(PatternSyntaxException e) {
+			logger.debug("patterns cannot be combined, routes will be tried one by one");
+		}
+	}
+	
+	/**
+	 * Extracts the literal prefix of a regular expression, that is the string 
+	 * every match must begin with.
+	 * 
+	 * @param regex
+	 *   the regular expression.
+	 * @return
+	 *   the literal prefix (possibly empty), or <code>null</code> if the whole
+	 *   regular expression is a plain string.
+	 */
+	static String getLiteralPrefix(String regex) {
+		if(hasTopLevelAlternation(regex)) {
+			return "";
+		}
+		StringBuilder prefix = new StringBuilder();
+		int i = regex.startsWith("^") ? 1 : 0;
+		while(i < regex.length()) {
+			char c = regex.charAt(i);
+			char literal;
+			int next;
+			if(c == '\\') {
+				if(i + 1 == regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+					// a character class, a back-reference or a quotation
+					break;
+				}
+				literal = regex.charAt(i + 1);
+				next = i + 2;
+			} else if(METACHARACTERS.indexOf(c) != -1) {
+				if(c == '$' && i == regex.length() - 1) {
+					return null;
+				}
+				break;
+			} else {
+				literal = c;
+				next = i + 1;
+			}
+			if(next < regex.length() && QUANTIFIERS.indexOf(regex.charAt(next)) != -1) {
+				// the character may be repeated, or be missing altogether
+				if(regex.charAt(next) == '+') {
+					prefix.append(literal);
+				}
+				return prefix.toString();
+			}
+			prefix.append(literal);
+			i = next;
+		}
+		return i == regex.length() ? null : prefix.toString();
+	}
+	
+	/**
+	 * Returns the string matched by a regular expression made only of literal
+	 * characters.
+	 */
+	private static String getLiteral(String regex) {
+		StringBuilder literal = new StringBuilder();
+		int end = regex.endsWith("$") && !regex.endsWith("\\$") ? regex.length() - 1 : regex.length();
+		for(int i = regex.startsWith("^") ? 1 : 0; i < end; ++i) {
+			char c = regex.charAt(i);
+			if(c == '\\') {
+				c = regex.charAt(++i);
+			}
+			literal.append(c);
+		}
+		return literal.toString();
+	}
+	
+	/**
+	 * Checks whether a regular expression has an alternation outside of any
+	 * group, which would make its literal prefix meaningless.
+	 */
+	private static boolean hasTopLevelAlternation(String regex) {
+		int depth = 0;
+		boolean inClass = false;
+		for(int i = 0; i < regex.length(); ++i) {
+			char c = regex.charAt(i);
+			if(c == '\\') {
+				++i;
+			} else if(inClass) {
+				inClass = c != ']';
+			} else if(c == '[') {
+				inClass = true;
+			} else if(c == '(') {
+				++depth;
+			} else if(c == ')') {
+				--depth;
+			} else if(c == '|' && depth == 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Checks whether a regular expression uses back-references.
+	 */
+	private static boolean hasBackReferences(String regex) {
+		for(int i = 0; i < regex.length() - 1; ++i) {
+			if(regex.charAt(i) == '\\') {
+				char c = regex.charAt(i + 1);
+				if((c >= '1' && c <= '9') || c == 'k') {
+					return true;
+				}
+				++i;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,319 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An I/O event loop for the non-blocking mode of the server: each loop owns a
+ * <code>Selector</code> and a set of client connections, which it reads from
+ * and writes to without ever blocking; as soon as a complete request has been
+ * received on a connection, it is handed over to the executor, where it is
+ * dispatched by a <code>NioHttpServerWorker</code>. Connections are closed
+ * when their deadlines expire, as notified by the server's timer wheel.
+ *
+ * @author Andrea Funto'
+ */
+class SelectorLoop implements Runnable {
+
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(SelectorLoop.class);
+
+	/**
+	 * The selector on which all connections owned by this loop are registered.
+	 */
+	private Selector selector;
+
+	/**
+	 * The server, providing the dispatcher and the connection settings.
+	 */
+	private HttpServer server;
+
+	/**
+	 * The executor on which complete requests are dispatched.
+	 */
+	private Executor executor;
+
+	/**
+	 * Newly accepted connections, waiting to be registered with the selector;
+	 * registration must occur on the loop thread.
+	 */
+	private Queue<SocketChannel> incoming = new ConcurrentLinkedQueue<SocketChannel>();
+
+	/**
+	 * Connections whose response is ready to be written out.
+	 */
+	private Queue<NioConnection> writable = new ConcurrentLinkedQueue<NioConnection>();
+
+	/**
+	 * Tasks to be run on the loop thread, e.g. on expired deadlines.
+	 */
+	private Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+	/**
+	 * Whether the loop should keep running.
+	 */
+	private volatile boolean running = true;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param server
+	 *   the server, providing the dispatcher and the connection settings.
+	 * @param executor
+	 *   the executor on which requests are dispatched.
+	 * @throws IOException
+	 *   if the selector cannot be opened.
+	 */
+	SelectorLoop(HttpServer server, Executor executor) throws IOException {
+		this.selector = Selector.open();
+		this.server = server;
+		this.executor = executor;
+	}
+
+	/**
+	 * Hands a newly accepted (non-blocking) client connection over to this loop.
+	 *
+	 * @param client
+	 *   the client channel.
+	 */
+	void register(SocketChannel client) {
+		incoming.add(client);
+		selector.wakeup();
+	}
+
+	/**
+	 * Signals that the given connection has data to be written out.
+	 *
+	 * @param connection
+	 *   the connection that has become writable.
+	 */
+	void writable(NioConnection connection) {
+		writable.add(connection);
+		selector.wakeup();
+	}
+
+	/**
+	 * Runs a task on the loop thread, which owns the state of the connections.
+	 *
+	 * @param task
+	 *   the task.
+	 */
+	void execute(Runnable task) {
+		tasks.add(task);
+		selector.wakeup();
+	}
+
+	/**
+	 * Closes the connections waiting for a request to start, e.g. because the 
+	 * server is shutting down.
+	 */
+	void closeIdle() {
+		execute(new Runnable() {
+			public void run() {
+				for(SelectionKey key : selector.keys()) {
+					NioConnection connection = (NioConnection)key.attachment();
+					if(key.isValid() && connection.isIdle()) {
+						logger.debug("closing idle connection");
+						connection.close();
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Counts the connections on which a request is being received, i.e. it 
+	 * has started arriving but has not been dispatched yet; the connections 
+	 * are looked at on the loop thread, which owns their state.
+	 * 
+	 * @param timeout
+	 *   the maximum time to wait for the loop, in milliseconds.
+	 * @return
+	 *   the number of connections receiving a request, or 0 if the loop has
+	 *   not answered in time.
+	 * @throws InterruptedException
+	 *   if interrupted while waiting for the loop.
+	 */
+	int getReceivingCount(long timeout) throws InterruptedException {
+		FutureTask<Integer> count = new FutureTask<Integer>(new Callable<Integer>() {
+			public Integer call() {
+				int count = 0;
+				for(SelectionKey key : selector.keys()) {
+					if(key.isValid() && ((NioConnection)key.attachment()).isReceiving()) {
+						++count;
+					}
+				}
+				return count;
+			}
+		});
+		execute(count);
+		try {
+			return count.get(timeout, TimeUnit.MILLISECONDS);
+		} catch(ExecutionException e) {
+			logger.error("error counting connections receiving a request", e);
+		} catch(TimeoutException e) {
+			logger.warn("I/O loop did not count its connections within {} ms", timeout);
+		}
+		return 0;
+	}
+
+	/**
+	 * Stops the loop and closes all of its connections.
+	 */
+	void shutdown() {
+		running = false;
+		selector.wakeup();
+	}
+
+	/**
+	 * Returns the number of connections currently owned by this loop.
+	 *
+	 * @return
+	 *   the number of connections currently owned by this loop.
+	 */
+	int getConnectionCount() {
+		try {
+			return selector.keys().size();
+		} catch(ClosedSelectorException e) {
+			// the loop has stopped and closed all connections
+			return 0;
+		}
+	}
+
+	/**
+	 * The actual event loop.
+	 */
+	public void run() {
+		logger.info("I/O loop {} starting", Thread.currentThread().getName());
+		while(running) {
+			try {
+				selector.select();
+
+				registerIncoming();
+				enableWrites();
+				runTasks();
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while(keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					NioConnection connection = (NioConnection)key.attachment();
+					try {
+						if(key.isReadable()) {
+							connection.onReadable();
+						}
+						if(key.isValid() && key.isWritable()) {
+							connection.onWritable();
+						}
+					} catch(CancelledKeyException e) {
+						logger.trace("connection closed while being serviced");
+						connection.close();
+					} catch(IOException e) {
+						logger.debug("I/O error on client connection, closing", e);
+						connection.close();
+					}
+				}
+			} catch(IOException e) {
+				logger.error("error selecting ready connections", e);
+			}
+		}
+
+		for(SelectionKey key : selector.keys()) {
+			((NioConnection)key.attachment()).close();
+		}
+		try {
+			selector.close();
+		} catch(IOException e) {
+			logger.error("error closing selector", e);
+		}
+		logger.info("I/O loop {} stopped", Thread.currentThread().getName());
+	}
+
+	/**
+	 * Registers newly accepted connections for read events.
+	 */
+	private void registerIncoming() {
+		SocketChannel client = null;
+		while((client = incoming.poll()) != null) {
+			try {
+				NioConnection connection = new NioConnection(client, this, server, executor);
+				connection.setKey(client.register(selector, SelectionKey.OP_READ, connection));
+				connection.awaitRequest();
+			} catch(IOException e) {
+				logger.error("error registering client connection", e);
+				server.getAdmissionControl().release(client.socket().getInetAddress());
+				try {
+					client.close();
+				} catch(IOException ex) {
+					logger.error("error closing client connection", ex);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs the tasks queued for the loop thread.
+	 */
+	private void runTasks() {
+		Runnable task = null;
+		while((task = tasks.poll()) != null) {
+			try {
+				task.run();
+			} catch(RuntimeException e) {
+				logger.error("error running task on I/O loop", e);
+			}
+		}
+	}
+
+	/**
+	 * Switches connections with pending output to write interest; interest
+	 * operations are only ever changed on the loop thread.
+	 */
+	private void enableWrites() {
+		NioConnection connection = null;
+		while((connection = writable.poll()) != null) {
+			try {
+				connection.enableWrites();
+			} catch(CancelledKeyException e) {
+				logger.trace("connection closed before response could be written");
+				connection.close();
+			}
+		}
+	}
+}
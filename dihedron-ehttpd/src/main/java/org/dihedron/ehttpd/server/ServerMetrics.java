@@ -0,0 +1,264 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The metrics of a server: latency histograms of the stages a request goes
+ * through (accepting the connection, receiving and parsing the request head,
+ * dispatching it, flushing the response) and of the handlers of each route,
+ * along with counters of the response status codes and of the bytes written.
+ * Recording is lock-free; a snapshot can be written out in the Prometheus 
+ * text exposition format, e.g. by a <code>MetricsHandler</code>.
+ * 
+ * @author Andrea Funto'
+ */
+public class ServerMetrics {
+	
+	/**
+	 * The prefix of the names of all metrics.
+	 */
+	private static final String PREFIX = "ehttpd_";
+	
+	/**
+	 * The highest status code counted; higher ones are counted as this.
+	 */
+	private static final int MAX_STATUS_CODE = 599;
+	
+	/**
+	 * The time spent by the acceptor on each connection, from its acceptance to
+	 * its hand-off to a worker or I/O loop.
+	 */
+	private final LatencyHistogram accept = new LatencyHistogram();
+	
+	/**
+	 * The time taken to receive and parse request heads, from their first byte.
+	 */
+	private final LatencyHistogram parse = new LatencyHistogram();
+	
+	/**
+	 * The time taken to dispatch requests, including routing and forwarding 
+	 * on errors.
+	 */
+	private final LatencyHistogram dispatch = new LatencyHistogram();
+	
+	/**
+	 * The time taken to flush responses.
+	 */
+	private final LatencyHistogram flush = new LatencyHistogram();
+	
+	/**
+	 * The time spent in handlers, by route pattern.
+	 */
+	private final ConcurrentMap<String, LatencyHistogram> routes = new ConcurrentHashMap<String, LatencyHistogram>();
+	
+	/**
+	 * The number of responses, by status code.
+	 */
+	private final AtomicLongArray statuses = new AtomicLongArray(MAX_STATUS_CODE + 1);
+	
+	/**
+	 * The number of bytes written in responses.
+	 */
+	private final AtomicLong bytesWritten = new AtomicLong(0);
+	
+	/**
+	 * Returns the histogram of the time spent by the acceptor on connections.
+	 */
+	public LatencyHistogram getAccept() {
+		return accept;
+	}
+	
+	/**
+	 * Returns the histogram of the time taken to receive and parse request 
+	 * heads.
+	 */
+	public LatencyHistogram getParse() {
+		return parse;
+	}
+	
+	/**
+	 * Returns the histogram of the time taken to dispatch requests.
+	 */
+	public LatencyHistogram getDispatch() {
+		return dispatch;
+	}
+	
+	/**
+	 * Returns the histogram of the time taken to flush responses.
+	 */
+	public LatencyHistogram getFlush() {
+		return flush;
+	}
+	
+	/**
+	 * Returns the histogram of the time spent in the handler of a route, 
+	 * creating it the first time.
+	 * 
+	 * @param route
+	 *   the pattern of the route.
+	 * @return
+	 *   the histogram.
+	 */
+	public LatencyHistogram getRoute(String route) {
+		LatencyHistogram histogram = routes.get(route);
+		if(histogram == null) {
+			histogram = new LatencyHistogram();
+			LatencyHistogram existing = routes.putIfAbsent(route, histogram);
+			if(existing != null) {
+				histogram = existing;
+			}
+		}
+		return histogram;
+	}
+	
+	/**
+	 * Counts a response.
+	 * 
+	 * @param status
+	 *   the status of the response.
+	 * @param bytes
+	 *   the number of bytes written, headers included.
+	 */
+	public void recordResponse(Status status, long bytes) {
+		statuses.incrementAndGet(Math.min(status.getCode(), MAX_STATUS_CODE));
+		bytesWritten.addAndGet(bytes);
+	}
+	
+	/**
+	 * Returns the number of responses with the given status code.
+	 * 
+	 * @param code
+	 *   the status code.
+	 * @return
+	 *   the number of responses.
+	 */
+	public long getResponses(int code) {
+		return code >= 0 && code <= MAX_STATUS_CODE ? statuses.get(code) : 0;
+	}
+	
+	/**
+	 * Returns the number of bytes written in responses.
+	 * 
+	 * @return
+	 *   the number of bytes, headers included.
+	 */
+	public long getBytesWritten() {
+		return bytesWritten.get();
+	}
+	
+	/**
+	 * Writes out a snapshot of the metrics in the Prometheus text exposition
+	 * format; latencies are expressed in seconds.
+	 * 
+	 * @param out
+	 *   the buffer to write to.
+	 */
+	public void writeTo(StringBuilder out) {
+		writeHistogram(out, "accept_duration_seconds", "Time spent accepting connections.", null, new TreeMap<String, LatencyHistogram>(singleton(accept)));
+		writeHistogram(out, "parse_duration_seconds", "Time taken to receive and parse request heads.", null, new TreeMap<String, LatencyHistogram>(singleton(parse)));
+		writeHistogram(out, "dispatch_duration_seconds", "Time taken to dispatch requests.", null, new TreeMap<String, LatencyHistogram>(singleton(dispatch)));
+		writeHistogram(out, "handler_duration_seconds", "Time spent in request handlers, by route.", "route", new TreeMap<String, LatencyHistogram>(routes));
+		writeHistogram(out, "flush_duration_seconds", "Time taken to flush responses.", null, new TreeMap<String, LatencyHistogram>(singleton(flush)));
+		
+		out.append("# HELP ").append(PREFIX).append("responses_total Responses sent, by status code.\n");
+		out.append("# TYPE ").append(PREFIX).append("responses_total counter\n");
+		for(int code = 0; code <= MAX_STATUS_CODE; ++code) {
+			long count = statuses.get(code);
+			if(count > 0) {
+				out.append(PREFIX).append("responses_total{code=\"").append(code).append("\"} ").append(count).append('\n');
+			}
+		}
+		out.append("# HELP ").append(PREFIX).append("response_bytes_total Bytes written in responses.\n");
+		out.append("# TYPE ").append(PREFIX).append("response_bytes_total counter\n");
+		out.append(PREFIX).append("response_bytes_total ").append(bytesWritten.get()).append('\n');
+	}
+	
+	/**
+	 * Wraps a single unlabelled histogram in a map.
+	 */
+	private static Map<String, LatencyHistogram> singleton(LatencyHistogram histogram) {
+		Map<String, LatencyHistogram> map = new TreeMap<String, LatencyHistogram>();
+		map.put("", histogram);
+		return map;
+	}
+	
+	/**
+	 * Writes out a family of histograms.
+	 * 
+	 * @param out
+	 *   the buffer to write to.
+	 * @param name
+	 *   the name of the metric, without prefix.
+	 * @param help
+	 *   the description of the metric.
+	 * @param label
+	 *   the name of the label distinguishing the histograms, or <code>null
+	 *   </code> if there is a single, unlabelled one.
+	 * @param histograms
+	 *   the histograms, by label value.
+	 */
+	private static void writeHistogram(StringBuilder out, String name, String help, String label, Map<String, LatencyHistogram> histograms) {
+		out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+		out.append("# TYPE ").append(PREFIX).append(name).append(" histogram\n");
+		for(Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+			String labels = label != null ? label + "=\"" + escape(entry.getKey()) + "\"" : "";
+			LatencyHistogram histogram = entry.getValue();
+			long [] buckets = histogram.getBuckets();
+			long count = 0;
+			for(int i = 0; i < buckets.length; ++i) {
+				count += buckets[i];
+				out.append(PREFIX).append(name).append("_bucket{").append(labels).append(labels.length() > 0 ? "," : "").append("le=\"");
+				if(i < LatencyHistogram.BOUNDED_BUCKETS) {
+					out.append(LatencyHistogram.getUpperBound(i) / 1e9);
+				} else {
+					out.append("+Inf");
+				}
+				out.append("\"} ").append(count).append('\n');
+			}
+			String braces = labels.length() > 0 ? "{" + labels + "}" : "";
+			out.append(PREFIX).append(name).append("_sum").append(braces).append(' ').append(histogram.getSum() / 1e9).append('\n');
+			out.append(PREFIX).append(name).append("_count").append(braces).append(' ').append(count).append('\n');
+		}
+	}
+	
+	/**
+	 * Escapes a label value.
+	 */
+	private static String escape(String value) {
+		StringBuilder escaped = new StringBuilder(value.length());
+		for(int i = 0; i < value.length(); ++i) {
+			char c = value.charAt(i);
+			if(c == '\\' || c == '"') {
+				escaped.append('\\').append(c);
+			} else if(c == '\n') {
+				escaped.append("\\n");
+			} else {
+				escaped.append(c);
+			}
+		}
+		return escaped.toString();
+	}
+}
@@ -0,0 +1,292 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The deadlines protecting the server from slow clients, e.g. clients that
+ * trickle the request head one byte at a time to keep a worker busy for as 
+ * long as possible: the head must be received within a given time, the body
+ * and the response must keep flowing, and persistent connections must not 
+ * be idle for too long. All deadlines are enforced through a single timer 
+ * wheel, and expired ones are counted.
+ * 
+ * @author Andrea Funto'
+ */
+class TimeoutControl {
+	
+	/**
+	 * The kinds of deadline.
+	 */
+	enum Kind {
+		
+		/**
+		 * The time to receive the request line and headers.
+		 */
+		HEADER,
+		
+		/**
+		 * The time to wait for more data of the request body.
+		 */
+		BODY,
+		
+		/**
+		 * The time to wait for the client to accept more data of the response.
+		 */
+		WRITE,
+		
+		/**
+		 * The time to wait for the next request on a persistent connection.
+		 */
+		IDLE
+	}
+	
+	/**
+	 * The time to wait for the next request on a persistent connection, in 
+	 * milliseconds.
+	 */
+	private volatile int idleTimeout = HttpServer.DEFAULT_KEEP_ALIVE_TIMEOUT;
+	
+	/**
+	 * The time to receive the request line and headers, in milliseconds.
+	 */
+	private volatile int headerTimeout = HttpServer.DEFAULT_HEADER_TIMEOUT;
+	
+	/**
+	 * The time to wait for more data of the request body, in milliseconds.
+	 */
+	private volatile int bodyTimeout = HttpServer.DEFAULT_BODY_TIMEOUT;
+	
+	/**
+	 * The time to wait for the client to accept more data, in milliseconds.
+	 */
+	private volatile int writeTimeout = HttpServer.DEFAULT_WRITE_TIMEOUT;
+	
+	/**
+	 * The timer wheel enforcing all deadlines.
+	 */
+	private TimerWheel wheel = new TimerWheel();
+	
+	/**
+	 * The number of requests timed out while being received.
+	 */
+	private AtomicLong requestTimeouts = new AtomicLong(0);
+	
+	/**
+	 * The number of responses timed out while being sent.
+	 */
+	private AtomicLong writeTimeouts = new AtomicLong(0);
+	
+	/**
+	 * The number of persistent connections closed for being idle.
+	 */
+	private AtomicLong idleTimeouts = new AtomicLong(0);
+	
+	/**
+	 * Sets the time to wait for the next request on a persistent connection.
+	 */
+	void setIdleTimeout(int idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+	
+	/**
+	 * Returns the time to wait for the next request on a persistent connection.
+	 */
+	int getIdleTimeout() {
+		return idleTimeout;
+	}
+	
+	/**
+	 * Sets the time to receive the request line and headers.
+	 */
+	void setHeaderTimeout(int headerTimeout) {
+		this.headerTimeout = headerTimeout;
+	}
+	
+	/**
+	 * Returns the time to receive the request line and headers.
+	 */
+	int getHeaderTimeout() {
+		return headerTimeout;
+	}
+	
+	/**
+	 * Sets the time to wait for more data of the request body.
+	 */
+	void setBodyTimeout(int bodyTimeout) {
+		this.bodyTimeout = bodyTimeout;
+	}
+	
+	/**
+	 * Returns the time to wait for more data of the request body.
+	 */
+	int getBodyTimeout() {
+		return bodyTimeout;
+	}
+	
+	/**
+	 * Sets the time to wait for the client to accept more data.
+	 */
+	void setWriteTimeout(int writeTimeout) {
+		this.writeTimeout = writeTimeout;
+	}
+	
+	/**
+	 * Returns the time to wait for the client to accept more data.
+	 */
+	int getWriteTimeout() {
+		return writeTimeout;
+	}
+	
+	/**
+	 * Starts enforcing deadlines.
+	 */
+	void start() {
+		wheel.start("ehttpd-timer");
+	}
+	
+	/**
+	 * Stops enforcing deadlines; those pending never expire.
+	 */
+	void stop() {
+		wheel.stop();
+	}
+	
+	/**
+	 * Returns the timeout of the given kind of deadline.
+	 * 
+	 * @param kind
+	 *   the kind of deadline.
+	 * @return
+	 *   the timeout in milliseconds, or <code>HttpServer.NO_TIMEOUT</code>.
+	 */
+	int getTimeout(Kind kind) {
+		switch(kind) {
+		case HEADER:
+			return headerTimeout;
+		case BODY:
+			return bodyTimeout;
+		case WRITE:
+			return writeTimeout;
+		case IDLE:
+			return idleTimeout;
+		}
+		return HttpServer.NO_TIMEOUT;
+	}
+	
+	/**
+	 * Schedules a task to be run when a deadline expires.
+	 * 
+	 * @param task
+	 *   the task, which will run on the timer thread.
+	 * @param kind
+	 *   the kind of deadline.
+	 * @return
+	 *   the timeout, or <code>null</code> if there is no deadline because its
+	 *   timeout is <code>HttpServer.NO_TIMEOUT</code> or deadlines are not 
+	 *   being enforced.
+	 */
+	TimerWheel.Timeout schedule(Runnable task, Kind kind) {
+		int timeout = getTimeout(kind);
+		if(timeout <= HttpServer.NO_TIMEOUT || !wheel.isRunning()) {
+			return null;
+		}
+		return wheel.schedule(task, timeout);
+	}
+	
+	/**
+	 * Cancels a timeout, if any.
+	 * 
+	 * @param timeout
+	 *   the timeout, or <code>null</code>.
+	 */
+	static void cancel(TimerWheel.Timeout timeout) {
+		if(timeout != null) {
+			timeout.cancel();
+		}
+	}
+	
+	/**
+	 * Counts a deadline that has expired.
+	 * 
+	 * @param kind
+	 *   the kind of deadline.
+	 */
+	void timedOut(Kind kind) {
+		switch(kind) {
+		case HEADER:
+		case BODY:
+			requestTimeouts.incrementAndGet();
+			break;
+		case WRITE:
+			writeTimeouts.incrementAndGet();
+			break;
+		case IDLE:
+			idleTimeouts.incrementAndGet();
+			break;
+		}
+	}
+	
+	/**
+	 * Returns the number of requests timed out while being received.
+	 */
+	long getRequestTimeouts() {
+		return requestTimeouts.get();
+	}
+	
+	/**
+	 * Returns the number of responses timed out while being sent.
+	 */
+	long getWriteTimeouts() {
+		return writeTimeouts.get();
+	}
+	
+	/**
+	 * Returns the number of persistent connections closed for being idle.
+	 */
+	long getIdleTimeouts() {
+		return idleTimeouts.get();
+	}
+	
+	/**
+	 * Returns the number of deadlines currently pending.
+	 */
+	int getPending() {
+		return wheel.getPending();
+	}
+	
+	/**
+	 * Writes out the response telling a client it took too long to send its
+	 * request.
+	 * 
+	 * @param output
+	 *   the stream to the client.
+	 * @throws IOException
+	 */
+	static void writeRequestTimeout(OutputStream output) throws IOException {
+		String response = "HTTP/1.1 " + Status.STATUS_408.getCode() + " " + Status.STATUS_408.getDescription() + "\r\n"
+				+ "Content-Length: 0\r\n"
+				+ "Connection: close\r\n\r\n";
+		output.write(response.getBytes("ISO-8859-1"));
+		output.flush();
+	}
+}
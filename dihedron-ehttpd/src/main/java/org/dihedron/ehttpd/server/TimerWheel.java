@@ -0,0 +1,433 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A hashed timer wheel: a single thread advances through a ring of buckets at
+ * every tick, and runs the tasks whose deadline falls in the current bucket.
+ * Scheduling and cancelling a timeout are constant-time operations that only
+ * queue the timeout for the timer thread, so that tens of thousands of 
+ * connections can each have their own deadline without a thread or a heap 
+ * operation per timer; the price is that timeouts expire with the resolution
+ * of a tick. Tasks are run on the timer thread, and should be short.
+ * 
+ * @author Andrea Funto'
+ */
+class TimerWheel implements Runnable {
+	
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(TimerWheel.class);
+	
+	/**
+	 * The default duration of a tick, in milliseconds.
+	 */
+	static final long DEFAULT_TICK_DURATION = 100;
+	
+	/**
+	 * The default number of buckets in the wheel.
+	 */
+	static final int DEFAULT_TICKS_PER_WHEEL = 512;
+	
+	/**
+	 * The duration of a tick, in nanoseconds.
+	 */
+	private final long tickDuration;
+	
+	/**
+	 * The buckets; their number is a power of two.
+	 */
+	private final Bucket[] wheel;
+	
+	/**
+	 * The mask giving the bucket of a tick.
+	 */
+	private final int mask;
+	
+	/**
+	 * Timeouts scheduled since the last tick, waiting to be put in a bucket.
+	 */
+	private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<Timeout>();
+	
+	/**
+	 * Timeouts cancelled since the last tick, waiting to be removed from their
+	 * bucket.
+	 */
+	private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<Timeout>();
+	
+	/**
+	 * The number of timeouts neither expired nor cancelled.
+	 */
+	private final AtomicInteger pending = new AtomicInteger(0);
+	
+	/**
+	 * The time the wheel started at, in nanoseconds.
+	 */
+	private volatile long startTime;
+	
+	/**
+	 * The number of ticks elapsed; only accessed by the timer thread.
+	 */
+	private long tick = 0;
+	
+	/**
+	 * The timer thread, or <code>null</code> if not started.
+	 */
+	private Thread thread = null;
+	
+	/**
+	 * Whether the timer thread should keep running.
+	 */
+	private volatile boolean running = false;
+	
+	/**
+	 * Constructor, with the default tick duration and wheel size.
+	 */
+	TimerWheel() {
+		this(DEFAULT_TICK_DURATION, DEFAULT_TICKS_PER_WHEEL);
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param tickDuration
+	 *   the duration of a tick, in milliseconds.
+	 * @param ticksPerWheel
+	 *   the number of buckets, rounded up to a power of two.
+	 */
+	TimerWheel(long tickDuration, int ticksPerWheel) {
+		int size = 1;
+		while(size < ticksPerWheel) {
+			size <<= 1;
+		}
+		this.tickDuration = TimeUnit.MILLISECONDS.toNanos(Math.max(tickDuration, 1));
+		this.wheel = new Bucket[size];
+		for(int i = 0; i < size; ++i) {
+			wheel[i] = new Bucket();
+		}
+		this.mask = size - 1;
+	}
+	
+	/**
+	 * Starts the timer thread, if not yet running.
+	 * 
+	 * @param name
+	 *   the name of the timer thread.
+	 */
+	synchronized void start(String name) {
+		if(thread != null) {
+			return;
+		}
+		startTime = System.nanoTime();
+		running = true;
+		thread = new Thread(this, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Stops the timer thread; pending timeouts never expire.
+	 */
+	synchronized void stop() {
+		if(thread == null) {
+			return;
+		}
+		running = false;
+		thread.interrupt();
+		thread = null;
+	}
+	
+	/**
+	 * Returns whether the timer thread is running.
+	 */
+	boolean isRunning() {
+		return running;
+	}
+	
+	/**
+	 * Schedules a task to be run once the given delay has elapsed.
+	 * 
+	 * @param task
+	 *   the task, which will run on the timer thread.
+	 * @param delay
+	 *   the delay, in milliseconds.
+	 * @return
+	 *   the timeout, which can be cancelled.
+	 */
+	Timeout schedule(Runnable task, long delay) {
+		Timeout timeout = new Timeout(this, task, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay));
+		pending.incrementAndGet();
+		scheduled.add(timeout);
+		return timeout;
+	}
+	
+	/**
+	 * Returns the number of timeouts that have neither expired nor been 
+	 * cancelled.
+	 */
+	int getPending() {
+		return pending.get();
+	}
+	
+	/**
+	 * The timer thread: at each tick, it puts new timeouts in their bucket,
+	 * takes cancelled ones out, and expires those in the current bucket.
+	 */
+	public void run() {
+		logger.debug("timer wheel starting, {} buckets of {} ms", wheel.length, TimeUnit.NANOSECONDS.toMillis(tickDuration));
+		while(running) {
+			long deadline = startTime + (tick + 1) * tickDuration;
+			long sleep = deadline - System.nanoTime();
+			if(sleep > 0) {
+				try {
+					Thread.sleep(TimeUnit.NANOSECONDS.toMillis(sleep + 999999));
+				} catch(InterruptedException e) {
+					// stopped, or woken up spuriously
+				}
+				continue;
+			}
+			removeCancelled();
+			transferScheduled();
+			wheel[(int)(tick & mask)].expire(deadline);
+			++tick;
+		}
+		logger.debug("timer wheel stopped");
+	}
+	
+	/**
+	 * Takes cancelled timeouts out of their bucket.
+	 */
+	private void removeCancelled() {
+		Timeout timeout = null;
+		while((timeout = cancelled.poll()) != null) {
+			if(timeout.bucket != null) {
+				timeout.bucket.remove(timeout);
+			}
+			pending.decrementAndGet();
+		}
+	}
+	
+	/**
+	 * Puts newly scheduled timeouts in the bucket of the tick they expire at;
+	 * those already past due go in the current bucket.
+	 */
+	private void transferScheduled() {
+		Timeout timeout = null;
+		while((timeout = scheduled.poll()) != null) {
+			if(timeout.state.get() != Timeout.PENDING) {
+				// cancelled before making it to the wheel
+				continue;
+			}
+			long expiry = Math.max((timeout.deadline - startTime) / tickDuration, tick);
+			timeout.rounds = (expiry - tick) / wheel.length;
+			wheel[(int)(expiry & mask)].add(timeout);
+		}
+	}
+	
+	/**
+	 * A task scheduled to run at some point in the future.
+	 */
+	static class Timeout {
+		
+		/**
+		 * The state of a timeout neither expired nor cancelled.
+		 */
+		private static final int PENDING = 0;
+		
+		/**
+		 * The state of a cancelled timeout.
+		 */
+		private static final int CANCELLED = 1;
+		
+		/**
+		 * The state of an expired timeout.
+		 */
+		private static final int EXPIRED = 2;
+		
+		/**
+		 * The task to be run on expiry.
+		 */
+		private final Runnable task;
+		
+		/**
+		 * The expiry time, in nanoseconds.
+		 */
+		private final long deadline;
+		
+		/**
+		 * The state of the timeout.
+		 */
+		private final AtomicInteger state = new AtomicInteger(PENDING);
+		
+		/**
+		 * The number of full turns of the wheel left before expiry; only 
+		 * accessed by the timer thread, as the following fields.
+		 */
+		private long rounds;
+		
+		/**
+		 * The bucket the timeout is in, if any.
+		 */
+		private Bucket bucket;
+		
+		/**
+		 * The previous timeout in the bucket.
+		 */
+		private Timeout previous;
+		
+		/**
+		 * The next timeout in the bucket.
+		 */
+		private Timeout next;
+		
+		/**
+		 * The wheel, to which cancellations are notified.
+		 */
+		private final TimerWheel wheel;
+		
+		/**
+		 * Constructor.
+		 */
+		private Timeout(TimerWheel wheel, Runnable task, long deadline) {
+			this.wheel = wheel;
+			this.task = task;
+			this.deadline = deadline;
+		}
+		
+		/**
+		 * Cancels the timeout, unless it has already expired.
+		 * 
+		 * @return
+		 *   whether the timeout was cancelled, and its task will never run.
+		 */
+		boolean cancel() {
+			if(!state.compareAndSet(PENDING, CANCELLED)) {
+				return false;
+			}
+			wheel.cancelled.add(this);
+			return true;
+		}
+		
+		/**
+		 * Returns whether the timeout has expired, and its task has run or is
+		 * running.
+		 */
+		boolean isExpired() {
+			return state.get() == EXPIRED;
+		}
+		
+		/**
+		 * Marks the timeout as expired, unless it has been cancelled.
+		 * 
+		 * @return
+		 *   whether the timeout expired, and its task is to be run.
+		 */
+		private boolean expire() {
+			return state.compareAndSet(PENDING, EXPIRED);
+		}
+		
+		/**
+		 * Runs the task of an expired timeout.
+		 */
+		private void run() {
+			try {
+				task.run();
+			} catch(RuntimeException e) {
+				logger.error("error running timed out task", e);
+			}
+		}
+	}
+	
+	/**
+	 * A doubly-linked list of timeouts, expiring at the same tick of some turn
+	 * of the wheel.
+	 */
+	private class Bucket {
+		
+		/**
+		 * The first timeout in the bucket.
+		 */
+		private Timeout head = null;
+		
+		/**
+		 * Adds a timeout to the bucket.
+		 */
+		void add(Timeout timeout) {
+			timeout.bucket = this;
+			timeout.previous = null;
+			timeout.next = head;
+			if(head != null) {
+				head.previous = timeout;
+			}
+			head = timeout;
+		}
+		
+		/**
+		 * Removes a timeout from the bucket.
+		 */
+		void remove(Timeout timeout) {
+			if(timeout.previous != null) {
+				timeout.previous.next = timeout.next;
+			} else {
+				head = timeout.next;
+			}
+			if(timeout.next != null) {
+				timeout.next.previous = timeout.previous;
+			}
+			timeout.bucket = null;
+			timeout.previous = null;
+			timeout.next = null;
+		}
+		
+		/**
+		 * Expires the timeouts due by the given time, and brings the others 
+		 * one turn closer to expiry.
+		 * 
+		 * @param deadline
+		 *   the time of the current tick, in nanoseconds.
+		 */
+		void expire(long deadline) {
+			Timeout timeout = head;
+			while(timeout != null) {
+				Timeout next = timeout.next;
+				if(timeout.rounds <= 0 && timeout.deadline <= deadline) {
+					remove(timeout);
+					if(timeout.expire()) {
+						// cancelled timeouts are accounted for when dequeued;
+						// expired ones are no longer pending by the time they run
+						pending.decrementAndGet();
+						timeout.run();
+					}
+				} else if(timeout.rounds > 0) {
+					--timeout.rounds;
+				}
+				timeout = next;
+			}
+		}
+	}
+}
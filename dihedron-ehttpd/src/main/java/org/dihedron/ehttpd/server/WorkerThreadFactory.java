@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A factory of lightweight worker threads: daemon threads with a small, 
+ * configurable stack, so that a large number of them can be kept around 
+ * while their handlers are blocked on I/O (e.g. JDBC or JNDI calls) without
+ * reserving the default (and much larger) stack for each one.
+ * 
+ * @author Andrea Funto'
+ */
+class WorkerThreadFactory implements ThreadFactory {
+	
+	/**
+	 * The group to which worker threads belong.
+	 */
+	private ThreadGroup group = new ThreadGroup("ehttpd-workers");
+	
+	/**
+	 * The counter used to name threads.
+	 */
+	private AtomicInteger counter = new AtomicInteger(0);
+	
+	/**
+	 * The stack size of the threads, in bytes.
+	 */
+	private long stackSize;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param stackSize
+	 *   the stack size of the threads, in bytes; the value is a hint to the
+	 *   virtual machine, which may ignore it.
+	 */
+	WorkerThreadFactory(long stackSize) {
+		this.stackSize = stackSize;
+	}
+
+	/**
+	 * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+	 */
+	public Thread newThread(Runnable runnable) {
+		Thread thread = new Thread(group, runnable, "ehttpd-worker-" + counter.incrementAndGet(), stackSize);
+		thread.setDaemon(true);
+		return thread;
+	}
+}
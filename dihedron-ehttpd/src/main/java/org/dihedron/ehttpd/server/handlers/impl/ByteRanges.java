@@ -0,0 +1,184 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server.handlers.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The byte ranges requested through a <code>Range</code> header (RFC 7233), 
+ * resolved against the length of the representation: ranges extending past
+ * its end are truncated, suffix ranges ("-500") are turned into absolute ones,
+ * and overlapping or adjacent ranges are coalesced, so that clients cannot 
+ * have the same bytes sent over and over.
+ * 
+ * @author Andrea Funto'
+ */
+class ByteRanges {
+	
+	/**
+	 * The only range unit supported.
+	 */
+	static final String BYTES = "bytes";
+	
+	/**
+	 * The maximum number of ranges in a request; requests with more ranges 
+	 * are served in full.
+	 */
+	static final int MAX_RANGES = 32;
+	
+	/**
+	 * Orders ranges by their first byte.
+	 */
+	private static final Comparator<long[]> BY_START = new Comparator<long[]>() {
+		public int compare(long[] first, long[] second) {
+			return first[0] < second[0] ? -1 : (first[0] == second[0] ? 0 : 1);
+		}
+	};
+	
+	/**
+	 * Parses the value of a <code>Range</code> header.
+	 * 
+	 * @param header
+	 *   the value of the header.
+	 * @param length
+	 *   the length of the representation.
+	 * @return
+	 *   the satisfiable ranges as pairs of first and last byte positions 
+	 *   (inclusive), in ascending order; an empty list if none of the ranges 
+	 *   can be satisfied, or <code>null</code> if the header is to be ignored 
+	 *   because it is malformed, uses an unknown unit, or has too many ranges.
+	 */
+	static List<long[]> parse(String header, long length) {
+		int equals = header.indexOf('=');
+		if(equals == -1 || !header.substring(0, equals).trim().equalsIgnoreCase(BYTES)) {
+			return null;
+		}
+		String [] specs = header.substring(equals + 1).split(",");
+		if(specs.length > MAX_RANGES) {
+			return null;
+		}
+		List<long[]> ranges = new ArrayList<long[]>();
+		for(String spec : specs) {
+			spec = spec.trim();
+			int dash = spec.indexOf('-');
+			if(dash == -1) {
+				return null;
+			}
+			long first = -1, last = -1;
+			try {
+				if(dash > 0) {
+					first = parsePosition(spec.substring(0, dash).trim());
+				}
+				if(dash < spec.length() - 1) {
+					last = parsePosition(spec.substring(dash + 1).trim());
+				}
+			} catch(NumberFormatException e) {
+				return null;
+			}
+			if(first == -1) {
+				// suffix range: the last N bytes
+				if(last < 0) {
+					return null;
+				}
+				if(last > 0 && length > 0) {
+					ranges.add(new long[] { Math.max(0, length - last), length - 1 });
+				}
+			} else {
+				if(first < 0 || (last != -1 && last < first)) {
+					return null;
+				}
+				if(first < length) {
+					ranges.add(new long[] { first, last == -1 ? length - 1 : Math.min(last, length - 1) });
+				}
+			}
+		}
+		return coalesce(ranges);
+	}
+	
+	/**
+	 * Parses a byte position, which can only be made of digits: unlike 
+	 * <code>Long.parseLong()</code>, signs are rejected, so that a range such 
+	 * as <code>5--1</code> is not taken for <code>5-</code>.
+	 * 
+	 * @param position
+	 *   the byte position.
+	 * @return
+	 *   the value of the position.
+	 * @throws NumberFormatException
+	 *   if the position is not a non-negative decimal number.
+	 */
+	private static long parsePosition(String position) throws NumberFormatException {
+		for(int i = 0; i < position.length(); ++i) {
+			char c = position.charAt(i);
+			if(c < '0' || c > '9') {
+				throw new NumberFormatException("invalid byte position '" + position + "'");
+			}
+		}
+		return Long.parseLong(position);
+	}
+	
+	/**
+	 * Merges overlapping and adjacent ranges.
+	 * 
+	 * @param ranges
+	 *   the ranges.
+	 * @return
+	 *   the merged ranges, in ascending order.
+	 */
+	private static List<long[]> coalesce(List<long[]> ranges) {
+		if(ranges.size() < 2) {
+			return ranges;
+		}
+		Collections.sort(ranges, BY_START);
+		List<long[]> merged = new ArrayList<long[]>();
+		long [] current = ranges.get(0);
+		for(int i = 1; i < ranges.size(); ++i) {
+			long [] range = ranges.get(i);
+			if(range[0] <= current[1] + 1) {
+				current = new long[] { current[0], Math.max(current[1], range[1]) };
+			} else {
+				merged.add(current);
+				current = range;
+			}
+		}
+		merged.add(current);
+		return merged;
+	}
+	
+	/**
+	 * Formats the value of a <code>Content-Range</code> header.
+	 * 
+	 * @param range
+	 *   the first and last byte positions, or <code>null</code> for an 
+	 *   unsatisfiable range.
+	 * @param length
+	 *   the length of the representation.
+	 * @return
+	 *   the value of the header.
+	 */
+	static String format(long [] range, long length) {
+		if(range == null) {
+			return BYTES + " */" + length;
+		}
+		return BYTES + " " + range[0] + "-" + range[1] + "/" + length;
+	}
+}
@@ -0,0 +1,417 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server.handlers.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.dihedron.ehttpd.exceptions.ApplicationException;
+import org.dihedron.ehttpd.exceptions.ServerException;
+import org.dihedron.ehttpd.server.HttpQuery;
+import org.dihedron.ehttpd.server.ManagedOutput;
+import org.dihedron.ehttpd.server.Method;
+import org.dihedron.ehttpd.server.Request;
+import org.dihedron.ehttpd.server.Response;
+import org.dihedron.ehttpd.server.Status;
+import org.dihedron.ehttpd.server.handlers.Handler;
+import org.dihedron.ehttpd.server.handlers.impl.ResponseCache.CachedResponse;
+import org.dihedron.ehttpd.server.handlers.impl.ResponseCache.Flight;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class puts a short-lived response cache in front of another handler,
+ * for pages that are expensive to produce and requested over and over with 
+ * the same parameters; it is registered in place of the handler it wraps, on
+ * the routes that should be cached, e.g.
+ * <pre>
+ * ResponseCache cache = new ResponseCache(4 * 1024 * 1024);
+ * dispatcher.handle("/reports/.*").through(new CachingHandler(controller, cache, 1000, "Accept-Language"));
+ * </pre>
+ * Only <code>GET</code> and <code>HEAD</code> requests are cached, keyed on 
+ * the method, the target resource, the parameters (regardless of their 
+ * order) and the values of the given request headers; the wrapped handler 
+ * writes into a buffer, and its response is copied to the client and, if it is a <code>
+ * 200 OK</code> with no cookies, no channel content and no <code>
+ * Cache-Control</code> directive against it, stored for the given time. While
+ * a response is being produced, further requests for the same key wait for 
+ * it instead of running the handler again.
+ * <p>
+ * Responses are shared among all clients: pages that depend on the session
+ * must not be cached, or the cookie must be among the headers in the key.
+ * </p>
+ * 
+ * @author Andrea Funto'
+ */
+public class CachingHandler implements Handler {
+	
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(CachingHandler.class);
+	
+	/**
+	 * The default maximum time a request waits for the same response to be 
+	 * produced by another request, in milliseconds.
+	 */
+	public static final long DEFAULT_MAX_WAIT = 5000;
+	
+	/**
+	 * The separator between the parts of a key.
+	 */
+	private static final char SEPARATOR = '\u0000';
+	
+	/**
+	 * The handler producing the responses.
+	 */
+	private Handler handler;
+	
+	/**
+	 * The cache storing the responses.
+	 */
+	private ResponseCache cache;
+	
+	/**
+	 * How long responses are served from the cache, in milliseconds.
+	 */
+	private long ttl;
+	
+	/**
+	 * The request headers whose values are part of the key.
+	 */
+	private String [] headers;
+	
+	/**
+	 * The maximum time a request waits for the same response to be produced 
+	 * by another request, in milliseconds.
+	 */
+	private long maxWait = DEFAULT_MAX_WAIT;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param handler
+	 *   the handler producing the responses.
+	 * @param cache
+	 *   the cache storing the responses, which may be shared with other routes.
+	 * @param ttl
+	 *   how long responses are served from the cache, in milliseconds.
+	 * @param headers
+	 *   the request headers the response depends on, whose values are part of
+	 *   the key.
+	 */
+	public CachingHandler(Handler handler, ResponseCache cache, long ttl, String... headers) {
+		this.handler = handler;
+		this.cache = cache;
+		this.ttl = ttl;
+		this.headers = headers != null ? headers : new String[0];
+	}
+	
+	/**
+	 * Sets the maximum time a request waits for the same response to be 
+	 * produced by another request; past it, the request runs the handler on
+	 * its own.
+	 * 
+	 * @param maxWait
+	 *   the maximum time to wait, in milliseconds.
+	 * @return
+	 *   the object itself, for method chaining.
+	 */
+	public CachingHandler setMaxWait(long maxWait) {
+		this.maxWait = maxWait;
+		return this;
+	}
+	
+	/**
+	 * Returns the maximum time a request waits for the same response to be 
+	 * produced by another request.
+	 * 
+	 * @return
+	 *   the maximum time to wait, in milliseconds.
+	 */
+	public long getMaxWait() {
+		return maxWait;
+	}
+	
+	/**
+	 * Returns the cache storing the responses.
+	 * 
+	 * @return
+	 *   the cache storing the responses.
+	 */
+	public ResponseCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Serves the response from the cache if available, waits for it if it is
+	 * being produced, or has the wrapped handler produce it.
+	 * 
+	 * @see org.dihedron.ehttpd.server.handlers.Handler#handle(org.dihedron.ehttpd.server.Request, org.dihedron.ehttpd.server.Response)
+	 */
+	@Override
+	public void handle(Request request, Response response) throws ApplicationException, ServerException {
+		HttpQuery query = request.getHttpQuery();
+		if(query.getMethod() != Method.GET && query.getMethod() != Method.HEAD) {
+			handler.handle(request, response);
+			return;
+		}
+		
+		String key = getKey(query);
+		CachedResponse cached = cache.get(key);
+		if(cached != null) {
+			logger.debug("serving '{}' from the cache", query.getQueryString());
+			send(cached, true, response);
+			return;
+		}
+		
+		Flight flight = new Flight();
+		Flight pending = cache.depart(key, flight);
+		if(pending != null) {
+			logger.debug("waiting for '{}' to be produced by another request", query.getQueryString());
+			try {
+				cached = pending.await(maxWait);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if(cached != null) {
+				send(cached, false, response);
+			} else {
+				handler.handle(request, response);
+			}
+			return;
+		}
+		
+		CapturedOutput output = new CapturedOutput(response.getOutput().getProtocol());
+		CachedResponse produced = null;
+		try {
+			handler.handle(request, new Response(output));
+			produced = output.toCachedResponse(ttl, cache);
+		} finally {
+			cache.land(key, flight, produced);
+		}
+		if(produced != null) {
+			send(produced, false, response);
+		} else {
+			output.copyTo(response);
+		}
+	}
+	
+	/**
+	 * Builds the key of a request: the method, the target resource, the 
+	 * parameters sorted by name, and the values of the headers the response 
+	 * depends on.
+	 * 
+	 * @param query
+	 *   the request.
+	 * @return
+	 *   the key.
+	 */
+	String getKey(HttpQuery query) {
+		StringBuilder key = new StringBuilder(128);
+		key.append(query.getMethod()).append(' ').append(query.getQueryString());
+		for(Entry<String, String> parameter : new TreeMap<String, String>(query.getParameters()).entrySet()) {
+			key.append(SEPARATOR).append(parameter.getKey()).append('=').append(parameter.getValue());
+		}
+		for(String header : headers) {
+			String value = query.getHeader(header);
+			key.append(SEPARATOR).append(SEPARATOR).append(header).append(':').append(value != null ? value : "");
+		}
+		return key.toString();
+	}
+	
+	/**
+	 * Copies a cached response to the client.
+	 * 
+	 * @param cached
+	 *   the cached response.
+	 * @param hit
+	 *   whether the response was found in the cache, rather than just produced,
+	 *   in which case its age is provided.
+	 * @param response
+	 *   the response to the client.
+	 * @throws ServerException
+	 */
+	private void send(CachedResponse cached, boolean hit, Response response) throws ServerException {
+		response.setStatus(cached.status);
+		for(Entry<String, String[]> header : cached.headers.entrySet()) {
+			response.setHeader(header.getKey(), header.getValue());
+		}
+		if(hit) {
+			response.setHeader("Age", String.valueOf(cached.getAge()));
+		}
+		response.addContent(cached.content);
+	}
+	
+	/**
+	 * An output that collects the response produced by the wrapped handler,
+	 * instead of sending it; it is never flushed to the client.
+	 * 
+	 * @author Andrea Funto'
+	 */
+	private static class CapturedOutput extends ManagedOutput {
+		
+		/**
+		 * The content provided through channels, each with the buffered data 
+		 * that precedes it.
+		 */
+		private List<Segment> segments = new ArrayList<Segment>();
+		
+		/**
+		 * Constructor.
+		 * 
+		 * @param protocol
+		 *   the protocol version of the response to the client.
+		 */
+		CapturedOutput(String protocol) {
+			super(new ByteArrayOutputStream(0));
+			setProtocol(protocol);
+		}
+		
+		/**
+		 * Records the channel, which is transferred to the client once the 
+		 * handler is done; responses with such content are not cached.
+		 * 
+		 * @see org.dihedron.ehttpd.server.ManagedOutput#writeContent(java.nio.channels.ReadableByteChannel, long)
+		 */
+		@Override
+		public void writeContent(ReadableByteChannel channel, long length) throws ServerException {
+			if(channel != null) {
+				segments.add(new Segment(buffer.toByteArray(), channel, length));
+				buffer.reset();
+			}
+		}
+		
+		/**
+		 * Does nothing: the response is copied to the client once the handler 
+		 * is done.
+		 * 
+		 * @see org.dihedron.ehttpd.server.ManagedOutput#flush()
+		 */
+		@Override
+		public void flush() {
+			logger.trace("ignoring flush of captured output");
+		}
+		
+		/**
+		 * Does nothing, see <code>flush()</code>.
+		 * 
+		 * @see org.dihedron.ehttpd.server.ManagedOutput#close()
+		 */
+		@Override
+		public void close() {
+			logger.trace("ignoring close of captured output");
+		}
+		
+		/**
+		 * Turns the captured response into a cacheable one, if possible.
+		 * 
+		 * @param ttl
+		 *   how long the response can be served from the cache, in milliseconds.
+		 * @param cache
+		 *   the cache, which may not accept responses of the given size.
+		 * @return
+		 *   the cacheable response, or <code>null</code> if it cannot be cached.
+		 */
+		CachedResponse toCachedResponse(long ttl, ResponseCache cache) {
+			if(status != Status.STATUS_200 || !segments.isEmpty() || !cache.isCacheable(buffer.size())) {
+				return null;
+			}
+			for(Entry<String, String[]> header : headers.entrySet()) {
+				if(header.getKey().equalsIgnoreCase("Set-Cookie")) {
+					return null;
+				}
+				if(header.getKey().equalsIgnoreCase("Cache-Control")) {
+					for(String value : header.getValue()) {
+						String directives = value != null ? value.toLowerCase() : "";
+						if(directives.contains("no-store") || directives.contains("no-cache") || directives.contains("private")) {
+							return null;
+						}
+					}
+				}
+			}
+			return new CachedResponse(status, Collections.unmodifiableMap(new HashMap<String, String[]>(headers)), buffer.toByteArray(), ttl);
+		}
+		
+		/**
+		 * Copies a response that cannot be cached to the client.
+		 * 
+		 * @param response
+		 *   the response to the client.
+		 * @throws ServerException
+		 */
+		void copyTo(Response response) throws ServerException {
+			response.setStatus(status);
+			for(Entry<String, String[]> header : headers.entrySet()) {
+				response.setHeader(header.getKey(), header.getValue());
+			}
+			for(Segment segment : segments) {
+				response.addContent(segment.preceding);
+				response.addContent(segment.channel, segment.length);
+			}
+			response.addContent(buffer.toByteArray());
+		}
+	}
+	
+	/**
+	 * Content provided through a channel.
+	 * 
+	 * @author Andrea Funto'
+	 */
+	private static class Segment {
+		
+		/**
+		 * The buffered content preceding the channel data.
+		 */
+		byte [] preceding;
+		
+		/**
+		 * The channel providing the data.
+		 */
+		ReadableByteChannel channel;
+		
+		/**
+		 * The number of bytes to be read from the channel.
+		 */
+		long length;
+		
+		/**
+		 * Constructor.
+		 * 
+		 * @param preceding
+		 *   the buffered content preceding the channel data.
+		 * @param channel
+		 *   the channel providing the data.
+		 * @param length
+		 *   the number of bytes to be read from the channel.
+		 */
+		Segment(byte [] preceding, ReadableByteChannel channel, long length) {
+			this.preceding = preceding;
+			this.channel = channel;
+			this.length = length;
+		}
+	}
+}
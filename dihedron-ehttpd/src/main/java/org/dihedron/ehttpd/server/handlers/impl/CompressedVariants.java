@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server.handlers.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.dihedron.ehttpd.server.resources.CachedStaticResource;
+import org.dihedron.ehttpd.server.resources.FileStaticResource;
+import org.dihedron.ehttpd.server.resources.StaticResource;
+import org.dihedron.ehttpd.server.resources.StreamingStaticResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The compressed variants of a static resource: each is produced the first 
+ * time it is requested and then kept, next to the identity data, until the 
+ * resource changes (as per its modification time and length).
+ * 
+ * @author Andrea Funto'
+ */
+class CompressedVariants {
+	
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(CompressedVariants.class);
+	
+	/**
+	 * The "gzip" content coding.
+	 */
+	static final String GZIP = "gzip";
+	
+	/**
+	 * The "deflate" content coding (zlib format).
+	 */
+	static final String DEFLATE = "deflate";
+	
+	/**
+	 * The resource.
+	 */
+	private StaticResource resource;
+	
+	/**
+	 * The maximum length of the identity data for it to be compressed.
+	 */
+	private long maxLength;
+	
+	/**
+	 * The variants, by content coding.
+	 */
+	private Map<String, Variant> variants = new HashMap<String, Variant>();
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param resource
+	 *   the resource.
+	 * @param maxLength
+	 *   the maximum length of the identity data for it to be compressed.
+	 */
+	CompressedVariants(StaticResource resource, long maxLength) {
+		this.resource = resource;
+		this.maxLength = maxLength;
+	}
+	
+	/**
+	 * Returns the file backing the resource, if any.
+	 * 
+	 * @return
+	 *   the file resource, or <code>null</code> if the resource is not on 
+	 *   the file system.
+	 */
+	FileStaticResource getFile() {
+		StaticResource target = resource;
+		if(target instanceof CachedStaticResource) {
+			target = ((CachedStaticResource)target).getResource();
+		}
+		return target instanceof FileStaticResource ? (FileStaticResource)target : null;
+	}
+	
+	/**
+	 * Returns the compressed data of the resource, compressing it if needed.
+	 * 
+	 * @param coding
+	 *   the content coding, either <code>GZIP</code> or <code>DEFLATE</code>.
+	 * @return
+	 *   the compressed data, or <code>null</code> if the resource is not 
+	 *   available, too large, or does not shrink when compressed.
+	 */
+	byte[] get(String coding) {
+		FileStaticResource file = getFile();
+		long lastModified = file != null ? file.getLastModified() : 0;
+		long length = resource instanceof StreamingStaticResource ? ((StreamingStaticResource)resource).getLength() : -1;
+		if(length > maxLength) {
+			return null;
+		}
+		
+		synchronized(variants) {
+			Variant variant = variants.get(coding);
+			if(variant != null && variant.lastModified == lastModified && variant.length == length) {
+				return variant.data;
+			}
+		}
+		
+		byte [] data = resource.getData();
+		if(data == null || data.length > maxLength) {
+			return null;
+		}
+		byte [] compressed = null;
+		try {
+			compressed = compress(coding, data);
+		} catch(IOException e) {
+			logger.error("error compressing resource", e);
+			return null;
+		}
+		if(compressed.length >= data.length) {
+			logger.debug("resource does not shrink when compressed with {}", coding);
+			compressed = null;
+		} else {
+			logger.debug("resource compressed with {} from {} to {} bytes", new Object[] { coding, data.length, compressed.length });
+		}
+		synchronized(variants) {
+			variants.put(coding, new Variant(compressed, lastModified, length));
+		}
+		return compressed;
+	}
+	
+	/**
+	 * Compresses the given data.
+	 * 
+	 * @param coding
+	 *   the content coding, either <code>GZIP</code> or <code>DEFLATE</code>.
+	 * @param data
+	 *   the data to be compressed.
+	 * @return
+	 *   the compressed data.
+	 * @throws IOException
+	 */
+	static byte[] compress(String coding, byte[] data) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length / 2 + 64);
+		OutputStream output = GZIP.equals(coding) ? new GZIPOutputStream(buffer) : new DeflaterOutputStream(buffer);
+		output.write(data);
+		output.close();
+		return buffer.toByteArray();
+	}
+	
+	/**
+	 * A compressed variant of the resource.
+	 */
+	private static class Variant {
+		
+		/**
+		 * The compressed data, or <code>null</code> if compression does not 
+		 * pay off.
+		 */
+		byte [] data;
+		
+		/**
+		 * The modification time of the resource when it was compressed.
+		 */
+		long lastModified;
+		
+		/**
+		 * The length of the resource when it was compressed, or -1 if unknown.
+		 */
+		long length;
+		
+		/**
+		 * Constructor.
+		 * 
+		 * @param data
+		 *   the compressed data.
+		 * @param lastModified
+		 *   the modification time of the resource.
+		 * @param length
+		 *   the length of the resource.
+		 */
+		Variant(byte [] data, long lastModified, long length) {
+			this.data = data;
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+	}
+}
@@ -0,0 +1,323 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server.handlers.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.dihedron.ehttpd.server.resources.CachedStaticResource;
+import org.dihedron.ehttpd.server.resources.FileStaticResource;
+import org.dihedron.ehttpd.server.resources.InMemoryStaticResource;
+import org.dihedron.ehttpd.server.resources.JarStaticResource;
+import org.dihedron.ehttpd.server.resources.StaticResource;
+import org.dihedron.ehttpd.server.resources.StreamingStaticResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The validators of a static resource, that clients use to revalidate their
+ * cached copies: a strong entity tag and the modification time. Streaming 
+ * resources (files and the like) derive their tag from their length and 
+ * modification time, so that it never takes reading the data; only resources
+ * whose modification time is not known, and the ones held in memory, are 
+ * hashed. The validators are computed the first time they are needed, by a 
+ * single thread, and then kept until the resource changes (as per its 
+ * modification time and length).
+ * 
+ * @author Andrea Funto'
+ */
+class EntityValidators {
+	
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(EntityValidators.class);
+	
+	/**
+	 * The hash algorithm used for entity tags.
+	 */
+	private static final String ALGORITHM = "SHA-1";
+	
+	/**
+	 * The format of HTTP dates (RFC 1123).
+	 */
+	private static final String HTTP_DATE = "EEE, dd MMM yyyy HH:mm:ss zzz";
+	
+	/**
+	 * The size of the buffer used to hash streaming resources.
+	 */
+	private static final int BUFFER_SIZE = 8192;
+	
+	/**
+	 * The resource.
+	 */
+	private StaticResource resource;
+	
+	/**
+	 * The validators of the current version of the resource, if computed.
+	 */
+	private volatile Validators current = null;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param resource
+	 *   the resource.
+	 */
+	EntityValidators(StaticResource resource) {
+		this.resource = resource;
+	}
+	
+	/**
+	 * Returns the validators of the current version of the resource.
+	 * 
+	 * @return
+	 *   the validators, or <code>null</code> if the resource is not available.
+	 */
+	Validators get() {
+		long lastModified = getLastModified(resource);
+		long length = resource instanceof StreamingStaticResource ? ((StreamingStaticResource)resource).getLength() : -1;
+		Validators validators = current;
+		if(validators != null && validators.lastModified == lastModified && validators.length == length) {
+			return validators;
+		}
+		synchronized(this) {
+			// another thread may have got here first
+			validators = current;
+			if(validators != null && validators.lastModified == lastModified && validators.length == length) {
+				return validators;
+			}
+			String tag = null;
+			if(length >= 0 && lastModified > 0) {
+				tag = Long.toHexString(length) + "-" + Long.toHexString(lastModified);
+			} else {
+				try {
+					tag = hash(resource);
+				} catch(IOException e) {
+					logger.error("error hashing resource", e);
+				}
+			}
+			if(tag == null) {
+				return null;
+			}
+			logger.debug("resource entity tag is {}", tag);
+			validators = new Validators(tag, lastModified, length);
+			current = validators;
+			return validators;
+		}
+	}
+	
+	/**
+	 * Returns the modification time of a resource, if known.
+	 * 
+	 * @param resource
+	 *   the resource, possibly cached.
+	 * @return
+	 *   the modification time in milliseconds since the epoch, or 0 if unknown.
+	 */
+	static long getLastModified(StaticResource resource) {
+		if(resource instanceof CachedStaticResource) {
+			resource = ((CachedStaticResource)resource).getResource();
+		}
+		if(resource instanceof FileStaticResource) {
+			return ((FileStaticResource)resource).getLastModified();
+		} else if(resource instanceof JarStaticResource) {
+			return ((JarStaticResource)resource).getLastModified();
+		} else if(resource instanceof InMemoryStaticResource) {
+			return ((InMemoryStaticResource)resource).getLastModified();
+		}
+		return 0;
+	}
+	
+	/**
+	 * Hashes the data of a resource; streaming resources are read through 
+	 * their channel, without loading them into memory.
+	 * 
+	 * @param resource
+	 *   the resource.
+	 * @return
+	 *   the hash in hexadecimal form, or <code>null</code> if the resource is 
+	 *   not available.
+	 * @throws IOException
+	 */
+	static String hash(StaticResource resource) throws IOException {
+		MessageDigest digest = null;
+		try {
+			digest = MessageDigest.getInstance(ALGORITHM);
+		} catch(NoSuchAlgorithmException e) {
+			throw new IOException("hash algorithm " + ALGORITHM + " not available", e);
+		}
+		if(resource instanceof StreamingStaticResource) {
+			if(((StreamingStaticResource)resource).getLength() < 0) {
+				return null;
+			}
+			ReadableByteChannel channel = ((StreamingStaticResource)resource).openChannel();
+			try {
+				ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+				while(channel.read(buffer) != -1) {
+					digest.update(buffer.array(), 0, buffer.position());
+					buffer.clear();
+				}
+			} finally {
+				channel.close();
+			}
+		} else {
+			byte [] data = resource.getData();
+			if(data == null) {
+				return null;
+			}
+			digest.update(data);
+		}
+		StringBuilder hex = new StringBuilder();
+		for(byte b : digest.digest()) {
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+	
+	/**
+	 * Formats a time as an HTTP date.
+	 * 
+	 * @param time
+	 *   the time, in milliseconds since the epoch.
+	 * @return
+	 *   the HTTP date.
+	 */
+	static String formatDate(long time) {
+		SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE, Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("GMT"));
+		return format.format(new Date(time));
+	}
+	
+	/**
+	 * Parses an HTTP date.
+	 * 
+	 * @param date
+	 *   the HTTP date.
+	 * @return
+	 *   the time in milliseconds since the epoch, or -1 if the date is not 
+	 *   valid.
+	 */
+	static long parseDate(String date) {
+		SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE, Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("GMT"));
+		try {
+			return format.parse(date.trim()).getTime();
+		} catch(ParseException e) {
+			logger.debug("invalid HTTP date '{}'", date);
+			return -1;
+		}
+	}
+	
+	/**
+	 * Checks whether an entity tag appears in the value of an <code>
+	 * If-None-Match</code> header; tags are compared regardless of whether 
+	 * they are weak, as the header requires.
+	 * 
+	 * @param header
+	 *   the value of the header.
+	 * @param etag
+	 *   the entity tag of the resource, quoted.
+	 * @return
+	 *   whether the header matches the tag.
+	 */
+	static boolean matches(String header, String etag) {
+		for(String tag : header.split(",")) {
+			tag = tag.trim();
+			if(tag.startsWith("W/")) {
+				tag = tag.substring(2);
+			}
+			if(tag.equals("*") || tag.equals(etag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * The validators of a version of the resource.
+	 */
+	static class Validators {
+		
+		/**
+		 * The entity tag of the identity representation, unquoted.
+		 */
+		final String tag;
+		
+		/**
+		 * The modification time of the resource, or 0 if unknown.
+		 */
+		final long lastModified;
+		
+		/**
+		 * The length of the resource, or -1 if not known without reading it.
+		 */
+		final long length;
+		
+		/**
+		 * The modification time, as an HTTP date.
+		 */
+		final String date;
+		
+		/**
+		 * Constructor.
+		 */
+		Validators(String tag, long lastModified, long length) {
+			this.tag = tag;
+			this.lastModified = lastModified;
+			this.length = length;
+			this.date = lastModified > 0 ? formatDate(lastModified) : null;
+		}
+		
+		/**
+		 * Returns the entity tag of a representation of the resource.
+		 * 
+		 * @param coding
+		 *   the content coding of the representation, or <code>null</code> 
+		 *   for the identity one.
+		 * @return
+		 *   the entity tag, quoted; representations with different codings 
+		 *   have different tags, as their bytes differ.
+		 */
+		String getETag(String coding) {
+			return coding != null ? "\"" + tag + "-" + coding + "\"" : "\"" + tag + "\"";
+		}
+		
+		/**
+		 * Checks whether the modification time of the resource is no later 
+		 * than the given time, at the precision of HTTP dates.
+		 * 
+		 * @param time
+		 *   the time, in milliseconds since the epoch.
+		 * @return
+		 *   whether the resource has not been modified since.
+		 */
+		boolean isNotModifiedSince(long time) {
+			return lastModified > 0 && time >= 0 && lastModified / 1000 <= time / 1000;
+		}
+	}
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server.handlers.impl;
+
+import org.dihedron.ehttpd.exceptions.ApplicationException;
+import org.dihedron.ehttpd.exceptions.ServerException;
+import org.dihedron.ehttpd.server.Request;
+import org.dihedron.ehttpd.server.Response;
+import org.dihedron.ehttpd.server.ServerMetrics;
+import org.dihedron.ehttpd.server.handlers.Handler;
+
+/**
+ * This class exposes the metrics of a server in the Prometheus text 
+ * exposition format, so that they can be scraped by a monitoring system; it
+ * is registered like any other handler, e.g.
+ * <pre>
+ * ServerMetrics metrics = new ServerMetrics();
+ * dispatcher.handle("/metrics").through(new MetricsHandler(metrics));
+ * server.setMetrics(metrics);
+ * </pre>
+ * 
+ * @author Andrea Funto'
+ */
+public class MetricsHandler implements Handler {
+	
+	/**
+	 * The content type of the Prometheus text exposition format.
+	 */
+	public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+	
+	/**
+	 * The metrics exposed.
+	 */
+	private ServerMetrics metrics;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param metrics
+	 *   the metrics to expose, the same the server records into.
+	 */
+	public MetricsHandler(ServerMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Writes out a snapshot of the metrics.
+	 * 
+	 * @see org.dihedron.ehttpd.server.handlers.Handler#handle(org.dihedron.ehttpd.server.Request, org.dihedron.ehttpd.server.Response)
+	 */
+	@Override
+	public void handle(Request request, Response response) throws ApplicationException, ServerException {
+		StringBuilder snapshot = new StringBuilder(4096);
+		metrics.writeTo(snapshot);
+		response.setHeader("Content-Type", CONTENT_TYPE);
+		response.setHeader("Cache-Control", "no-cache");
+		response.addContent(snapshot.toString(), "UTF-8");
+	}
+}
@@ -1,80 +1,602 @@
-/**
- * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
- * 
- * This file is part of the Dihedron embeddable web container ("e-httpd").
- *
- * "e-httpd" is free software: you can redistribute it and/or modify it under 
- * the terms of the GNU Lesser General Public License as published by the Free 
- * Software Foundation, either version 3 of the License, or (at your option) 
- * any later version.
- *
- * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
- * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
- * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
- * details.
- *
- * You should have received a copy of the GNU Lesser General Public License 
- * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
- */
-package org.dihedron.ehttpd.server.handlers.impl;
-
-import org.dihedron.ehttpd.exceptions.ApplicationException;
-import org.dihedron.ehttpd.exceptions.ResourceNotFoundException;
-import org.dihedron.ehttpd.exceptions.ServerException;
-import org.dihedron.ehttpd.server.Request;
-import org.dihedron.ehttpd.server.Response;
-import org.dihedron.ehttpd.server.handlers.Handler;
-import org.dihedron.ehttpd.server.resources.StaticResource;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-/**
- * This class supports serving of static resources (like CSS 
- * style sheets, static HTML pages etc.); it supports only 
- * GET requests, and throws on other verbs.
- * 
- * @author Andrea Funto'
- */
-public class ResourceRequestHandler implements Handler {
-	
-	/**
-	 * The logger.
-	 */
-	private static final Logger logger = LoggerFactory.getLogger(ResourceRequestHandler.class);
-	
-	/**
-	 * Static resource provider.
-	 */
-	private StaticResource resource;
-	
-	/**
-	 * Constructor.
-	 * 
-	 * @param resource
-	 *   a static resource provider, which is in charge of
-	 *   providing a MIME-type description of the resource
-	 *   and the resource data, as a raw byte array.
-	 */
-	public ResourceRequestHandler(StaticResource resource) {
-		this.resource = resource;
-	}
-
-	/**
-	 * Serves a static resource to the client.
-	 * 
-	 * @see org.dihedron.ehttpd.server.handlers.Handler#onGet(it.bankitalia.sisi.dsvaa.httpd.Request, it.bankitalia.sisi.dsvaa.httpd.Response)
-	 */
-	@Override
-	public void handle(Request request, Response response) throws ApplicationException, ServerException {
-		String type = resource.getContentType();
-		byte [] data = resource.getData();
-		
-		if (data != null) {
-			response.setHeader("Content-Type", type);
-			response.addContent(data);
-		} else {
-			logger.error("resource not found, throwing exception");
-			throw new ResourceNotFoundException();
-		}
-	}
-}
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server.handlers.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.dihedron.ehttpd.exceptions.ApplicationException;
+import org.dihedron.ehttpd.exceptions.ResourceNotFoundException;
+import org.dihedron.ehttpd.exceptions.ServerException;
+import org.dihedron.ehttpd.server.Request;
+import org.dihedron.ehttpd.server.HttpQuery;
+import org.dihedron.ehttpd.server.Method;
+import org.dihedron.ehttpd.server.Response;
+import org.dihedron.ehttpd.server.Status;
+import org.dihedron.ehttpd.server.handlers.Handler;
+import org.dihedron.ehttpd.server.resources.FileStaticResource;
+import org.dihedron.ehttpd.server.resources.StaticResource;
+import org.dihedron.ehttpd.server.resources.StreamingStaticResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class supports serving of static resources (like CSS 
+ * style sheets, static HTML pages etc.); it supports only 
+ * GET requests, and throws on other verbs. Textual resources
+ * are compressed if the client accepts it: a pre-compressed
+ * ".gz" sibling of a file is served if available, otherwise
+ * the resource is compressed once and the result is kept.
+ * Responses carry a strong <code>ETag</code> and, if known, a
+ * <code>Last-Modified</code> header, so that clients can 
+ * revalidate their copies with a conditional request, which
+ * is answered with a <code>304 Not Modified</code> response
+ * when the resource has not changed. Byte ranges of the 
+ * uncompressed resource can be requested, to resume downloads
+ * or seek in media; the slices of file resources are sent 
+ * straight from the file.
+ * 
+ * @author Andrea Funto'
+ */
+public class ResourceRequestHandler implements Handler {
+	
+	/**
+	 * The logger.
+	 */
+	private static final Logger logger = LoggerFactory.getLogger(ResourceRequestHandler.class);
+	
+	/**
+	 * The default maximum length of resources compressed on the fly; larger 
+	 * ones are sent as they are, unless a pre-compressed sibling is available.
+	 */
+	public static final long DEFAULT_MAX_COMPRESSIBLE_LENGTH = 8 * 1024 * 1024;
+	
+	/**
+	 * The extension of pre-compressed (gzip) siblings of file resources.
+	 */
+	public static final String GZIP_EXTENSION = ".gz";
+	
+	/**
+	 * The generator of the boundaries of multipart responses.
+	 */
+	private static final Random boundaries = new Random();
+	
+	/**
+	 * Static resource provider.
+	 */
+	private StaticResource resource;
+	
+	/**
+	 * Whether compression of textual resources is enabled.
+	 */
+	private boolean compression = true;
+	
+	/**
+	 * The compressed variants of the resource.
+	 */
+	private CompressedVariants variants;
+	
+	/**
+	 * The validators of the resource.
+	 */
+	private EntityValidators validators;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param resource
+	 *   a static resource provider, which is in charge of
+	 *   providing a MIME-type description of the resource
+	 *   and the resource data, as a raw byte array.
+	 */
+	public ResourceRequestHandler(StaticResource resource) {
+		this(resource, DEFAULT_MAX_COMPRESSIBLE_LENGTH);
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param resource
+	 *   a static resource provider.
+	 * @param maxCompressibleLength
+	 *   the maximum length of resource data to be compressed on the fly.
+	 */
+	public ResourceRequestHandler(StaticResource resource, long maxCompressibleLength) {
+		this.resource = resource;
+		this.variants = new CompressedVariants(resource, maxCompressibleLength);
+		this.validators = new EntityValidators(resource);
+	}
+	
+	/**
+	 * Enables or disables compression of textual resources.
+	 * 
+	 * @param compression
+	 *   whether resources should be compressed when the client accepts it.
+	 */
+	public void setCompression(boolean compression) {
+		this.compression = compression;
+	}
+
+	/**
+	 * Serves a static resource to the client; streaming resources are sent 
+	 * without loading their data into memory, and their length is used as
+	 * the response <code>Content-Length</code>.
+	 * 
+	 * @see org.dihedron.ehttpd.server.handlers.Handler#onGet(it.bankitalia.sisi.dsvaa.httpd.Request, it.bankitalia.sisi.dsvaa.httpd.Response)
+	 */
+	@Override
+	public void handle(Request request, Response response) throws ApplicationException, ServerException {
+		HttpQuery query = request.getHttpQuery();
+		
+		// pick the representation first, since its validators depend on it
+		Compressed compressed = null;
+		if(compression && isCompressible(resource.getContentType())) {
+			String coding = negotiate(query.getHeader("Accept-Encoding"));
+			if(coding != null) {
+				compressed = selectCompressed(coding);
+			}
+			if(compressed != null || coding == null) {
+				// caches must not serve a compressed variant to other clients
+				response.setHeader("Vary", "Accept-Encoding");
+			}
+		}
+		
+		EntityValidators.Validators current = validators.get();
+		if(checkPreconditions(query, current, compressed != null ? compressed.coding : null, response)) {
+			if(compressed != null) {
+				compressed.discard();
+			}
+			return;
+		}
+		
+		if(compressed != null) {
+			compressed.send(resource.getContentType(), response);
+			return;
+		}
+		
+		response.setHeader("Accept-Ranges", ByteRanges.BYTES);
+		if(sendRanges(query, current, response)) {
+			return;
+		}
+		
+		if(resource instanceof StreamingStaticResource) {
+			stream((StreamingStaticResource)resource, response);
+			return;
+		}
+		
+		String type = resource.getContentType();
+		byte [] data = resource.getData();
+		
+		if (data != null) {
+			response.setHeader("Content-Type", type);
+			response.addContent(data);
+		} else {
+			logger.error("resource not found, throwing exception");
+			throw new ResourceNotFoundException();
+		}
+	}
+	
+	/**
+	 * Sets the validators of the resource on the response, and checks whether
+	 * the client already has the current version of the representation it 
+	 * would be sent; if so, the response to a <code>GET</code> or <code>HEAD
+	 * </code> request is turned into a <code>304 Not Modified</code> one, with
+	 * no body, and that to any other request into a <code>412 Precondition 
+	 * Failed</code> one. As per RFC 7232, <code>If-None-Match</code> takes 
+	 * precedence over <code>If-Modified-Since</code>, which only applies to 
+	 * <code>GET</code> and <code>HEAD</code> requests.
+	 * 
+	 * @param query
+	 *   the request line and headers.
+	 * @param current
+	 *   the validators of the resource, or <code>null</code> if it is not 
+	 *   available.
+	 * @param coding
+	 *   the content coding of the representation, or <code>null</code>.
+	 * @param response
+	 *   the response object.
+	 * @return
+	 *   whether the response is a <code>304 Not Modified</code> or a <code>
+	 *   412 Precondition Failed</code> one.
+	 * @throws ServerException
+	 */
+	private boolean checkPreconditions(HttpQuery query, EntityValidators.Validators current, String coding, Response response) throws ServerException {
+		if(current == null) {
+			// not available, let the request fail as usual
+			return false;
+		}
+		String etag = current.getETag(coding);
+		response.setHeader("ETag", etag);
+		if(current.date != null) {
+			response.setHeader("Last-Modified", current.date);
+		}
+		
+		boolean safe = query.getMethod() == Method.GET || query.getMethod() == Method.HEAD;
+		boolean notModified = false;
+		String ifNoneMatch = query.getHeader("If-None-Match");
+		if(ifNoneMatch != null) {
+			notModified = EntityValidators.matches(ifNoneMatch, etag);
+			if(notModified && !safe) {
+				logger.debug("entity tag matches on {} request, answering with 412", query.getMethod());
+				response.setStatus(Status.STATUS_412);
+				return true;
+			}
+		} else if(safe) {
+			String ifModifiedSince = query.getHeader("If-Modified-Since");
+			notModified = ifModifiedSince != null && current.isNotModifiedSince(EntityValidators.parseDate(ifModifiedSince));
+		}
+		if(notModified) {
+			logger.debug("resource not modified, answering with 304");
+			response.setStatus(Status.STATUS_304);
+		}
+		return notModified;
+	}
+	
+	/**
+	 * Sends the byte ranges requested through a <code>Range</code> header, if
+	 * any, in a <code>206 Partial Content</code> response: a single range is 
+	 * sent as it is, several ranges as a <code>multipart/byteranges</code> 
+	 * body; if none of the ranges can be satisfied, the response is a <code>
+	 * 416 Range Not Satisfiable</code> one. Ranges are ignored if the <code>
+	 * If-Range</code> condition does not hold, so that a client resuming a 
+	 * download of a resource that has since changed gets it in full.
+	 * 
+	 * @param query
+	 *   the request line and headers.
+	 * @param current
+	 *   the validators of the resource, or <code>null</code> if it is not 
+	 *   available.
+	 * @param response
+	 *   the response object.
+	 * @return
+	 *   whether the response has been sent as a partial one.
+	 * @throws ServerException
+	 */
+	private boolean sendRanges(HttpQuery query, EntityValidators.Validators current, Response response) throws ServerException {
+		String header = query.getHeader("Range");
+		if(header == null || current == null || query.getMethod() != Method.GET) {
+			return false;
+		}
+		String condition = query.getHeader("If-Range");
+		if(condition != null && !isRangeValid(condition.trim(), current)) {
+			logger.debug("resource changed, ignoring range request");
+			return false;
+		}
+		
+		byte [] data = null;
+		long length = -1;
+		if(resource instanceof StreamingStaticResource) {
+			length = ((StreamingStaticResource)resource).getLength();
+		} else {
+			data = resource.getData();
+			length = data != null ? data.length : -1;
+		}
+		if(length < 0) {
+			return false;
+		}
+		List<long[]> ranges = ByteRanges.parse(header, length);
+		if(ranges == null) {
+			logger.debug("ignoring invalid range request '{}'", header);
+			return false;
+		}
+		
+		if(ranges.isEmpty()) {
+			logger.debug("range request '{}' not satisfiable", header);
+			response.setStatus(Status.STATUS_416);
+			response.setHeader("Content-Range", ByteRanges.format(null, length));
+			return true;
+		}
+		
+		response.setStatus(Status.STATUS_206);
+		String type = resource.getContentType();
+		if(ranges.size() == 1) {
+			response.setHeader("Content-Type", type);
+			response.setHeader("Content-Range", ByteRanges.format(ranges.get(0), length));
+			addSlice(data, ranges.get(0), response);
+			return true;
+		}
+		String boundary = Long.toHexString(boundaries.nextLong());
+		response.setHeader("Content-Type", "multipart/byteranges; boundary=" + boundary);
+		for(long [] range : ranges) {
+			response.addContent("\r\n--" + boundary + "\r\nContent-Type: " + type + "\r\nContent-Range: " + ByteRanges.format(range, length) + "\r\n\r\n", "ISO-8859-1");
+			addSlice(data, range, response);
+		}
+		response.addContent("\r\n--" + boundary + "--\r\n", "ISO-8859-1");
+		return true;
+	}
+	
+	/**
+	 * Checks the <code>If-Range</code> condition of a range request: it holds
+	 * if the client has the current version of the resource, identified by a
+	 * strong entity tag or by its exact modification time.
+	 * 
+	 * @param condition
+	 *   the value of the <code>If-Range</code> header.
+	 * @param current
+	 *   the validators of the resource.
+	 * @return
+	 *   whether the ranges can be sent.
+	 */
+	private static boolean isRangeValid(String condition, EntityValidators.Validators current) {
+		if(condition.startsWith("\"") || condition.startsWith("W/")) {
+			// weak tags never match
+			return condition.equals(current.getETag(null));
+		}
+		long time = EntityValidators.parseDate(condition);
+		return time >= 0 && current.lastModified > 0 && time / 1000 == current.lastModified / 1000;
+	}
+	
+	/**
+	 * Adds a slice of the resource to the response; slices of files are sent
+	 * straight from the file, only the requested bytes being read.
+	 * 
+	 * @param data
+	 *   the resource data, or <code>null</code> for streaming resources.
+	 * @param range
+	 *   the first and last byte positions of the slice.
+	 * @param response
+	 *   the response object.
+	 * @throws ServerException
+	 */
+	private void addSlice(byte [] data, long [] range, Response response) throws ServerException {
+		long length = range[1] - range[0] + 1;
+		if(data == null) {
+			ReadableByteChannel channel = null;
+			try {
+				channel = ((StreamingStaticResource)resource).openChannel();
+				if(channel instanceof FileChannel) {
+					((FileChannel)channel).position(range[0]);
+					response.addContent(channel, length);
+					return;
+				}
+				channel.close();
+			} catch(IOException e) {
+				if(channel != null) {
+					try {
+						channel.close();
+					} catch(IOException ex) {
+						logger.debug("error closing resource channel", ex);
+					}
+				}
+				throw new ServerException("error opening resource slice", e);
+			}
+			// e.g. cached resources, which are in memory anyway
+			data = resource.getData();
+			if(data == null || data.length <= range[1]) {
+				throw new ServerException("resource changed while being sent");
+			}
+		}
+		response.addContent(Arrays.copyOfRange(data, (int)range[0], (int)range[1] + 1));
+	}
+	
+	/**
+	 * Serves a streaming static resource to the client.
+	 * 
+	 * @param resource
+	 *   the streaming resource.
+	 * @param response
+	 *   the response object.
+	 * @throws ApplicationException
+	 *   if the resource is not available.
+	 * @throws ServerException
+	 */
+	private void stream(StreamingStaticResource resource, Response response) throws ApplicationException, ServerException {
+		long length = resource.getLength();
+		if(length < 0) {
+			logger.error("resource not found, throwing exception");
+			throw new ResourceNotFoundException();
+		}
+		
+		ReadableByteChannel channel = null;
+		try {
+			channel = resource.openChannel();
+		} catch(IOException e) {
+			logger.error("resource cannot be opened, throwing exception", e);
+			throw new ResourceNotFoundException();
+		}
+		response.setHeader("Content-Type", resource.getContentType());
+		response.addContent(channel, length);
+	}
+	
+	/**
+	 * Picks the compressed variant of the resource, if available: a fresh 
+	 * pre-compressed sibling file, or the data compressed on the fly.
+	 * 
+	 * @param coding
+	 *   the content coding accepted by the client.
+	 * @return
+	 *   the compressed variant, or <code>null</code> if the identity data 
+	 *   must be sent.
+	 */
+	private Compressed selectCompressed(String coding) {
+		FileStaticResource file = variants.getFile();
+		if(file != null && CompressedVariants.GZIP.equals(coding)) {
+			File sibling = new File(file.getResourcePath() + GZIP_EXTENSION);
+			if(sibling.isFile() && sibling.lastModified() >= file.getLastModified()) {
+				try {
+					long length = sibling.length();
+					ReadableByteChannel channel = new FileInputStream(sibling).getChannel();
+					logger.debug("serving pre-compressed file '{}'", sibling);
+					return new Compressed(coding, channel, length, null);
+				} catch(IOException e) {
+					logger.warn("pre-compressed file '{}' cannot be opened", sibling);
+				}
+			}
+		}
+		
+		byte [] data = variants.get(coding);
+		if(data != null) {
+			return new Compressed(coding, null, data.length, data);
+		}
+		return null;
+	}
+	
+	/**
+	 * Picks the content coding to be used, as per the client preferences.
+	 * 
+	 * @param accepted
+	 *   the value of the <code>Accept-Encoding</code> header, if any.
+	 * @return
+	 *   either "gzip" or "deflate", or <code>null</code> if the client does 
+	 *   not accept any of them.
+	 */
+	static String negotiate(String accepted) {
+		if(accepted == null) {
+			return null;
+		}
+		float gzip = 0, deflate = 0, any = 0;
+		for(String token : accepted.split(",")) {
+			String [] parts = token.split(";");
+			String coding = parts[0].trim().toLowerCase();
+			float quality = 1;
+			for(int i = 1; i < parts.length; ++i) {
+				String parameter = parts[i].trim();
+				if(parameter.startsWith("q=")) {
+					try {
+						quality = Float.parseFloat(parameter.substring(2).trim());
+					} catch(NumberFormatException e) {
+						quality = 0;
+					}
+				}
+			}
+			if(coding.equals(CompressedVariants.GZIP) || coding.equals("x-gzip")) {
+				gzip = quality;
+			} else if(coding.equals(CompressedVariants.DEFLATE)) {
+				deflate = quality;
+			} else if(coding.equals("*")) {
+				any = quality;
+			}
+		}
+		if(gzip == 0 && accepted.indexOf("gzip") == -1) {
+			gzip = any;
+		}
+		if(gzip > 0 && gzip >= deflate) {
+			return CompressedVariants.GZIP;
+		}
+		return deflate > 0 ? CompressedVariants.DEFLATE : null;
+	}
+	
+	/**
+	 * Checks whether resources of the given type are worth compressing.
+	 * 
+	 * @param type
+	 *   the resource Content-Type.
+	 * @return
+	 *   whether the type is textual.
+	 */
+	static boolean isCompressible(String type) {
+		if(type == null) {
+			return false;
+		}
+		type = type.toLowerCase();
+		return type.startsWith("text/") 
+				|| type.startsWith("application/javascript") 
+				|| type.startsWith("application/x-javascript")
+				|| type.startsWith("application/json") 
+				|| type.startsWith("application/xml") 
+				|| type.indexOf("+xml") != -1;
+	}
+	
+	/**
+	 * A compressed variant of the resource, picked before any validator is 
+	 * set on the response; it is read either from a file or from memory.
+	 * 
+	 * @author Andrea Funto'
+	 */
+	private static class Compressed {
+		
+		/**
+		 * The content coding.
+		 */
+		String coding;
+		
+		/**
+		 * The channel on the pre-compressed file, or <code>null</code>.
+		 */
+		ReadableByteChannel channel;
+		
+		/**
+		 * The length of the compressed data.
+		 */
+		long length;
+		
+		/**
+		 * The data compressed on the fly, or <code>null</code>.
+		 */
+		byte [] data;
+		
+		/**
+		 * Constructor.
+		 * 
+		 * @param coding
+		 *   the content coding.
+		 * @param channel
+		 *   the channel on the pre-compressed file, or <code>null</code>.
+		 * @param length
+		 *   the length of the compressed data.
+		 * @param data
+		 *   the data compressed on the fly, or <code>null</code>.
+		 */
+		Compressed(String coding, ReadableByteChannel channel, long length, byte [] data) {
+			this.coding = coding;
+			this.channel = channel;
+			this.length = length;
+			this.data = data;
+		}
+		
+		/**
+		 * Sends the compressed data; the response takes ownership of the 
+		 * channel, if any.
+		 * 
+		 * @param type
+		 *   the content type of the resource.
+		 * @param response
+		 *   the response object.
+		 * @throws ServerException
+		 */
+		void send(String type, Response response) throws ServerException {
+			response.setHeader("Content-Type", type);
+			response.setHeader("Content-Encoding", coding);
+			if(channel != null) {
+				response.addContent(channel, length);
+			} else {
+				response.addContent(data);
+			}
+		}
+		
+		/**
+		 * Releases the channel, if any, when the data is not to be sent.
+		 */
+		void discard() {
+			if(channel != null) {
+				try {
+					channel.close();
+				} catch(IOException e) {
+					logger.debug("error closing pre-compressed file", e);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,507 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server.handlers.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.dihedron.ehttpd.server.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A small in-memory cache of complete responses, meant to sit in front of
+ * expensive pages that are requested over and over with the same parameters;
+ * entries live for a short time, and the overall memory they take is bounded,
+ * the least recently used ones being evicted first. The cache also keeps 
+ * track of the responses being produced, so that concurrent requests for the
+ * same key can wait for the first one instead of producing the same response
+ * again. A cache can be shared by several routes, through <code>
+ * CachingHandler</code>s.
+ * 
+ * @author Andrea Funto'
+ */
+public class ResponseCache {
+	
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(ResponseCache.class);
+	
+	/**
+	 * The default maximum size of a single entry, as a fraction of the overall 
+	 * capacity.
+	 */
+	private static final int DEFAULT_ENTRY_FRACTION = 8;
+	
+	/**
+	 * An estimate of the memory taken by each entry, besides its key and its 
+	 * response: the map entry and the key string object.
+	 */
+	private static final int ENTRY_OVERHEAD = 64;
+	
+	/**
+	 * The cached responses, in least recently used order.
+	 */
+	private LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true);
+	
+	/**
+	 * The responses being produced, by key.
+	 */
+	private ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<String, Flight>();
+	
+	/**
+	 * The maximum overall size of the cached responses, in bytes.
+	 */
+	private long capacity;
+	
+	/**
+	 * The maximum size of a single response, in bytes; larger responses are 
+	 * not cached.
+	 */
+	private long maxEntrySize;
+	
+	/**
+	 * The overall size of the cached responses and their keys, in bytes.
+	 */
+	private long size = 0;
+	
+	/**
+	 * The number of lookups that found a valid response.
+	 */
+	private AtomicLong hits = new AtomicLong(0);
+	
+	/**
+	 * The number of lookups that found no response, or an expired one.
+	 */
+	private AtomicLong misses = new AtomicLong(0);
+	
+	/**
+	 * The number of lookups that waited for the same response to be produced 
+	 * by another request.
+	 */
+	private AtomicLong coalesced = new AtomicLong(0);
+	
+	/**
+	 * The number of entries evicted to make room for new ones.
+	 */
+	private AtomicLong evictions = new AtomicLong(0);
+	
+	/**
+	 * Constructor; responses larger than an eighth of the capacity are not 
+	 * cached.
+	 * 
+	 * @param capacity
+	 *   the maximum overall size of the cached responses, in bytes.
+	 */
+	public ResponseCache(long capacity) {
+		this(capacity, capacity / DEFAULT_ENTRY_FRACTION);
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param capacity
+	 *   the maximum overall size of the cached responses, in bytes.
+	 * @param maxEntrySize
+	 *   the maximum size of a single response, in bytes.
+	 */
+	public ResponseCache(long capacity, long maxEntrySize) {
+		this.capacity = capacity;
+		this.maxEntrySize = Math.min(maxEntrySize, capacity);
+		logger.debug("creating response cache of {} bytes (max {} bytes per entry)", capacity, this.maxEntrySize);
+	}
+	
+	/**
+	 * Checks whether a response of the given size would be cached.
+	 * 
+	 * @param length
+	 *   the size of the response, in bytes.
+	 * @return
+	 *   whether a response of the given size fits in the cache.
+	 */
+	public boolean isCacheable(long length) {
+		return length >= 0 && length <= maxEntrySize;
+	}
+	
+	/**
+	 * Looks up a response; expired responses are discarded.
+	 * 
+	 * @param key
+	 *   the response key.
+	 * @return
+	 *   the cached response, or <code>null</code> if not available.
+	 */
+	public CachedResponse get(String key) {
+		long now = System.nanoTime();
+		synchronized(this) {
+			CachedResponse entry = entries.get(key);
+			if(entry != null && now - entry.expires < 0) {
+				hits.incrementAndGet();
+				return entry;
+			}
+			if(entry != null) {
+				logger.trace("response for '{}' expired", key);
+				entries.remove(key);
+				size -= getSize(key, entry);
+			}
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+	
+	/**
+	 * Stores a response, evicting the least recently used entries as needed 
+	 * to stay within the capacity; entries larger than the maximum entry size,
+	 * key included, are not stored.
+	 * 
+	 * @param key
+	 *   the response key.
+	 * @param response
+	 *   the response.
+	 */
+	public synchronized void put(String key, CachedResponse response) {
+		if(response == null || !isCacheable(getSize(key, response))) {
+			return;
+		}
+		CachedResponse previous = entries.put(key, response);
+		if(previous != null) {
+			size -= getSize(key, previous);
+		}
+		size += getSize(key, response);
+		Iterator<Entry<String, CachedResponse>> iterator = entries.entrySet().iterator();
+		while(size > capacity && iterator.hasNext()) {
+			Entry<String, CachedResponse> eldest = iterator.next();
+			if(!eldest.getKey().equals(key)) {
+				size -= getSize(eldest.getKey(), eldest.getValue());
+				iterator.remove();
+				evictions.incrementAndGet();
+			}
+		}
+	}
+	
+	/**
+	 * Discards a response, if cached.
+	 * 
+	 * @param key
+	 *   the response key.
+	 */
+	public synchronized void invalidate(String key) {
+		CachedResponse entry = entries.remove(key);
+		if(entry != null) {
+			size -= getSize(key, entry);
+		}
+	}
+	
+	/**
+	 * Discards all cached responses; counters are not reset.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		size = 0;
+	}
+	
+	/**
+	 * Returns an estimate of the memory taken by an entry: its response, its
+	 * key, which holds the sorted parameters and the selected header values 
+	 * and can be large, at two bytes per character, and the entry itself.
+	 * 
+	 * @param key
+	 *   the response key.
+	 * @param response
+	 *   the response.
+	 * @return
+	 *   the size of the entry, in bytes.
+	 */
+	private static long getSize(String key, CachedResponse response) {
+		return response.size + ENTRY_OVERHEAD + 2L * key.length();
+	}
+	
+	/**
+	 * Registers the caller as the one producing the response for a key, 
+	 * unless another request is already doing so.
+	 * 
+	 * @param key
+	 *   the response key.
+	 * @param flight
+	 *   the flight to register.
+	 * @return
+	 *   <code>null</code> if the caller must produce the response and then 
+	 *   call <code>land()</code>, or the flight of the request producing it.
+	 */
+	Flight depart(String key, Flight flight) {
+		Flight previous = flights.putIfAbsent(key, flight);
+		if(previous != null) {
+			coalesced.incrementAndGet();
+		}
+		return previous;
+	}
+	
+	/**
+	 * Stores the response produced for a key, if any, and wakes up the 
+	 * requests waiting for it.
+	 * 
+	 * @param key
+	 *   the response key.
+	 * @param flight
+	 *   the flight registered through <code>depart()</code>.
+	 * @param response
+	 *   the response, or <code>null</code> if it cannot be cached.
+	 */
+	void land(String key, Flight flight, CachedResponse response) {
+		try {
+			if(response != null) {
+				put(key, response);
+			}
+		} finally {
+			flights.remove(key, flight);
+			flight.complete(response);
+		}
+	}
+	
+	/**
+	 * Returns the maximum overall size of the cached responses.
+	 * 
+	 * @return
+	 *   the capacity of the cache, in bytes.
+	 */
+	public long getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Returns the overall size of the cached responses, keys included.
+	 * 
+	 * @return
+	 *   the size of the cached responses and their keys, in bytes.
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+	
+	/**
+	 * Returns the number of cached responses.
+	 * 
+	 * @return
+	 *   the number of cached responses.
+	 */
+	public synchronized int getCount() {
+		return entries.size();
+	}
+	
+	/**
+	 * Returns the number of lookups that found a valid response.
+	 * 
+	 * @return
+	 *   the number of cache hits.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+	
+	/**
+	 * Returns the number of lookups that found no response, or an expired one;
+	 * this includes those that were then coalesced.
+	 * 
+	 * @return
+	 *   the number of cache misses.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+	
+	/**
+	 * Returns the number of misses that waited for another request to produce
+	 * the same response, instead of producing it again.
+	 * 
+	 * @return
+	 *   the number of coalesced requests.
+	 */
+	public long getCoalesced() {
+		return coalesced.get();
+	}
+	
+	/**
+	 * Returns the number of entries evicted to make room for new ones.
+	 * 
+	 * @return
+	 *   the number of evictions.
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+	
+	/**
+	 * A cached response: its status, headers and content.
+	 * 
+	 * @author Andrea Funto'
+	 */
+	public static class CachedResponse {
+		
+		/**
+		 * An estimate of the memory taken by each header, besides its name and
+		 * values.
+		 */
+		private static final int HEADER_OVERHEAD = 32;
+		
+		/**
+		 * The HTTP status.
+		 */
+		final Status status;
+		
+		/**
+		 * The response headers.
+		 */
+		final Map<String, String[]> headers;
+		
+		/**
+		 * The response content.
+		 */
+		final byte [] content;
+		
+		/**
+		 * The time the response was produced at, as per <code>System.nanoTime()
+		 * </code>.
+		 */
+		final long created;
+		
+		/**
+		 * The time the response expires at, as per <code>System.nanoTime()
+		 * </code>.
+		 */
+		final long expires;
+		
+		/**
+		 * An estimate of the memory taken by the response, in bytes.
+		 */
+		final long size;
+		
+		/**
+		 * Constructor.
+		 * 
+		 * @param status
+		 *   the HTTP status.
+		 * @param headers
+		 *   the response headers, which must not be modified afterwards.
+		 * @param content
+		 *   the response content.
+		 * @param ttl
+		 *   how long the response can be served from the cache, in milliseconds.
+		 */
+		CachedResponse(Status status, Map<String, String[]> headers, byte [] content, long ttl) {
+			this.status = status;
+			this.headers = headers;
+			this.content = content;
+			this.created = System.nanoTime();
+			this.expires = created + ttl * 1000000L;
+			long length = content.length;
+			for(Entry<String, String[]> header : headers.entrySet()) {
+				length += HEADER_OVERHEAD + header.getKey().length();
+				for(String value : header.getValue()) {
+					length += value != null ? value.length() : 0;
+				}
+			}
+			this.size = length;
+		}
+		
+		/**
+		 * Returns the HTTP status.
+		 * 
+		 * @return
+		 *   the HTTP status.
+		 */
+		public Status getStatus() {
+			return status;
+		}
+		
+		/**
+		 * Returns the size of the response content.
+		 * 
+		 * @return
+		 *   the size of the content, in bytes.
+		 */
+		public int getContentLength() {
+			return content.length;
+		}
+		
+		/**
+		 * Returns the age of the response.
+		 * 
+		 * @return
+		 *   the time elapsed since the response was produced, in seconds.
+		 */
+		public long getAge() {
+			return (System.nanoTime() - created) / 1000000000L;
+		}
+	}
+	
+	/**
+	 * A response being produced by a request, which other requests for the 
+	 * same key can wait for.
+	 * 
+	 * @author Andrea Funto'
+	 */
+	static class Flight {
+		
+		/**
+		 * Released once the response has been produced, or has failed.
+		 */
+		private final CountDownLatch done = new CountDownLatch(1);
+		
+		/**
+		 * The response produced, or <code>null</code> if it cannot be cached.
+		 */
+		private volatile CachedResponse response = null;
+		
+		/**
+		 * Records the outcome and wakes up the waiting requests.
+		 * 
+		 * @param response
+		 *   the response, or <code>null</code> if it cannot be cached.
+		 */
+		void complete(CachedResponse response) {
+			this.response = response;
+			done.countDown();
+		}
+		
+		/**
+		 * Waits for the response to be produced.
+		 * 
+		 * @param timeout
+		 *   the maximum time to wait, in milliseconds.
+		 * @return
+		 *   the response, or <code>null</code> if it cannot be cached or it
+		 *   was not produced in time, and the caller must produce its own.
+		 * @throws InterruptedException
+		 */
+		CachedResponse await(long timeout) throws InterruptedException {
+			if(done.await(timeout, TimeUnit.MILLISECONDS)) {
+				return response;
+			}
+			return null;
+		}
+	}
+}
@@ -0,0 +1,437 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server.multipart;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A streaming reader for <code>multipart/form-data</code> (and other 
+ * multipart) request bodies: parts are returned one at a time, each with its
+ * headers and a stream on its content, which ends at the next boundary. Only
+ * a small buffer is kept in memory, regardless of the size of the parts; 
+ * moving on to the next part skips whatever is left of the current one.
+ *
+ * @author Andrea Funto'
+ */
+public class MultipartReader {
+
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(MultipartReader.class);
+	
+	/**
+	 * The size of the read buffer.
+	 */
+	private static final int BUFFER_SIZE = 16 * 1024;
+	
+	/**
+	 * The maximum size of the headers of a part.
+	 */
+	static final int MAX_HEADERS_SIZE = 8 * 1024;
+	
+	/**
+	 * The maximum length of a boundary, as per RFC 2046.
+	 */
+	private static final int MAX_BOUNDARY_LENGTH = 70;
+	
+	/**
+	 * The stream on the request body.
+	 */
+	private InputStream input;
+	
+	/**
+	 * The delimiter preceding each part: CRLF, two dashes and the boundary.
+	 */
+	private byte [] delimiter;
+	
+	/**
+	 * The read buffer.
+	 */
+	private byte [] buffer = new byte[BUFFER_SIZE];
+	
+	/**
+	 * The offset of the first unread byte in the buffer.
+	 */
+	private int start = 0;
+	
+	/**
+	 * The offset past the last valid byte in the buffer.
+	 */
+	private int end = 0;
+	
+	/**
+	 * Whether the end of the underlying stream has been reached.
+	 */
+	private boolean eof = false;
+	
+	/**
+	 * The offset of the next delimiter in the buffer, or -1 if not found yet.
+	 */
+	private int found = -1;
+	
+	/**
+	 * The offset up to which the buffer is known not to contain the start of 
+	 * a delimiter.
+	 */
+	private int scanned = 0;
+	
+	/**
+	 * Whether the preamble before the first part has been skipped.
+	 */
+	private boolean started = false;
+	
+	/**
+	 * Whether the current part's content has been read up to the delimiter.
+	 */
+	private boolean partEnded = true;
+	
+	/**
+	 * Whether the closing delimiter has been read.
+	 */
+	private boolean finished = false;
+	
+	/**
+	 * The part being read.
+	 */
+	private Part current = null;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param input
+	 *   the stream on the request body.
+	 * @param boundary
+	 *   the boundary, as per the <code>Content-Type</code> header.
+	 * @throws IOException
+	 *   if the boundary is not valid.
+	 */
+	public MultipartReader(InputStream input, String boundary) throws IOException {
+		if(boundary == null || boundary.length() == 0 || boundary.length() > MAX_BOUNDARY_LENGTH) {
+			throw new IOException("invalid multipart boundary: '" + boundary + "'");
+		}
+		this.input = input;
+		this.delimiter = ("\r\n--" + boundary).getBytes("ISO-8859-1");
+		
+		// the first delimiter need not be preceded by a line break
+		buffer[0] = '\r';
+		buffer[1] = '\n';
+		end = 2;
+	}
+	
+	/**
+	 * Extracts the boundary from the value of a <code>Content-Type</code> 
+	 * header.
+	 * 
+	 * @param contentType
+	 *   the value of the header.
+	 * @return
+	 *   the boundary, or <code>null</code> if not a multipart content type or
+	 *   if it has no boundary.
+	 */
+	public static String getBoundary(String contentType) {
+		if(contentType == null || !contentType.trim().toLowerCase().startsWith("multipart/")) {
+			return null;
+		}
+		String boundary = getParameter(contentType, "boundary");
+		return boundary != null && boundary.length() > 0 ? boundary : null;
+	}
+	
+	/**
+	 * Returns the next part, skipping what is left of the current one.
+	 * 
+	 * @return
+	 *   the next part, or <code>null</code> if there are no more parts.
+	 * @throws IOException
+	 *   if the body cannot be read or is malformed.
+	 */
+	public Part next() throws IOException {
+		if(current != null) {
+			current.skip();
+			current = null;
+		}
+		if(finished) {
+			return null;
+		}
+		if(!started) {
+			// the preamble, before the first delimiter
+			started = true;
+			skipToDelimiter();
+		}
+		
+		// the delimiter is followed either by "--" (for the last one), or by
+		// optional whitespace and a line break
+		if(!ensure(2)) {
+			throw new IOException("unexpected end of multipart body");
+		}
+		if(buffer[start] == '-' && buffer[start + 1] == '-') {
+			finished = true;
+			return null;
+		}
+		String line = readLine();
+		if(line.trim().length() > 0) {
+			throw new IOException("invalid multipart delimiter");
+		}
+		
+		Map<String, String> headers = new HashMap<String, String>();
+		int size = 0;
+		while((line = readLine()).length() > 0) {
+			size += line.length();
+			if(size > MAX_HEADERS_SIZE) {
+				throw new IOException("multipart headers exceed " + MAX_HEADERS_SIZE + " bytes");
+			}
+			int index = line.indexOf(':');
+			if(index != -1) {
+				headers.put(line.substring(0, index).trim(), line.substring(index + 1).trim());
+			} else {
+				logger.warn("invalid part header encountered");
+			}
+		}
+		partEnded = false;
+		current = new Part(this, headers);
+		return current;
+	}
+	
+	/**
+	 * Reads the content of the current part, up to the next delimiter.
+	 * 
+	 * @param data
+	 *   the destination array.
+	 * @param offset
+	 *   the offset at which data is stored.
+	 * @param length
+	 *   the maximum number of bytes to read.
+	 * @return
+	 *   the number of bytes read, or -1 at the end of the part.
+	 * @throws IOException
+	 */
+	int read(byte [] data, int offset, int length) throws IOException {
+		if(partEnded) {
+			return -1;
+		}
+		if(length == 0) {
+			return 0;
+		}
+		int index = locateDelimiter();
+		while(index == -1 && !eof && end - start < BUFFER_SIZE / 2) {
+			fill();
+			index = locateDelimiter();
+		}
+		int available = 0;
+		if(index == start) {
+			start += delimiter.length;
+			found = -1;
+			scanned = start;
+			partEnded = true;
+			return -1;
+		} else if(index != -1) {
+			available = index - start;
+		} else if(eof) {
+			throw new IOException("unexpected end of multipart body");
+		} else {
+			// the delimiter may begin in the trailing bytes
+			available = end - start - delimiter.length + 1;
+		}
+		int count = Math.min(length, available);
+		System.arraycopy(buffer, start, data, offset, count);
+		start += count;
+		return count;
+	}
+	
+	/**
+	 * Skips everything up to and including the next delimiter.
+	 * 
+	 * @throws IOException
+	 */
+	private void skipToDelimiter() throws IOException {
+		partEnded = false;
+		byte [] skipped = new byte[BUFFER_SIZE];
+		while(read(skipped, 0, skipped.length) != -1) {
+			// discard
+		}
+	}
+	
+	/**
+	 * Looks for the delimiter in the buffered data, without scanning again the
+	 * bytes already known not to contain it.
+	 * 
+	 * @return
+	 *   the offset of the delimiter, or -1 if not found.
+	 */
+	private int locateDelimiter() {
+		if(found == -1) {
+			int from = Math.max(start, scanned);
+			found = indexOfDelimiter(from);
+			if(found == -1) {
+				scanned = Math.max(from, end - delimiter.length + 1);
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * Looks for the delimiter in the buffered data.
+	 * 
+	 * @param from
+	 *   the offset from which the search starts.
+	 * @return
+	 *   the offset of the delimiter, or -1 if not found.
+	 */
+	private int indexOfDelimiter(int from) {
+		int last = end - delimiter.length;
+		byte first = delimiter[0];
+		for(int i = from; i <= last; ++i) {
+			if(buffer[i] != first) {
+				continue;
+			}
+			int j = 1;
+			while(j < delimiter.length && buffer[i + j] == delimiter[j]) {
+				++j;
+			}
+			if(j == delimiter.length) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Makes sure that at least the given number of bytes are buffered.
+	 * 
+	 * @param count
+	 *   the number of bytes needed.
+	 * @return
+	 *   <code>false</code> if the end of the stream was reached before.
+	 * @throws IOException
+	 */
+	private boolean ensure(int count) throws IOException {
+		while(end - start < count && !eof) {
+			fill();
+		}
+		return end - start >= count;
+	}
+	
+	/**
+	 * Moves the unread bytes to the beginning of the buffer and reads more.
+	 * 
+	 * @throws IOException
+	 */
+	private void fill() throws IOException {
+		if(eof) {
+			return;
+		}
+		if(start > 0) {
+			System.arraycopy(buffer, start, buffer, 0, end - start);
+			end -= start;
+			scanned = Math.max(scanned - start, 0);
+			if(found != -1) {
+				found -= start;
+			}
+			start = 0;
+		}
+		int read = input.read(buffer, end, buffer.length - end);
+		if(read == -1) {
+			eof = true;
+		} else {
+			end += read;
+		}
+	}
+	
+	/**
+	 * Reads a line of part headers.
+	 * 
+	 * @return
+	 *   the line, without terminator.
+	 * @throws IOException
+	 *   if the stream ends or the line is too long.
+	 */
+	private String readLine() throws IOException {
+		StringBuilder line = new StringBuilder();
+		while(true) {
+			if(!ensure(1)) {
+				throw new IOException("unexpected end of multipart body");
+			}
+			byte b = buffer[start++];
+			if(b == '\n') {
+				break;
+			}
+			if(line.length() == MAX_HEADERS_SIZE) {
+				throw new IOException("multipart header line too long");
+			}
+			line.append((char)(b & 0xFF));
+		}
+		int length = line.length();
+		if(length > 0 && line.charAt(length - 1) == '\r') {
+			line.setLength(length - 1);
+		}
+		return line.toString();
+	}
+	
+	/**
+	 * Extracts a parameter from a header value of the form <code>value; 
+	 * name1=value1; name2="value2"</code>.
+	 * 
+	 * @param header
+	 *   the header value.
+	 * @param name
+	 *   the name of the parameter, regardless of case.
+	 * @return
+	 *   the parameter value, without quotes, or <code>null</code> if not 
+	 *   available.
+	 */
+	static String getParameter(String header, String name) {
+		int index = header.indexOf(';');
+		while(index != -1) {
+			int next = nextSeparator(header, index + 1);
+			String parameter = header.substring(index + 1, next == -1 ? header.length() : next).trim();
+			int equals = parameter.indexOf('=');
+			if(equals != -1 && parameter.substring(0, equals).trim().equalsIgnoreCase(name)) {
+				String value = parameter.substring(equals + 1).trim();
+				if(value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+					value = value.substring(1, value.length() - 1).replace("\\\"", "\"");
+				}
+				return value;
+			}
+			index = next;
+		}
+		return null;
+	}
+	
+	/**
+	 * Finds the next parameter separator, skipping quoted strings.
+	 */
+	private static int nextSeparator(String header, int from) {
+		boolean quoted = false;
+		for(int i = from; i < header.length(); ++i) {
+			char c = header.charAt(i);
+			if(c == '"' && header.charAt(i - 1) != '\\') {
+				quoted = !quoted;
+			} else if(c == ';' && !quoted) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,323 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server.multipart;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * A part of a multipart request body, as returned by a <code>MultipartReader
+ * </code>: its content can be read only once, and only until the reader moves
+ * on to the next part.
+ *
+ * @author Andrea Funto'
+ */
+public class Part {
+	
+	/**
+	 * The default character set of form field values.
+	 */
+	public static final String DEFAULT_CHARSET = "UTF-8";
+	
+	/**
+	 * The maximum size of a value read as a string.
+	 */
+	public static final int MAX_STRING_SIZE = 1024 * 1024;
+	
+	/**
+	 * The size of the buffer used to copy the content.
+	 */
+	private static final int COPY_BUFFER_SIZE = 16 * 1024;
+	
+	/**
+	 * The reader this part belongs to.
+	 */
+	private MultipartReader reader;
+	
+	/**
+	 * The part headers.
+	 */
+	private Map<String, String> headers;
+	
+	/**
+	 * The stream on the part content.
+	 */
+	private InputStream stream = new PartInputStream();
+	
+	/**
+	 * Whether the reader has moved on to the next part.
+	 */
+	private boolean skipped = false;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param reader
+	 *   the reader this part belongs to.
+	 * @param headers
+	 *   the part headers.
+	 */
+	Part(MultipartReader reader, Map<String, String> headers) {
+		this.reader = reader;
+		this.headers = headers;
+	}
+	
+	/**
+	 * Returns the part headers.
+	 * 
+	 * @return
+	 *   an unmodifiable map of the part headers.
+	 */
+	public Map<String, String> getHeaders() {
+		return Collections.unmodifiableMap(headers);
+	}
+	
+	/**
+	 * Returns the value of a part header, regardless of case.
+	 * 
+	 * @param name
+	 *   the name of the header.
+	 * @return
+	 *   the header value, or <code>null</code> if not available.
+	 */
+	public String getHeader(String name) {
+		for(Entry<String, String> header : headers.entrySet()) {
+			if(header.getKey().equalsIgnoreCase(name)) {
+				return header.getValue();
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the name of the form field, as per the <code>Content-Disposition
+	 * </code> header.
+	 * 
+	 * @return
+	 *   the name of the field, or <code>null</code> if not available.
+	 */
+	public String getName() {
+		String disposition = getHeader("Content-Disposition");
+		return disposition != null ? MultipartReader.getParameter(disposition, "name") : null;
+	}
+	
+	/**
+	 * Returns the name of the uploaded file, as per the <code>
+	 * Content-Disposition</code> header; any path sent by the client is 
+	 * removed.
+	 * 
+	 * @return
+	 *   the name of the file, or <code>null</code> if the part is not a file.
+	 */
+	public String getFileName() {
+		String disposition = getHeader("Content-Disposition");
+		String name = disposition != null ? MultipartReader.getParameter(disposition, "filename") : null;
+		if(name != null) {
+			name = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1);
+		}
+		return name;
+	}
+	
+	/**
+	 * Returns whether the part is an uploaded file, rather than a simple form
+	 * field.
+	 * 
+	 * @return
+	 *   whether the part has a file name.
+	 */
+	public boolean isFile() {
+		return getFileName() != null;
+	}
+	
+	/**
+	 * Returns the content type of the part.
+	 * 
+	 * @return
+	 *   the content type, or <code>null</code> if not available.
+	 */
+	public String getContentType() {
+		return getHeader("Content-Type");
+	}
+	
+	/**
+	 * Returns a stream on the part content; the stream ends at the end of the
+	 * part, and need not be closed.
+	 * 
+	 * @return
+	 *   a stream on the part content.
+	 */
+	public InputStream getInputStream() {
+		return stream;
+	}
+	
+	/**
+	 * Reads the part content as a string, in the character set specified in 
+	 * its content type or, by default, in UTF-8.
+	 * 
+	 * @return
+	 *   the part content.
+	 * @throws IOException
+	 *   if the content cannot be read or is larger than <code>
+	 *   MAX_STRING_SIZE</code>.
+	 */
+	public String getString() throws IOException {
+		return getString(MAX_STRING_SIZE);
+	}
+	
+	/**
+	 * Reads the part content as a string, in the character set specified in 
+	 * its content type or, by default, in UTF-8, provided it is no larger 
+	 * than the given size.
+	 * 
+	 * @param maxSize
+	 *   the maximum size of the content, in bytes.
+	 * @return
+	 *   the part content.
+	 * @throws IOException
+	 *   if the content cannot be read or is larger than the given size.
+	 */
+	public String getString(int maxSize) throws IOException {
+		String charset = null;
+		if(getContentType() != null) {
+			charset = MultipartReader.getParameter(getContentType(), "charset");
+		}
+		return getString(charset != null ? charset : DEFAULT_CHARSET, maxSize);
+	}
+	
+	/**
+	 * Reads the part content as a string, in the given character set.
+	 * 
+	 * @param charset
+	 *   the name of the character set.
+	 * @return
+	 *   the part content.
+	 * @throws IOException
+	 *   if the content cannot be read or is larger than <code>
+	 *   MAX_STRING_SIZE</code>.
+	 */
+	public String getString(String charset) throws IOException {
+		return getString(charset, MAX_STRING_SIZE);
+	}
+	
+	/**
+	 * Reads the part content as a string, in the given character set, provided
+	 * it is no larger than the given size.
+	 * 
+	 * @param charset
+	 *   the name of the character set.
+	 * @param maxSize
+	 *   the maximum size of the content, in bytes.
+	 * @return
+	 *   the part content.
+	 * @throws IOException
+	 *   if the content cannot be read or is larger than the given size.
+	 */
+	public String getString(String charset, int maxSize) throws IOException {
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		byte [] buffer = new byte[COPY_BUFFER_SIZE];
+		int read = 0;
+		while((read = stream.read(buffer)) != -1) {
+			if(content.size() + read > maxSize) {
+				throw new IOException("part content exceeds " + maxSize + " bytes");
+			}
+			content.write(buffer, 0, read);
+		}
+		return content.toString(charset);
+	}
+	
+	/**
+	 * Writes the part content to the given channel, at its current position.
+	 * 
+	 * @param channel
+	 *   the destination channel.
+	 * @return
+	 *   the number of bytes written.
+	 * @throws IOException
+	 */
+	public long transferTo(FileChannel channel) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+		long count = 0;
+		int read = 0;
+		while((read = stream.read(buffer.array())) != -1) {
+			buffer.limit(read);
+			while(buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+			count += read;
+		}
+		return count;
+	}
+	
+	/**
+	 * Writes the part content to the given file, replacing its contents.
+	 * 
+	 * @param file
+	 *   the destination file.
+	 * @return
+	 *   the number of bytes written.
+	 * @throws IOException
+	 */
+	public long transferTo(File file) throws IOException {
+		FileOutputStream output = new FileOutputStream(file);
+		try {
+			return transferTo(output.getChannel());
+		} finally {
+			output.close();
+		}
+	}
+	
+	/**
+	 * Skips whatever is left of the part content.
+	 * 
+	 * @throws IOException
+	 */
+	void skip() throws IOException {
+		byte [] buffer = new byte[COPY_BUFFER_SIZE];
+		while(stream.read(buffer) != -1) {
+			// discard
+		}
+		skipped = true;
+	}
+	
+	/**
+	 * The stream on the part content.
+	 */
+	private class PartInputStream extends InputStream {
+
+		@Override
+		public int read() throws IOException {
+			byte [] single = new byte[1];
+			return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			return skipped ? -1 : reader.read(buffer, offset, length);
+		}
+	}
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server.resources;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A static resource decorator keeping the data of the underlying resource in
+ * a shared, bounded cache, so that it is not read from the file system or the
+ * classpath on each request. The data of file resources is discarded as soon 
+ * as the file modification time or size changes; resources too large for the 
+ * cache are streamed as usual.
+ * 
+ * @author Andrea Funto'
+ */
+public class CachedStaticResource implements StreamingStaticResource {
+	
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(CachedStaticResource.class);
+	
+	/**
+	 * The underlying resource.
+	 */
+	private StaticResource resource;
+	
+	/**
+	 * The cache.
+	 */
+	private StaticResourceCache cache;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param resource
+	 *   the underlying resource.
+	 * @param cache
+	 *   the cache, usually shared by all static resources.
+	 */
+	public CachedStaticResource(StaticResource resource, StaticResourceCache cache) {
+		this.resource = resource;
+		this.cache = cache;
+	}
+
+	/**
+	 * @see org.dihedron.ehttpd.server.resources.StaticResource#getContentType()
+	 */
+	public String getContentType() {
+		return resource.getContentType();
+	}
+
+	/**
+	 * Returns the resource data, from the cache if available.
+	 * 
+	 * @see org.dihedron.ehttpd.server.resources.StaticResource#getData()
+	 */
+	public byte[] getData() {
+		byte [] data = lookup();
+		if(data == null && resource instanceof StreamingStaticResource) {
+			// too large to be cached
+			return resource.getData();
+		}
+		return data;
+	}
+
+	/**
+	 * @see org.dihedron.ehttpd.server.resources.StreamingStaticResource#getLength()
+	 */
+	public long getLength() {
+		byte [] data = lookup();
+		if(data != null) {
+			return data.length;
+		}
+		if(resource instanceof StreamingStaticResource) {
+			return ((StreamingStaticResource)resource).getLength();
+		}
+		return -1;
+	}
+
+	/**
+	 * Opens a channel on the cached data if available, on the underlying 
+	 * resource otherwise.
+	 * 
+	 * @see org.dihedron.ehttpd.server.resources.StreamingStaticResource#openChannel()
+	 */
+	public ReadableByteChannel openChannel() throws IOException {
+		// the lookup has usually just been performed by getLength()
+		byte [] data = cache.peek(resource, getLastModified());
+		if(data == null) {
+			data = lookup();
+		}
+		if(data != null) {
+			return Channels.newChannel(new ByteArrayInputStream(data));
+		}
+		if(resource instanceof StreamingStaticResource) {
+			return ((StreamingStaticResource)resource).openChannel();
+		}
+		throw new IOException("resource not available");
+	}
+	
+	/**
+	 * Returns the underlying resource.
+	 * 
+	 * @return
+	 *   the underlying resource.
+	 */
+	public StaticResource getResource() {
+		return resource;
+	}
+	
+	/**
+	 * Returns the cache used by this resource.
+	 * 
+	 * @return
+	 *   the cache.
+	 */
+	public StaticResourceCache getCache() {
+		return cache;
+	}
+	
+	/**
+	 * Looks up the resource data in the cache, loading it if needed.
+	 * 
+	 * @return
+	 *   the resource data, or <code>null</code> if the resource is not 
+	 *   available, or if it is a streaming resource too large to be cached.
+	 */
+	private byte[] lookup() {
+		long lastModified = getLastModified();
+		byte [] data = cache.get(resource, lastModified);
+		if(data != null && resource instanceof StreamingStaticResource && data.length != ((StreamingStaticResource)resource).getLength()) {
+			logger.debug("resource size changed, discarding cached data");
+			cache.invalidate(resource);
+			data = null;
+		}
+		if(data == null) {
+			if(resource instanceof StreamingStaticResource && !cache.isCacheable(((StreamingStaticResource)resource).getLength())) {
+				return null;
+			}
+			data = resource.getData();
+			cache.put(resource, lastModified, data);
+		}
+		return data;
+	}
+	
+	/**
+	 * Returns the modification time of the underlying resource, if known.
+	 * 
+	 * @return
+	 *   the modification time of the resource, or 0 if unknown.
+	 */
+	private long getLastModified() {
+		if(resource instanceof FileStaticResource) {
+			return ((FileStaticResource)resource).getLastModified();
+		}
+		return 0;
+	}
+}
@@ -1,43 +1,43 @@
-/**
- * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
- * 
- * This file is part of the Dihedron embeddable web container ("e-httpd").
- *
- * "e-httpd" is free software: you can redistribute it and/or modify it under 
- * the terms of the GNU Lesser General Public License as published by the Free 
- * Software Foundation, either version 3 of the License, or (at your option) 
- * any later version.
- *
- * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
- * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
- * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
- * details.
- *
- * You should have received a copy of the GNU Lesser General Public License 
- * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
- */
-package org.dihedron.ehttpd.server.resources;
-
-
-import org.dihedron.ehttpd.exceptions.ApplicationException;
-import org.dihedron.ehttpd.exceptions.ServerException;
-import org.dihedron.ehttpd.server.Response;
-
-/**
- * This interface is the base for all resources: images, web pages, web templates,
- * CSV files, PDF files, XML and JSON etc.
- * 
- * @author Andrea Funto'
- */
-public interface Resource {
-	
-	/**
-	 * Renders the contents of the response to the client.
-	 * 
-	 * @param response
-	 *   the output connection to the client.
-	 * @throws ApplicationException
-	 * @throws ServerException
-	 */
-	void render(Response response) throws ApplicationException, ServerException;
-}
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server.resources;
+
+
+import org.dihedron.ehttpd.exceptions.ApplicationException;
+import org.dihedron.ehttpd.exceptions.ServerException;
+import org.dihedron.ehttpd.server.Response;
+
+/**
+ * This interface is the base for all resources: images, web pages, web templates,
+ * CSV files, PDF files, XML and JSON etc.
+ * 
+ * @author Andrea Funto'
+ */
+public interface Resource {
+	
+	/**
+	 * Renders the contents of the response to the client.
+	 * 
+	 * @param response
+	 *   the output connection to the client.
+	 * @throws ApplicationException
+	 * @throws ServerException
+	 */
+	void render(Response response) throws ApplicationException, ServerException;
+}
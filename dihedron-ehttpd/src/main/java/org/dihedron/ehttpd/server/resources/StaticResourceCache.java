@@ -0,0 +1,311 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server.resources;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded, in-memory cache of static resource data, shared by any number of
+ * <code>CachedStaticResource</code>s: the overall size of the cached data is 
+ * kept within a byte budget by evicting the least recently used entries, and
+ * entries are tagged with the modification time of their resource so that 
+ * stale data is never served. Hit, miss and eviction counters are provided 
+ * to help sizing the cache.
+ * 
+ * @author Andrea Funto'
+ */
+public class StaticResourceCache {
+	
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(StaticResourceCache.class);
+	
+	/**
+	 * The default maximum size of a single entry, as a fraction of the overall 
+	 * capacity.
+	 */
+	private static final int DEFAULT_ENTRY_FRACTION = 8;
+
+	/**
+	 * The cached entries, in least recently used order.
+	 */
+	private LinkedHashMap<Object, CacheEntry> entries = new LinkedHashMap<Object, CacheEntry>(16, 0.75f, true);
+	
+	/**
+	 * The maximum overall size of the cached data, in bytes.
+	 */
+	private long capacity;
+	
+	/**
+	 * The maximum size of a single entry, in bytes; larger resources are not 
+	 * cached.
+	 */
+	private long maxEntrySize;
+	
+	/**
+	 * The overall size of the cached data, in bytes.
+	 */
+	private long size = 0;
+	
+	/**
+	 * The number of lookups that found valid data.
+	 */
+	private long hits = 0;
+	
+	/**
+	 * The number of lookups that found no data, or stale data.
+	 */
+	private long misses = 0;
+	
+	/**
+	 * The number of entries evicted to make room for new ones.
+	 */
+	private long evictions = 0;
+	
+	/**
+	 * Constructor; resources larger than an eighth of the capacity are not 
+	 * cached.
+	 * 
+	 * @param capacity
+	 *   the maximum overall size of the cached data, in bytes.
+	 */
+	public StaticResourceCache(long capacity) {
+		this(capacity, capacity / DEFAULT_ENTRY_FRACTION);
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param capacity
+	 *   the maximum overall size of the cached data, in bytes.
+	 * @param maxEntrySize
+	 *   the maximum size of a single entry, in bytes.
+	 */
+	public StaticResourceCache(long capacity, long maxEntrySize) {
+		this.capacity = capacity;
+		this.maxEntrySize = Math.min(maxEntrySize, capacity);
+		logger.debug("creating static resource cache of {} bytes (max {} bytes per entry)", capacity, this.maxEntrySize);
+	}
+	
+	/**
+	 * Checks whether data of the given size would be cached.
+	 * 
+	 * @param length
+	 *   the size of the data, in bytes.
+	 * @return
+	 *   whether data of the given size fits in the cache.
+	 */
+	public boolean isCacheable(long length) {
+		return length >= 0 && length <= maxEntrySize;
+	}
+	
+	/**
+	 * Looks up the data of a resource; data cached for a different 
+	 * modification time of the resource is discarded.
+	 * 
+	 * @param key
+	 *   the resource key.
+	 * @param lastModified
+	 *   the current modification time of the resource.
+	 * @return
+	 *   the cached data, or <code>null</code> if not available.
+	 */
+	public synchronized byte[] get(Object key, long lastModified) {
+		CacheEntry entry = entries.get(key);
+		if(entry != null && entry.lastModified == lastModified) {
+			++hits;
+			return entry.data;
+		}
+		if(entry != null) {
+			logger.debug("resource modified, discarding cached data");
+			entries.remove(key);
+			size -= entry.data.length;
+		}
+		++misses;
+		return null;
+	}
+	
+	/**
+	 * Looks up the data of a resource, like <code>get()</code>, but without 
+	 * affecting the hit and miss counters and without discarding stale data;
+	 * it is meant for repeated accesses while servicing the same request.
+	 * 
+	 * @param key
+	 *   the resource key.
+	 * @param lastModified
+	 *   the current modification time of the resource.
+	 * @return
+	 *   the cached data, or <code>null</code> if not available.
+	 */
+	public synchronized byte[] peek(Object key, long lastModified) {
+		CacheEntry entry = entries.get(key);
+		if(entry != null && entry.lastModified == lastModified) {
+			return entry.data;
+		}
+		return null;
+	}
+	
+	/**
+	 * Stores the data of a resource, evicting the least recently used entries 
+	 * as needed to stay within the capacity; data larger than the maximum 
+	 * entry size is not stored.
+	 * 
+	 * @param key
+	 *   the resource key.
+	 * @param lastModified
+	 *   the modification time of the resource the data was read at.
+	 * @param data
+	 *   the resource data.
+	 */
+	public synchronized void put(Object key, long lastModified, byte[] data) {
+		if(data == null || !isCacheable(data.length)) {
+			return;
+		}
+		CacheEntry previous = entries.put(key, new CacheEntry(data, lastModified));
+		if(previous != null) {
+			size -= previous.data.length;
+		}
+		size += data.length;
+		Iterator<Entry<Object, CacheEntry>> iterator = entries.entrySet().iterator();
+		while(size > capacity && iterator.hasNext()) {
+			Entry<Object, CacheEntry> eldest = iterator.next();
+			if(eldest.getKey() != key) {
+				size -= eldest.getValue().data.length;
+				iterator.remove();
+				++evictions;
+			}
+		}
+	}
+	
+	/**
+	 * Discards the data of a resource, if cached.
+	 * 
+	 * @param key
+	 *   the resource key.
+	 */
+	public synchronized void invalidate(Object key) {
+		CacheEntry entry = entries.remove(key);
+		if(entry != null) {
+			size -= entry.data.length;
+		}
+	}
+	
+	/**
+	 * Discards all cached data; counters are not reset.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		size = 0;
+	}
+	
+	/**
+	 * Returns the maximum overall size of the cached data.
+	 * 
+	 * @return
+	 *   the capacity of the cache, in bytes.
+	 */
+	public long getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Returns the overall size of the cached data.
+	 * 
+	 * @return
+	 *   the size of the cached data, in bytes.
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+	
+	/**
+	 * Returns the number of cached entries.
+	 * 
+	 * @return
+	 *   the number of cached entries.
+	 */
+	public synchronized int getCount() {
+		return entries.size();
+	}
+	
+	/**
+	 * Returns the number of lookups that found valid data.
+	 * 
+	 * @return
+	 *   the number of cache hits.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	/**
+	 * Returns the number of lookups that found no data, or stale data.
+	 * 
+	 * @return
+	 *   the number of cache misses.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+	
+	/**
+	 * Returns the number of entries evicted to make room for new ones.
+	 * 
+	 * @return
+	 *   the number of evictions.
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+	
+	/**
+	 * A cached piece of data.
+	 */
+	private static class CacheEntry {
+		
+		/**
+		 * The resource data.
+		 */
+		byte [] data;
+		
+		/**
+		 * The modification time of the resource the data was read at.
+		 */
+		long lastModified;
+		
+		/**
+		 * Constructor.
+		 * 
+		 * @param data
+		 *   the resource data.
+		 * @param lastModified
+		 *   the modification time of the resource the data was read at.
+		 */
+		CacheEntry(byte [] data, long lastModified) {
+			this.data = data;
+			this.lastModified = lastModified;
+		}
+	}
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server.resources;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * This interface is implemented by static resources whose data can be read 
+ * as a stream, so that it can be sent to the client without being loaded into
+ * memory first; if the channel is a <code>FileChannel</code>, the data is 
+ * transferred straight from the file to the socket.
+ * 
+ * @author Andrea Funto'
+ */
+public interface StreamingStaticResource extends StaticResource {
+	
+	/**
+	 * Returns the length of the resource data.
+	 * 
+	 * @return
+	 *   the length of the resource data in bytes, or -1 if the resource is not
+	 *   available.
+	 */
+	long getLength();
+	
+	/**
+	 * Opens a channel on the resource data; the caller is responsible for 
+	 * closing it.
+	 * 
+	 * @return
+	 *   a new channel, positioned at the beginning of the resource data.
+	 * @throws IOException
+	 *   if the resource is not available or cannot be read.
+	 */
+	ReadableByteChannel openChannel() throws IOException;
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.dihedron.ehttpd.exceptions.ServerException;
+import org.dihedron.ehttpd.server.handlers.Handler;
+import org.dihedron.ehttpd.server.session.FakeSessionGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the format of the access log, that entries are either written or
+ * counted as dropped when workers outpace the writer, and that the server
+ * records the requests it services.
+ *
+ * @author Andrea Funto'
+ */
+public class AccessLogTest {
+	
+	/**
+	 * The file the log is written to.
+	 */
+	private File file;
+	
+	@Before
+	public void setUp() throws Exception {
+		org.apache.log4j.Logger.getLogger("org.dihedron").setLevel(Level.WARN);
+		file = File.createTempFile("access", ".log");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		org.apache.log4j.Logger.getLogger("org.dihedron").setLevel(Level.TRACE);
+		file.delete();
+	}
+	
+	@Test
+	public void testFormat() throws Exception {
+		AccessLog log = new AccessLog(file);
+		assertTrue(!log.log(InetAddress.getByName("127.0.0.1"), query("/index.html"), Status.STATUS_200, 2326, 415000));
+		log.start();
+		assertTrue(log.log(InetAddress.getByName("127.0.0.1"), query("/index.html"), Status.STATUS_200, 2326, 415000));
+		assertTrue(log.log(InetAddress.getByName("10.0.0.1"), query("/a\"b\nc"), Status.STATUS_404, 0, 1000));
+		log.stop();
+		
+		List<String> lines = read(file);
+		assertEquals(2, lines.size());
+		assertTrue(lines.get(0), lines.get(0).matches("127\\.0\\.0\\.1 - - \\[\\d\\d/\\w\\w\\w/\\d{4}:\\d\\d:\\d\\d:\\d\\d [+-]\\d{4}\\] \"GET /index.html HTTP/1.1\" 200 2326 415"));
+		assertTrue(lines.get(1), lines.get(1).endsWith("\"GET /a\\\"b\\x0ac HTTP/1.1\" 404 0 1"));
+		assertEquals(2, log.getWritten());
+		assertEquals(0, log.getDropped());
+	}
+	
+	@Test
+	public void testDropWhenFull() throws Exception {
+		final AccessLog log = new AccessLog(file, 16);
+		log.start();
+		final HttpQuery query = query("/");
+		final InetAddress remote = InetAddress.getByName("127.0.0.1");
+		Thread [] threads = new Thread[4];
+		final int count = 20000;
+		for(int i = 0; i < threads.length; ++i) {
+			threads[i] = new Thread() {
+				public void run() {
+					for(int j = 0; j < count; ++j) {
+						log.log(remote, query, Status.STATUS_200, j, j);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		log.stop();
+		assertEquals((long)threads.length * count, log.getWritten() + log.getDropped());
+		assertEquals(log.getWritten(), read(file).size());
+	}
+	
+	@Test
+	public void testServer() throws Exception {
+		for(boolean nonBlocking : new boolean[] { false, true }) {
+			RequestDispatcher dispatcher = new RequestDispatcher(new FakeSessionGenerator());
+			dispatcher.handle("/hello").through(new Handler() {
+				public void handle(Request request, Response response) throws ServerException {
+					response.setHeader("Content-Type", "text/plain");
+					response.addContent("OK");
+				}
+			});
+			HttpServer server = new HttpServer(HttpServer.AUTOMATIC_PORT_BINDING, dispatcher);
+			server.setUseNonBlockingIO(nonBlocking);
+			server.setThreadPoolSize(4);
+			server.setIOThreads(1);
+			AccessLog log = new AccessLog(file);
+			server.setAccessLog(log);
+			new Thread(server).start();
+			while(server.getPort() == HttpServer.AUTOMATIC_PORT_BINDING) {
+				Thread.sleep(10);
+			}
+			Socket socket = new Socket("localhost", server.getPort());
+			socket.setSoTimeout(10000);
+			OutputStream output = socket.getOutputStream();
+			output.write("GET /hello?name=world HTTP/1.0\r\n\r\n".getBytes());
+			output.flush();
+			InputStream input = socket.getInputStream();
+			while(input.read() != -1) {
+				// skip the response
+			}
+			socket.close();
+			assertEquals(0, server.shutdown(5, TimeUnit.SECONDS));
+			
+			List<String> lines = read(file);
+			assertEquals(1, lines.size());
+			assertTrue(lines.get(0), lines.get(0).contains("\"GET /hello?name=world HTTP/1.0\" 200 "));
+			file.delete();
+		}
+	}
+	
+	/**
+	 * Creates the query of a GET request for the given target.
+	 */
+	private HttpQuery query(String target) {
+		HttpQuery query = new HttpQuery();
+		query.setMethod(Method.GET);
+		query.setQueryString(target);
+		query.setProtocol("HTTP/1.1");
+		return query;
+	}
+	
+	/**
+	 * Reads the lines of the log.
+	 */
+	private List<String> read(File file) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		if(!file.exists()) {
+			return lines;
+		}
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			String line = null;
+			while((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		} finally {
+			reader.close();
+		}
+		return lines;
+	}
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A simulation of a server whose concurrency is limited adaptively, under 
+ * workloads of CPU-bound handlers, I/O-bound handlers and a mix of the two:
+ * at each step as many requests as the limit allows (out of a large number 
+ * of clients) are in flight, and their latency is derived from a model of 
+ * the workload. The limit should settle close to the number of cores for 
+ * CPU-bound handlers, grow until all clients are served for I/O-bound ones, 
+ * and follow the workload when it changes.
+ *
+ * @author Andrea Funto'
+ */
+public class AdaptiveConcurrencyLimitTest {
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(AdaptiveConcurrencyLimitTest.class);
+	
+	/**
+	 * The number of clients, all trying to have a request in flight.
+	 */
+	private static final int CLIENTS = 400;
+	
+	/**
+	 * The number of cores of the simulated server.
+	 */
+	private static final int CORES = 4;
+	
+	/**
+	 * The CPU time (in nanoseconds) of a CPU-bound request.
+	 */
+	private static final double CPU_TIME = 1000000;
+	
+	/**
+	 * The CPU time (in nanoseconds) of an I/O-bound request.
+	 */
+	private static final double IO_CPU_TIME = 20000;
+	
+	/**
+	 * The time (in nanoseconds) an I/O-bound request waits for I/O.
+	 */
+	private static final double IO_TIME = 20000000;
+	
+	/**
+	 * The number of simulation steps.
+	 */
+	private static final int STEPS = 3000;
+	
+	/**
+	 * A model of the latency of requests.
+	 */
+	private static abstract class Workload {
+		
+		/**
+		 * The fraction of CPU-bound requests.
+		 */
+		private double cpuBound;
+		
+		Workload(double cpuBound) {
+			this.cpuBound = cpuBound;
+		}
+		
+		/**
+		 * Returns the average latency of requests with the given number of 
+		 * them in flight, with the cores shared evenly among them.
+		 */
+		double getLatency(int inFlight) {
+			double demand = inFlight * (cpuBound * CPU_TIME + (1 - cpuBound) * IO_CPU_TIME) / (cpuBound * CPU_TIME + (1 - cpuBound) * (IO_CPU_TIME + IO_TIME)); 
+			double slowdown = Math.max(1.0, demand / CORES);
+			return cpuBound * CPU_TIME * slowdown + (1 - cpuBound) * (IO_CPU_TIME * slowdown + IO_TIME);
+		}
+		
+		/**
+		 * Returns the number of requests serviced per second.
+		 */
+		double getThroughput(int inFlight) {
+			return inFlight * 1000000000.0 / getLatency(inFlight);
+		}
+		
+		/**
+		 * Returns the best throughput that a fixed limit could achieve.
+		 */
+		double getBestThroughput() {
+			double best = 0;
+			for(int i = 1; i <= CLIENTS; ++i) {
+				best = Math.max(best, getThroughput(i));
+			}
+			return best;
+		}
+	}
+	
+	/**
+	 * The outcome of a simulation.
+	 */
+	private static class Outcome {
+		
+		/**
+		 * The average limit over the last part of the simulation.
+		 */
+		double limit;
+		
+		/**
+		 * The average throughput over the last part of the simulation.
+		 */
+		double throughput;
+		
+		/**
+		 * The average latency over the last part of the simulation.
+		 */
+		double latency;
+	}
+	
+	@Before
+	public void setUp() throws Exception {
+		org.apache.log4j.Logger.getLogger("org.dihedron").setLevel(Level.WARN);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		org.apache.log4j.Logger.getLogger("org.dihedron").setLevel(Level.TRACE);
+	}
+	
+	@Test
+	public void testCpuBound() {
+		Workload workload = new Workload(1.0) {};
+		Outcome outcome = simulate(new AdaptiveConcurrencyLimit(), workload, STEPS);
+		report("CPU-bound", workload, outcome);
+		assertTrue(outcome.limit >= CORES && outcome.limit <= 4 * CORES);
+		assertTrue(outcome.throughput >= 0.9 * workload.getBestThroughput());
+	}
+	
+	@Test
+	public void testIOBound() {
+		Workload workload = new Workload(0.0) {};
+		Outcome outcome = simulate(new AdaptiveConcurrencyLimit(), workload, STEPS);
+		report("I/O-bound", workload, outcome);
+		assertTrue(outcome.limit >= CLIENTS);
+		assertTrue(outcome.throughput >= 0.9 * workload.getBestThroughput());
+	}
+	
+	@Test
+	public void testMixed() {
+		Workload workload = new Workload(0.5) {};
+		Outcome outcome = simulate(new AdaptiveConcurrencyLimit(), workload, STEPS);
+		report("mixed", workload, outcome);
+		assertTrue(outcome.throughput >= 0.8 * workload.getBestThroughput());
+	}
+	
+	@Test
+	public void testChangingWorkload() {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit();
+		Workload io = new Workload(0.0) {};
+		Workload cpu = new Workload(1.0) {};
+		Outcome outcome = simulate(limit, io, STEPS);
+		report("I/O-bound, then", io, outcome);
+		outcome = simulate(limit, cpu, STEPS);
+		report("CPU-bound", cpu, outcome);
+		assertTrue(outcome.limit <= 4 * CORES);
+		outcome = simulate(limit, io, STEPS);
+		report("I/O-bound again", io, outcome);
+		assertTrue(outcome.limit >= CLIENTS);
+	}
+	
+	/**
+	 * Runs a simulation; at each step, every request in flight contributes a
+	 * sample with a random deviation of up to 10% from the average latency.
+	 */
+	private Outcome simulate(AdaptiveConcurrencyLimit limit, Workload workload, int steps) {
+		Random random = new Random(42);
+		Outcome outcome = new Outcome();
+		int measured = 0;
+		for(int step = 0; step < steps; ++step) {
+			int inFlight = Math.min(limit.getLimit(), CLIENTS);
+			double latency = workload.getLatency(inFlight);
+			for(int i = 0; i < inFlight; ++i) {
+				limit.addSample((long)(latency * (0.9 + 0.2 * random.nextDouble())), inFlight);
+			}
+			if(step >= steps * 3 / 4) {
+				outcome.limit += limit.getLimit();
+				outcome.throughput += workload.getThroughput(inFlight);
+				outcome.latency += latency;
+				++measured;
+			}
+		}
+		outcome.limit /= measured;
+		outcome.throughput /= measured;
+		outcome.latency /= measured;
+		return outcome;
+	}
+	
+	private void report(String name, Workload workload, Outcome outcome) {
+		logger.warn("{}: limit {}, {} requests/s (best {}), latency {} us", new Object[] { name, Math.round(outcome.limit), 
+				Math.round(outcome.throughput), Math.round(workload.getBestThroughput()), Math.round(outcome.latency / 1000) });
+	}
+}
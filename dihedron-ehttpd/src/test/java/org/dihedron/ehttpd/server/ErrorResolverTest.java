@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+import org.dihedron.ehttpd.exceptions.AccessDenied;
+import org.dihedron.ehttpd.exceptions.ApplicationException;
+import org.dihedron.ehttpd.exceptions.ServerException;
+import org.junit.Test;
+
+/**
+ * @author Andrea Funto'
+ */
+public class ErrorResolverTest {
+
+	@Test
+	public void testResolve() {
+		ErrorResolver resolver = new ErrorResolver()
+			.with(ApplicationException.class, "/application")
+			.with(IOException.class, "/io")
+			.with(FileNotFoundException.class, "/missing");
+		
+		// the nearest superclass wins, whatever the registration order
+		assertEquals("/missing", resolver.resolve(new FileNotFoundException()));
+		assertEquals("/io", resolver.resolve(new IOException()));
+		assertEquals("/application", resolver.resolve(new AccessDenied("denied")));
+		assertEquals("/application", resolver.resolve(new AccessDenied("denied again")));
+		assertNull(resolver.resolve(new ServerException("unmapped")));
+		assertNull(resolver.resolve(new ServerException("unmapped again")));
+		assertNull(resolver.resolve(null));
+		
+		// new mappings produce a new resolver
+		ErrorResolver extended = resolver.with(ServerException.class, "/server");
+		assertEquals("/server", extended.resolve(new ServerException("mapped")));
+		assertNull(resolver.resolve(new ServerException("still unmapped")));
+		assertEquals(3, resolver.getMappings().size());
+	}
+}
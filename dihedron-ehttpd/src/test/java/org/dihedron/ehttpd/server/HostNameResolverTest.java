@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.ByteArrayInputStream;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+
+/**
+ * @author Andrea Funto'
+ */
+public class HostNameResolverTest {
+	
+	/**
+	 * An executor that holds tasks until told to run them, as if lookups 
+	 * were taking forever.
+	 */
+	private static class HeldExecutor implements Executor {
+		
+		List<Runnable> tasks = new ArrayList<Runnable>();
+		
+		public void execute(Runnable task) {
+			tasks.add(task);
+		}
+		
+		void release() {
+			for(Runnable task : tasks) {
+				task.run();
+			}
+			tasks.clear();
+		}
+	}
+
+	@Test
+	public void testSynchronous() throws Exception {
+		InetAddress address = InetAddress.getByAddress(new byte[] { 127, 0, 0, 1 });
+		HostNameResolver resolver = new HostNameResolver(2, 60000);
+		String name = resolver.getHostName(address);
+		assertNotNull(name);
+		assertEquals(name, resolver.getHostName(address));
+		assertEquals(1, resolver.getCount());
+		
+		// the cache is bounded
+		resolver.getHostName(InetAddress.getByAddress(new byte[] { 127, 0, 0, 2 }));
+		resolver.getHostName(InetAddress.getByAddress(new byte[] { 127, 0, 0, 3 }));
+		assertEquals(2, resolver.getCount());
+	}
+	
+	@Test
+	public void testAsynchronous() throws Exception {
+		InetAddress address = InetAddress.getByAddress(new byte[] { 127, 0, 0, 1 });
+		HeldExecutor executor = new HeldExecutor();
+		HostNameResolver resolver = new HostNameResolver(16, 60000, executor, 10);
+		
+		// the lookup does not complete in time, the address is used instead
+		assertEquals("127.0.0.1", resolver.getHostName(address));
+		assertEquals("127.0.0.1", resolver.getHostName(address));
+		assertEquals(1, executor.tasks.size());
+		
+		// the name is available as soon as the lookup completes
+		executor.release();
+		assertEquals(address.getCanonicalHostName(), resolver.getHostName(address));
+		assertEquals(0, executor.tasks.size());
+	}
+	
+	@Test
+	public void testLazyResolution() throws Exception {
+		InetAddress address = InetAddress.getByAddress(new byte[] { 127, 0, 0, 1 });
+		HeldExecutor executor = new HeldExecutor();
+		HostNameResolver resolver = new HostNameResolver(16, 60000, executor, 10);
+
+		Request request = new Request(new ByteArrayInputStream("GET / HTTP/1.1\r\n\r\n".getBytes()));
+		request.setAddresses(address, address, resolver);
+		assertEquals("127.0.0.1", request.getRemoteAddr());
+		assertEquals(0, executor.tasks.size());
+		request.getRemoteHost();
+		assertEquals(1, executor.tasks.size());
+		
+		// resolution disabled
+		request.setAddresses(address, address, null);
+		assertEquals("127.0.0.1", request.getRemoteHost());
+		assertEquals("127.0.0.1", request.getLocalHost());
+	}
+}
@@ -0,0 +1,232 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+import org.apache.log4j.Level;
+import org.dihedron.ehttpd.exceptions.ServerException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checks the incremental request parser, and compares its throughput with 
+ * the line-based parsing into strings and maps that <code>HttpQuery</code> 
+ * used to perform; the number of iterations can be set through the <code>
+ * ehttpd.benchmark.iterations</code> system property.
+ *
+ * @author Andrea Funto'
+ */
+public class HttpRequestParserTest {
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(HttpRequestParserTest.class);
+
+	/**
+	 * The number of requests parsed in each round of the benchmark.
+	 */
+	private static final int ITERATIONS = Integer.getInteger("ehttpd.benchmark.iterations", 200000);
+	
+	/**
+	 * A request as sent by a typical browser, followed by a pipelined one.
+	 */
+	private static final String REQUEST = 
+			"\r\nGET /my/path/to/resource.php?param1=value1&param2=&param3 HTTP/1.1\r\n" +
+			"Host: localhost:8080\r\n" +
+			"User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:24.0) Gecko/20100101 Firefox/24.0\r\n" +
+			"Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n" +
+			"Accept-Language: en-US,en;q=0.5\r\n" +
+			"Accept-Encoding: gzip, deflate\r\n" +
+			"Cookie: sessionid=1234567890; theme = dark\r\n" +
+			"Connection:keep-alive \r\n" +
+			"\r\n" +
+			"GET /next HTTP/1.1\r\n\r\n";
+	
+	@Before
+	public void setUp() throws Exception {
+		org.apache.log4j.Logger.getLogger("org.dihedron").setLevel(Level.WARN);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		org.apache.log4j.Logger.getLogger("org.dihedron").setLevel(Level.TRACE);
+	}
+	
+	@Test
+	public void testParse() throws Exception {
+		byte [] data = REQUEST.getBytes("ISO-8859-1");
+		int headLength = REQUEST.indexOf("GET /next");
+		
+		// feed the request split at every possible point, as partial reads would
+		HttpRequestParser parser = new HttpRequestParser();
+		for(int split = 0; split <= headLength; ++split) {
+			parser.reset();
+			ByteBuffer buffer = ByteBuffer.wrap(data, 0, split);
+			assertEquals(split == headLength, parser.parse(buffer));
+			buffer.limit(data.length);
+			assertTrue(parser.parse(buffer));
+			assertEquals(headLength, buffer.position());
+			check(parser.getQuery());
+		}
+		
+		// streams are consumed exactly up to the end of the head
+		BufferedInputStream input = new BufferedInputStream(new ByteArrayInputStream(data));
+		check(new HttpQuery().parse(input));
+		HttpQuery next = new HttpQuery().parse(input);
+		assertEquals("/next", next.getQueryString());
+		assertFalse(next.hasParameters());
+		assertNull(new HttpQuery().parse(input).getProtocol());
+	}
+	
+	@Test
+	public void testMalformed() throws Exception {
+		HttpRequestParser parser = new HttpRequestParser();
+		try {
+			parser.parse(ByteBuffer.wrap("GET\r\n\r\n".getBytes("ISO-8859-1")));
+			fail("request line with no target accepted");
+		} catch(ServerException e) {
+		}
+		
+		parser.reset();
+		StringBuilder request = new StringBuilder("GET / HTTP/1.1\r\n");
+		while(request.length() <= HttpRequestParser.MAX_HEAD_SIZE) {
+			request.append("X-Padding: 0123456789012345678901234567890123456789\r\n");
+		}
+		try {
+			parser.parse(ByteBuffer.wrap(request.toString().getBytes("ISO-8859-1")));
+			fail("oversized request head accepted");
+		} catch(ServerException e) {
+		}
+		
+		// lines with no colon are skipped, HTTP/0.9 requests have no protocol
+		parser.reset();
+		assertTrue(parser.parse(ByteBuffer.wrap("GET /\r\ninvalid\r\nHost: x\r\n\r\n".getBytes("ISO-8859-1"))));
+		HttpQuery query = parser.getQuery();
+		assertNull(query.getProtocol());
+		assertEquals("x", query.getHeader("host"));
+		assertEquals(1, query.getHeaders().size());
+	}
+	
+	@Test
+	public void testThroughput() throws Exception {
+		byte [] data = REQUEST.getBytes("ISO-8859-1");
+		int headLength = REQUEST.indexOf("GET /next");
+		HttpRequestParser parser = new HttpRequestParser();
+		ByteBuffer buffer = ByteBuffer.wrap(data, 0, headLength);
+		
+		// warm up both, then measure alternately
+		long parsed = 0;
+		long legacy = 0;
+		for(int round = 0; round < 4; ++round) {
+			long start = System.nanoTime();
+			for(int i = 0; i < ITERATIONS; ++i) {
+				parser.reset();
+				buffer.position(0);
+				parser.parse(buffer);
+				HttpQuery query = parser.getQuery();
+				if(query.getMethod() != Method.GET || query.getHeader("Connection") == null || query.getParameter("param1") == null) {
+					fail("unexpected parse result");
+				}
+			}
+			parsed = System.nanoTime() - start;
+			
+			start = System.nanoTime();
+			for(int i = 0; i < ITERATIONS; ++i) {
+				Map<String, String> headers = parseLegacy(data, headLength);
+				if(!"GET".equals(headers.get(":method")) || headers.get("Connection") == null || headers.get("param1") == null) {
+					fail("unexpected parse result");
+				}
+			}
+			legacy = System.nanoTime() - start;
+		}
+		logger.warn("incremental parser: {} requests/s", ITERATIONS * 1000000000L / parsed);
+		logger.warn("line-based parser : {} requests/s", ITERATIONS * 1000000000L / legacy);
+	}
+	
+	/**
+	 * Checks the query parsed from <code>REQUEST</code>.
+	 */
+	private void check(HttpQuery query) {
+		assertEquals(Method.GET, query.getMethod());
+		assertEquals("HTTP/1.1", query.getProtocol());
+		assertEquals("/my/path/to/resource.php", query.getQueryString());
+		assertEquals("/my/path/to", query.getPath());
+		assertEquals("resource.php", query.getResource());
+		assertEquals("value1", query.getParameter("param1"));
+		assertEquals("", query.getParameter("param2"));
+		assertEquals("", query.getParameter("param3"));
+		assertEquals("localhost:8080", query.getHeader("host"));
+		assertEquals("keep-alive", query.getHeader("CONNECTION"));
+		assertNull(query.getHeader("Content-Length"));
+		assertEquals(7, query.getHeaders().size());
+		assertEquals("gzip, deflate", query.getHeaders().get("Accept-Encoding"));
+		assertEquals("1234567890", query.getCookies().get("sessionid"));
+		assertEquals("dark", query.getCookies().get("theme"));
+	}
+	
+	/**
+	 * Parses the request head the way <code>HttpQuery</code> used to, decoding
+	 * each line into a string and tokenising it into maps.
+	 */
+	private static Map<String, String> parseLegacy(byte [] data, int length) throws Exception {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(data, 0, length), "ISO-8859-1"));
+		Map<String, String> headers = new HashMap<String, String>();
+		String line = reader.readLine();
+		while(line != null && line.length() == 0) {
+			line = reader.readLine();
+		}
+		StringTokenizer tokeniser = new StringTokenizer(line);
+		headers.put(":method", tokeniser.nextToken());
+		String target = tokeniser.nextToken();
+		headers.put(":protocol", tokeniser.nextToken());
+		int index = target.indexOf('?');
+		tokeniser = new StringTokenizer(target.substring(index + 1), "&");
+		while(tokeniser.hasMoreTokens()) {
+			String parameter = tokeniser.nextToken();
+			int equals = parameter.indexOf('=');
+			if(equals != -1) {
+				headers.put(parameter.substring(0, equals), parameter.substring(equals + 1));
+			} else {
+				headers.put(parameter, "");
+			}
+		}
+		while((line = reader.readLine()) != null && line.length() > 0) {
+			index = line.indexOf(':');
+			headers.put(line.substring(0, index).trim(), line.substring(index + 1).trim());
+		}
+		return headers;
+	}
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.dihedron.ehttpd.exceptions.ServerException;
+import org.dihedron.ehttpd.server.session.FakeSessionGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that a saturated server turns clients away with a <code>503 Service
+ * Unavailable</code> response instead of queueing them.
+ *
+ * @author Andrea Funto'
+ */
+public class HttpServerAdmissionTest {
+	
+	/**
+	 * Released when the blocked handlers should complete.
+	 */
+	private CountDownLatch release;
+	
+	/**
+	 * Counted down when a handler starts servicing a request.
+	 */
+	private CountDownLatch started;
+	
+	@Before
+	public void setUp() throws Exception {
+		org.apache.log4j.Logger.getLogger("org.dihedron").setLevel(Level.WARN);
+		release = new CountDownLatch(1);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		release.countDown();
+		org.apache.log4j.Logger.getLogger("org.dihedron").setLevel(Level.TRACE);
+	}
+	
+	@Test
+	public void testMaxInFlightRequests() throws Exception {
+		for(boolean nonBlocking : new boolean[] { false, true }) {
+			release = new CountDownLatch(1);
+			started = new CountDownLatch(1);
+			HttpServer server = start(createServer(nonBlocking));
+			server.setMaxInFlightRequests(1);
+			server.setRetryAfter(7);
+			try {
+				Socket busy = send(server, "/block");
+				assertTrue(started.await(5, TimeUnit.SECONDS));
+				assertEquals(1, server.getInFlightRequests());
+				
+				String response = read(send(server, "/other"));
+				assertTrue(response, response.startsWith("HTTP/1.1 503 Service Unavailable\r\n"));
+				assertTrue(response, response.contains("Retry-After: 7\r\n"));
+				assertEquals(1, server.getRejectedRequests());
+				
+				release.countDown();
+				assertTrue(read(busy).endsWith("OK"));
+			} finally {
+				server.stop();
+			}
+		}
+	}
+	
+	@Test
+	public void testMaxConnectionsPerAddress() throws Exception {
+		for(boolean nonBlocking : new boolean[] { false, true }) {
+			HttpServer server = start(createServer(nonBlocking));
+			server.setMaxConnectionsPerAddress(1);
+			try {
+				Socket idle = new Socket("localhost", server.getPort());
+				String response = read(send(server, "/other"));
+				assertTrue(response, response.startsWith("HTTP/1.1 503 "));
+				
+				// the slot is freed once the connection is closed
+				idle.close();
+				long deadline = System.currentTimeMillis() + 5000;
+				do {
+					response = read(send(server, "/other"));
+				} while(!response.endsWith("OK") && System.currentTimeMillis() < deadline);
+				assertTrue(response, response.endsWith("OK"));
+			} finally {
+				server.stop();
+			}
+		}
+	}
+	
+	@Test
+	public void testBoundedQueue() throws Exception {
+		started = new CountDownLatch(1);
+		HttpServer server = createServer(false);
+		server.setThreadPoolSize(1);
+		server.setMaxQueuedRequests(1);
+		start(server);
+		try {
+			Socket busy = send(server, "/block");
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+			Socket queued = send(server, "/other");
+			long deadline = System.currentTimeMillis() + 5000;
+			while(server.getQueueDepth() < 1 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertEquals(1, server.getQueueDepth());
+			
+			String response = read(send(server, "/other"));
+			assertTrue(response, response.startsWith("HTTP/1.1 503 "));
+			assertEquals(1, server.getRejectedRequests());
+			
+			release.countDown();
+			assertTrue(read(busy).endsWith("OK"));
+			assertTrue(read(queued).endsWith("OK"));
+		} finally {
+			server.stop();
+		}
+	}
+	
+	/**
+	 * Creates a server on a random port, with a dispatcher that blocks on 
+	 * "/block" until released and answers "OK" to all requests.
+	 */
+	private HttpServer createServer(boolean nonBlocking) throws Exception {
+		RequestDispatcher dispatcher = new RequestDispatcher(new FakeSessionGenerator()) {
+			@Override
+			public void dispatch(Request request, Response response) throws ServerException {
+				if(request.getHttpQuery().getQueryString().equals("/block")) {
+					started.countDown();
+					try {
+						release.await(5, TimeUnit.SECONDS);
+					} catch(InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				response.setHeader("Content-Type", "text/plain");
+				response.addContent("OK");
+			}
+		};
+		HttpServer server = new HttpServer(HttpServer.AUTOMATIC_PORT_BINDING, dispatcher);
+		server.setUseNonBlockingIO(nonBlocking);
+		server.setIOThreads(1);
+		return server;
+	}
+	
+	/**
+	 * Starts the server and waits until it is listening.
+	 */
+	private HttpServer start(HttpServer server) throws InterruptedException {
+		new Thread(server).start();
+		while(server.getPort() == HttpServer.AUTOMATIC_PORT_BINDING) {
+			Thread.sleep(10);
+		}
+		return server;
+	}
+	
+	/**
+	 * Connects to the server and sends a request for the given target.
+	 */
+	private Socket send(HttpServer server, String target) throws IOException {
+		Socket socket = new Socket("localhost", server.getPort());
+		socket.setSoTimeout(10000);
+		OutputStream output = socket.getOutputStream();
+		output.write(("GET " + target + " HTTP/1.0\r\nHost: localhost\r\n\r\n").getBytes());
+		output.flush();
+		return socket;
+	}
+	
+	/**
+	 * Reads the whole response and closes the connection.
+	 */
+	private String read(Socket socket) throws IOException {
+		try {
+			InputStream input = socket.getInputStream();
+			StringBuilder response = new StringBuilder();
+			int c;
+			while((c = input.read()) != -1) {
+				response.append((char)c);
+			}
+			return response.toString();
+		} catch(IOException e) {
+			return e.getMessage();
+		} finally {
+			socket.close();
+		}
+	}
+}
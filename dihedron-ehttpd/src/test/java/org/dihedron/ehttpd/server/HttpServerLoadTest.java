@@ -0,0 +1,211 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ *
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Level;
+import org.dihedron.ehttpd.exceptions.ServerException;
+import org.dihedron.ehttpd.server.session.FakeSessionGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A load test comparing the blocking (thread per connection) and the
+ * non-blocking (I/O loops) server modes: a number of clients connect at
+ * once, keep their connection idle for a while and then send a request;
+ * the number of connections serviced by each I/O thread and the 99th
+ * percentile of the request latency are logged for both modes. The number
+ * of clients can be set through the <code>ehttpd.loadtest.connections</code>
+ * system property.
+ *
+ * @author Andrea Funto'
+ */
+public class HttpServerLoadTest {
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(HttpServerLoadTest.class);
+
+	/**
+	 * The number of concurrent client connections.
+	 */
+	private static final int CONNECTIONS = Integer.getInteger("ehttpd.loadtest.connections", 200);
+
+	/**
+	 * How long each client keeps its connection idle before sending the request.
+	 */
+	private static final long IDLE_MILLIS = 200;
+
+	/**
+	 * The number of I/O loops in non-blocking mode.
+	 */
+	private static final int IO_THREADS = 2;
+
+	/**
+	 * The pool on which clients run.
+	 */
+	private ExecutorService clients;
+
+	@Before
+	public void setUp() throws Exception {
+		org.apache.log4j.Logger.getLogger("org.dihedron").setLevel(Level.WARN);
+		clients = Executors.newFixedThreadPool(CONNECTIONS);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		clients.shutdownNow();
+		org.apache.log4j.Logger.getLogger("org.dihedron").setLevel(Level.TRACE);
+	}
+
+	@Test
+	public void testBlockingVersusNonBlocking() throws Exception {
+		HttpServer blocking = startServer(false);
+		long[] latencies = load(blocking.getPort());
+		blocking.stop();
+		logger.warn("blocking mode    : {} connections per I/O thread, p99 latency {} ms", 1, percentile(latencies, 99));
+
+		HttpServer nonBlocking = startServer(true);
+		final int[] peak = new int[1];
+		Thread sampler = sampleConnections(nonBlocking, peak);
+		latencies = load(nonBlocking.getPort());
+		sampler.interrupt();
+		sampler.join();
+		nonBlocking.stop();
+		logger.warn("non-blocking mode: {} connections per I/O thread, p99 latency {} ms", peak[0] / IO_THREADS, percentile(latencies, 99));
+		assertTrue(peak[0] > IO_THREADS);
+	}
+
+	/**
+	 * Starts a server on a random port, with a dispatcher that answers "OK" to
+	 * all requests.
+	 */
+	private HttpServer startServer(boolean nonBlocking) throws Exception {
+		RequestDispatcher dispatcher = new RequestDispatcher(new FakeSessionGenerator()) {
+			@Override
+			public void dispatch(Request request, Response response) throws ServerException {
+				response.setHeader("Content-Type", "text/plain");
+				response.addContent("OK");
+			}
+		};
+		HttpServer server = new HttpServer(HttpServer.AUTOMATIC_PORT_BINDING, dispatcher);
+		server.setUseNonBlockingIO(nonBlocking);
+		server.setIOThreads(IO_THREADS);
+		new Thread(server).start();
+		while(server.getPort() == HttpServer.AUTOMATIC_PORT_BINDING) {
+			Thread.sleep(10);
+		}
+		return server;
+	}
+
+	/**
+	 * Runs all clients against the given port, and returns their latencies.
+	 */
+	private long[] load(final int port) throws Exception {
+		List<Future<Long>> results = new ArrayList<Future<Long>>();
+		for(int i = 0; i < CONNECTIONS; ++i) {
+			results.add(clients.submit(new Callable<Long>() {
+				public Long call() throws Exception {
+					return request(port);
+				}
+			}));
+		}
+		long[] latencies = new long[CONNECTIONS];
+		for(int i = 0; i < CONNECTIONS; ++i) {
+			latencies[i] = results.get(i).get();
+		}
+		return latencies;
+	}
+
+	/**
+	 * Performs a single request, and returns its latency in milliseconds.
+	 */
+	private long request(int port) throws IOException, InterruptedException {
+		Socket socket = new Socket("localhost", port);
+		try {
+			Thread.sleep(IDLE_MILLIS);
+			long start = System.nanoTime();
+			OutputStream output = socket.getOutputStream();
+			output.write("GET /load HTTP/1.0\r\nHost: localhost\r\n\r\n".getBytes());
+			output.flush();
+			InputStream input = socket.getInputStream();
+			StringBuilder response = new StringBuilder();
+			int c;
+			while((c = input.read()) != -1) {
+				response.append((char)c);
+			}
+			assertTrue(response.toString().startsWith("HTTP/1.0 200 OK"));
+			assertTrue(response.toString().endsWith("OK"));
+			return (System.nanoTime() - start) / 1000000;
+		} finally {
+			socket.close();
+		}
+	}
+
+	/**
+	 * Periodically samples the number of connections open on the server.
+	 */
+	private Thread sampleConnections(final HttpServer server, final int[] peak) {
+		Thread sampler = new Thread() {
+			@Override
+			public void run() {
+				while(!isInterrupted()) {
+					peak[0] = Math.max(peak[0], server.getConnectionCount());
+					try {
+						Thread.sleep(5);
+					} catch(InterruptedException e) {
+						return;
+					}
+				}
+			}
+		};
+		sampler.start();
+		return sampler;
+	}
+
+	/**
+	 * Computes the given percentile of the latencies.
+	 */
+	private long percentile(long[] latencies, int percentile) {
+		List<Long> sorted = new ArrayList<Long>();
+		for(long latency : latencies) {
+			sorted.add(latency);
+		}
+		Collections.sort(sorted);
+		assertEquals(CONNECTIONS, sorted.size());
+		return sorted.get(Math.min(sorted.size() - 1, sorted.size() * percentile / 100));
+	}
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+import org.apache.log4j.Level;
+import org.dihedron.ehttpd.exceptions.ServerException;
+import org.dihedron.ehttpd.server.handlers.Handler;
+import org.dihedron.ehttpd.server.handlers.impl.MetricsHandler;
+import org.dihedron.ehttpd.server.session.FakeSessionGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that the server records the latency of each route and counts the 
+ * responses, and that the metrics endpoint exposes them.
+ *
+ * @author Andrea Funto'
+ */
+public class HttpServerMetricsTest {
+	
+	@Before
+	public void setUp() throws Exception {
+		org.apache.log4j.Logger.getLogger("org.dihedron").setLevel(Level.WARN);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		org.apache.log4j.Logger.getLogger("org.dihedron").setLevel(Level.TRACE);
+	}
+	
+	@Test
+	public void testMetrics() throws Exception {
+		for(boolean nonBlocking : new boolean[] { false, true }) {
+			ServerMetrics metrics = new ServerMetrics();
+			RequestDispatcher dispatcher = new RequestDispatcher(new FakeSessionGenerator());
+			dispatcher.handle("/hello").through(new Handler() {
+				public void handle(Request request, Response response) throws ServerException {
+					response.setHeader("Content-Type", "text/plain");
+					response.addContent("OK");
+				}
+			});
+			dispatcher.handle("/metrics").through(new MetricsHandler(metrics));
+			HttpServer server = new HttpServer(HttpServer.AUTOMATIC_PORT_BINDING, dispatcher);
+			server.setUseNonBlockingIO(nonBlocking);
+			server.setThreadPoolSize(4);
+			server.setIOThreads(1);
+			server.setMetrics(metrics);
+			new Thread(server).start();
+			while(server.getPort() == HttpServer.AUTOMATIC_PORT_BINDING) {
+				Thread.sleep(10);
+			}
+			try {
+				Socket socket = new Socket("localhost", server.getPort());
+				socket.setSoTimeout(10000);
+				for(int i = 0; i < 3; ++i) {
+					send(socket, "/hello");
+					assertTrue(readResponse(socket.getInputStream()).endsWith("OK"));
+				}
+				send(socket, "/metrics");
+				String response = readResponse(socket.getInputStream());
+				socket.close();
+				
+				assertTrue(response, response.contains("Content-Type: " + MetricsHandler.CONTENT_TYPE));
+				assertTrue(response, response.contains("ehttpd_handler_duration_seconds_count{route=\"/hello\"} 3\n"));
+				assertTrue(response, response.contains("ehttpd_handler_duration_seconds_bucket{route=\"/hello\",le=\"+Inf\"} 3\n"));
+				assertTrue(response, response.contains("ehttpd_dispatch_duration_seconds_count 3\n"));
+				assertTrue(response, response.contains("ehttpd_parse_duration_seconds_count 4\n"));
+				assertTrue(response, response.contains("ehttpd_accept_duration_seconds_count 1\n"));
+				assertTrue(response, response.contains("ehttpd_responses_total{code=\"200\"} 3\n"));
+				
+				// the metrics response itself is counted once flushed
+				assertEquals(4, metrics.getResponses(200));
+				assertEquals(4, metrics.getFlush().getCount());
+				assertEquals(3, metrics.getRoute("/hello").getCount());
+				assertTrue(metrics.getBytesWritten() > 3 * "OK".length());
+			} finally {
+				server.stop();
+			}
+		}
+	}
+	
+	/**
+	 * Sends a request for the given target, on a persistent connection.
+	 */
+	private void send(Socket socket, String target) throws IOException {
+		OutputStream output = socket.getOutputStream();
+		output.write(("GET " + target + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes());
+		output.flush();
+	}
+	
+	/**
+	 * Reads a response with a <code>Content-Length</code> header.
+	 */
+	private String readResponse(InputStream input) throws IOException {
+		StringBuilder response = new StringBuilder();
+		int c;
+		while(response.indexOf("\r\n\r\n") == -1 && (c = input.read()) != -1) {
+			response.append((char)c);
+		}
+		int start = response.indexOf("Content-Length: ") + "Content-Length: ".length();
+		int length = Integer.parseInt(response.substring(start, response.indexOf("\r\n", start)));
+		for(int i = 0; i < length && (c = input.read()) != -1; ++i) {
+			response.append((char)c);
+		}
+		return response.toString();
+	}
+}
@@ -0,0 +1,278 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.dihedron.ehttpd.exceptions.ServerException;
+import org.dihedron.ehttpd.server.session.FakeSessionGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that a graceful shutdown lets requests in flight complete, closes
+ * idle connections straight away, and reports the requests it had to cut.
+ *
+ * @author Andrea Funto'
+ */
+public class HttpServerShutdownTest {
+	
+	/**
+	 * Released when the blocked handlers should complete.
+	 */
+	private CountDownLatch release;
+	
+	/**
+	 * Counted down when a handler starts servicing a request.
+	 */
+	private CountDownLatch started;
+	
+	@Before
+	public void setUp() throws Exception {
+		org.apache.log4j.Logger.getLogger("org.dihedron").setLevel(Level.WARN);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		org.apache.log4j.Logger.getLogger("org.dihedron").setLevel(Level.TRACE);
+	}
+	
+	@Test
+	public void testGracefulShutdown() throws Exception {
+		for(boolean nonBlocking : new boolean[] { false, true }) {
+			release = new CountDownLatch(1);
+			started = new CountDownLatch(1);
+			final HttpServer server = start(createServer(nonBlocking));
+			
+			// a persistent connection waiting for its next request
+			Socket idle = connect(server);
+			send(idle, "/", true);
+			assertTrue(readResponse(idle.getInputStream()).endsWith("OK"));
+			assertEquals(1, waitForConnections(server, 1));
+			
+			// a request in flight, on a persistent connection
+			Socket busy = connect(server);
+			send(busy, "/block", true);
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+			
+			new Thread() {
+				public void run() {
+					try {
+						Thread.sleep(300);
+					} catch(InterruptedException e) {
+						// proceed
+					}
+					release.countDown();
+				}
+			}.start();
+			long start = System.currentTimeMillis();
+			assertEquals(0, server.shutdown(5, TimeUnit.SECONDS));
+			long elapsed = System.currentTimeMillis() - start;
+			assertTrue("drained in " + elapsed + " ms", elapsed >= 250 && elapsed < 3000);
+			
+			// the request in flight completed, on a connection then closed
+			String response = readResponse(busy.getInputStream());
+			assertTrue(response, response.contains("Connection: close\r\n") && response.endsWith("OK"));
+			assertEquals(-1, busy.getInputStream().read());
+			busy.close();
+			
+			// the idle connection was closed without waiting for the keep-alive timeout
+			assertEquals(-1, idle.getInputStream().read());
+			idle.close();
+			
+			try {
+				connect(server).close();
+				fail("server still accepting connections");
+			} catch(IOException e) {
+				// expected
+			}
+			assertEquals(0, server.getConnectionCount());
+		}
+	}
+	
+	@Test
+	public void testShutdownCutsRequests() throws Exception {
+		for(boolean nonBlocking : new boolean[] { false, true }) {
+			release = new CountDownLatch(1);
+			started = new CountDownLatch(1);
+			HttpServer server = start(createServer(nonBlocking));
+			try {
+				Socket busy = connect(server);
+				send(busy, "/block", false);
+				assertTrue(started.await(5, TimeUnit.SECONDS));
+				
+				assertEquals(1, server.shutdown(200, TimeUnit.MILLISECONDS));
+				assertEquals(-1, busy.getInputStream().read());
+				busy.close();
+			} finally {
+				release.countDown();
+			}
+		}
+	}
+	
+	@Test
+	public void testShutdownWaitsForPartialRequests() throws Exception {
+		for(boolean nonBlocking : new boolean[] { false, true }) {
+			HttpServer server = start(createServer(nonBlocking));
+			
+			// a persistent connection on which the next request has started
+			Socket socket = connect(server);
+			send(socket, "/", true);
+			assertTrue(readResponse(socket.getInputStream()).endsWith("OK"));
+			final OutputStream output = socket.getOutputStream();
+			output.write("GET / HTTP/1.1\r\nHost: localhost\r\n".getBytes());
+			output.flush();
+			Thread.sleep(100);
+			
+			new Thread() {
+				public void run() {
+					try {
+						Thread.sleep(300);
+						output.write("\r\n".getBytes());
+						output.flush();
+					} catch(Exception e) {
+						// connection closed by the server
+					}
+				}
+			}.start();
+			assertEquals(0, server.shutdown(5, TimeUnit.SECONDS));
+			
+			// the request was completed and serviced, then the connection closed
+			String response = readResponse(socket.getInputStream());
+			assertTrue(response, response.contains("Connection: close\r\n") && response.endsWith("OK"));
+			assertEquals(-1, socket.getInputStream().read());
+			socket.close();
+		}
+	}
+	
+	@Test
+	public void testShutdownCutsPartialRequests() throws Exception {
+		for(boolean nonBlocking : new boolean[] { false, true }) {
+			HttpServer server = start(createServer(nonBlocking));
+			
+			// the head of the next request is never completed
+			Socket socket = connect(server);
+			send(socket, "/", true);
+			assertTrue(readResponse(socket.getInputStream()).endsWith("OK"));
+			OutputStream output = socket.getOutputStream();
+			output.write("GET / HTTP/1.1\r\nHost: localhost\r\n".getBytes());
+			output.flush();
+			Thread.sleep(100);
+			
+			assertEquals(1, server.shutdown(200, TimeUnit.MILLISECONDS));
+			assertEquals(-1, socket.getInputStream().read());
+			socket.close();
+		}
+	}
+	
+	/**
+	 * Creates a server on a random port, with a dispatcher that blocks on 
+	 * "/block" until released and answers "OK" to all requests.
+	 */
+	private HttpServer createServer(boolean nonBlocking) throws Exception {
+		RequestDispatcher dispatcher = new RequestDispatcher(new FakeSessionGenerator()) {
+			@Override
+			public void dispatch(Request request, Response response) throws ServerException {
+				if(request.getHttpQuery().getQueryString().equals("/block")) {
+					started.countDown();
+					try {
+						release.await();
+					} catch(InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				response.setHeader("Content-Type", "text/plain");
+				response.addContent("OK");
+			}
+		};
+		HttpServer server = new HttpServer(HttpServer.AUTOMATIC_PORT_BINDING, dispatcher);
+		server.setUseNonBlockingIO(nonBlocking);
+		server.setThreadPoolSize(4);
+		server.setIOThreads(1);
+		return server;
+	}
+	
+	/**
+	 * Starts the server and waits until it is listening.
+	 */
+	private HttpServer start(HttpServer server) throws InterruptedException {
+		new Thread(server).start();
+		while(server.getPort() == HttpServer.AUTOMATIC_PORT_BINDING) {
+			Thread.sleep(10);
+		}
+		return server;
+	}
+	
+	/**
+	 * Waits for the server to have at least the given number of connections.
+	 */
+	private int waitForConnections(HttpServer server, int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while(server.getConnectionCount() < count && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		return server.getConnectionCount();
+	}
+	
+	/**
+	 * Connects to the server.
+	 */
+	private Socket connect(HttpServer server) throws IOException {
+		Socket socket = new Socket("localhost", server.getPort());
+		socket.setSoTimeout(10000);
+		return socket;
+	}
+	
+	/**
+	 * Sends a request for the given target.
+	 */
+	private void send(Socket socket, String target, boolean persistent) throws IOException {
+		OutputStream output = socket.getOutputStream();
+		output.write(("GET " + target + " HTTP/1." + (persistent ? 1 : 0) + "\r\nHost: localhost\r\n\r\n").getBytes());
+		output.flush();
+	}
+	
+	/**
+	 * Reads a response with a <code>Content-Length</code> header.
+	 */
+	private String readResponse(InputStream input) throws IOException {
+		StringBuilder response = new StringBuilder();
+		int c;
+		while(response.indexOf("\r\n\r\n") == -1 && (c = input.read()) != -1) {
+			response.append((char)c);
+		}
+		int start = response.indexOf("Content-Length: ") + "Content-Length: ".length();
+		int length = Integer.parseInt(response.substring(start, response.indexOf("\r\n", start)));
+		for(int i = 0; i < length && (c = input.read()) != -1; ++i) {
+			response.append((char)c);
+		}
+		return response.toString();
+	}
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+
+import org.apache.log4j.Level;
+import org.dihedron.ehttpd.exceptions.ServerException;
+import org.dihedron.ehttpd.server.session.FakeSessionGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A benchmark comparing the throughput of the three execution modes (a raw 
+ * thread per connection, a fixed thread pool and lightweight threads) with 
+ * a handler that blocks for a while, as if waiting on a database: all clients
+ * connect and send their request at once, then the responses are collected.
+ * The number of clients can be set through the <code>
+ * ehttpd.benchmark.connections</code> system property (e.g. 10000).
+ *
+ * @author Andrea Funto'
+ */
+public class HttpServerThreadingTest {
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(HttpServerThreadingTest.class);
+
+	/**
+	 * The number of concurrent client connections.
+	 */
+	private static final int CONNECTIONS = Integer.getInteger("ehttpd.benchmark.connections", 300);
+
+	/**
+	 * How long the handler blocks on each request.
+	 */
+	private static final long BLOCKING_MILLIS = 20;
+
+	/**
+	 * The size of the fixed thread pool.
+	 */
+	private static final int POOL_SIZE = 20;
+
+	@Before
+	public void setUp() throws Exception {
+		org.apache.log4j.Logger.getLogger("org.dihedron").setLevel(Level.WARN);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		org.apache.log4j.Logger.getLogger("org.dihedron").setLevel(Level.TRACE);
+	}
+
+	@Test
+	public void testExecutionModes() throws Exception {
+		HttpServer server = startServer(HttpServer.UNLIMITED_POOL_SIZE, false);
+		double raw = load(server);
+		server.stop();
+		logger.warn("raw threads        : {} requests/s", Math.round(raw));
+
+		server = startServer(POOL_SIZE, false);
+		double pooled = load(server);
+		server.stop();
+		logger.warn("fixed pool ({})    : {} requests/s", POOL_SIZE, Math.round(pooled));
+
+		server = startServer(POOL_SIZE, true);
+		double lightweight = load(server);
+		server.stop();
+		logger.warn("lightweight threads: {} requests/s", Math.round(lightweight));
+
+		// the fixed pool caps the number of handlers blocking at the same time
+		assertTrue(lightweight > pooled);
+	}
+
+	/**
+	 * Starts a server on a random port, with a dispatcher that blocks for a 
+	 * while and then answers "OK" to all requests.
+	 */
+	private HttpServer startServer(int poolSize, boolean lightweight) throws Exception {
+		RequestDispatcher dispatcher = new RequestDispatcher(new FakeSessionGenerator()) {
+			@Override
+			public void dispatch(Request request, Response response) throws ServerException {
+				try {
+					Thread.sleep(BLOCKING_MILLIS);
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				response.setHeader("Content-Type", "text/plain");
+				response.addContent("OK");
+			}
+		};
+		HttpServer server = new HttpServer(HttpServer.AUTOMATIC_PORT_BINDING, dispatcher);
+		server.setThreadPoolSize(poolSize);
+		server.setUseLightweightThreads(lightweight);
+		server.setAcceptBacklog(CONNECTIONS);
+		new Thread(server).start();
+		while(server.getPort() == HttpServer.AUTOMATIC_PORT_BINDING) {
+			Thread.sleep(10);
+		}
+		return server;
+	}
+
+	/**
+	 * Opens all client connections, sends a request on each of them and then
+	 * reads all responses; returns the throughput in requests per second.
+	 */
+	private double load(HttpServer server) throws IOException {
+		byte[] request = "GET /block HTTP/1.0\r\nHost: localhost\r\n\r\n".getBytes();
+		Socket[] sockets = new Socket[CONNECTIONS];
+		long start = System.nanoTime();
+		try {
+			for(int i = 0; i < CONNECTIONS; ++i) {
+				sockets[i] = new Socket("localhost", server.getPort());
+				sockets[i].getOutputStream().write(request);
+			}
+			int ok = 0;
+			for(Socket socket : sockets) {
+				if(readResponse(socket.getInputStream()).startsWith("HTTP/1.0 200 OK")) {
+					++ok;
+				}
+			}
+			assertEquals(CONNECTIONS, ok);
+		} finally {
+			for(Socket socket : sockets) {
+				if(socket != null) {
+					socket.close();
+				}
+			}
+		}
+		return CONNECTIONS * 1000000000.0 / (System.nanoTime() - start);
+	}
+
+	/**
+	 * Reads a whole response, up to the connection being closed.
+	 */
+	private String readResponse(InputStream input) throws IOException {
+		StringBuilder response = new StringBuilder();
+		int c;
+		while((c = input.read()) != -1) {
+			response.append((char)c);
+		}
+		return response.toString();
+	}
+}
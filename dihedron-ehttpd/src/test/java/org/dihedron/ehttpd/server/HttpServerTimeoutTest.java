@@ -0,0 +1,257 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import org.apache.log4j.Level;
+import org.dihedron.ehttpd.exceptions.ServerException;
+import org.dihedron.ehttpd.server.session.FakeSessionGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that slow clients cannot hold on to the server: those trickling in 
+ * their request head get a <code>408 Request Timeout</code>, and those not 
+ * reading their response or not sending a new request get disconnected.
+ *
+ * @author Andrea Funto'
+ */
+public class HttpServerTimeoutTest {
+	
+	/**
+	 * The size of the response that clients do not read.
+	 */
+	private static final int LARGE_RESPONSE = 32 * 1024 * 1024;
+	
+	@Before
+	public void setUp() throws Exception {
+		org.apache.log4j.Logger.getLogger("org.dihedron").setLevel(Level.WARN);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		org.apache.log4j.Logger.getLogger("org.dihedron").setLevel(Level.TRACE);
+	}
+	
+	@Test
+	public void testHeaderTimeout() throws Exception {
+		for(boolean nonBlocking : new boolean[] { false, true }) {
+			HttpServer server = createServer(nonBlocking);
+			server.setHeaderTimeout(500);
+			start(server);
+			try {
+				final Socket socket = new Socket("localhost", server.getPort());
+				socket.setSoTimeout(10000);
+				final OutputStream output = socket.getOutputStream();
+				output.write("GET / HTTP/1.1\r\nHost: localhost\r\n".getBytes());
+				output.flush();
+				// a byte every 50 ms would keep a read timeout at bay
+				Thread slowloris = new Thread() {
+					public void run() {
+						try {
+							while(true) {
+								Thread.sleep(50);
+								output.write('X');
+								output.flush();
+							}
+						} catch(Exception e) {
+							// connection closed by the server
+						}
+					}
+				};
+				slowloris.start();
+				long start = System.currentTimeMillis();
+				String response = read(socket);
+				long elapsed = System.currentTimeMillis() - start;
+				slowloris.interrupt();
+				slowloris.join();
+				assertTrue(response, response.startsWith("HTTP/1.1 408 Request Timeout\r\n"));
+				assertTrue("timed out after " + elapsed + " ms", elapsed < 3000);
+				assertEquals(1, server.getRequestTimeouts());
+				
+				// well-behaved clients are still serviced
+				assertTrue(request(server, "/").endsWith("OK"));
+			} finally {
+				server.stop();
+			}
+		}
+	}
+	
+	@Test
+	public void testHeaderTimeoutOnPersistentConnection() throws Exception {
+		for(boolean nonBlocking : new boolean[] { false, true }) {
+			HttpServer server = createServer(nonBlocking);
+			server.setHeaderTimeout(500);
+			server.setKeepAliveTimeout(4000);
+			start(server);
+			try {
+				Socket socket = new Socket("localhost", server.getPort());
+				socket.setSoTimeout(10000);
+				OutputStream output = socket.getOutputStream();
+				output.write("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+				output.flush();
+				InputStream input = socket.getInputStream();
+				StringBuilder first = new StringBuilder();
+				while(first.indexOf("\r\n\r\n") == -1 || !first.toString().endsWith("OK")) {
+					first.append((char)input.read());
+				}
+				
+				// the next request starts, but its head is never completed
+				output.write("GET / HTTP/1.1\r\nHost: localhost\r\n".getBytes());
+				output.flush();
+				long start = System.currentTimeMillis();
+				String response = read(socket);
+				long elapsed = System.currentTimeMillis() - start;
+				assertTrue(response, response.startsWith("HTTP/1.1 408 Request Timeout\r\n"));
+				assertTrue("timed out after " + elapsed + " ms", elapsed < 3000);
+				assertEquals(1, server.getRequestTimeouts());
+				assertEquals(0, server.getIdleTimeouts());
+			} finally {
+				server.stop();
+			}
+		}
+	}
+	
+	@Test
+	public void testIdleTimeout() throws Exception {
+		for(boolean nonBlocking : new boolean[] { false, true }) {
+			HttpServer server = createServer(nonBlocking);
+			server.setKeepAliveTimeout(300);
+			start(server);
+			try {
+				Socket socket = new Socket("localhost", server.getPort());
+				socket.setSoTimeout(10000);
+				OutputStream output = socket.getOutputStream();
+				output.write("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+				output.flush();
+				
+				// the response is followed by the server closing the connection
+				long start = System.currentTimeMillis();
+				String response = read(socket);
+				long elapsed = System.currentTimeMillis() - start;
+				assertTrue(response, response.startsWith("HTTP/1.1 200 ") && response.endsWith("OK"));
+				assertTrue("closed after " + elapsed + " ms", elapsed >= 300 && elapsed < 3000);
+				assertEquals(1, server.getIdleTimeouts());
+			} finally {
+				server.stop();
+			}
+		}
+	}
+	
+	@Test
+	public void testWriteTimeout() throws Exception {
+		for(boolean nonBlocking : new boolean[] { false, true }) {
+			HttpServer server = createServer(nonBlocking);
+			server.setWriteTimeout(300);
+			start(server);
+			try {
+				Socket socket = new Socket();
+				socket.setReceiveBufferSize(4096);
+				socket.connect(new InetSocketAddress("localhost", server.getPort()));
+				OutputStream output = socket.getOutputStream();
+				output.write("GET /large HTTP/1.0\r\nHost: localhost\r\n\r\n".getBytes());
+				output.flush();
+				
+				// the client never reads
+				long deadline = System.currentTimeMillis() + 10000;
+				while(server.getWriteTimeouts() == 0 && System.currentTimeMillis() < deadline) {
+					Thread.sleep(10);
+				}
+				assertEquals(1, server.getWriteTimeouts());
+				socket.close();
+			} finally {
+				server.stop();
+			}
+		}
+	}
+	
+	/**
+	 * Creates a server on a random port, with a dispatcher that answers with
+	 * a large response on "/large", and with "OK" to all other requests.
+	 */
+	private HttpServer createServer(boolean nonBlocking) throws Exception {
+		RequestDispatcher dispatcher = new RequestDispatcher(new FakeSessionGenerator()) {
+			@Override
+			public void dispatch(Request request, Response response) throws ServerException {
+				response.setHeader("Content-Type", "text/plain");
+				if(request.getHttpQuery().getQueryString().equals("/large")) {
+					response.addContent(new byte[LARGE_RESPONSE]);
+				} else {
+					response.addContent("OK");
+				}
+			}
+		};
+		HttpServer server = new HttpServer(HttpServer.AUTOMATIC_PORT_BINDING, dispatcher);
+		server.setUseNonBlockingIO(nonBlocking);
+		server.setIOThreads(1);
+		return server;
+	}
+	
+	/**
+	 * Starts the server and waits until it is listening.
+	 */
+	private HttpServer start(HttpServer server) throws InterruptedException {
+		new Thread(server).start();
+		while(server.getPort() == HttpServer.AUTOMATIC_PORT_BINDING) {
+			Thread.sleep(10);
+		}
+		return server;
+	}
+	
+	/**
+	 * Sends a request for the given target on a new connection, and returns 
+	 * the whole response.
+	 */
+	private String request(HttpServer server, String target) throws IOException {
+		Socket socket = new Socket("localhost", server.getPort());
+		socket.setSoTimeout(10000);
+		OutputStream output = socket.getOutputStream();
+		output.write(("GET " + target + " HTTP/1.0\r\nHost: localhost\r\n\r\n").getBytes());
+		output.flush();
+		return read(socket);
+	}
+	
+	/**
+	 * Reads until the server closes the connection, then closes it.
+	 */
+	private String read(Socket socket) throws IOException {
+		try {
+			InputStream input = socket.getInputStream();
+			StringBuilder response = new StringBuilder();
+			int c;
+			while((c = input.read()) != -1) {
+				response.append((char)c);
+			}
+			return response.toString();
+		} catch(IOException e) {
+			return e.getMessage();
+		} finally {
+			socket.close();
+		}
+	}
+}
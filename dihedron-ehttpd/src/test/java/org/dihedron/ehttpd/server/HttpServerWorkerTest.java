@@ -0,0 +1,516 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ *
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.dihedron.ehttpd.exceptions.ServerException;
+import org.dihedron.ehttpd.server.session.FakeSessionGenerator;
+import org.junit.Test;
+
+/**
+ * Tests persistent connections and request pipelining, in both the blocking
+ * and the non-blocking server modes.
+ *
+ * @author Andrea Funto'
+ */
+public class HttpServerWorkerTest {
+
+	/**
+	 * The size of the body written for "/large".
+	 */
+	private static final int LARGE_BODY_SIZE = 5000;
+
+	@Test
+	public void testPipelinedRequests() throws Exception {
+		testPipelinedRequests(false);
+		testPipelinedRequests(true);
+	}
+
+	@Test
+	public void testConnectionClose() throws Exception {
+		testConnectionClose(false);
+		testConnectionClose(true);
+	}
+
+	@Test
+	public void testChunkedOutput() throws Exception {
+		testChunkedOutput(false);
+		testChunkedOutput(true);
+	}
+
+	@Test
+	public void testRequestBody() throws Exception {
+		testRequestBody(false);
+		testRequestBody(true);
+	}
+
+	@Test
+	public void testAutoETag() throws Exception {
+		testAutoETag(false);
+		testAutoETag(true);
+	}
+
+	@Test
+	public void testHeadRequests() throws Exception {
+		testHeadRequests(false);
+		testHeadRequests(true);
+	}
+
+	@Test
+	public void testInvalidFraming() throws Exception {
+		testInvalidFraming(false);
+		testInvalidFraming(true);
+	}
+
+	@Test
+	public void testRequestBodyTooLarge() throws Exception {
+		testRequestBodyTooLarge(false);
+		testRequestBodyTooLarge(true);
+	}
+
+	private void testPipelinedRequests(boolean nonBlocking) throws Exception {
+		HttpServer server = startServer(nonBlocking);
+		Socket socket = new Socket("localhost", server.getPort());
+		try {
+			OutputStream output = socket.getOutputStream();
+			output.write((
+					"POST /first HTTP/1.1\r\nHost: localhost\r\nContent-Length: 5\r\n\r\nhello" +
+					"GET /second HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes());
+			output.flush();
+
+			InputStream input = socket.getInputStream();
+			Map<String, String> headers = new HashMap<String, String>();
+			assertEquals("HTTP/1.1 200 OK", readHead(input, headers));
+			assertEquals("keep-alive", headers.get("Connection"));
+			assertEquals("/first", readBody(input, headers));
+
+			assertEquals("HTTP/1.1 200 OK", readHead(input, headers));
+			assertEquals("/second", readBody(input, headers));
+
+			// a third request on the same connection, after the pipelined ones
+			output.write("GET /third HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes());
+			output.flush();
+			assertEquals("HTTP/1.1 200 OK", readHead(input, headers));
+			assertEquals("close", headers.get("Connection"));
+			assertEquals("/third", readBody(input, headers));
+			assertEquals(-1, input.read());
+		} finally {
+			socket.close();
+			server.stop();
+		}
+	}
+
+	private void testConnectionClose(boolean nonBlocking) throws Exception {
+		HttpServer server = startServer(nonBlocking);
+		server.setMaxKeepAliveRequests(2);
+		Socket socket = new Socket("localhost", server.getPort());
+		try {
+			OutputStream output = socket.getOutputStream();
+			output.write((
+					"GET /first HTTP/1.0\r\nConnection: keep-alive\r\n\r\n" +
+					"GET /second HTTP/1.0\r\nConnection: keep-alive\r\n\r\n").getBytes());
+			output.flush();
+
+			InputStream input = socket.getInputStream();
+			Map<String, String> headers = new HashMap<String, String>();
+			assertEquals("HTTP/1.0 200 OK", readHead(input, headers));
+			assertEquals("keep-alive", headers.get("Connection"));
+			assertEquals("/first", readBody(input, headers));
+
+			// the maximum number of requests has been reached
+			assertEquals("HTTP/1.0 200 OK", readHead(input, headers));
+			assertEquals("close", headers.get("Connection"));
+			assertEquals("/second", readBody(input, headers));
+			assertEquals(-1, input.read());
+		} finally {
+			socket.close();
+			server.stop();
+		}
+	}
+
+	private void testChunkedOutput(boolean nonBlocking) throws Exception {
+		HttpServer server = startServer(nonBlocking);
+		server.setChunkedOutputThreshold(1024);
+		Socket socket = new Socket("localhost", server.getPort());
+		try {
+			OutputStream output = socket.getOutputStream();
+			output.write((
+					"GET /large HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+					"GET /small HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+					"GET /large HTTP/1.0\r\nConnection: keep-alive\r\n\r\n").getBytes());
+			output.flush();
+
+			InputStream input = socket.getInputStream();
+			Map<String, String> headers = new HashMap<String, String>();
+			assertEquals("HTTP/1.1 200 OK", readHead(input, headers));
+			assertEquals("chunked", headers.get("Transfer-Encoding"));
+			assertTrue(!headers.containsKey("Content-Length"));
+			StringBuilder body = new StringBuilder();
+			int size;
+			while((size = Integer.parseInt(readLine(input), 16)) > 0) {
+				for(int i = 0; i < size; ++i) {
+					body.append((char)input.read());
+				}
+				assertEquals("", readLine(input));
+			}
+			assertEquals("", readLine(input));
+			assertEquals(LARGE_BODY_SIZE, body.length());
+
+			// below the threshold, on the same connection
+			assertEquals("HTTP/1.1 200 OK", readHead(input, headers));
+			assertEquals("/small", readBody(input, headers));
+
+			// HTTP/1.0 clients get the content up to the connection being closed
+			assertEquals("HTTP/1.0 200 OK", readHead(input, headers));
+			assertEquals("close", headers.get("Connection"));
+			int count = 0;
+			while(input.read() != -1) {
+				++count;
+			}
+			assertEquals(LARGE_BODY_SIZE, count);
+		} finally {
+			socket.close();
+			server.stop();
+		}
+	}
+
+	private void testRequestBody(boolean nonBlocking) throws Exception {
+		HttpServer server = startServer(nonBlocking);
+		server.setRequestBodyThreshold(1024);
+		Socket socket = new Socket("localhost", server.getPort());
+		try {
+			OutputStream output = socket.getOutputStream();
+			StringBuilder request = new StringBuilder();
+			request.append("POST /upload HTTP/1.1\r\nContent-Type: text/plain\r\nContent-Length: 100\r\n\r\n").append(repeat('a', 100));
+			request.append("POST /upload HTTP/1.1\r\nContent-Type: text/plain\r\nTransfer-Encoding: chunked\r\n\r\n");
+			for(int i = 0; i < 3; ++i) {
+				request.append("3e8;name=value\r\n").append(repeat('b', 1000)).append("\r\n");
+			}
+			request.append("0\r\nX-Trailer: ignored\r\n\r\n");
+			request.append("GET /second HTTP/1.1\r\n\r\n");
+			output.write(request.toString().getBytes());
+			output.flush();
+
+			InputStream input = socket.getInputStream();
+			Map<String, String> headers = new HashMap<String, String>();
+			assertEquals("HTTP/1.1 200 OK", readHead(input, headers));
+			assertEquals("100:text/plain:true:" + 100 * 'a', readBody(input, headers));
+			
+			// larger than the threshold, spilled to disk
+			assertEquals("HTTP/1.1 200 OK", readHead(input, headers));
+			assertEquals("3000:text/plain:false:" + 3000 * 'b', readBody(input, headers));
+			
+			assertEquals("HTTP/1.1 200 OK", readHead(input, headers));
+			assertEquals("/second", readBody(input, headers));
+			
+			// the client waits for the interim response before sending the body
+			output.write("POST /upload HTTP/1.1\r\nExpect: 100-continue\r\nContent-Length: 10\r\n\r\n".getBytes());
+			output.flush();
+			assertEquals("HTTP/1.1 100 Continue", readLine(input));
+			assertEquals("", readLine(input));
+			output.write(repeat('c', 10).getBytes());
+			output.flush();
+			assertEquals("HTTP/1.1 200 OK", readHead(input, headers));
+			assertEquals("10:null:true:" + 10 * 'c', readBody(input, headers));
+		} finally {
+			socket.close();
+			server.stop();
+		}
+	}
+
+	private void testAutoETag(boolean nonBlocking) throws Exception {
+		HttpServer server = startServer(nonBlocking);
+		server.setUseAutoETag(true);
+		Socket socket = new Socket("localhost", server.getPort());
+		try {
+			OutputStream output = socket.getOutputStream();
+			InputStream input = socket.getInputStream();
+			Map<String, String> headers = new HashMap<String, String>();
+			output.write("GET /page HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+			output.flush();
+			assertEquals("HTTP/1.1 200 OK", readHead(input, headers));
+			assertEquals("/page", readBody(input, headers));
+			String etag = headers.get("ETag");
+			assertTrue(etag, etag.matches("W/\"[0-9a-f]+\""));
+			
+			output.write((
+					"GET /page HTTP/1.1\r\nIf-None-Match: \"other\", " + etag + "\r\n\r\n" +
+					"GET /other HTTP/1.1\r\nIf-None-Match: " + etag + "\r\n\r\n" +
+					"POST /upload HTTP/1.1\r\nIf-None-Match: " + etag + "\r\nContent-Length: 0\r\n\r\n").getBytes());
+			output.flush();
+			
+			// the content has not changed, and is not sent
+			assertEquals("HTTP/1.1 304 Not Modified", readHead(input, headers));
+			assertEquals(etag, headers.get("ETag"));
+			assertTrue(!headers.containsKey("Content-Length"));
+			
+			assertEquals("HTTP/1.1 200 OK", readHead(input, headers));
+			assertEquals("/other", readBody(input, headers));
+			assertTrue(!etag.equals(headers.get("ETag")));
+			
+			// only GET and HEAD responses are tagged
+			assertEquals("HTTP/1.1 200 OK", readHead(input, headers));
+			assertEquals("0:null:true:0", readBody(input, headers));
+			assertTrue(!headers.containsKey("ETag"));
+		} finally {
+			socket.close();
+			server.stop();
+		}
+	}
+
+	private void testHeadRequests(boolean nonBlocking) throws Exception {
+		HttpServer server = startServer(nonBlocking);
+		server.setChunkedOutputThreshold(1024);
+		Socket socket = new Socket("localhost", server.getPort());
+		try {
+			OutputStream output = socket.getOutputStream();
+			output.write((
+					"HEAD /first HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+					"HEAD /large HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+					"GET /second HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+			output.flush();
+
+			// the length of the content is reported, but the content is not sent
+			InputStream input = socket.getInputStream();
+			Map<String, String> headers = new HashMap<String, String>();
+			assertEquals("HTTP/1.1 200 OK", readHead(input, headers));
+			assertEquals("6", headers.get("Content-Length"));
+			assertEquals("HTTP/1.1 200 OK", readHead(input, headers));
+			assertEquals(String.valueOf(LARGE_BODY_SIZE), headers.get("Content-Length"));
+			assertTrue(!headers.containsKey("Transfer-Encoding"));
+			
+			assertEquals("HTTP/1.1 200 OK", readHead(input, headers));
+			assertEquals("/second", readBody(input, headers));
+			assertEquals(-1, input.read());
+		} finally {
+			socket.close();
+			server.stop();
+		}
+	}
+
+	private void testInvalidFraming(boolean nonBlocking) throws Exception {
+		HttpServer server = startServer(nonBlocking);
+		try {
+			String [] framings = {
+					"Content-Length: abc\r\n",
+					"Content-Length: -5\r\n",
+					"Content-Length: 99999999999999999999\r\n",
+					"Content-Length: 5\r\nContent-Length: 6\r\n",
+					"Content-Length: 5, 6\r\n",
+					"Transfer-Encoding: chunked\r\nContent-Length: 5\r\n",
+					"Transfer-Encoding: gzip\r\n"
+			};
+			for(String framing : framings) {
+				// the smuggled request must not be served
+				Socket socket = new Socket("localhost", server.getPort());
+				try {
+					socket.setSoTimeout(10000);
+					OutputStream output = socket.getOutputStream();
+					output.write(("POST /first HTTP/1.1\r\nHost: localhost\r\n" + framing + "\r\n" +
+							"GET /secret HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes());
+					output.flush();
+					InputStream input = socket.getInputStream();
+					Map<String, String> headers = new HashMap<String, String>();
+					assertEquals(framing, "HTTP/1.1 400 Bad Request", readHead(input, headers));
+					assertEquals("close", headers.get("Connection"));
+					assertEquals(framing, -1, input.read());
+				} finally {
+					socket.close();
+				}
+			}
+			
+			// repeated values are fine as long as they agree
+			Socket socket = new Socket("localhost", server.getPort());
+			try {
+				OutputStream output = socket.getOutputStream();
+				output.write(("POST /upload HTTP/1.1\r\nContent-Length: 5\r\nContent-Length: 5, 5\r\n\r\nhello" +
+						"GET /second HTTP/1.1\r\nConnection: close\r\n\r\n").getBytes());
+				output.flush();
+				InputStream input = socket.getInputStream();
+				Map<String, String> headers = new HashMap<String, String>();
+				assertEquals("HTTP/1.1 200 OK", readHead(input, headers));
+				assertEquals("5:null:true:" + ('h' + 'e' + 'l' + 'l' + 'o'), readBody(input, headers));
+				assertEquals("HTTP/1.1 200 OK", readHead(input, headers));
+				assertEquals("/second", readBody(input, headers));
+			} finally {
+				socket.close();
+			}
+		} finally {
+			server.stop();
+		}
+	}
+
+	private void testRequestBodyTooLarge(boolean nonBlocking) throws Exception {
+		HttpServer server = startServer(nonBlocking);
+		server.setRequestBodyThreshold(1024);
+		server.setMaxRequestBodySize(2000);
+		try {
+			String [] requests = {
+					// the declared length is refused before the body is sent
+					"POST /upload HTTP/1.1\r\nContent-Length: 2001\r\n\r\n",
+					"POST /upload HTTP/1.1\r\nContent-Length: 10000000000\r\nExpect: 100-continue\r\n\r\n",
+					// the chunks add up to more than the limit
+					"POST /upload HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n" + 
+							"3e8\r\n" + repeat('a', 1000) + "\r\n3e8\r\n" + repeat('b', 1000) + "\r\n1\r\nc\r\n0\r\n\r\n",
+					// a single chunk larger than the limit, whose data never comes
+					"POST /upload HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\nfffffffffff\r\n"
+			};
+			for(String request : requests) {
+				Socket socket = new Socket("localhost", server.getPort());
+				try {
+					socket.setSoTimeout(10000);
+					OutputStream output = socket.getOutputStream();
+					output.write((request + "GET /second HTTP/1.1\r\n\r\n").getBytes());
+					output.flush();
+					InputStream input = socket.getInputStream();
+					Map<String, String> headers = new HashMap<String, String>();
+					assertEquals(request, "HTTP/1.1 413 Request Entity Too Large", readHead(input, headers));
+					assertEquals("close", headers.get("Connection"));
+					assertEquals(request, -1, input.read());
+				} finally {
+					socket.close();
+				}
+			}
+			
+			// bodies up to the limit are accepted
+			Socket socket = new Socket("localhost", server.getPort());
+			try {
+				OutputStream output = socket.getOutputStream();
+				output.write(("POST /upload HTTP/1.1\r\nContent-Length: 2000\r\n\r\n" + repeat('d', 2000) + 
+						"POST /upload HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n7d0\r\n" + repeat('e', 2000) + "\r\n0\r\n\r\n").getBytes());
+				output.flush();
+				InputStream input = socket.getInputStream();
+				Map<String, String> headers = new HashMap<String, String>();
+				assertEquals("HTTP/1.1 200 OK", readHead(input, headers));
+				assertEquals("2000:null:false:" + 2000 * 'd', readBody(input, headers));
+				assertEquals("HTTP/1.1 200 OK", readHead(input, headers));
+				assertEquals("2000:null:false:" + 2000 * 'e', readBody(input, headers));
+			} finally {
+				socket.close();
+			}
+		} finally {
+			server.stop();
+		}
+	}
+
+	/**
+	 * Starts a server on a random port, with a dispatcher that echoes the
+	 * request path, writes a large body in several pieces for "/large", or
+	 * describes the request body for "/upload".
+	 */
+	private HttpServer startServer(boolean nonBlocking) throws Exception {
+		RequestDispatcher dispatcher = new RequestDispatcher(new FakeSessionGenerator()) {
+			@Override
+			public void dispatch(Request request, Response response) throws ServerException {
+				response.setHeader("Content-Type", "text/plain");
+				if(request.getHttpQuery().getQueryString().equals("/large")) {
+					char[] piece = new char[LARGE_BODY_SIZE / 10];
+					Arrays.fill(piece, 'x');
+					for(int i = 0; i < 10; ++i) {
+						response.addContent(new String(piece));
+					}
+				} else if(request.getHttpQuery().getQueryString().equals("/upload")) {
+					try {
+						RequestBody body = request.getBody();
+						InputStream input = request.getInputStream();
+						int sum = 0;
+						int c;
+						while((c = input.read()) != -1) {
+							sum += c;
+						}
+						response.addContent(request.getContentLength() + ":" + request.getContentType() + ":" + body.isInMemory() + ":" + sum);
+					} catch(IOException e) {
+						throw new ServerException("error reading request body", e);
+					}
+				} else {
+					response.addContent(request.getHttpQuery().getQueryString());
+				}
+			}
+		};
+		HttpServer server = new HttpServer(HttpServer.AUTOMATIC_PORT_BINDING, dispatcher);
+		server.setUseNonBlockingIO(nonBlocking);
+		server.setIOThreads(1);
+		new Thread(server).start();
+		while(server.getPort() == HttpServer.AUTOMATIC_PORT_BINDING) {
+			Thread.sleep(10);
+		}
+		return server;
+	}
+
+	/**
+	 * Reads the status line and the headers of a response.
+	 */
+	private String readHead(InputStream input, Map<String, String> headers) throws IOException {
+		headers.clear();
+		String status = readLine(input);
+		String line = null;
+		while((line = readLine(input)).length() > 0) {
+			int index = line.indexOf(':');
+			headers.put(line.substring(0, index).trim(), line.substring(index + 1).trim());
+		}
+		return status;
+	}
+
+	/**
+	 * Reads the body of a response, as per its <code>Content-Length</code>.
+	 */
+	private String readBody(InputStream input, Map<String, String> headers) throws IOException {
+		assertTrue(headers.containsKey("Content-Length"));
+		int length = Integer.parseInt(headers.get("Content-Length"));
+		StringBuilder body = new StringBuilder();
+		for(int i = 0; i < length; ++i) {
+			body.append((char)input.read());
+		}
+		return body.toString();
+	}
+
+	/**
+	 * Returns a string made of the given character repeated.
+	 */
+	private static String repeat(char c, int count) {
+		char[] chars = new char[count];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+
+	/**
+	 * Reads a CRLF-terminated line.
+	 */
+	private String readLine(InputStream input) throws IOException {
+		StringBuilder line = new StringBuilder();
+		int c;
+		while((c = input.read()) != '\n') {
+			assertTrue("unexpected end of stream", c != -1);
+			if(c != '\r') {
+				line.append((char)c);
+			}
+		}
+		return line.toString();
+	}
+}
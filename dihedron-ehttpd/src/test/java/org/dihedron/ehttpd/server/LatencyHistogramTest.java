@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checks that samples fall in the bucket whose bounds contain them, that no
+ * sample is lost when recorded concurrently, and measures the cost of 
+ * recording a sample; the number of samples can be set through the <code>
+ * ehttpd.benchmark.iterations</code> system property.
+ *
+ * @author Andrea Funto'
+ */
+public class LatencyHistogramTest {
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(LatencyHistogramTest.class);
+
+	/**
+	 * The number of samples recorded by each thread.
+	 */
+	private static final int ITERATIONS = Integer.getInteger("ehttpd.benchmark.iterations", 200000);
+	
+	/**
+	 * The number of threads recording concurrently.
+	 */
+	private static final int THREADS = 4;
+
+	@Test
+	public void testBuckets() {
+		assertEquals(0, LatencyHistogram.getBucket(0));
+		assertEquals(0, LatencyHistogram.getBucket(1000));
+		assertEquals(1, LatencyHistogram.getBucket(1001));
+		assertEquals(1, LatencyHistogram.getBucket(2000));
+		assertEquals(2, LatencyHistogram.getBucket(2001));
+		for(int i = 1; i < LatencyHistogram.BOUNDED_BUCKETS; ++i) {
+			long bound = LatencyHistogram.getUpperBound(i);
+			assertEquals(i, LatencyHistogram.getBucket(bound));
+			assertEquals(i, LatencyHistogram.getBucket(LatencyHistogram.getUpperBound(i - 1) + 1));
+		}
+		long last = LatencyHistogram.getUpperBound(LatencyHistogram.BOUNDED_BUCKETS - 1);
+		assertEquals(LatencyHistogram.BOUNDED_BUCKETS, LatencyHistogram.getBucket(last + 1));
+		assertEquals(LatencyHistogram.BOUNDED_BUCKETS, LatencyHistogram.getBucket(Long.MAX_VALUE));
+		
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getPercentile(50));
+		for(int i = 0; i < 90; ++i) {
+			histogram.record(500000);
+		}
+		for(int i = 0; i < 10; ++i) {
+			histogram.record(50000000);
+		}
+		assertEquals(100, histogram.getCount());
+		assertEquals(90 * 500000L + 10 * 50000000L, histogram.getSum());
+		assertEquals(512000, histogram.getPercentile(50));
+		assertEquals(512000, histogram.getPercentile(90));
+		assertEquals(65536000, histogram.getPercentile(99));
+	}
+	
+	@Test
+	public void testConcurrentRecording() throws Exception {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		Thread [] threads = new Thread[THREADS];
+		for(int i = 0; i < threads.length; ++i) {
+			threads[i] = new Thread() {
+				public void run() {
+					for(int j = 0; j < ITERATIONS; ++j) {
+						histogram.record(j);
+					}
+				}
+			};
+		}
+		long start = System.nanoTime();
+		for(Thread thread : threads) {
+			thread.start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		long elapsed = System.nanoTime() - start;
+		assertEquals((long)THREADS * ITERATIONS, histogram.getCount());
+		assertEquals((long)THREADS * ITERATIONS * (ITERATIONS - 1) / 2, histogram.getSum());
+		logger.warn("{} threads : {} ns/sample", THREADS, elapsed / ITERATIONS);
+		
+		// single-threaded, the cost of recording should be negligible next to a request
+		LatencyHistogram single = new LatencyHistogram();
+		start = System.nanoTime();
+		for(int j = 0; j < ITERATIONS; ++j) {
+			single.record(j);
+		}
+		elapsed = System.nanoTime() - start;
+		logger.warn("1 thread  : {} ns/sample", elapsed / ITERATIONS);
+		assertTrue(elapsed / ITERATIONS < 10000);
+	}
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Level;
+import org.dihedron.ehttpd.exceptions.ApplicationException;
+import org.dihedron.ehttpd.exceptions.ServerException;
+import org.dihedron.ehttpd.exceptions.UnsupportedRequest;
+import org.dihedron.ehttpd.server.handlers.Handler;
+import org.dihedron.ehttpd.server.session.FakeSessionGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that handlers and error forwards can be registered while requests
+ * are being dispatched.
+ *
+ * @author Andrea Funto'
+ */
+public class RequestDispatcherTest {
+
+	/**
+	 * The number of threads registering handlers.
+	 */
+	private static final int WRITERS = 4;
+	
+	/**
+	 * The number of handlers registered by each thread.
+	 */
+	private static final int ROUTES = 250;
+	
+	@Before
+	public void setUp() throws Exception {
+		org.apache.log4j.Logger.getLogger("org.dihedron").setLevel(Level.WARN);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		org.apache.log4j.Logger.getLogger("org.dihedron").setLevel(Level.TRACE);
+	}
+	
+	@Test
+	public void testErrorForward() throws Exception {
+		RequestDispatcher dispatcher = new RequestDispatcher(new FakeSessionGenerator());
+		dispatcher.handle("/error").through(new NamedHandler("error"));
+		dispatcher.on(UnsupportedRequest.class).goTo("/error");
+		dispatcher.on(UnsupportedRequest.class).goTo("/error");
+		
+		assertEquals("error", dispatch(dispatcher, "/missing"));
+	}
+	
+	@Test
+	public void testDispatchCache() throws Exception {
+		RequestDispatcher dispatcher = new RequestDispatcher(new FakeSessionGenerator());
+		dispatcher.handle("/a.*").through(new NamedHandler("a"));
+		dispatcher.setDispatchCache(new DispatchCache(2));
+		DispatchCache cache = dispatcher.getDispatchCache();
+		
+		assertEquals("a", dispatch(dispatcher, "/a"));
+		assertEquals("a", dispatch(dispatcher, "/a"));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		
+		// negative results are cached too
+		assertEquals(null, dispatchMissing(dispatcher, "/b"));
+		assertEquals(null, dispatchMissing(dispatcher, "/b"));
+		assertEquals(2, cache.getHits());
+		assertEquals(2, cache.getCount());
+		
+		// registering a handler makes cached results stale
+		dispatcher.handle("/b").through(new NamedHandler("b"));
+		assertEquals(0, cache.getCount());
+		assertEquals("b", dispatch(dispatcher, "/b"));
+		assertEquals("a", dispatch(dispatcher, "/a"));
+		assertEquals("a", dispatch(dispatcher, "/abc"));
+		assertEquals(2, cache.getCount());
+		assertEquals(1, cache.getEvictions());
+		assertEquals(2.0 / 7, cache.getHitRatio(), 0.001);
+	}
+	
+	@Test
+	public void testDispatchCacheKeepsHotTargets() throws Exception {
+		RequestDispatcher dispatcher = new RequestDispatcher(new FakeSessionGenerator());
+		dispatcher.handle("/.*").through(new NamedHandler("any"));
+		dispatcher.setDispatchCache(new DispatchCache(4));
+		DispatchCache cache = dispatcher.getDispatchCache();
+		
+		// the hot target is hit between each pair of cold ones, so the clock 
+		// hand always finds it marked and never evicts it
+		for(int i = 0; i < 100; ++i) {
+			assertEquals("any", dispatch(dispatcher, "/cold/" + i));
+			assertEquals("any", dispatch(dispatcher, "/hot"));
+		}
+		assertEquals(99, cache.getHits());
+		assertEquals(101, cache.getMisses());
+		assertEquals(4, cache.getCount());
+		assertEquals(97, cache.getEvictions());
+	}
+	
+	@Test
+	public void testConcurrentRegistration() throws Exception {
+		final RequestDispatcher dispatcher = new RequestDispatcher(new FakeSessionGenerator());
+		dispatcher.handle("/first").through(new NamedHandler("first"));
+		
+		final AtomicBoolean done = new AtomicBoolean(false);
+		final AtomicInteger failures = new AtomicInteger(0);
+		Thread reader = new Thread() {
+			@Override
+			public void run() {
+				while(!done.get()) {
+					try {
+						if(!"first".equals(dispatch(dispatcher, "/first"))) {
+							failures.incrementAndGet();
+						}
+					} catch(Exception e) {
+						failures.incrementAndGet();
+					}
+				}
+			}
+		};
+		reader.start();
+		
+		List<Thread> writers = new ArrayList<Thread>();
+		for(int i = 0; i < WRITERS; ++i) {
+			final int writer = i;
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for(int j = 0; j < ROUTES; ++j) {
+							dispatcher.handle("/w" + writer + "/r" + j).through(new NamedHandler(writer + ":" + j));
+						}
+					} catch(ApplicationException e) {
+						failures.incrementAndGet();
+					}
+				}
+			};
+			writers.add(thread);
+			thread.start();
+		}
+		for(Thread thread : writers) {
+			thread.join();
+		}
+		done.set(true);
+		reader.join();
+		
+		assertEquals(0, failures.get());
+		for(int i = 0; i < WRITERS; ++i) {
+			for(int j = 0; j < ROUTES; ++j) {
+				assertEquals(i + ":" + j, dispatch(dispatcher, "/w" + i + "/r" + j));
+			}
+		}
+	}
+	
+	/**
+	 * Dispatches a GET request for the given target and returns the name of
+	 * the handler that served it.
+	 */
+	private static String dispatch(RequestDispatcher dispatcher, String target) throws ServerException {
+		Request request = new Request(new ByteArrayInputStream(("GET " + target + " HTTP/1.1\r\n\r\n").getBytes()));
+		Response response = new Response(new ManagedOutput(new ByteArrayOutputStream()));
+		dispatcher.dispatch(request, response);
+		return (String)request.getParameter(NamedHandler.KEY);
+	}
+	
+	/**
+	 * Dispatches a GET request for a target no handler is registered for, and
+	 * returns the name of the handler that served it, if any.
+	 */
+	private static String dispatchMissing(RequestDispatcher dispatcher, String target) {
+		try {
+			return dispatch(dispatcher, target);
+		} catch(ServerException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * A handler that records its name among the request parameters.
+	 */
+	private static class NamedHandler implements Handler {
+		
+		static final String KEY = "handler";
+		
+		private String name;
+		
+		NamedHandler(String name) {
+			this.name = name;
+		}
+		
+		public void handle(Request request, Response response) throws ServerException {
+			request.setParameter(KEY, name);
+		}
+	}
+}
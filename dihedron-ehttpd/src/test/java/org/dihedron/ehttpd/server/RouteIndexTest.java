@@ -0,0 +1,249 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.log4j.Level;
+import org.dihedron.ehttpd.exceptions.ServerException;
+import org.dihedron.ehttpd.server.handlers.Handler;
+import org.dihedron.regex.Regex;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checks that the route index finds the same handler as trying each route in
+ * registration order would, and compares the throughput of the two with 500
+ * routes; the number of lookups can be set through the <code>
+ * ehttpd.benchmark.iterations</code> system property.
+ *
+ * @author Andrea Funto'
+ */
+public class RouteIndexTest {
+	/**
+	 * The logger.
+	 */
+	private static Logger logger = LoggerFactory.getLogger(RouteIndexTest.class);
+
+	/**
+	 * The number of lookups in each round of the benchmark.
+	 */
+	private static final int ITERATIONS = Integer.getInteger("ehttpd.benchmark.iterations", 200000);
+	
+	/**
+	 * The number of routes in the benchmark.
+	 */
+	private static final int ROUTES = 500;
+
+	@Before
+	public void setUp() throws Exception {
+		org.apache.log4j.Logger.getLogger("org.dihedron").setLevel(Level.WARN);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		org.apache.log4j.Logger.getLogger("org.dihedron").setLevel(Level.TRACE);
+	}
+	
+	@Test
+	public void testLiteralPrefix() {
+		assertNull(RouteIndex.getLiteralPrefix("/index\\.html"));
+		assertNull(RouteIndex.getLiteralPrefix("^/index\\.html$"));
+		assertEquals("/static/", RouteIndex.getLiteralPrefix("/static/.*"));
+		assertEquals("/user", RouteIndex.getLiteralPrefix("/users?/\\d+"));
+		assertEquals("/a", RouteIndex.getLiteralPrefix("/a+"));
+		assertEquals("/api/v", RouteIndex.getLiteralPrefix("/api/v(1|2)/.*"));
+		assertEquals("", RouteIndex.getLiteralPrefix("/a/.*|/b/.*"));
+		assertEquals("", RouteIndex.getLiteralPrefix(".*\\.css"));
+		assertEquals("", RouteIndex.getLiteralPrefix("\\Q/quoted\\E.*"));
+	}
+	
+	@Test
+	public void testFirstMatchWins() throws Exception {
+		Handler css = new NamedHandler("css");
+		Handler images = new NamedHandler("images");
+		Handler logo = new NamedHandler("logo");
+		Handler exact = new NamedHandler("exact");
+		Handler any = new NamedHandler("any");
+		RouteIndex index = new RouteIndex()
+			.with(new Regex("/static/img/.*"), images)
+			.with(new Regex(".*\\.css"), css)
+			.with(new Regex("/static/img/logo\\.png"), logo)
+			.with(new Regex("/static/app\\.css"), exact)
+			.with(new Regex("(?:/[a-z]+)+/?", false), any);
+		
+		assertSame(images, index.find("/static/img/logo.png").getHandler());
+		assertSame(css, index.find("/static/app.css").getHandler());
+		assertSame(css, index.find("/x.css").getHandler());
+		assertSame(any, index.find("/Some/Path/").getHandler());
+		assertNull(index.find("/static/app.js"));
+		assertNull(index.find(null));
+		
+		// the index is immutable
+		assertEquals(0, new RouteIndex().getRoutes().size());
+		assertEquals(5, index.getRoutes().size());
+	}
+	
+	@Test
+	public void testEquivalence() throws Exception {
+		List<Regex> regexes = makeRoutes();
+		RouteIndex index = makeIndex(regexes);
+		Random random = new Random(17);
+		for(int i = 0; i < 20000; ++i) {
+			String target = makeTarget(random);
+			Regex expected = findLinear(regexes, target);
+			RouteIndex.Route route = index.find(target);
+			assertEquals(target, expected, route != null ? route.getRegex() : null);
+		}
+	}
+	
+	@Test
+	public void testThroughput() throws Exception {
+		List<Regex> regexes = makeRoutes();
+		RouteIndex index = makeIndex(regexes);
+		Random random = new Random(23);
+		String [] targets = new String[1024];
+		for(int i = 0; i < targets.length; ++i) {
+			targets[i] = makeTarget(random);
+		}
+		
+		long indexed = 0;
+		long linear = 0;
+		int found = 0;
+		for(int round = 0; round < 3; ++round) {
+			long start = System.nanoTime();
+			for(int i = 0; i < ITERATIONS; ++i) {
+				if(index.find(targets[i & 1023]) != null) {
+					++found;
+				}
+			}
+			indexed = System.nanoTime() - start;
+			
+			start = System.nanoTime();
+			for(int i = 0; i < ITERATIONS; ++i) {
+				if(findLinear(regexes, targets[i & 1023]) != null) {
+					++found;
+				}
+			}
+			linear = System.nanoTime() - start;
+		}
+		logger.warn("{} routes, {} matches", ROUTES, found);
+		logger.warn("route index : {} lookups/s", ITERATIONS * 1000000000L / indexed);
+		logger.warn("linear scan : {} lookups/s", ITERATIONS * 1000000000L / linear);
+	}
+	
+	/**
+	 * Creates a mix of routes: plain paths, paths with a literal prefix and a
+	 * few patterns with no prefix, with a catch-all at the end.
+	 */
+	private static List<Regex> makeRoutes() {
+		List<Regex> regexes = new ArrayList<Regex>();
+		for(int i = 0; regexes.size() < ROUTES - 1; ++i) {
+			switch(i % 5) {
+			case 0:
+				regexes.add(new Regex("/app" + i + "/index\\.html"));
+				break;
+			case 1:
+				regexes.add(new Regex("/app" + i + "/items/\\d+"));
+				break;
+			case 2:
+				regexes.add(new Regex("/api/v" + (i % 3) + "/resource" + i + "(?:/.*)?"));
+				break;
+			case 3:
+				regexes.add(new Regex("/app" + i + "/(?:data|meta)/.*\\.json"));
+				break;
+			default:
+				if(i % 50 == 4) {
+					regexes.add(new Regex(".*/module" + i + "/[a-z]+\\.js"));
+				} else {
+					regexes.add(new Regex("/lib/module" + i + "/[a-z]+\\.js"));
+				}
+				break;
+			}
+		}
+		regexes.add(new Regex("/static/.*"));
+		return regexes;
+	}
+	
+	/**
+	 * Creates a target likely to match one of the routes.
+	 */
+	private static String makeTarget(Random random) {
+		int i = random.nextInt(ROUTES + 20);
+		switch(random.nextInt(6)) {
+		case 0:
+			return "/app" + i + "/index.html";
+		case 1:
+			return "/app" + i + "/items/" + random.nextInt(1000);
+		case 2:
+			return "/api/v" + (i % 3) + "/resource" + i + (random.nextBoolean() ? "/sub" : "");
+		case 3:
+			return "/app" + i + "/data/x.json";
+		case 4:
+			return "/lib/module" + i + "/main.js";
+		default:
+			return "/static/img" + i + ".png";
+		}
+	}
+	
+	private static RouteIndex makeIndex(List<Regex> regexes) {
+		RouteIndex index = new RouteIndex();
+		for(Regex regex : regexes) {
+			index = index.with(regex, new NamedHandler(regex.getRegex()));
+		}
+		return index;
+	}
+	
+	private static Regex findLinear(List<Regex> regexes, String target) {
+		for(Regex regex : regexes) {
+			if(regex.matches(target)) {
+				return regex;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * A handler that does nothing.
+	 */
+	private static class NamedHandler implements Handler {
+		
+		private String name;
+		
+		NamedHandler(String name) {
+			this.name = name;
+		}
+		
+		public void handle(Request request, Response response) throws ServerException {
+		}
+		
+		public String toString() {
+			return name;
+		}
+	}
+}
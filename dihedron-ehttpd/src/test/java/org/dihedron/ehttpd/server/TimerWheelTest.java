@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that timeouts expire on time, even across turns of the wheel, and 
+ * that cancelled ones never do.
+ *
+ * @author Andrea Funto'
+ */
+public class TimerWheelTest {
+	
+	/**
+	 * The wheel under test: 10 ms ticks, 8 buckets.
+	 */
+	private TimerWheel wheel;
+	
+	@Before
+	public void setUp() throws Exception {
+		wheel = new TimerWheel(10, 8);
+		wheel.start("timer-test");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		wheel.stop();
+	}
+
+	@Test
+	public void testExpiry() throws Exception {
+		// the second and third delays take more than a turn of the wheel
+		long [] delays = { 30, 150, 400 };
+		final long [] expired = new long[delays.length];
+		final CountDownLatch latch = new CountDownLatch(delays.length);
+		long start = System.nanoTime();
+		for(int i = 0; i < delays.length; ++i) {
+			final int index = i;
+			wheel.schedule(new Runnable() {
+				public void run() {
+					expired[index] = System.nanoTime();
+					latch.countDown();
+				}
+			}, delays[i]);
+		}
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		for(int i = 0; i < delays.length; ++i) {
+			long elapsed = TimeUnit.NANOSECONDS.toMillis(expired[i] - start);
+			assertTrue("expired after " + elapsed + " ms instead of " + delays[i], elapsed >= delays[i] && elapsed < delays[i] + 100);
+		}
+		assertEquals(0, wheel.getPending());
+	}
+	
+	@Test
+	public void testCancel() throws Exception {
+		final AtomicInteger expired = new AtomicInteger(0);
+		Runnable task = new Runnable() {
+			public void run() {
+				expired.incrementAndGet();
+			}
+		};
+		TimerWheel.Timeout [] timeouts = new TimerWheel.Timeout[100000];
+		for(int i = 0; i < timeouts.length; ++i) {
+			timeouts[i] = wheel.schedule(task, 50 + i % 100);
+		}
+		assertEquals(timeouts.length, wheel.getPending());
+		// cancel every other timeout, some before and some after they make it to the wheel
+		for(int i = 0; i < timeouts.length; i += 2) {
+			assertTrue(timeouts[i].cancel());
+			if(i == timeouts.length / 2) {
+				Thread.sleep(20);
+			}
+		}
+		long deadline = System.currentTimeMillis() + 5000;
+		while(wheel.getPending() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, wheel.getPending());
+		assertEquals(timeouts.length / 2, expired.get());
+		for(int i = 0; i < timeouts.length; ++i) {
+			assertEquals(i % 2 == 1, timeouts[i].isExpired());
+		}
+		// expired timeouts can no longer be cancelled
+		assertTrue(!timeouts[1].cancel());
+	}
+}
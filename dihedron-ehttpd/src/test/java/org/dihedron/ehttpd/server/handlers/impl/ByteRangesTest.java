@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server.handlers.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Checks the parsing of <code>Range</code> headers, including suffix ranges,
+ * ranges past the end of the representation and unsatisfiable ones.
+ *
+ * @author Andrea Funto'
+ */
+public class ByteRangesTest {
+
+	@Test
+	public void testParse() {
+		assertRanges("0-499", ByteRanges.parse("bytes=0-499", 10000));
+		assertRanges("500-999", ByteRanges.parse("bytes=500-999", 10000));
+		assertRanges("9500-9999", ByteRanges.parse("bytes=-500", 10000));
+		assertRanges("9500-9999", ByteRanges.parse("bytes=9500-", 10000));
+		assertRanges("0-0,9999-9999", ByteRanges.parse("bytes=0-0,-1", 10000));
+		assertRanges("0-9999", ByteRanges.parse("Bytes = 0-", 10000));
+		
+		// truncated at the end of the representation
+		assertRanges("9000-9999", ByteRanges.parse("bytes=9000-20000", 10000));
+		assertRanges("0-9999", ByteRanges.parse("bytes=-20000", 10000));
+		
+		// overlapping and adjacent ranges are coalesced, and sorted
+		assertRanges("0-999", ByteRanges.parse("bytes=500-999,0-499", 10000));
+		assertRanges("0-700", ByteRanges.parse("bytes=0-500,200-700,100-300", 10000));
+		assertRanges("0-10,20-30", ByteRanges.parse("bytes=20-30,0-10", 10000));
+		
+		// unsatisfiable, and partially satisfiable
+		assertRanges("", ByteRanges.parse("bytes=10000-", 10000));
+		assertRanges("", ByteRanges.parse("bytes=-0", 10000));
+		assertRanges("", ByteRanges.parse("bytes=0-", 0));
+		assertRanges("0-9", ByteRanges.parse("bytes=20000-30000,0-9", 10000));
+		
+		// ignored
+		assertNull(ByteRanges.parse("bytes=500-100", 10000));
+		assertNull(ByteRanges.parse("bytes=a-b", 10000));
+		assertNull(ByteRanges.parse("bytes=100", 10000));
+		assertNull(ByteRanges.parse("bytes=-", 10000));
+		assertNull(ByteRanges.parse("bytes=5--1", 10000));
+		assertNull(ByteRanges.parse("bytes=+5-10", 10000));
+		assertNull(ByteRanges.parse("bytes=--5", 10000));
+		assertNull(ByteRanges.parse("items=0-10", 10000));
+		assertNull(ByteRanges.parse("0-10", 10000));
+		StringBuilder many = new StringBuilder("bytes=0-0");
+		for(int i = 1; i <= ByteRanges.MAX_RANGES; ++i) {
+			many.append(',').append(i * 2).append('-').append(i * 2);
+		}
+		assertNull(ByteRanges.parse(many.toString(), 10000));
+	}
+	
+	@Test
+	public void testFormat() {
+		assertEquals("bytes 0-499/10000", ByteRanges.format(new long[] { 0, 499 }, 10000));
+		assertEquals("bytes */10000", ByteRanges.format(null, 10000));
+	}
+	
+	/**
+	 * Checks the parsed ranges against their textual form.
+	 */
+	private void assertRanges(String expected, List<long[]> ranges) {
+		assertTrue(ranges != null);
+		StringBuilder actual = new StringBuilder();
+		for(long [] range : ranges) {
+			actual.append(actual.length() > 0 ? "," : "").append(range[0]).append('-').append(range[1]);
+		}
+		assertEquals(expected, actual.toString());
+	}
+}
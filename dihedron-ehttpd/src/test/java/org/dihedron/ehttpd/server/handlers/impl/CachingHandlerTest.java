@@ -0,0 +1,262 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server.handlers.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Level;
+import org.dihedron.ehttpd.exceptions.ServerException;
+import org.dihedron.ehttpd.server.HttpServer;
+import org.dihedron.ehttpd.server.Request;
+import org.dihedron.ehttpd.server.RequestDispatcher;
+import org.dihedron.ehttpd.server.Response;
+import org.dihedron.ehttpd.server.handlers.Handler;
+import org.dihedron.ehttpd.server.session.FakeSessionGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that cached responses are served without running the wrapped 
+ * handler again, that the key ignores the order of the parameters but not
+ * the headers it depends on, that responses expire, and that concurrent 
+ * misses for the same key run the handler once.
+ *
+ * @author Andrea Funto'
+ */
+public class CachingHandlerTest {
+	
+	/**
+	 * The number of times the wrapped handler ran.
+	 */
+	private AtomicInteger calls = new AtomicInteger(0);
+	
+	/**
+	 * Released when the handler on "/slow" should complete.
+	 */
+	private CountDownLatch release = new CountDownLatch(1);
+	
+	@Before
+	public void setUp() throws Exception {
+		org.apache.log4j.Logger.getLogger("org.dihedron").setLevel(Level.WARN);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		org.apache.log4j.Logger.getLogger("org.dihedron").setLevel(Level.TRACE);
+	}
+	
+	@Test
+	public void testCaching() throws Exception {
+		ResponseCache cache = new ResponseCache(64 * 1024);
+		HttpServer server = startServer(cache, 60000);
+		try {
+			String response = get(server, "/page?a=1&b=2", "");
+			assertTrue(response, response.endsWith("call 1"));
+			assertFalse(response, response.contains("Age: "));
+			
+			// same parameters in a different order
+			response = get(server, "/page?b=2&a=1", "");
+			assertTrue(response, response.endsWith("call 1"));
+			assertTrue(response, response.contains("Age: 0\r\n"));
+			assertTrue(response, response.contains("Content-Type: text/plain\r\n"));
+			
+			assertEquals("call 2", tail(get(server, "/page?a=2", "")));
+			assertEquals("call 3", tail(get(server, "/page?a=1&b=2", "Accept-Language: it\r\n")));
+			assertEquals("call 3", tail(get(server, "/page?a=1&b=2", "Accept-Language: it\r\n")));
+			
+			// responses setting cookies are not cached
+			assertEquals("call 4", tail(get(server, "/cookie", "")));
+			assertEquals("call 5", tail(get(server, "/cookie", "")));
+			
+			assertEquals(2, cache.getHits());
+			assertEquals(5, cache.getMisses());
+			assertEquals(0, cache.getCoalesced());
+			assertEquals(3, cache.getCount());
+		} finally {
+			server.stop();
+		}
+	}
+	
+	@Test
+	public void testExpiry() throws Exception {
+		ResponseCache cache = new ResponseCache(64 * 1024);
+		HttpServer server = startServer(cache, 1);
+		try {
+			assertEquals("call 1", tail(get(server, "/page", "")));
+			Thread.sleep(50);
+			assertEquals("call 2", tail(get(server, "/page", "")));
+			assertEquals(0, cache.getHits());
+		} finally {
+			server.stop();
+		}
+	}
+	
+	@Test
+	public void testEviction() throws Exception {
+		ResponseCache cache = new ResponseCache(4096);
+		HttpServer server = startServer(cache, 60000);
+		try {
+			for(int i = 0; i < 50; ++i) {
+				get(server, "/page?i=" + i, "");
+			}
+			assertTrue(cache.getSize() <= cache.getCapacity());
+			assertTrue(cache.getEvictions() > 0);
+		} finally {
+			server.stop();
+		}
+	}
+	
+	@Test
+	public void testKeysCounted() throws Exception {
+		ResponseCache cache = new ResponseCache(64 * 1024);
+		HttpServer server = startServer(cache, 60000);
+		try {
+			// small responses, but long distinct keys
+			StringBuilder padding = new StringBuilder();
+			for(int i = 0; i < 2000; ++i) {
+				padding.append('x');
+			}
+			for(int i = 0; i < 30; ++i) {
+				get(server, "/page?i=" + i + "&pad=" + padding, "");
+			}
+			assertTrue(cache.getSize() <= cache.getCapacity());
+			assertTrue(cache.getEvictions() > 0);
+		} finally {
+			server.stop();
+		}
+	}
+	
+	@Test
+	public void testCoalescing() throws Exception {
+		final ResponseCache cache = new ResponseCache(64 * 1024);
+		final HttpServer server = startServer(cache, 60000);
+		try {
+			final List<String> responses = new ArrayList<String>();
+			List<Thread> clients = new ArrayList<Thread>();
+			for(int i = 0; i < 4; ++i) {
+				Thread client = new Thread() {
+					public void run() {
+						try {
+							String response = get(server, "/slow", "");
+							synchronized(responses) {
+								responses.add(response);
+							}
+						} catch(IOException e) {
+							// the assertion on the responses fails
+						}
+					}
+				};
+				client.start();
+				clients.add(client);
+			}
+			long deadline = System.currentTimeMillis() + 5000;
+			while(cache.getCoalesced() < 3 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			release.countDown();
+			for(Thread client : clients) {
+				client.join(10000);
+			}
+			assertEquals(4, responses.size());
+			for(String response : responses) {
+				assertTrue(response, response.endsWith("call 1"));
+			}
+			assertEquals(1, calls.get());
+			assertEquals(3, cache.getCoalesced());
+		} finally {
+			release.countDown();
+			server.stop();
+		}
+	}
+	
+	/**
+	 * Starts a server on a random port, whose routes are cached for the given
+	 * time; the handler answers with the number of times it ran, blocking on 
+	 * "/slow" until released and setting a cookie on "/cookie".
+	 */
+	private HttpServer startServer(ResponseCache cache, long ttl) throws Exception {
+		Handler handler = new Handler() {
+			public void handle(Request request, Response response) throws ServerException {
+				String path = request.getHttpQuery().getQueryString();
+				if(path.equals("/slow")) {
+					try {
+						release.await();
+					} catch(InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				} else if(path.equals("/cookie")) {
+					response.setCookie("name", "value");
+				}
+				response.setHeader("Content-Type", "text/plain");
+				response.addContent("call " + calls.incrementAndGet());
+			}
+		};
+		RequestDispatcher dispatcher = new RequestDispatcher(new FakeSessionGenerator());
+		dispatcher.handle(".*").through(new CachingHandler(handler, cache, ttl, "Accept-Language"));
+		HttpServer server = new HttpServer(HttpServer.AUTOMATIC_PORT_BINDING, dispatcher);
+		server.setThreadPoolSize(8);
+		new Thread(server).start();
+		while(server.getPort() == HttpServer.AUTOMATIC_PORT_BINDING) {
+			Thread.sleep(10);
+		}
+		return server;
+	}
+	
+	/**
+	 * Returns the content of a response.
+	 */
+	private String tail(String response) {
+		return response.substring(response.indexOf("\r\n\r\n") + 4);
+	}
+	
+	/**
+	 * Performs a request with the given extra headers on a new connection, and
+	 * returns the whole response.
+	 */
+	private String get(HttpServer server, String target, String extra) throws IOException {
+		Socket socket = new Socket("localhost", server.getPort());
+		try {
+			socket.setSoTimeout(10000);
+			OutputStream output = socket.getOutputStream();
+			output.write(("GET " + target + " HTTP/1.0\r\n" + extra + "\r\n").getBytes());
+			output.flush();
+			InputStream input = socket.getInputStream();
+			StringBuilder response = new StringBuilder();
+			int c;
+			while((c = input.read()) != -1) {
+				response.append((char)c);
+			}
+			return response.toString();
+		} finally {
+			socket.close();
+		}
+	}
+}
@@ -0,0 +1,459 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server.handlers.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.dihedron.ehttpd.exceptions.ApplicationException;
+import org.dihedron.ehttpd.exceptions.ServerException;
+import org.dihedron.ehttpd.server.HttpServer;
+import org.dihedron.ehttpd.server.Request;
+import org.dihedron.ehttpd.server.RequestDispatcher;
+import org.dihedron.ehttpd.server.Response;
+import org.dihedron.ehttpd.server.resources.FileStaticResource;
+import org.dihedron.ehttpd.server.resources.InMemoryStaticResource;
+import org.dihedron.ehttpd.server.resources.StaticResource;
+import org.dihedron.ehttpd.server.session.FakeSessionGenerator;
+import org.dihedron.utils.Streams;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests serving static files, which are transferred straight from the file
+ * to the client, in both the blocking and the non-blocking server modes, and
+ * answering conditional and range requests.
+ *
+ * @author Andrea Funto'
+ */
+public class ResourceRequestHandlerTest {
+
+	/**
+	 * The size of the test file.
+	 */
+	private static final int FILE_SIZE = 1024 * 1024 + 17;
+
+	/**
+	 * The test file.
+	 */
+	private File file;
+
+	/**
+	 * The contents of the test file.
+	 */
+	private byte[] contents;
+
+	@Before
+	public void setUp() throws Exception {
+		contents = new byte[FILE_SIZE];
+		new Random(42).nextBytes(contents);
+		file = File.createTempFile("ehttpd", ".bin");
+		write(file, contents);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		file.delete();
+	}
+
+	@Test
+	public void testFileResource() throws Exception {
+		testFileResource(false);
+		testFileResource(true);
+	}
+
+	@Test
+	public void testNegotiation() {
+		assertEquals("gzip", ResourceRequestHandler.negotiate("gzip, deflate"));
+		assertEquals("deflate", ResourceRequestHandler.negotiate("gzip;q=0.5, deflate"));
+		assertEquals("gzip", ResourceRequestHandler.negotiate("*"));
+		assertNull(ResourceRequestHandler.negotiate("gzip;q=0, *"));
+		assertNull(ResourceRequestHandler.negotiate("identity"));
+		assertNull(ResourceRequestHandler.negotiate(null));
+	}
+
+	@Test
+	public void testCompression() throws Exception {
+		String text = "";
+		for(int i = 0; i < 1000; ++i) {
+			text += "body { color: black; }\n";
+		}
+		write(file, text.getBytes());
+		HttpServer server = startServer(false, new FileStaticResource("text/css", file.getPath()));
+		File sibling = new File(file.getPath() + ResourceRequestHandler.GZIP_EXTENSION);
+		try {
+			Map<String, String> headers = new HashMap<String, String>();
+			byte[] body = get(server, "gzip, deflate", headers);
+			assertEquals("gzip", headers.get("Content-Encoding"));
+			assertEquals("Accept-Encoding", headers.get("Vary"));
+			assertTrue(body.length < text.length());
+			assertEquals(text, gunzip(body));
+
+			body = get(server, null, headers);
+			assertNull(headers.get("Content-Encoding"));
+			assertEquals("Accept-Encoding", headers.get("Vary"));
+			assertEquals(text, new String(body));
+
+			// a pre-compressed sibling takes precedence
+			write(sibling, CompressedVariants.compress("gzip", "pre-compressed".getBytes()));
+			body = get(server, "gzip", headers);
+			assertEquals("gzip", headers.get("Content-Encoding"));
+			assertEquals("pre-compressed", gunzip(body));
+		} finally {
+			sibling.delete();
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testConditional() throws Exception {
+		for(boolean nonBlocking : new boolean[] { false, true }) {
+			HttpServer server = startServer(nonBlocking, new FileStaticResource("application/octet-stream", file.getPath()));
+			try {
+				Map<String, String> headers = new HashMap<String, String>();
+				assertEquals("HTTP/1.0 200 OK", request(server, "", headers, null));
+				String etag = headers.get("ETag");
+				String date = headers.get("Last-Modified");
+				// files are tagged by length and modification time, without reading them
+				assertEquals("\"" + Long.toHexString(file.length()) + "-" + Long.toHexString(file.lastModified()) + "\"", etag);
+				assertEquals(EntityValidators.formatDate(file.lastModified()), date);
+				
+				assertEquals("HTTP/1.0 304 Not Modified", request(server, "If-None-Match: \"other\", " + etag + "\r\n", headers, null));
+				assertEquals(etag, headers.get("ETag"));
+				assertNull(headers.get("Content-Length"));
+				assertEquals("HTTP/1.0 304 Not Modified", request(server, "If-None-Match: W/" + etag + "\r\n", headers, null));
+				// other methods fail the precondition instead
+				assertEquals("HTTP/1.0 412 Precondition Failed", request(server, "POST", "If-None-Match: " + etag + "\r\nContent-Length: 0\r\n", headers, null));
+				assertEquals("HTTP/1.0 200 OK", request(server, "POST", "If-Modified-Since: " + date + "\r\nContent-Length: 0\r\n", headers, null));
+				assertEquals("HTTP/1.0 304 Not Modified", request(server, "If-Modified-Since: " + date + "\r\n", headers, null));
+				// If-None-Match takes precedence
+				assertEquals("HTTP/1.0 200 OK", request(server, "If-None-Match: \"other\"\r\nIf-Modified-Since: " + date + "\r\n", headers, null));
+				assertEquals("HTTP/1.0 200 OK", request(server, "If-Modified-Since: " + EntityValidators.formatDate(file.lastModified() - 60000) + "\r\n", headers, null));
+				assertEquals("HTTP/1.0 200 OK", request(server, "If-Modified-Since: yesterday\r\n", headers, null));
+				
+				// the tag changes along with the contents
+				contents[0] ^= 1;
+				write(file, contents);
+				file.setLastModified(file.lastModified() + 2000);
+				assertEquals("HTTP/1.0 200 OK", request(server, "If-None-Match: " + etag + "\r\n", headers, null));
+				assertTrue(!etag.equals(headers.get("ETag")));
+			} finally {
+				server.stop();
+			}
+		}
+		
+		String text = "";
+		for(int i = 0; i < 100; ++i) {
+			text += "in memory\n";
+		}
+		HttpServer server = startServer(false, new InMemoryStaticResource("text/plain", text.getBytes()));
+		try {
+			Map<String, String> headers = new HashMap<String, String>();
+			assertEquals("HTTP/1.0 200 OK", request(server, "", headers, null));
+			String etag = headers.get("ETag");
+			// compressed variants have their own tag
+			assertEquals("HTTP/1.0 200 OK", request(server, "Accept-Encoding: gzip\r\nIf-None-Match: " + etag + "\r\n", headers, null));
+			assertEquals("gzip", headers.get("Content-Encoding"));
+			assertEquals(etag.substring(0, etag.length() - 1) + "-gzip\"", headers.get("ETag"));
+			assertEquals("HTTP/1.0 304 Not Modified", request(server, "If-None-Match: " + etag + "\r\n", headers, null));
+			assertEquals("HTTP/1.0 304 Not Modified", request(server, "If-Modified-Since: " + headers.get("Last-Modified") + "\r\n", headers, null));
+		} finally {
+			server.stop();
+		}
+		
+		// data that does not shrink is sent as is, with the identity tag
+		server = startServer(false, new InMemoryStaticResource("text/plain", "in memory".getBytes()));
+		try {
+			Map<String, String> headers = new HashMap<String, String>();
+			assertEquals("HTTP/1.0 200 OK", request(server, "", headers, null));
+			String etag = headers.get("ETag");
+			assertEquals("HTTP/1.0 304 Not Modified", request(server, "Accept-Encoding: gzip\r\nIf-None-Match: " + etag + "\r\n", headers, null));
+			assertEquals(etag, headers.get("ETag"));
+			assertEquals("HTTP/1.0 200 OK", request(server, "Accept-Encoding: gzip\r\n", headers, null));
+			assertEquals(etag, headers.get("ETag"));
+			assertNull(headers.get("Content-Encoding"));
+			assertNull(headers.get("Vary"));
+		} finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testRanges() throws Exception {
+		for(boolean nonBlocking : new boolean[] { false, true }) {
+			HttpServer server = startServer(nonBlocking, new FileStaticResource("application/octet-stream", file.getPath()));
+			try {
+				Map<String, String> headers = new HashMap<String, String>();
+				ByteArrayOutputStream body = new ByteArrayOutputStream();
+				assertEquals("HTTP/1.0 200 OK", request(server, "", headers, body));
+				assertEquals("bytes", headers.get("Accept-Ranges"));
+				String etag = headers.get("ETag");
+				
+				assertEquals("HTTP/1.0 206 Partial Content", request(server, "Range: bytes=1000-1999\r\n", headers, body));
+				assertEquals("bytes 1000-1999/" + FILE_SIZE, headers.get("Content-Range"));
+				assertEquals("application/octet-stream", headers.get("Content-Type"));
+				assertArrayEquals(Arrays.copyOfRange(contents, 1000, 2000), body.toByteArray());
+				
+				// suffix range
+				assertEquals("HTTP/1.0 206 Partial Content", request(server, "Range: bytes=-17\r\n", headers, body));
+				assertEquals("bytes " + (FILE_SIZE - 17) + "-" + (FILE_SIZE - 1) + "/" + FILE_SIZE, headers.get("Content-Range"));
+				assertArrayEquals(Arrays.copyOfRange(contents, FILE_SIZE - 17, FILE_SIZE), body.toByteArray());
+				
+				// several ranges
+				assertEquals("HTTP/1.0 206 Partial Content", request(server, "Range: bytes=0-9, 100-199\r\n", headers, body));
+				String type = headers.get("Content-Type");
+				assertTrue(type, type.startsWith("multipart/byteranges; boundary="));
+				String boundary = type.substring(type.indexOf('=') + 1);
+				InputStream parts = new ByteArrayInputStream(body.toByteArray());
+				long [][] ranges = { { 0, 9 }, { 100, 199 } };
+				for(long [] range : ranges) {
+					assertEquals("", readLine(parts));
+					assertEquals("--" + boundary, readLine(parts));
+					Map<String, String> part = new HashMap<String, String>();
+					while(true) {
+						String line = readLine(parts);
+						if(line.length() == 0) {
+							break;
+						}
+						part.put(line.substring(0, line.indexOf(':')), line.substring(line.indexOf(':') + 1).trim());
+					}
+					assertEquals("application/octet-stream", part.get("Content-Type"));
+					assertEquals("bytes " + range[0] + "-" + range[1] + "/" + FILE_SIZE, part.get("Content-Range"));
+					assertArrayEquals(Arrays.copyOfRange(contents, (int)range[0], (int)range[1] + 1), readBody(parts, (int)(range[1] - range[0] + 1)));
+				}
+				assertEquals("", readLine(parts));
+				assertEquals("--" + boundary + "--", readLine(parts));
+				assertEquals(-1, parts.read());
+				
+				// unsatisfiable
+				assertEquals("HTTP/1.0 416 Requested Range Not Satisfiable", request(server, "Range: bytes=" + FILE_SIZE + "-\r\n", headers, body));
+				assertEquals("bytes */" + FILE_SIZE, headers.get("Content-Range"));
+				
+				// invalid ranges are ignored
+				assertEquals("HTTP/1.0 200 OK", request(server, "Range: bytes=10-5\r\n", headers, body));
+				assertEquals(FILE_SIZE, body.size());
+				
+				// ranges are only sent if the client has the current version
+				assertEquals("HTTP/1.0 206 Partial Content", request(server, "Range: bytes=0-9\r\nIf-Range: " + etag + "\r\n", headers, body));
+				assertEquals("HTTP/1.0 206 Partial Content", request(server, "Range: bytes=0-9\r\nIf-Range: " + headers.get("Last-Modified") + "\r\n", headers, body));
+				assertEquals("HTTP/1.0 200 OK", request(server, "Range: bytes=0-9\r\nIf-Range: \"stale\"\r\n", headers, body));
+				assertEquals("HTTP/1.0 200 OK", request(server, "Range: bytes=0-9\r\nIf-Range: W/" + etag + "\r\n", headers, body));
+				assertEquals(FILE_SIZE, body.size());
+			} finally {
+				server.stop();
+			}
+		}
+		
+		HttpServer server = startServer(false, new InMemoryStaticResource("application/octet-stream", "0123456789".getBytes()));
+		try {
+			Map<String, String> headers = new HashMap<String, String>();
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			assertEquals("HTTP/1.0 206 Partial Content", request(server, "Range: bytes=-3\r\n", headers, body));
+			assertEquals("bytes 7-9/10", headers.get("Content-Range"));
+			assertEquals("789", new String(body.toByteArray()));
+		} finally {
+			server.stop();
+		}
+	}
+
+	private void testFileResource(boolean nonBlocking) throws Exception {
+		HttpServer server = startServer(nonBlocking, new FileStaticResource("application/octet-stream", file.getPath()));
+		Socket socket = new Socket("localhost", server.getPort());
+		try {
+			OutputStream output = socket.getOutputStream();
+			// two requests on the same connection, to check the framing
+			output.write((
+					"GET /file HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+					"GET /file HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+			output.flush();
+
+			InputStream input = socket.getInputStream();
+			for(int i = 0; i < 2; ++i) {
+				Map<String, String> headers = new HashMap<String, String>();
+				assertEquals("HTTP/1.1 200 OK", readHead(input, headers));
+				assertEquals("application/octet-stream", headers.get("Content-Type"));
+				assertEquals(String.valueOf(FILE_SIZE), headers.get("Content-Length"));
+				assertArrayEquals(contents, readBody(input, FILE_SIZE));
+			}
+			assertEquals(-1, input.read());
+		} finally {
+			socket.close();
+			server.stop();
+		}
+	}
+
+	/**
+	 * Performs a request on a new connection, and returns the response body.
+	 */
+	private byte[] get(HttpServer server, String encodings, Map<String, String> headers) throws IOException {
+		Socket socket = new Socket("localhost", server.getPort());
+		try {
+			OutputStream output = socket.getOutputStream();
+			output.write(("GET /file HTTP/1.0\r\n" + (encodings != null ? "Accept-Encoding: " + encodings + "\r\n" : "") + "\r\n").getBytes());
+			output.flush();
+			InputStream input = socket.getInputStream();
+			headers.clear();
+			assertEquals("HTTP/1.0 200 OK", readHead(input, headers));
+			return readBody(input, Integer.parseInt(headers.get("Content-Length")));
+		} finally {
+			socket.close();
+		}
+	}
+
+	/**
+	 * Performs a request with the given extra headers on a new connection, 
+	 * reads the response body into the given buffer, if any, and returns the 
+	 * status line.
+	 */
+	private String request(HttpServer server, String extra, Map<String, String> headers, ByteArrayOutputStream body) throws IOException {
+		return request(server, "GET", extra, headers, body);
+	}
+
+	/**
+	 * Performs a request with the given method and extra headers on a new 
+	 * connection, like the above.
+	 */
+	private String request(HttpServer server, String method, String extra, Map<String, String> headers, ByteArrayOutputStream body) throws IOException {
+		Socket socket = new Socket("localhost", server.getPort());
+		try {
+			OutputStream output = socket.getOutputStream();
+			output.write((method + " /file HTTP/1.0\r\n" + extra + "\r\n").getBytes());
+			output.flush();
+			InputStream input = socket.getInputStream();
+			headers.clear();
+			String status = readHead(input, headers);
+			if(headers.containsKey("Content-Length")) {
+				byte [] data = readBody(input, Integer.parseInt(headers.get("Content-Length")));
+				if(body != null) {
+					body.reset();
+					body.write(data);
+				}
+			}
+			assertEquals(-1, input.read());
+			return status;
+		} finally {
+			socket.close();
+		}
+	}
+
+	/**
+	 * Decompresses gzip data into a string.
+	 */
+	private String gunzip(byte[] data) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		Streams.copy(new GZIPInputStream(new ByteArrayInputStream(data)), output);
+		return new String(output.toByteArray());
+	}
+
+	/**
+	 * Writes the given data to a file.
+	 */
+	private void write(File file, byte[] data) throws IOException {
+		OutputStream output = new FileOutputStream(file);
+		try {
+			output.write(data);
+		} finally {
+			output.close();
+		}
+	}
+
+	/**
+	 * Starts a server on a random port, serving the given resource.
+	 */
+	private HttpServer startServer(boolean nonBlocking, StaticResource resource) throws Exception {
+		final ResourceRequestHandler handler = new ResourceRequestHandler(resource);
+		RequestDispatcher dispatcher = new RequestDispatcher(new FakeSessionGenerator()) {
+			@Override
+			public void dispatch(Request request, Response response) throws ServerException {
+				try {
+					handler.handle(request, response);
+				} catch(ApplicationException e) {
+					throw new ServerException("error serving file", e);
+				}
+			}
+		};
+		HttpServer server = new HttpServer(HttpServer.AUTOMATIC_PORT_BINDING, dispatcher);
+		server.setUseNonBlockingIO(nonBlocking);
+		server.setIOThreads(1);
+		new Thread(server).start();
+		while(server.getPort() == HttpServer.AUTOMATIC_PORT_BINDING) {
+			Thread.sleep(10);
+		}
+		return server;
+	}
+
+	/**
+	 * Reads the status line and the headers of a response.
+	 */
+	private String readHead(InputStream input, Map<String, String> headers) throws IOException {
+		String status = readLine(input);
+		String line = null;
+		while((line = readLine(input)).length() > 0) {
+			int index = line.indexOf(':');
+			headers.put(line.substring(0, index).trim(), line.substring(index + 1).trim());
+		}
+		return status;
+	}
+
+	/**
+	 * Reads the given number of bytes of body.
+	 */
+	private byte[] readBody(InputStream input, int length) throws IOException {
+		byte[] body = new byte[length];
+		int offset = 0;
+		while(offset < length) {
+			int read = input.read(body, offset, length - offset);
+			assertTrue("unexpected end of stream", read != -1);
+			offset += read;
+		}
+		return body;
+	}
+
+	/**
+	 * Reads a CRLF-terminated line.
+	 */
+	private String readLine(InputStream input) throws IOException {
+		StringBuilder line = new StringBuilder();
+		int c;
+		while((c = input.read()) != '\n') {
+			assertTrue("unexpected end of stream", c != -1);
+			if(c != '\r') {
+				line.append((char)c);
+			}
+		}
+		return line.toString();
+	}
+}
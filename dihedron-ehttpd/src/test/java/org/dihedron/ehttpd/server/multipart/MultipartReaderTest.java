@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server.multipart;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests the streaming multipart reader, feeding it the body in small, uneven
+ * reads as it would come from the network.
+ *
+ * @author Andrea Funto'
+ */
+public class MultipartReaderTest {
+	
+	/**
+	 * The boundary used in the tests.
+	 */
+	private static final String BOUNDARY = "----ehttpdBoundary7MA4YWxkTrZu0gW";
+	
+	@Test
+	public void testParts() throws Exception {
+		// the file content contains near-misses of the delimiter
+		byte [] content = new byte[1024 * 1024 + 17];
+		new Random(42).nextBytes(content);
+		byte [] nearMiss = ("\r\n--" + BOUNDARY.substring(0, BOUNDARY.length() - 1)).getBytes("ISO-8859-1");
+		for(int i = 0; i + nearMiss.length < content.length; i += 100003) {
+			System.arraycopy(nearMiss, 0, content, i, nearMiss.length);
+		}
+		
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		body.write("This is the preamble.\r\n".getBytes("ISO-8859-1"));
+		body.write(("--" + BOUNDARY + "\r\n" +
+				"Content-Disposition: form-data; name=\"title\"\r\n\r\n" +
+				"caf\u00e9\r\n" +
+				"--" + BOUNDARY + "\r\n" +
+				"Content-Disposition: form-data; name=\"upload\"; filename=\"C:\\\\temp\\\\data.bin\"\r\n" +
+				"Content-Type: application/octet-stream\r\n\r\n").getBytes("UTF-8"));
+		body.write(content);
+		body.write(("\r\n--" + BOUNDARY + "  \r\n" +
+				"content-disposition: form-data; name=\"skipped\"\r\n\r\n" +
+				"never read\r\n" +
+				"--" + BOUNDARY + "\r\n" +
+				"Content-Disposition: form-data; name=\"empty\"\r\n\r\n" +
+				"\r\n" +
+				"--" + BOUNDARY + "--\r\n" +
+				"This is the epilogue.\r\n").getBytes("ISO-8859-1"));
+		
+		MultipartReader reader = new MultipartReader(new TricklingInputStream(body.toByteArray()), BOUNDARY);
+		
+		Part part = reader.next();
+		assertEquals("title", part.getName());
+		assertFalse(part.isFile());
+		assertEquals("caf\u00e9", part.getString());
+		
+		part = reader.next();
+		assertEquals("upload", part.getName());
+		assertEquals("data.bin", part.getFileName());
+		assertEquals("application/octet-stream", part.getContentType());
+		File file = File.createTempFile("ehttpd", ".test");
+		try {
+			assertEquals(content.length, part.transferTo(file));
+			assertArrayEquals(content, read(new FileInputStream(file)));
+		} finally {
+			file.delete();
+		}
+		
+		part = reader.next();
+		assertEquals("skipped", part.getName());
+		InputStream skipped = part.getInputStream();
+		
+		part = reader.next();
+		assertEquals(-1, skipped.read());
+		assertEquals("empty", part.getName());
+		assertEquals("", part.getString());
+		
+		assertNull(reader.next());
+		assertNull(reader.next());
+	}
+	
+	@Test
+	public void testBoundary() throws Exception {
+		assertEquals("abc", MultipartReader.getBoundary("multipart/form-data; boundary=abc"));
+		assertEquals("a;b c", MultipartReader.getBoundary("Multipart/Mixed; charset=utf-8; Boundary=\"a;b c\""));
+		assertNull(MultipartReader.getBoundary("application/x-www-form-urlencoded"));
+		assertNull(MultipartReader.getBoundary("multipart/form-data"));
+		
+		try {
+			new MultipartReader(new ByteArrayInputStream(("--" + BOUNDARY + "\r\nName: value\r\n\r\ntruncated").getBytes()), BOUNDARY).next().getString();
+			assertTrue("truncated body accepted", false);
+		} catch(IOException e) {
+		}
+	}
+	
+	/**
+	 * Reads a stream in full.
+	 */
+	private static byte [] read(InputStream input) throws IOException {
+		try {
+			ByteArrayOutputStream data = new ByteArrayOutputStream();
+			byte [] buffer = new byte[8192];
+			int read;
+			while((read = input.read(buffer)) != -1) {
+				data.write(buffer, 0, read);
+			}
+			return data.toByteArray();
+		} finally {
+			input.close();
+		}
+	}
+	
+	/**
+	 * A stream returning data in small reads of random size.
+	 */
+	private static class TricklingInputStream extends FilterInputStream {
+		
+		private Random random = new Random(7);
+		
+		TricklingInputStream(byte [] data) {
+			super(new ByteArrayInputStream(data));
+		}
+		
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			return super.read(buffer, offset, Math.min(length, 1 + random.nextInt(3000)));
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2011, 2013, Andrea Funto'. All rights reserved.
+ * 
+ * This file is part of the Dihedron embeddable web container ("e-httpd").
+ *
+ * "e-httpd" is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ *
+ * "e-httpd" is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR 
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with "e-httpd". If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dihedron.ehttpd.server.resources;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the bounded cache of static resources.
+ *
+ * @author Andrea Funto'
+ */
+public class StaticResourceCacheTest {
+
+	/**
+	 * The test file.
+	 */
+	private File file;
+
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("ehttpd", ".txt");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		file.delete();
+	}
+
+	@Test
+	public void testHitsAndInvalidation() throws Exception {
+		write("first version");
+		file.setLastModified(1000000000L);
+		StaticResourceCache cache = new StaticResourceCache(1024);
+		CachedStaticResource resource = new CachedStaticResource(new FileStaticResource("text/plain", file.getPath()), cache);
+
+		assertArrayEquals("first version".getBytes(), resource.getData());
+		assertArrayEquals("first version".getBytes(), resource.getData());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getHits());
+
+		// same size, different modification time
+		write("other version");
+		file.setLastModified(2000000000L);
+		assertArrayEquals("other version".getBytes(), resource.getData());
+		assertEquals(2, cache.getMisses());
+		assertEquals(1, cache.getCount());
+		assertEquals("other version".length(), cache.getSize());
+
+		// the file is gone
+		file.delete();
+		assertEquals(-1, resource.getLength());
+		assertEquals(0, cache.getCount());
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		StaticResourceCache cache = new StaticResourceCache(100, 50);
+		StaticResource first = new InMemoryStaticResource("text/plain", new byte[40]);
+		StaticResource second = new InMemoryStaticResource("text/plain", new byte[40]);
+		StaticResource third = new InMemoryStaticResource("text/plain", new byte[40]);
+		new CachedStaticResource(first, cache).getData();
+		new CachedStaticResource(second, cache).getData();
+		// touch the first, so that the second is the least recently used
+		new CachedStaticResource(first, cache).getData();
+		new CachedStaticResource(third, cache).getData();
+
+		assertEquals(1, cache.getEvictions());
+		assertEquals(80, cache.getSize());
+		assertNull(cache.peek(second, 0));
+		assertEquals(40, cache.peek(first, 0).length);
+
+		// too large to be cached
+		new CachedStaticResource(new InMemoryStaticResource("text/plain", new byte[60]), cache).getData();
+		assertEquals(2, cache.getCount());
+	}
+
+	@Test
+	public void testLargeFileIsStreamed() throws Exception {
+		write("a file larger than the cache entries");
+		StaticResourceCache cache = new StaticResourceCache(64, 8);
+		CachedStaticResource resource = new CachedStaticResource(new FileStaticResource("text/plain", file.getPath()), cache);
+		assertEquals(file.length(), resource.getLength());
+		resource.openChannel().close();
+		assertEquals(0, cache.getCount());
+	}
+
+	private void write(String contents) throws IOException {
+		OutputStream output = new FileOutputStream(file);
+		try {
+			output.write(contents.getBytes());
+		} finally {
+			output.close();
+		}
+	}
+}
@@ -295,6 +295,17 @@ public class Log implements Cloneable {
 		LOG.get().write(Level.FATAL, exception, message, arguments);
 	}	
 
+	/**
+	 * Discards the logger and the session information bound to the current 
+	 * thread; applications running their code on pools of short-lived or 
+	 * very many threads should call it when the thread is done, so that each 
+	 * thread does not keep its own copy of the handlers' chain around.
+	 */
+	public static void release() {
+		LOG.remove();
+		SessionInfo.SESSION.remove();
+	}
+
 	
 	/**
 	 * Sends a new <code>Message</code> down the <code>MessageHandler</code>'s 